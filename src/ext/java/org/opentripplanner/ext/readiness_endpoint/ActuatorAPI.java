@@ -2,6 +2,8 @@ package org.opentripplanner.ext.readiness_endpoint;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.GraphMemoryReport;
 import org.opentripplanner.standalone.server.OTPServer;
 import org.opentripplanner.standalone.server.Router;
 
@@ -9,6 +11,7 @@ import javax.ws.rs.*;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.time.Duration;
 import java.util.Collection;
 
 
@@ -18,6 +21,17 @@ public class ActuatorAPI {
 
     private static final Logger LOG = LoggerFactory.getLogger(ActuatorAPI.class);
 
+    /** How long a memory report is returned before the graph is walked again. */
+    private static final long MEMORY_REPORT_TTL_MILLIS = Duration.ofMinutes(10).toMillis();
+
+    /**
+     * The last memory report, shared by all requests, as a new instance of this class is made for
+     * each request.
+     */
+    private static GraphMemoryReport memoryReport;
+    private static Graph memoryReportGraph;
+    private static long memoryReportTime;
+
     private final Router router;
 
     public ActuatorAPI(@Context OTPServer otpServer) {
@@ -38,6 +52,9 @@ public class ActuatorAPI {
             + "    },\n"
             + "    \"health\" : {\n"
             + "      \"href\" : \"/actuator/health\"\n"
+            + "    },\n"
+            + "    \"memory\" : {\n"
+            + "      \"href\" : \"/actuator/memory\"\n"
             + "    } "
             + "\n}" )
             .type("application/json").build();
@@ -49,6 +66,15 @@ public class ActuatorAPI {
     @GET
     @Path("/health")
     public Response health() {
+        if (!router.isWarmedUp()) {
+            LOG.info("Graph ready, warming up");
+            throw new WebApplicationException(Response
+                .status(Response.Status.NOT_FOUND)
+                .entity("Graph ready, warming up\n")
+                .type("text/plain")
+                .build());
+        }
+
         if (router.graph.updaterManager != null) {
             Collection<String> waitingUpdaters = router.graph.updaterManager.waitingUpdaters();
 
@@ -68,4 +94,36 @@ public class ActuatorAPI {
             + "\n}" )
             .type("application/json").build();
     }
+
+    /**
+     * Return an estimate of the memory used by each part of the graph. The estimate walks a
+     * sample of the graph objects, so it takes a few seconds on a large graph. The report is
+     * cached for {@link #MEMORY_REPORT_TTL_MILLIS}, so polling the endpoint does not load the
+     * server.
+     */
+    @GET
+    @Path("/memory")
+    public Response memory() {
+        return Response.status(Response.Status.OK)
+            .entity(memoryReport(router.graph).toString())
+            .type("text/plain")
+            .build();
+    }
+
+    /**
+     * The cached memory report of the graph, or a new one if it is too old or made for another
+     * graph. This is synchronized, so concurrent requests do not walk the graph at the same time.
+     */
+    private static synchronized GraphMemoryReport memoryReport(Graph graph) {
+        long now = System.currentTimeMillis();
+        if (memoryReport == null
+            || memoryReportGraph != graph
+            || now - memoryReportTime > MEMORY_REPORT_TTL_MILLIS
+        ) {
+            memoryReport = GraphMemoryReport.create(graph);
+            memoryReportGraph = graph;
+            memoryReportTime = now;
+        }
+        return memoryReport;
+    }
 }
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import graphql.schema.GraphQLSchema;
 import org.opentripplanner.ext.transmodelapi.mapping.TransitIdMapper;
 import org.opentripplanner.ext.transmodelapi.support.GqlUtil;
+import org.opentripplanner.model.GenericLocation;
 import org.opentripplanner.routing.api.request.RoutingRequest;
 import org.opentripplanner.routing.graph.Graph;
 import org.opentripplanner.standalone.server.OTPServer;
@@ -32,6 +33,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
 // TODO move to org.opentripplanner.api.resource, this is a Jersey resource class
 
 @Path("/routers/{ignoreRouterId}/transmodel/index")    // It would be nice to get rid of the final /index.
@@ -40,6 +42,11 @@ public class TransmodelAPI {
     @SuppressWarnings("unused")
     private static final Logger LOG = LoggerFactory.getLogger(TransmodelAPI.class);
 
+    private static final String WARM_UP_TRIP_QUERY =
+        "query ($from: Location!, $to: Location!) { "
+            + "trip(from: $from, to: $to) { tripPatterns { duration legs { duration } } } "
+            + "}";
+
     private static GqlUtil gqlUtil;
     private static GraphQLSchema schema;
 
@@ -77,6 +84,36 @@ public class TransmodelAPI {
         schema = TransmodelGraphQLSchema.create(defaultRoutingRequest, gqlUtil);
     }
 
+    /**
+     * Plan trips through the GraphQL schema without an HTTP request. This is used to warm up the
+     * server before it is ready, see {@link org.opentripplanner.standalone.server.RouterWarmUp}.
+     * Must be called after {@link #setUp(boolean, Graph, RoutingRequest)}. A query that returns
+     * errors throws an exception, so the warm-up counts it as failed.
+     */
+    public static BiConsumer<GenericLocation, GenericLocation> warmUpTripPlanner(Router router) {
+        TransmodelGraph index = new TransmodelGraph(schema);
+        return (from, to) -> {
+            HashMap<String, Object> result = index.getGraphQLExecutionResult(
+                WARM_UP_TRIP_QUERY,
+                router,
+                new HashMap<>(Map.of("from", mapLocation(from), "to", mapLocation(to))),
+                null,
+                1_000_000
+            );
+            // The errors are returned in the response, not thrown
+            if (result.containsKey("errors")) {
+                throw new IllegalStateException("Warm-up query failed: " + result.get("errors"));
+            }
+        };
+    }
+
+    private static Map<String, Object> mapLocation(GenericLocation location) {
+        return Map.of(
+            "coordinates",
+            Map.of("latitude", location.lat, "longitude", location.lng)
+        );
+    }
+
     /**
      * Return 200 when service is loaded.
      */
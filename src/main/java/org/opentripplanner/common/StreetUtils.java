@@ -1,5 +1,8 @@
 package org.opentripplanner.common;
 
+import com.google.common.collect.Lists;
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.hash.TIntIntHashMap;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.Polygon;
 import org.opentripplanner.common.geometry.Subgraph;
@@ -19,6 +22,7 @@ import org.opentripplanner.routing.graph.Edge;
 import org.opentripplanner.routing.graph.Graph;
 import org.opentripplanner.routing.graph.Vertex;
 import org.opentripplanner.routing.vertextype.StreetVertex;
+import org.opentripplanner.routing.vertextype.TransitStopVertex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,17 +30,18 @@ import java.io.File;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Map;
-import java.util.Queue;
+import java.util.List;
+import java.util.stream.Collectors;
 
 public class StreetUtils {
 
     private static Logger LOG = LoggerFactory.getLogger(StreetUtils.class);
     private static int islandCounter = 0;
 
+    /** The number of vertices whose edges are traversed in parallel before they are joined. */
+    private static final int TRAVERSAL_BATCH_SIZE = 10_000;
+
     public static void pruneFloatingIslands(Graph graph, int maxIslandSize, 
             int islandWithStopMaxSize, String islandLogName, DataImportIssueStore issueStore) {
         LOG.debug("pruning");
@@ -51,70 +56,7 @@ public class StreetUtils {
         if (islandLog != null) {
             islandLog.printf("%s\t%s\t%s\t%s\t%s\n","id","stopCount", "streetCount","wkt" ,"hadRemoved");
         }
-        Map<Vertex, Subgraph> subgraphs = new HashMap<Vertex, Subgraph>();
-        Map<Vertex, ArrayList<Vertex>> neighborsForVertex = new HashMap<Vertex, ArrayList<Vertex>>();
-
-//        RoutingRequest options = new RoutingRequest(new TraverseModeSet(TraverseMode.WALK, TraverseMode.TRANSIT));
-        RoutingRequest options = new RoutingRequest(new TraverseModeSet(TraverseMode.WALK));
-
-        for (Vertex gv : graph.getVertices()) {
-            if (!(gv instanceof StreetVertex)) {
-                continue;
-            }
-            State s0 = new State(gv, options);
-            for (Edge e : gv.getOutgoing()) {
-                Vertex in = gv;
-                if (!(e instanceof StreetEdge || e instanceof StreetTransitLink ||
-                    e instanceof TransitEntranceLink || e instanceof ElevatorEdge ||
-                    e instanceof FreeEdge)
-                ) {
-                    continue;
-                }
-                State s1 = e.traverse(s0);
-                if (s1 == null) {
-                    continue;
-                }
-                Vertex out = s1.getVertex();
-
-                ArrayList<Vertex> vertexList = neighborsForVertex.get(in);
-                if (vertexList == null) {
-                    vertexList = new ArrayList<Vertex>();
-                    neighborsForVertex.put(in, vertexList);
-                }
-                vertexList.add(out);
-
-                vertexList = neighborsForVertex.get(out);
-                if (vertexList == null) {
-                    vertexList = new ArrayList<Vertex>();
-                    neighborsForVertex.put(out, vertexList);
-                }
-                vertexList.add(in);
-            }
-        }
-
-        ArrayList<Subgraph> islands = new ArrayList<Subgraph>();
-        /* associate each node with a subgraph */
-        for (Vertex gv : graph.getVertices()) {
-            if (!(gv instanceof StreetVertex)) {
-                continue;
-            }
-            Vertex vertex = gv;
-            if (subgraphs.containsKey(vertex)) {
-                continue;
-            }
-            if (!neighborsForVertex.containsKey(vertex)) {
-                continue;
-            }
-            Subgraph subgraph = computeConnectedSubgraph(neighborsForVertex, vertex);
-            if (subgraph != null){
-                for (Iterator<Vertex> vIter = subgraph.streetIterator(); vIter.hasNext();) {
-                    Vertex subnode = vIter.next();
-                    subgraphs.put(subnode, subgraph);
-                }
-                islands.add(subgraph);
-            }
-        }
-        LOG.info(islands.size() + " sub graphs found");
+        List<Subgraph> islands = findIslands(graph, maxIslandSize, islandWithStopMaxSize, islandLog != null);
         /* remove all tiny subgraphs and large subgraphs without stops */
         for (Subgraph island : islands) {
             boolean hadRemoved = false;
@@ -148,8 +90,8 @@ public class StreetUtils {
         //iterate over the street vertex of the subgraph
         for (Iterator<Vertex> vIter = island.streetIterator(); vIter.hasNext();) {
             Vertex v = vIter.next();
-            Collection<Edge> outgoing = new ArrayList<Edge>(v.getOutgoing());
-            for (Edge e : outgoing) {
+            // The outgoing edges are a snapshot, removing edges does not change it
+            for (Edge e : v.getOutgoing()) {
                 if (e instanceof StreetEdge) {
                     StreetEdge pse = (StreetEdge) e;
                     StreetTraversalPermission permission = pse.getPermission();
@@ -184,23 +126,112 @@ public class StreetUtils {
         issueStore.add(new GraphConnectivity(island.getRepresentativeVertex(), island.streetSize()));
     }
 
-    private static Subgraph computeConnectedSubgraph(
-            Map<Vertex, ArrayList<Vertex>> neighborsForVertex, Vertex startVertex) {
-        Subgraph subgraph = new Subgraph();
-        Queue<Vertex> q = new LinkedList<Vertex>();
-        q.add(startVertex);
-        while (!q.isEmpty()) {
-            Vertex vertex = q.poll();
-            for (Vertex neighbor : neighborsForVertex.get(vertex)) {
-                if (!subgraph.contains(neighbor)) {
-                    subgraph.addVertex(neighbor);
-                    q.add(neighbor);
+    /**
+     * Find the islands of the street network: the groups of vertices connected to each other by
+     * walkable edges. The edges are traversed in parallel, and the islands are found with a
+     * union-find on the vertices, instead of building a map of the neighbors of every vertex.
+     * <p>
+     * The islands are returned in the order of their first street vertex in the graph. Only the
+     * vertices of the islands that will be pruned are collected, unless all islands are needed for
+     * the island log: the biggest island usually contains most of the graph.
+     *
+     * @param collectAll collect the vertices of all islands, not only the ones to prune.
+     */
+    private static List<Subgraph> findIslands(
+            Graph graph,
+            int maxIslandSize,
+            int islandWithStopMaxSize,
+            boolean collectAll
+    ) {
+        RoutingRequest options = new RoutingRequest(new TraverseModeSet(TraverseMode.WALK));
+
+        List<Vertex> streetVertices = graph.getVertices()
+                .stream()
+                .filter(StreetVertex.class::isInstance)
+                .collect(Collectors.toList());
+
+        DisjointSet<Vertex> components = new DisjointSet<>();
+        for (List<Vertex> batch : Lists.partition(streetVertices, TRAVERSAL_BATCH_SIZE)) {
+            List<List<Vertex>> neighbors = batch.parallelStream()
+                    .map(v -> walkableNeighbors(v, options))
+                    .collect(Collectors.toList());
+            for (int i = 0; i < batch.size(); i++) {
+                for (Vertex neighbor : neighbors.get(i)) {
+                    components.union(batch.get(i), neighbor);
+                }
+            }
+        }
+
+        // Number the islands in the order of their first street vertex
+        TIntIntMap islandIndexes = new TIntIntHashMap(16, 0.5f, -1, -1);
+        for (Vertex v : streetVertices) {
+            if (components.exists(v)) {
+                int component = components.find(v);
+                if (!islandIndexes.containsKey(component)) {
+                    islandIndexes.put(component, islandIndexes.size());
+                }
+            }
+        }
+
+        int nIslands = islandIndexes.size();
+        int[] streetSizes = new int[nIslands];
+        int[] stopSizes = new int[nIslands];
+        for (Vertex v : graph.getVertices()) {
+            if (components.exists(v)) {
+                int island = islandIndexes.get(components.find(v));
+                if (v instanceof TransitStopVertex) {
+                    stopSizes[island]++;
+                }
+                else {
+                    streetSizes[island]++;
+                }
+            }
+        }
+
+        Subgraph[] subgraphs = new Subgraph[nIslands];
+        for (int i = 0; i < nIslands; i++) {
+            int maxSize = stopSizes[i] > 0 ? islandWithStopMaxSize : maxIslandSize;
+            if (collectAll || streetSizes[i] < maxSize) {
+                subgraphs[i] = new Subgraph();
+            }
+        }
+        for (Vertex v : graph.getVertices()) {
+            if (components.exists(v)) {
+                Subgraph subgraph = subgraphs[islandIndexes.get(components.find(v))];
+                if (subgraph != null) {
+                    subgraph.addVertex(v);
                 }
             }
         }
-        return subgraph;
-//        if(subgraph.size()>1) return subgraph;
-//        return null;
+
+        LOG.info(nIslands + " sub graphs found");
+
+        List<Subgraph> islands = new ArrayList<>();
+        for (Subgraph subgraph : subgraphs) {
+            if (subgraph != null) {
+                islands.add(subgraph);
+            }
+        }
+        return islands;
+    }
+
+    /** The vertices reached by walking the street and link edges going out of the vertex. */
+    private static List<Vertex> walkableNeighbors(Vertex v, RoutingRequest options) {
+        List<Vertex> neighbors = new ArrayList<>();
+        State s0 = new State(v, options);
+        for (Edge e : v.getOutgoing()) {
+            if (!(e instanceof StreetEdge || e instanceof StreetTransitLink ||
+                e instanceof TransitEntranceLink || e instanceof ElevatorEdge ||
+                e instanceof FreeEdge)
+            ) {
+                continue;
+            }
+            State s1 = e.traverse(s0);
+            if (s1 != null) {
+                neighbors.add(s1.getVertex());
+            }
+        }
+        return neighbors;
     }
 
     private static void WriteNodesInSubGraph(Subgraph subgraph, PrintWriter islandLog, boolean hadRemoved){
@@ -37,7 +37,7 @@ import org.locationtech.jts.index.SpatialIndex;
  * 
  * @param <T> Type of objects to be spatial indexed.
  */
-public class HashGridSpatialIndex<T> implements SpatialIndex, Serializable {
+public class HashGridSpatialIndex<T> implements SpatialIndex, ReadOnlySpatialIndex<T>, Serializable {
 
     private static final long serialVersionUID = 1L;
 
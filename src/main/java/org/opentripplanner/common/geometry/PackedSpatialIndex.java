@@ -0,0 +1,332 @@
+package org.opentripplanner.common.geometry;
+
+import gnu.trove.list.array.TDoubleArrayList;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.index.ItemVisitor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * An immutable, static R-tree packed along a Hilbert curve.
+ * <p>
+ * All items are inserted up front with a {@link Builder}. The items are sorted by the Hilbert
+ * value of the center of their envelope, and the tree is built bottom-up by grouping
+ * {@link #NODE_SIZE} consecutive nodes into a parent node. The envelopes are stored in primitive
+ * arrays, so the index has a small memory footprint, is cheap to serialize and has no per-item
+ * objects besides the items themselves.
+ * <p>
+ * Unlike {@link HashGridSpatialIndex} every item has its own envelope, so a query returns
+ * exactly the items with an envelope intersecting the search envelope, without duplicates or
+ * false positives. The index is never modified after it is built, so it is safe to query it from
+ * many threads at the same time. Querying with an {@link ItemVisitor} does not allocate.
+ *
+ * @param <T> Type of objects to be spatial indexed.
+ */
+public final class PackedSpatialIndex<T> implements ReadOnlySpatialIndex<T>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Max number of children of a tree node. */
+    private static final int NODE_SIZE = 16;
+
+    /** Size of the Hilbert grid along each axis, coordinates are scaled to [0, HILBERT_MAX]. */
+    private static final int HILBERT_MAX = 0xFFFF;
+
+    private final int numItems;
+
+    /** The items, in leaf order. Item {@code i} is the leaf node {@code i}. */
+    private final Object[] items;
+
+    /**
+     * The envelopes of all nodes, leaves first, then one tree level after the other with the root
+     * node last.
+     */
+    private final double[] minX;
+    private final double[] minY;
+    private final double[] maxX;
+    private final double[] maxY;
+
+    /**
+     * The index of the first child of each non-leaf node. The entry for node {@code n} is at
+     * position {@code n - numItems}.
+     */
+    private final int[] firstChild;
+
+    /** The end (exclusive) node index of each level, level 0 being the leaves. */
+    private final int[] levelBounds;
+
+    private PackedSpatialIndex(Builder<T> builder) {
+        this.numItems = builder.items.size();
+
+        int n = numItems;
+        List<Integer> bounds = new ArrayList<>();
+        int numNodes = n;
+        bounds.add(numNodes);
+        if (n > 0) {
+            do {
+                n = (n + NODE_SIZE - 1) / NODE_SIZE;
+                numNodes += n;
+                bounds.add(numNodes);
+            } while (n != 1);
+        }
+        this.levelBounds = bounds.stream().mapToInt(Integer::intValue).toArray();
+
+        this.items = new Object[numItems];
+        this.minX = new double[numNodes];
+        this.minY = new double[numNodes];
+        this.maxX = new double[numNodes];
+        this.maxY = new double[numNodes];
+        this.firstChild = new int[numNodes - numItems];
+
+        if (numItems > 0) {
+            sortLeaves(builder);
+            buildTree();
+        }
+    }
+
+    /** Create a new builder. */
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    /** The number of items in the index. */
+    public int size() {
+        return numItems;
+    }
+
+    /**
+     * Visit all items with an envelope intersecting the given envelope. Queries do not allocate
+     * and may run concurrently.
+     */
+    public void query(
+            double qMinX, double qMinY, double qMaxX, double qMaxY, Visitor<? super T> visitor
+    ) {
+        if (numItems == 0) {
+            return;
+        }
+        int rootLevel = levelBounds.length - 1;
+        visit(rootLevel, levelBounds[rootLevel] - 1, qMinX, qMinY, qMaxX, qMaxY, visitor);
+    }
+
+    /** Return all items with an envelope intersecting the given envelope. */
+    @Override
+    public List<T> query(Envelope envelope) {
+        List<T> result = new ArrayList<>();
+        if (!envelope.isNull()) {
+            query(
+                envelope.getMinX(), envelope.getMinY(), envelope.getMaxX(), envelope.getMaxY(),
+                result::add
+            );
+        }
+        return result;
+    }
+
+    @Override
+    public void query(Envelope envelope, ItemVisitor visitor) {
+        if (!envelope.isNull()) {
+            query(
+                envelope.getMinX(), envelope.getMinY(), envelope.getMaxX(), envelope.getMaxY(),
+                visitor::visitItem
+            );
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PackedSpatialIndex{items=" + numItems + ", levels=" + levelBounds.length + "}";
+    }
+
+    /* private methods */
+
+    @SuppressWarnings("unchecked")
+    private void visit(
+            int level, int start,
+            double qMinX, double qMinY, double qMaxX, double qMaxY,
+            Visitor<? super T> visitor
+    ) {
+        int end = Math.min(start + NODE_SIZE, levelBounds[level]);
+        for (int i = start; i < end; i++) {
+            if (qMaxX < minX[i] || qMaxY < minY[i] || qMinX > maxX[i] || qMinY > maxY[i]) {
+                continue;
+            }
+            if (level == 0) {
+                visitor.visit((T) items[i]);
+            }
+            else {
+                visit(level - 1, firstChild[i - numItems], qMinX, qMinY, qMaxX, qMaxY, visitor);
+            }
+        }
+    }
+
+    /**
+     * Sort the items along the Hilbert curve and copy them and their envelopes into the leaf
+     * level. The Hilbert value is put in the high bits and the item index in the low bits of a
+     * single long, so the sort is a primitive (parallel) sort.
+     */
+    private void sortLeaves(Builder<T> builder) {
+        double[] b = builder.boxes.toArray();
+
+        double bMinX = Double.POSITIVE_INFINITY, bMinY = Double.POSITIVE_INFINITY;
+        double bMaxX = Double.NEGATIVE_INFINITY, bMaxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < numItems; i++) {
+            bMinX = Math.min(bMinX, b[4 * i]);
+            bMinY = Math.min(bMinY, b[4 * i + 1]);
+            bMaxX = Math.max(bMaxX, b[4 * i + 2]);
+            bMaxY = Math.max(bMaxY, b[4 * i + 3]);
+        }
+        final double x0 = bMinX, y0 = bMinY;
+        final double width = bMaxX - bMinX, height = bMaxY - bMinY;
+
+        long[] keys = new long[numItems];
+        IntStream.range(0, numItems).parallel().forEach(i -> {
+            int hx = scale((b[4 * i] + b[4 * i + 2]) / 2 - x0, width);
+            int hy = scale((b[4 * i + 1] + b[4 * i + 3]) / 2 - y0, height);
+            long h = hilbert(hx, hy) & 0xFFFFFFFFL;
+            // Flip the sign bit, so the signed sort orders the unsigned Hilbert values
+            keys[i] = ((h << 32) | i) ^ Long.MIN_VALUE;
+        });
+        Arrays.parallelSort(keys);
+
+        IntStream.range(0, numItems).parallel().forEach(i -> {
+            int from = (int) keys[i];
+            items[i] = builder.items.get(from);
+            minX[i] = b[4 * from];
+            minY[i] = b[4 * from + 1];
+            maxX[i] = b[4 * from + 2];
+            maxY[i] = b[4 * from + 3];
+        });
+    }
+
+    /** Build the upper levels, each node enclosing up to NODE_SIZE nodes of the level below. */
+    private void buildTree() {
+        int pos = 0;
+        int out = levelBounds[0];
+        for (int level = 0; level < levelBounds.length - 1; level++) {
+            int end = levelBounds[level];
+            while (pos < end) {
+                int nodeStart = pos;
+                double nMinX = Double.POSITIVE_INFINITY, nMinY = Double.POSITIVE_INFINITY;
+                double nMaxX = Double.NEGATIVE_INFINITY, nMaxY = Double.NEGATIVE_INFINITY;
+                for (int j = 0; j < NODE_SIZE && pos < end; j++, pos++) {
+                    nMinX = Math.min(nMinX, minX[pos]);
+                    nMinY = Math.min(nMinY, minY[pos]);
+                    nMaxX = Math.max(nMaxX, maxX[pos]);
+                    nMaxY = Math.max(nMaxY, maxY[pos]);
+                }
+                minX[out] = nMinX;
+                minY[out] = nMinY;
+                maxX[out] = nMaxX;
+                maxY[out] = nMaxY;
+                firstChild[out - numItems] = nodeStart;
+                out++;
+            }
+        }
+    }
+
+    private static int scale(double offset, double extent) {
+        return extent == 0 ? 0 : (int) Math.floor(HILBERT_MAX * offset / extent);
+    }
+
+    /**
+     * Position of (x, y) along a Hilbert curve of order 16, both x and y must be in
+     * [0, 0xFFFF]. The result should be read as an unsigned 32 bit integer. This is the
+     * branch-free algorithm from http://threadlocalmutex.com/?p=126
+     */
+    static int hilbert(int x, int y) {
+        int a = x ^ y;
+        int b = 0xFFFF ^ a;
+        int c = 0xFFFF ^ (x | y);
+        int d = x & (y ^ 0xFFFF);
+
+        int A = a | (b >>> 1);
+        int B = (a >>> 1) ^ a;
+        int C = ((c >>> 1) ^ (b & (d >>> 1))) ^ c;
+        int D = ((a & (c >>> 1)) ^ (d >>> 1)) ^ d;
+
+        a = A; b = B; c = C; d = D;
+        A = ((a & (a >>> 2)) ^ (b & (b >>> 2)));
+        B = ((a & (b >>> 2)) ^ (b & ((a ^ b) >>> 2)));
+        C ^= ((a & (c >>> 2)) ^ (b & (d >>> 2)));
+        D ^= ((b & (c >>> 2)) ^ ((a ^ b) & (d >>> 2)));
+
+        a = A; b = B; c = C; d = D;
+        A = ((a & (a >>> 4)) ^ (b & (b >>> 4)));
+        B = ((a & (b >>> 4)) ^ (b & ((a ^ b) >>> 4)));
+        C ^= ((a & (c >>> 4)) ^ (b & (d >>> 4)));
+        D ^= ((b & (c >>> 4)) ^ ((a ^ b) & (d >>> 4)));
+
+        a = A; b = B; c = C; d = D;
+        C ^= ((a & (c >>> 8)) ^ (b & (d >>> 8)));
+        D ^= ((b & (c >>> 8)) ^ ((a ^ b) & (d >>> 8)));
+
+        a = C ^ (C >>> 1);
+        b = D ^ (D >>> 1);
+
+        int i0 = x ^ y;
+        int i1 = b | (0xFFFF ^ (i0 | a));
+
+        i0 = (i0 | (i0 << 8)) & 0x00FF00FF;
+        i0 = (i0 | (i0 << 4)) & 0x0F0F0F0F;
+        i0 = (i0 | (i0 << 2)) & 0x33333333;
+        i0 = (i0 | (i0 << 1)) & 0x55555555;
+
+        i1 = (i1 | (i1 << 8)) & 0x00FF00FF;
+        i1 = (i1 | (i1 << 4)) & 0x0F0F0F0F;
+        i1 = (i1 | (i1 << 2)) & 0x33333333;
+        i1 = (i1 | (i1 << 1)) & 0x55555555;
+
+        return (i1 << 1) | i0;
+    }
+
+    /** Callback for allocation-free queries. */
+    @FunctionalInterface
+    public interface Visitor<T> {
+        void visit(T item);
+    }
+
+    /**
+     * Collects items and their envelopes. A builder is not thread-safe, and can not be reused
+     * after {@link #build()}.
+     */
+    public static class Builder<T> {
+        private final List<T> items = new ArrayList<>();
+        private final TDoubleArrayList boxes = new TDoubleArrayList();
+
+        private Builder() {}
+
+        /** Add an item, items with an empty envelope are never returned and are skipped. */
+        public Builder<T> add(Envelope envelope, T item) {
+            if (envelope.isNull()) {
+                return this;
+            }
+            items.add(item);
+            boxes.add(envelope.getMinX());
+            boxes.add(envelope.getMinY());
+            boxes.add(envelope.getMaxX());
+            boxes.add(envelope.getMaxY());
+            return this;
+        }
+
+        public Builder<T> add(LineString geometry, T item) {
+            return add(geometry.getEnvelopeInternal(), item);
+        }
+
+        public Builder<T> add(double x, double y, T item) {
+            items.add(item);
+            boxes.add(x);
+            boxes.add(y);
+            boxes.add(x);
+            boxes.add(y);
+            return this;
+        }
+
+        public PackedSpatialIndex<T> build() {
+            return new PackedSpatialIndex<>(this);
+        }
+    }
+}
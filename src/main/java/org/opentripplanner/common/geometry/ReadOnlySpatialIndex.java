@@ -0,0 +1,24 @@
+package org.opentripplanner.common.geometry;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.index.ItemVisitor;
+
+import java.util.List;
+
+/**
+ * The queries of a spatial index. This is implemented by the mutable {@link HashGridSpatialIndex}
+ * and the immutable {@link PackedSpatialIndex}, code that only searches an index should use this.
+ *
+ * @param <T> Type of objects to be spatial indexed.
+ */
+public interface ReadOnlySpatialIndex<T> {
+
+    /**
+     * Return the items with an envelope intersecting the given envelope. An index may also return
+     * items near the envelope, the caller must filter them if needed.
+     */
+    List<T> query(Envelope envelope);
+
+    /** Visit the items returned by {@link #query(Envelope)}. */
+    void query(Envelope envelope, ItemVisitor visitor);
+}
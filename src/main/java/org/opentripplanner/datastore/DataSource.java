@@ -3,6 +3,7 @@ package org.opentripplanner.datastore;
 import org.apache.commons.io.IOUtils;
 import org.opentripplanner.common.LoggingUtil;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -89,6 +90,15 @@ public interface DataSource {
         );
     }
 
+    /**
+     * Return the file on the local file system with the content of this data source, or
+     * {@code null} if the content is not a plain local file. This allows reading the content
+     * directly, for example with a memory mapping, instead of using {@link #asInputStream()}.
+     */
+    default File localFile() {
+        return null;
+    }
+
     /**
      * Return the content as a byte array. The implementation may chose to implement this in a
      * more efficient way - not reading the input stream. Do not change the data returned.
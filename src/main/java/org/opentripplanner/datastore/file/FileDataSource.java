@@ -41,6 +41,12 @@ public class FileDataSource extends AbstractFileDataSource {
         }
     }
 
+    @Override
+    public File localFile() {
+        // A compressed file must be read through the input stream
+        return file.getName().endsWith(".gz") ? null : file;
+    }
+
     @Override
     public OutputStream asOutputStream() {
         try {
@@ -20,10 +20,13 @@ public class DataImportIssueStore {
     this.storeIssues = storeIssues;
   }
 
+  /** This is synchronized, since graph builder modules may run concurrently. */
   public void add(DataImportIssue issue) {
     ISSUE_LOG.debug("{} - {}", issue.getClass().getSimpleName(), issue.getMessage());
     if (storeIssues) {
-      this.issues.add(issue);
+      synchronized (issues) {
+        this.issues.add(issue);
+      }
     }
   }
 
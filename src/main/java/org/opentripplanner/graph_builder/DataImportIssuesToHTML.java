@@ -7,6 +7,7 @@ import com.google.common.collect.Multimap;
 import com.google.common.collect.Multiset;
 import org.opentripplanner.graph_builder.services.GraphBuilderModule;
 import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.GraphMemoryReport;
 import org.opentripplanner.datastore.CompositeDataSource;
 import org.opentripplanner.datastore.DataSource;
 import org.slf4j.Logger;
@@ -31,6 +32,8 @@ public class DataImportIssuesToHTML implements GraphBuilderModule {
 
     private static Logger LOG = LoggerFactory.getLogger(DataImportIssuesToHTML.class);
 
+    private static final String MEMORY_REPORT_FILE = "graph-memory.html";
+
     //Path to output folder
     private CompositeDataSource reportDirectory;
 
@@ -50,6 +53,9 @@ public class DataImportIssuesToHTML implements GraphBuilderModule {
     //Key is classname, value is issue message
     //Multimap because there are multiple issues for each classname
     private Multimap<String, String> issues = ArrayListMultimap.create();
+
+    //Set if the memory report is written, the index links to it
+    private boolean memoryReportWritten = false;
   
     DataImportIssuesToHTML(CompositeDataSource reportDirectory, int maxNumberOfIssuesPerFile) {
         this.reportDirectory = reportDirectory;
@@ -92,6 +98,8 @@ public class DataImportIssuesToHTML implements GraphBuilderModule {
                 addIssues(entry.getKey(), issueList);
             }
 
+            writeMemoryReport(graph);
+
                 //Actual writing to the file is made here since
             // this is the first place where actual number of files is known (because it depends on
             // the issue count)
@@ -113,6 +121,33 @@ public class DataImportIssuesToHTML implements GraphBuilderModule {
         }
     }
 
+    /**
+     * Estimate the memory used by each part of the graph, to set the heap size of the servers and
+     * to spot which part grew from one build to the next.
+     */
+    private void writeMemoryReport(Graph graph) {
+        try {
+            String report = GraphMemoryReport.create(graph).toString();
+            LOG.info("Estimated memory use of the graph:\n{}", report);
+            DataSource target = reportDirectory.entry(MEMORY_REPORT_FILE);
+            try (PrintWriter out = new PrintWriter(target.asOutputStream(), true, StandardCharsets.UTF_8)) {
+                out.println("<html><head><title>Graph memory report for OTP Graph</title>");
+                out.println("\t<meta charset=\"utf-8\">");
+                out.println("</head><body>");
+                out.println("<h1>Estimated memory use of the graph</h1>");
+                out.println("<pre>");
+                out.println(report);
+                out.println("</pre>");
+                out.println("</body></html>");
+            }
+            memoryReportWritten = true;
+        }
+        catch (RuntimeException e) {
+            // The report is an estimate, it should never fail the build
+            LOG.warn("Failed to create the graph memory report: {}", e.getMessage(), e);
+        }
+    }
+
     /**
      * Delete report if it exist, and return true if successful. Return {@code false} if the
      * {@code reportDirectory} is {@code null} or the directory can NOT be deleted.
@@ -279,6 +314,9 @@ public class DataImportIssuesToHTML implements GraphBuilderModule {
                     }
                 }
                 out.println("</p>");
+                if (isIndexFile && memoryReportWritten) {
+                    out.printf("<p><a href=\"%s\">Estimated memory use of the graph</a></p>%n", MEMORY_REPORT_FILE);
+                }
                 if (!isIndexFile) {
                     out.println("<ul id=\"log\">");
                     writeIssues(out);
@@ -5,11 +5,13 @@ import org.opentripplanner.datastore.CompositeDataSource;
 import org.opentripplanner.datastore.DataSource;
 import org.opentripplanner.ext.transferanalyzer.DirectTransferAnalyzer;
 import org.opentripplanner.graph_builder.model.GtfsBundle;
+import org.opentripplanner.graph_builder.module.DeduplicateGraphModule;
 import org.opentripplanner.graph_builder.module.DirectTransferGenerator;
 import org.opentripplanner.graph_builder.module.GtfsModule;
 import org.opentripplanner.ext.flex.FlexLocationsToStreetEdgesMapper;
 import org.opentripplanner.graph_builder.module.PruneFloatingIslands;
 import org.opentripplanner.graph_builder.module.StreetLinkerModule;
+import org.opentripplanner.graph_builder.module.StreetSpatialIndexModule;
 import org.opentripplanner.graph_builder.module.TransitToTaggedStopsModule;
 import org.opentripplanner.graph_builder.module.map.BusRouteStreetMatcher;
 import org.opentripplanner.graph_builder.module.ned.DegreeGridNEDTileSource;
@@ -22,6 +24,7 @@ import org.opentripplanner.graph_builder.services.GraphBuilderModule;
 import org.opentripplanner.graph_builder.services.ned.ElevationGridCoverageFactory;
 import org.opentripplanner.openstreetmap.BinaryOpenStreetMapProvider;
 import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.SerializedGraphObject;
 import org.opentripplanner.standalone.config.BuildConfig;
 import org.opentripplanner.standalone.config.S3BucketConfig;
 import org.opentripplanner.util.OTPFeature;
@@ -41,7 +44,8 @@ import static org.opentripplanner.netex.configure.NetexConfig.netexModule;
 
 /**
  * This makes a Graph out of various inputs like GTFS and OSM.
- * It is modular: GraphBuilderModules are placed in a list and run in sequence.
+ * It is modular: GraphBuilderModules are placed in a list and run in sequence, or concurrently
+ * when they do not depend on each other, see {@link GraphBuilderModuleScheduler}.
  */
 public class GraphBuilder implements Runnable {
 
@@ -51,8 +55,11 @@ public class GraphBuilder implements Runnable {
 
     private final Graph graph;
 
-    private GraphBuilder(Graph baseGraph) {
+    private final int nModuleThreads;
+
+    private GraphBuilder(Graph baseGraph, int nModuleThreads) {
         this.graph = baseGraph == null ? new Graph() : baseGraph;
+        this.nModuleThreads = nModuleThreads;
     }
 
     private void addModule(GraphBuilderModule loader) {
@@ -76,9 +83,8 @@ public class GraphBuilder implements Runnable {
         DataImportIssueStore issueStore = new DataImportIssueStore(true);
         HashMap<Class<?>, Object> extra = new HashMap<Class<?>, Object>();
 
-        for (GraphBuilderModule load : graphBuilderModules) {
-            load.buildGraph(graph, extra, issueStore);
-        }
+        new GraphBuilderModuleScheduler(graphBuilderModules, nModuleThreads)
+                .run(graph, extra, issueStore);
         issueStore.summarize();
 
         long endTime = System.currentTimeMillis();
@@ -105,7 +111,7 @@ public class GraphBuilder implements Runnable {
         boolean hasNetex = dataSources.has(NETEX);
         boolean hasTransitData = hasGtfs || hasNetex;
 
-        GraphBuilder graphBuilder = new GraphBuilder(baseGraph);
+        GraphBuilder graphBuilder = new GraphBuilder(baseGraph, config.graphBuilderModuleThreads);
 
 
         if ( hasOsm ) {
@@ -122,6 +128,7 @@ public class GraphBuilder implements Runnable {
             osmModule.customNamer = config.customNamer;
             osmModule.setDefaultWayPropertySetSource(config.osmWayPropertySet);
             osmModule.skipVisibility = !config.areaVisibility;
+            osmModule.compactNodeStore = config.osmCompactNodeStore;
             osmModule.platformEntriesLinking = config.platformEntriesLinking;
             osmModule.staticBikeRental = config.staticBikeRental;
             osmModule.staticBikeParkAndRide = config.staticBikeParkAndRide;
@@ -129,10 +136,6 @@ public class GraphBuilder implements Runnable {
             osmModule.banDiscouragedWalking = config.banDiscouragedWalking;
             osmModule.banDiscouragedBiking = config.banDiscouragedBiking;
             graphBuilder.addModule(osmModule);
-            PruneFloatingIslands pruneFloatingIslands = new PruneFloatingIslands();
-            pruneFloatingIslands.setPruningThresholdIslandWithoutStops(config.pruningThresholdIslandWithoutStops);
-            pruneFloatingIslands.setPruningThresholdIslandWithStops(config.pruningThresholdIslandWithStops);
-            graphBuilder.addModule(pruneFloatingIslands);
         }
         if ( hasGtfs ) {
             List<GtfsBundle> gtfsBundles = Lists.newArrayList();
@@ -157,6 +160,7 @@ public class GraphBuilder implements Runnable {
             }
             GtfsModule gtfsModule = new GtfsModule(gtfsBundles, config.getTransitServicePeriod());
             gtfsModule.setFareServiceFactory(config.fareServiceFactory);
+            gtfsModule.setLoadingThreads(config.gtfsLoadingThreads);
             graphBuilder.addModule(gtfsModule);
         }
 
@@ -164,6 +168,24 @@ public class GraphBuilder implements Runnable {
             graphBuilder.addModule(netexModule(config, dataSources.get(NETEX)));
         }
 
+        // The elevation data is read while the transit data is loaded, and applied to the streets
+        // after they are linked to the stops
+        List<ElevationModule> elevationModules = createElevationModules(config, dataSources);
+        for (ElevationModule elevationModule : elevationModules) {
+            graphBuilder.addModule(elevationModule.loadElevationDataModule());
+        }
+
+        // The islands are pruned after loading the transit data, so the transit modules can run
+        // while the streets are built. The transit stops are not linked to the streets yet, so
+        // this does not change the result, and the pruning keeps the stops and entrances without
+        // edges, see Graph#removeEdgelessVertices().
+        if ( hasOsm ) {
+            PruneFloatingIslands pruneFloatingIslands = new PruneFloatingIslands();
+            pruneFloatingIslands.setPruningThresholdIslandWithoutStops(config.pruningThresholdIslandWithoutStops);
+            pruneFloatingIslands.setPruningThresholdIslandWithStops(config.pruningThresholdIslandWithStops);
+            graphBuilder.addModule(pruneFloatingIslands);
+        }
+
         if(hasTransitData && hasOsm) {
             if (config.matchBusRoutesToStreets) {
                 graphBuilder.addModule(new BusRouteStreetMatcher());
@@ -178,6 +200,43 @@ public class GraphBuilder implements Runnable {
         graphBuilder.addModule(streetLinkerModule);
         // Load elevation data and apply it to the streets.
         // We want to do run this module after loading the OSM street network but before finding transfers.
+        for (ElevationModule elevationModule : elevationModules) {
+            graphBuilder.addModule(elevationModule);
+        }
+        if ( hasTransitData ) {
+            // Add links to flex areas after the streets has been split, so that also the split edges are connected
+            if (OTPFeature.FlexRouting.isOn()) {
+                graphBuilder.addModule(new FlexLocationsToStreetEdgesMapper());
+            }
+            // The stops can be linked to each other once they are already linked to the street network.
+            if ( ! config.useTransfersTxt) {
+                // This module will use streets or straight line distance depending on whether OSM data is found in the graph.
+                graphBuilder.addModule(createDirectTransferGenerator(config, dataSources));
+            }
+            // Analyze routing between stops to generate report
+            if (OTPFeature.TransferAnalyzer.isOn()) {
+                graphBuilder.addModule(new DirectTransferAnalyzer(config.maxTransferDistance));
+            }
+        }
+
+        graphBuilder.addModule(new DeduplicateGraphModule());
+        graphBuilder.addModule(new StreetSpatialIndexModule());
+
+        if (config.dataImportReport) {
+            graphBuilder.addModule(
+                    new DataImportIssuesToHTML(
+                            dataSources.getBuildReportDir(),
+                            config.maxDataImportIssuesPerFile
+                    )
+            );
+        }
+        return graphBuilder;
+    }
+
+    private static List<ElevationModule> createElevationModules(
+            BuildConfig config,
+            GraphBuilderDataSources dataSources
+    ) {
         List<ElevationGridCoverageFactory> elevationGridCoverageFactories = new ArrayList<>();
         if (config.elevationBucket != null) {
             // Download the elevation tiles from an Amazon S3 bucket
@@ -203,45 +262,48 @@ public class GraphBuilder implements Runnable {
         // Refactoring this class, it was made clear that this allows for adding multiple elevation
         // modules to the same graph builder. We do not actually know if this is supported by the
         // ElevationModule class.
+        List<ElevationModule> elevationModules = new ArrayList<>();
         for (ElevationGridCoverageFactory factory : elevationGridCoverageFactories) {
-            graphBuilder.addModule(
+            elevationModules.add(
                 new ElevationModule(
                     factory,
-                    new File(dataSources.getCacheDirectory(), "cached_elevations.obj"),
+                    new File(dataSources.getCacheDirectory(), "cached_elevations.bin"),
                     config.readCachedElevations,
                     config.writeCachedElevations,
                     config.elevationUnitMultiplier,
                     config.distanceBetweenElevationSamples,
                     config.includeEllipsoidToGeoidDifference,
-                    config.multiThreadElevationCalculations
+                    config.multiThreadElevationCalculations,
+                    config.memoryMappedElevationRaster
                 )
             );
         }
-        if ( hasTransitData ) {
-            // Add links to flex areas after the streets has been split, so that also the split edges are connected
-            if (OTPFeature.FlexRouting.isOn()) {
-                graphBuilder.addModule(new FlexLocationsToStreetEdgesMapper());
-            }
-            // The stops can be linked to each other once they are already linked to the street network.
-            if ( ! config.useTransfersTxt) {
-                // This module will use streets or straight line distance depending on whether OSM data is found in the graph.
-                graphBuilder.addModule(new DirectTransferGenerator(config.maxTransferDistance));
-            }
-            // Analyze routing between stops to generate report
-            if (OTPFeature.TransferAnalyzer.isOn()) {
-                graphBuilder.addModule(new DirectTransferAnalyzer(config.maxTransferDistance));
-            }
-        }
+        return elevationModules;
+    }
 
-        if (config.dataImportReport) {
-            graphBuilder.addModule(
-                    new DataImportIssuesToHTML(
-                            dataSources.getBuildReportDir(),
-                            config.maxDataImportIssuesPerFile
-                    )
+    /**
+     * With {@link BuildConfig#incrementalTransfers} the transfers saved with the previous graph
+     * built on the same street graph are reused.
+     */
+    private static DirectTransferGenerator createDirectTransferGenerator(
+            BuildConfig config,
+            GraphBuilderDataSources dataSources
+    ) {
+        DataSource streetGraph = dataSources.getStreetGraph();
+        if (!config.incrementalTransfers || streetGraph == null) {
+            return new DirectTransferGenerator(
+                    config.maxTransferDistance, config.transferGenerationThreads
             );
         }
-        return graphBuilder;
+        // A new street graph has a new size or modification time
+        String streetGraphId = streetGraph.path() + " " + streetGraph.size() + " " + streetGraph.lastModified();
+        DataSource previousGraph = dataSources.getPreviousGraph();
+        return new DirectTransferGenerator(
+                config.maxTransferDistance,
+                config.transferGenerationThreads,
+                streetGraphId,
+                previousGraph == null ? null : SerializedGraphObject.loadTransferCache(previousGraph)
+        );
     }
 }
 
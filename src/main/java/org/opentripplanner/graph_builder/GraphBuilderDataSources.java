@@ -12,6 +12,7 @@ import org.opentripplanner.util.OtpAppException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.EnumSet;
 import java.util.Set;
@@ -44,6 +45,7 @@ public class GraphBuilderDataSources {
     private final Set<FileType> includeTypes = EnumSet.complementOf(EnumSet.of(FileType.UNKNOWN));
     private final File cacheDirectory;
     private final DataSource outputGraph;
+    private final boolean loadStreetGraph;
 
     private GraphBuilderDataSources(
             CommandLineParameters cli,
@@ -53,6 +55,7 @@ public class GraphBuilderDataSources {
         this.store = store;
         this.cacheDirectory = cli.cacheDirectory;
         this.outputGraph = getOutputGraph(cli);
+        this.loadStreetGraph = cli.doLoadStreetGraph();
 
         // Select witch files to import
         include(cli.doBuildStreet() && bc.streets, OSM);
@@ -108,6 +111,24 @@ public class GraphBuilderDataSources {
         return outputGraph;
     }
 
+    /**
+     * @return the street graph the transit data is built on, or {@code null} if the streets are
+     * built from OSM data.
+     */
+    @Nullable
+    DataSource getStreetGraph() {
+        return loadStreetGraph ? store.getStreetGraph() : null;
+    }
+
+    /**
+     * @return the graph from the previous build on the street graph, which will be overwritten
+     * by this build, or {@code null} if the street graph is not loaded or the graph is not saved.
+     */
+    @Nullable
+    DataSource getPreviousGraph() {
+        return loadStreetGraph && outputGraph != null && outputGraph.exists() ? outputGraph : null;
+    }
+
 
     /* private methods */
 
@@ -0,0 +1,182 @@
+package org.opentripplanner.graph_builder;
+
+import org.opentripplanner.graph_builder.services.GraphBuilderModule;
+import org.opentripplanner.routing.graph.Graph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Run the graph builder modules, running modules that do not depend on each other at the same
+ * time. The dependencies between the modules are found using these rules:
+ * <ol>
+ *     <li>A module depends on the modules added before it that provide one of its prerequisites,
+ *     see {@link GraphBuilderModule#provides()} and {@link GraphBuilderModule#getPrerequisites()}.
+ *     A prerequisite that is not provided by any earlier module is optional, and ignored.</li>
+ *     <li>A module depends on the modules added before it that provide one of the things it
+ *     provides, so two modules never build the same part of the graph at the same time.</li>
+ *     <li>A module that can not run concurrently with other modules, see
+ *     {@link GraphBuilderModule#canRunConcurrently()}, depends on all modules added before it,
+ *     and all modules added after it depend on it.</li>
+ * </ol>
+ * A module only depends on modules added before it, so with one thread the modules run in the
+ * order they were added.
+ * <p>
+ * When all modules are done, the critical path is logged: the chain of modules that decided the
+ * total build time.
+ */
+class GraphBuilderModuleScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GraphBuilderModuleScheduler.class);
+
+    private final List<GraphBuilderModule> modules;
+
+    private final int nThreads;
+
+    /** The indexes of the modules each module depends on. */
+    private final List<List<Integer>> dependencies = new ArrayList<>();
+
+    private final long[] startTimes;
+    private final long[] endTimes;
+
+    GraphBuilderModuleScheduler(List<GraphBuilderModule> modules, int nThreads) {
+        this.modules = modules;
+        this.nThreads = Math.max(1, nThreads);
+        this.startTimes = new long[modules.size()];
+        this.endTimes = new long[modules.size()];
+        for (int i = 0; i < modules.size(); i++) {
+            dependencies.add(findDependencies(i));
+        }
+    }
+
+    void run(Graph graph, HashMap<Class<?>, Object> extra, DataImportIssueStore issueStore) {
+        if (nThreads == 1) {
+            for (int i = 0; i < modules.size(); i++) {
+                runModule(i, graph, extra, issueStore);
+            }
+        }
+        else {
+            runConcurrently(graph, extra, issueStore);
+        }
+        logCriticalPath();
+    }
+
+    private void runConcurrently(
+            Graph graph,
+            HashMap<Class<?>, Object> extra,
+            DataImportIssueStore issueStore
+    ) {
+        ExecutorService threadPool = Executors.newFixedThreadPool(nThreads);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < modules.size(); i++) {
+                final int index = i;
+                CompletableFuture<?>[] before = dependencies.get(i)
+                        .stream()
+                        .map(futures::get)
+                        .toArray(CompletableFuture[]::new);
+                futures.add(
+                        CompletableFuture.allOf(before).thenRunAsync(
+                                () -> runModule(index, graph, extra, issueStore), threadPool
+                        )
+                );
+            }
+            // Wait for all modules, then report the first failure
+            for (CompletableFuture<Void> future : futures) {
+                try {
+                    future.join();
+                }
+                catch (CompletionException e) {
+                    // Reported below
+                }
+            }
+            for (CompletableFuture<Void> future : futures) {
+                join(future);
+            }
+        }
+        finally {
+            threadPool.shutdown();
+        }
+    }
+
+    private void runModule(
+            int index,
+            Graph graph,
+            HashMap<Class<?>, Object> extra,
+            DataImportIssueStore issueStore
+    ) {
+        startTimes[index] = System.currentTimeMillis();
+        modules.get(index).buildGraph(graph, extra, issueStore);
+        endTimes[index] = System.currentTimeMillis();
+    }
+
+    private List<Integer> findDependencies(int index) {
+        GraphBuilderModule module = modules.get(index);
+        List<Integer> result = new ArrayList<>();
+        for (int i = 0; i < index; i++) {
+            GraphBuilderModule before = modules.get(i);
+            if (!module.canRunConcurrently() || !before.canRunConcurrently()
+                    || !Collections.disjoint(module.getPrerequisites(), before.provides())
+                    || !Collections.disjoint(module.provides(), before.provides())) {
+                result.add(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Start with the module ending last, and follow the dependency ending last back to the first
+     * module of the chain.
+     */
+    private void logCriticalPath() {
+        if (modules.isEmpty()) {
+            return;
+        }
+        int last = 0;
+        for (int i = 1; i < modules.size(); i++) {
+            if (endTimes[i] >= endTimes[last]) {
+                last = i;
+            }
+        }
+        List<String> path = new ArrayList<>();
+        for (Integer i = last; i != null; i = latestDependency(i)) {
+            path.add(String.format(
+                    "%s (%.1f s)",
+                    modules.get(i).getClass().getSimpleName(),
+                    (endTimes[i] - startTimes[i]) / 1000.0
+            ));
+        }
+        Collections.reverse(path);
+        LOG.info("Critical path of the graph build: {}", String.join(" -> ", path));
+    }
+
+    private Integer latestDependency(int index) {
+        Integer latest = null;
+        for (int i : dependencies.get(index)) {
+            if (latest == null || endTimes[i] >= endTimes[latest]) {
+                latest = i;
+            }
+        }
+        return latest;
+    }
+
+    private static void join(CompletableFuture<Void> future) {
+        try {
+            future.join();
+        }
+        catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Graph builder module failed: " + e.getMessage(), e);
+        }
+    }
+}
@@ -6,11 +6,11 @@ import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.LineString;
 import org.locationtech.jts.geom.Point;
-import org.locationtech.jts.index.SpatialIndex;
 import org.locationtech.jts.linearref.LinearLocation;
 import org.locationtech.jts.linearref.LocationIndexedLine;
 import org.opentripplanner.common.geometry.GeometryUtils;
 import org.opentripplanner.common.geometry.HashGridSpatialIndex;
+import org.opentripplanner.common.geometry.ReadOnlySpatialIndex;
 import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
 import org.opentripplanner.common.model.P2;
 import org.opentripplanner.graph_builder.DataImportIssue;
@@ -102,9 +102,9 @@ public class SimpleStreetSplitter {
 
     private final Graph graph;
 
-    private final HashGridSpatialIndex<Edge> idx;
+    private final ReadOnlySpatialIndex<Edge> idx;
 
-    private final SpatialIndex transitStopIndex;
+    private final ReadOnlySpatialIndex<TransitStopVertex> transitStopIndex;
 
     // If true edges are split and new edges are created (used when linking transit stops etc. during graph building)
     // If false new temporary edges are created and no edges are deleted (Used when searching for origin/destination)
@@ -116,12 +116,14 @@ public class SimpleStreetSplitter {
      * Construct a new SimpleStreetSplitter.
      * NOTE: Only one SimpleStreetSplitter should be active on a graph at any given time.
      *
-     * @param hashGridSpatialIndex If not null this index is used instead of creating new one
+     * @param edgeIndex If not null this index is used instead of creating new one. Destructive
+     *                  splitting updates the index, so it must be a {@link HashGridSpatialIndex};
+     *                  non-destructive splitting only reads it.
      * @param transitStopIndex Index of all transitStops which is generated in {@link StreetVertexIndex}
      * @param destructiveSplitting If true splitting is permanent (Used when linking transit stops etc.) when false Splitting is only for duration of a request. Since they are made from temporary vertices and edges.
      */
-    public SimpleStreetSplitter(Graph graph, HashGridSpatialIndex<Edge> hashGridSpatialIndex,
-        SpatialIndex transitStopIndex, boolean destructiveSplitting, DataImportIssueStore issueStore
+    public SimpleStreetSplitter(Graph graph, ReadOnlySpatialIndex<Edge> edgeIndex,
+        ReadOnlySpatialIndex<TransitStopVertex> transitStopIndex, boolean destructiveSplitting, DataImportIssueStore issueStore
     ) {
         this.issueStore = issueStore;
         this.graph = graph;
@@ -129,15 +131,20 @@ public class SimpleStreetSplitter {
         this.destructiveSplitting = destructiveSplitting;
         this.edgeFactory = new DefaultStreetEdgeFactory();
 
+        if (destructiveSplitting && edgeIndex != null && !(edgeIndex instanceof HashGridSpatialIndex)) {
+            throw new IllegalArgumentException("Destructive splitting needs a mutable edge index.");
+        }
+
         //We build a spatial index if it isn't provided
-        if (hashGridSpatialIndex == null) {
+        if (edgeIndex == null) {
             // build a nice private spatial index, since we're adding and removing edges
-            idx = new HashGridSpatialIndex<>();
+            HashGridSpatialIndex<Edge> hashGrid = new HashGridSpatialIndex<>();
             for (StreetEdge se : Iterables.filter(graph.getEdges(), StreetEdge.class)) {
-                idx.insert(se.getGeometry(), se);
+                hashGrid.insert(se.getGeometry(), se);
             }
+            idx = hashGrid;
         } else {
-            idx = hashGridSpatialIndex;
+            idx = edgeIndex;
         }
     }
 
@@ -164,6 +171,20 @@ public class SimpleStreetSplitter {
         link(BikeParkVertex.class, BikeParkUnlinked::new);
     }
 
+    /**
+     * Link all vertices of the given type to the closest walkable edges. This is done in two phases:
+     * <ol>
+     *     <li>The closest edges of all vertices are found in parallel. Nothing is changed in the
+     *     graph or the spatial index during this phase, so the searches can run concurrently.</li>
+     *     <li>The vertices are linked one at a time, in the same order as before, by splitting the
+     *     edges found in the first phase. If one of these edges has already been split by an
+     *     earlier vertex, the closest edges are searched for again, among the new edge fragments.
+     *     </li>
+     * </ol>
+     * Splitting an edge only replaces it with fragments covering the same geometry, so an edge
+     * that was not one of the closest edges of a vertex can not become one by being split. The
+     * result is therefore the same as linking all vertices one at a time.
+     */
     @SuppressWarnings("Convert2MethodRef")
     public <T extends Vertex> void link(
             Class<T> type,
@@ -174,6 +195,10 @@ public class SimpleStreetSplitter {
                 .stream()
                 .filter(type::isInstance)
                 .map(it -> (T)it)
+                // Do not link vertices, which are already linked by TransitToTaggedStopsModule
+                .filter(v -> v.getOutgoing().stream().noneMatch(e -> e instanceof StreetTransitLink))
+                // Do not link stops connected by pathways
+                .filter(v -> !(v instanceof TransitStopVertex && ((TransitStopVertex) v).hasPathways()))
                 .collect(Collectors.toList());
 
         String actionName = "Link " + type.getSimpleName();
@@ -183,26 +208,38 @@ public class SimpleStreetSplitter {
             return;
         }
 
+        List<ClosestEdges> closestEdges = vertices.parallelStream()
+                .map(v -> findClosestEdges(v, TraverseMode.WALK))
+                .collect(Collectors.toList());
+
         ProgressTracker progress = ProgressTracker.track(actionName, 500, vertices.size());
         LOG.info(progress.startMessage());
 
-        for (T v : vertices) {
-            // Do not link vertices, which are already linked by TransitToTaggedStopsModule
-            boolean alreadyLinked = v.getOutgoing().stream().anyMatch(e -> e instanceof StreetTransitLink);
-            if (alreadyLinked) { continue; }
+        int nSearchedAgain = 0;
+        for (int i = 0; i < vertices.size(); i++) {
+            T v = vertices.get(i);
+            ClosestEdges closest = closestEdges.get(i);
+            boolean linked;
 
-            // Do not link stops connected by pathways
-            if (v instanceof TransitStopVertex && ((TransitStopVertex) v).hasPathways()) {
-                continue;
+            if (closest == null) {
+                linked = false;
             }
-
-            if (!link(v)) {
+            else if (closest.edges.stream().allMatch(SimpleStreetSplitter::isEdgeInGraph)) {
+                linkToEdges(v, closest, null);
+                linked = true;
+            }
+            else {
+                ++nSearchedAgain;
+                linked = link(v);
+            }
+            if (!linked) {
                 issueStore.add(unlinkedIssueMapper.apply(v));
             }
             // Keep lambda! A method-ref would cause incorrect class and line number to be logged
             progress.step(m -> LOG.info(m));
         }
         LOG.info(progress.completeMessage());
+        LOG.debug("{}: {} vertices linked to edges split by another vertex.", actionName, nSearchedAgain);
     }
 
     /** Link this vertex into the graph to the closest walkable edge */
@@ -235,66 +272,23 @@ public class SimpleStreetSplitter {
         }
     }
 
-    public boolean linkToStreetEdges (Vertex vertex, TraverseMode traverseMode, RoutingRequest options, int radiusMeters) {
-
-        final double radiusDeg = SphericalDistanceLibrary.metersToDegrees(radiusMeters);
-
-        Envelope env = new Envelope(vertex.getCoordinate());
-
-        // Perform a simple local equirectangular projection, so distances are expressed in degrees latitude.
-        final double xscale = Math.cos(vertex.getLat() * Math.PI / 180);
-
-        // Expand more in the longitude direction than the latitude direction to account for converging meridians.
-        env.expandBy(radiusDeg / xscale, radiusDeg);
-
-        final double DUPLICATE_WAY_EPSILON_DEGREES = SphericalDistanceLibrary.metersToDegrees(DUPLICATE_WAY_EPSILON_METERS);
-
-        final TraverseModeSet traverseModeSet = new TraverseModeSet(traverseMode);
-        if (traverseMode == TraverseMode.BICYCLE) {
-            traverseModeSet.setWalk(true);
+    /** The closest edges to a vertex, found before any of them is split. */
+    private static class ClosestEdges {
+        final List<StreetEdge> edges;
+        final double distanceDegreesLat;
+        final double xscale;
+        ClosestEdges(List<StreetEdge> edges, double distanceDegreesLat, double xscale) {
+            this.edges = edges;
+            this.distanceDegreesLat = distanceDegreesLat;
+            this.xscale = xscale;
         }
-        // Scope block to avoid confusing edge-related local variables with stop-related variables below.
-        {
-            // Perform several transformations at once on the edges returned by the index.
-            // Only consider street edges traversable by the given mode and still present in the graph.
-            // Calculate a distance to each of those edges, and keep only the ones within the search radius.
-            List<DistanceTo<StreetEdge>> candidateEdges = idx.query(env).stream()
-                    .filter(StreetEdge.class::isInstance)
-                    .map(StreetEdge.class::cast)
-                    .filter(e -> e.canTraverse(traverseModeSet) && edgeReachableFromGraph(e))
-                    .map(e -> new DistanceTo<>(e, distance(vertex, e, xscale)))
-                    .filter(ead -> ead.distanceDegreesLat < radiusDeg)
-                    .collect(Collectors.toList());
+    }
 
-            // The following logic has gone through several different versions using different approaches.
-            // The core idea is to find all edges that are roughly the same distance from the given vertex, which will
-            // catch things like superimposed edges going in opposite directions.
-            // First, all edges within DUPLICATE_WAY_EPSILON_METERS of of the best distance were selected.
-            // More recently, the edges were sorted in order of increasing distance, and all edges in the list were selected
-            // up to the point where a distance increase of DUPLICATE_WAY_EPSILON_DEGREES from one edge to the next.
-            // This was in response to concerns about arbitrary cutoff distances: at any distance, it's always possible
-            // one half of a dual carriageway (or any other pair of edges in opposite directions) will be caught and the
-            // other half lost. It seems like this was based on some incorrect premises about floating point calculations
-            // being non-deterministic.
-            if (!candidateEdges.isEmpty()) {
-                // There is at least one appropriate edge within range.
-                double closestDistance = candidateEdges.stream()
-                        .mapToDouble(ce -> ce.distanceDegreesLat)
-                        .min().getAsDouble();
-
-                candidateEdges.stream()
-                        .filter(ce -> ce.distanceDegreesLat <= closestDistance + DUPLICATE_WAY_EPSILON_DEGREES)
-                        .forEach(ce -> link(vertex, ce.item, xscale, options));
-
-                // Warn if a linkage was made for a transit stop, but the linkage was suspiciously long.
-                if (vertex instanceof TransitStopVertex) {
-                    int distanceMeters = (int)SphericalDistanceLibrary.degreesLatitudeToMeters(closestDistance);
-                    if (distanceMeters > WARNING_DISTANCE_METERS) {
-                        issueStore.add(new StopLinkedTooFar((TransitStopVertex)vertex, distanceMeters));
-                    }
-                }
-                return true;
-            }
+    public boolean linkToStreetEdges (Vertex vertex, TraverseMode traverseMode, RoutingRequest options, int radiusMeters) {
+        ClosestEdges closest = findClosestEdges(vertex, traverseMode, radiusMeters);
+        if (closest != null) {
+            linkToEdges(vertex, closest, options);
+            return true;
         }
         if (radiusMeters >= MAX_SEARCH_RADIUS_METERS) {
             // There were no candidate edges within the max linking distance, fall back on finding transit stops.
@@ -302,6 +296,11 @@ public class SimpleStreetSplitter {
             if (destructiveSplitting || transitStopIndex == null) {
                 return false;
             }
+            final double radiusDeg = SphericalDistanceLibrary.metersToDegrees(radiusMeters);
+            final double xscale = xscale(vertex);
+            final double DUPLICATE_WAY_EPSILON_DEGREES = SphericalDistanceLibrary.metersToDegrees(DUPLICATE_WAY_EPSILON_METERS);
+            Envelope env = searchEnvelope(vertex, radiusDeg, xscale);
+
             LOG.debug("No street edge was found for {}, checking transit stop vertices.", vertex);
             List<TransitStopVertex> transitStopVertices = transitStopIndex.query(env);
             List<DistanceTo<TransitStopVertex>> candidateStops = transitStopVertices.stream()
@@ -331,6 +330,115 @@ public class SimpleStreetSplitter {
         return false;
     }
 
+    /**
+     * Find the closest edges to the vertex within the initial search radius, or if there are none
+     * within the maximum search radius.
+     *
+     * @return the closest edges, or {@code null} if there are no edges within range.
+     */
+    private ClosestEdges findClosestEdges(Vertex vertex, TraverseMode traverseMode) {
+        ClosestEdges closest = findClosestEdges(vertex, traverseMode, INITIAL_SEARCH_RADIUS_METERS);
+        if (closest != null) {
+            return closest;
+        }
+        return findClosestEdges(vertex, traverseMode, MAX_SEARCH_RADIUS_METERS);
+    }
+
+    /**
+     * Find the closest street edges to the vertex traversable by the given mode, without changing
+     * the graph or the spatial index.
+     *
+     * @return the closest edges, or {@code null} if there are no edges within the radius.
+     */
+    private ClosestEdges findClosestEdges(Vertex vertex, TraverseMode traverseMode, int radiusMeters) {
+        final double radiusDeg = SphericalDistanceLibrary.metersToDegrees(radiusMeters);
+
+        // Perform a simple local equirectangular projection, so distances are expressed in degrees latitude.
+        final double xscale = xscale(vertex);
+
+        Envelope env = searchEnvelope(vertex, radiusDeg, xscale);
+
+        final double DUPLICATE_WAY_EPSILON_DEGREES = SphericalDistanceLibrary.metersToDegrees(DUPLICATE_WAY_EPSILON_METERS);
+
+        final TraverseModeSet traverseModeSet = new TraverseModeSet(traverseMode);
+        if (traverseMode == TraverseMode.BICYCLE) {
+            traverseModeSet.setWalk(true);
+        }
+
+        // Perform several transformations at once on the edges returned by the index.
+        // Only consider street edges traversable by the given mode and still present in the graph.
+        // Calculate a distance to each of those edges, and keep only the ones within the search radius.
+        List<DistanceTo<StreetEdge>> candidateEdges = new ArrayList<>();
+        idx.query(env, item -> {
+            if (item instanceof StreetEdge) {
+                StreetEdge e = (StreetEdge) item;
+                if (e.canTraverse(traverseModeSet) && edgeReachableFromGraph(e)) {
+                    double distance = distance(vertex, e, xscale);
+                    if (distance < radiusDeg) {
+                        candidateEdges.add(new DistanceTo<>(e, distance));
+                    }
+                }
+            }
+        });
+
+        // The following logic has gone through several different versions using different approaches.
+        // The core idea is to find all edges that are roughly the same distance from the given vertex, which will
+        // catch things like superimposed edges going in opposite directions.
+        // First, all edges within DUPLICATE_WAY_EPSILON_METERS of of the best distance were selected.
+        // More recently, the edges were sorted in order of increasing distance, and all edges in the list were selected
+        // up to the point where a distance increase of DUPLICATE_WAY_EPSILON_DEGREES from one edge to the next.
+        // This was in response to concerns about arbitrary cutoff distances: at any distance, it's always possible
+        // one half of a dual carriageway (or any other pair of edges in opposite directions) will be caught and the
+        // other half lost. It seems like this was based on some incorrect premises about floating point calculations
+        // being non-deterministic.
+        if (candidateEdges.isEmpty()) {
+            return null;
+        }
+        // There is at least one appropriate edge within range.
+        double closestDistance = Double.POSITIVE_INFINITY;
+        for (DistanceTo<StreetEdge> ce : candidateEdges) {
+            closestDistance = Math.min(closestDistance, ce.distanceDegreesLat);
+        }
+        List<StreetEdge> closestEdges = new ArrayList<>();
+        for (DistanceTo<StreetEdge> ce : candidateEdges) {
+            if (ce.distanceDegreesLat <= closestDistance + DUPLICATE_WAY_EPSILON_DEGREES) {
+                closestEdges.add(ce.item);
+            }
+        }
+        return new ClosestEdges(closestEdges, closestDistance, xscale);
+    }
+
+    /** Link the vertex to each of the closest edges, splitting them if needed. */
+    private void linkToEdges(Vertex vertex, ClosestEdges closest, RoutingRequest options) {
+        for (StreetEdge edge : closest.edges) {
+            link(vertex, edge, closest.xscale, options);
+        }
+
+        // Warn if a linkage was made for a transit stop, but the linkage was suspiciously long.
+        if (vertex instanceof TransitStopVertex) {
+            int distanceMeters = (int)SphericalDistanceLibrary.degreesLatitudeToMeters(closest.distanceDegreesLat);
+            if (distanceMeters > WARNING_DISTANCE_METERS) {
+                issueStore.add(new StopLinkedTooFar((TransitStopVertex)vertex, distanceMeters));
+            }
+        }
+    }
+
+    private static double xscale(Vertex vertex) {
+        return Math.cos(vertex.getLat() * Math.PI / 180);
+    }
+
+    private static Envelope searchEnvelope(Vertex vertex, double radiusDeg, double xscale) {
+        Envelope env = new Envelope(vertex.getCoordinate());
+        // Expand more in the longitude direction than the latitude direction to account for converging meridians.
+        env.expandBy(radiusDeg / xscale, radiusDeg);
+        return env;
+    }
+
+    /** Whether the edge is still in the graph, it is removed when it is split. */
+    private static boolean isEdgeInGraph(Edge edge) {
+        return edge.getToVertex().getIncoming().contains(edge);
+    }
+
     /**
      * While in destructive splitting mode (during graph construction rather than handling routing requests), we remove
      * edges that have been split and may then re-split the resulting segments recursively, so parts of them are also
@@ -467,8 +575,9 @@ public class SimpleStreetSplitter {
 
         if (destructiveSplitting) {
             // update indices of new edges
-            idx.insert(edges.first.getGeometry(), edges.first);
-            idx.insert(edges.second.getGeometry(), edges.second);
+            HashGridSpatialIndex<Edge> hashGrid = (HashGridSpatialIndex<Edge>) idx;
+            hashGrid.insert(edges.first.getGeometry(), edges.first);
+            hashGrid.insert(edges.second.getGeometry(), edges.second);
 
             // remove original edge from the graph
             edge.getToVertex().removeIncoming(edge);
@@ -477,7 +586,7 @@ public class SimpleStreetSplitter {
             // This iterates over the entire rectangular envelope of the edge rather than the segments making it up.
             // It will be inefficient for very long edges, but creating a new remove method mirroring the more efficient
             // insert logic is not trivial and would require additional testing of the spatial index.
-            idx.remove(edge.getGeometry().getEnvelopeInternal(), edge);
+            hashGrid.remove(edge.getGeometry().getEnvelopeInternal(), edge);
         }
 
         return v;
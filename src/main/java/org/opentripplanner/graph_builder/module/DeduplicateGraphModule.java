@@ -0,0 +1,31 @@
+package org.opentripplanner.graph_builder.module;
+
+import org.opentripplanner.graph_builder.DataImportIssueStore;
+import org.opentripplanner.graph_builder.services.GraphBuilderModule;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.GraphDeduplicator;
+
+import java.util.HashMap;
+
+/**
+ * Share the equal names, ids and strings of the graph, see {@link GraphDeduplicator}. This is
+ * added after the modules that build the graph, so that they are all deduplicated. The
+ * deduplicator is emptied afterwards, its maps are not needed once the graph is shared.
+ */
+public class DeduplicateGraphModule implements GraphBuilderModule {
+
+    @Override
+    public void buildGraph(
+            Graph graph,
+            HashMap<Class<?>, Object> extra,
+            DataImportIssueStore issueStore
+    ) {
+        new GraphDeduplicator(graph.deduplicator).deduplicate(graph);
+        graph.deduplicator.reset();
+    }
+
+    @Override
+    public void checkInputs() {
+        // No inputs
+    }
+}
@@ -1,6 +1,7 @@
 package org.opentripplanner.graph_builder.module;
 
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import org.opentripplanner.graph_builder.DataImportIssueStore;
 import org.opentripplanner.graph_builder.issues.StopNotLinkedForTransfers;
 import org.opentripplanner.graph_builder.services.GraphBuilderModule;
@@ -8,6 +9,7 @@ import org.opentripplanner.model.SimpleTransfer;
 import org.opentripplanner.model.Stop;
 import org.opentripplanner.routing.graph.Graph;
 import org.opentripplanner.routing.graph.GraphIndex;
+import org.opentripplanner.routing.graph.Vertex;
 import org.opentripplanner.routing.graphfinder.NearbyStop;
 import org.opentripplanner.routing.vertextype.TransitStopVertex;
 import org.opentripplanner.util.OTPFeature;
@@ -15,9 +17,17 @@ import org.opentripplanner.util.ProgressTracker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * {@link org.opentripplanner.graph_builder.services.GraphBuilderModule} module that links up the stops of a transit
@@ -34,6 +44,20 @@ public class DirectTransferGenerator implements GraphBuilderModule {
 
     final double radiusMeters;
 
+    /** The number of threads used to search for transfers, 1 means use the calling thread. */
+    private final int nThreads;
+
+    /**
+     * Identifies the saved street graph the transit data is built on, or {@code null} if the
+     * transfers should not be saved for the next build.
+     */
+    @Nullable
+    private final String streetGraphId;
+
+    /** The transfers saved with the previous graph built on the same street graph, if any. */
+    @Nullable
+    private final TransferCache previousTransfers;
+
     public List<String> provides() {
         return Arrays.asList("linking");
     }
@@ -43,7 +67,27 @@ public class DirectTransferGenerator implements GraphBuilderModule {
     }
 
     public DirectTransferGenerator (double radiusMeters) {
+        this(radiusMeters, 1);
+    }
+
+    public DirectTransferGenerator (double radiusMeters, int nThreads) {
+        this(radiusMeters, nThreads, null, null);
+    }
+
+    /**
+     * Reuse the transfers of the stops that did not change since the previous graph was built on
+     * the same street graph, and save the transfers for the next build, see {@link TransferCache}.
+     */
+    public DirectTransferGenerator (
+            double radiusMeters,
+            int nThreads,
+            @Nullable String streetGraphId,
+            @Nullable TransferCache previousTransfers
+    ) {
         this.radiusMeters = radiusMeters;
+        this.nThreads = Math.max(1, nThreads);
+        this.streetGraphId = streetGraphId;
+        this.previousTransfers = previousTransfers;
     }
 
     @Override
@@ -65,56 +109,185 @@ public class DirectTransferGenerator implements GraphBuilderModule {
             LOG.info("Creating direct transfer edges between stops using straight line distance (not streets)...");
         }
 
-        Iterable<TransitStopVertex> stops = Iterables.filter(graph.getVertices(), TransitStopVertex.class);
+        // Sort the stops, so the transfers are added to the graph in the same order on every build,
+        // independent of the order the stops are processed in.
+        List<TransitStopVertex> stops = Lists.newArrayList(
+                Iterables.filter(graph.getVertices(), TransitStopVertex.class)
+        );
+        stops.sort(Comparator.comparing(Vertex::getLabel));
+
+        // The flex transfers are found from the flex locations, they are not saved
+        boolean saveTransfers = streetGraphId != null && !OTPFeature.FlexRouting.isOn();
+        if (streetGraphId != null && !saveTransfers) {
+            LOG.info("Not saving the transfers for the next build, this is not supported with flex routing.");
+        }
+        int[] signatures = saveTransfers
+                ? TransferCache.stopSignatures(stops, graph.index)
+                : null;
+        List<List<SimpleTransfer>> transfersForStops = saveTransfers
+                ? reusePreviousTransfers(stops, signatures, graph.index)
+                : new ArrayList<>(Collections.nCopies(stops.size(), null));
+
+        List<TransitStopVertex> stopsToSearch = new ArrayList<>();
+        for (int i = 0; i < stops.size(); i++) {
+            if (transfersForStops.get(i) == null) {
+                stopsToSearch.add(stops.get(i));
+            }
+        }
+        if (stopsToSearch.size() < stops.size()) {
+            LOG.info(
+                    "Reusing the transfers of {} unchanged stops from the previous graph, searching for the transfers of {} stops.",
+                    stops.size() - stopsToSearch.size(),
+                    stopsToSearch.size()
+            );
+        }
 
         ProgressTracker progress = ProgressTracker.track(
-                "Create transfer edges", 1000, Iterables.size(stops)
+                "Create transfer edges", 1000, stopsToSearch.size()
         );
-        int nTransfersTotal = 0;
-        int nLinkableStops = 0;
-
-        // This could be multi-threaded, in which case we'd need to be careful about the lifecycle of NearbyStopFinder instances.
-        for (TransitStopVertex ts0 : stops) {
-            Stop stop = ts0.getStop();
-            LOG.debug("Linking stop '{}' {}", stop, ts0);
 
-            /* Make transfers to each nearby stop that is the closest stop on some trip pattern. */
-            int n = 0;
-            for (NearbyStop sd : nearbyStopFinder.findNearbyStopsConsideringPatterns(ts0, false)) {
-                // Skip the origin stop, loop transfers are not needed.
-                if (sd.stop == stop) { continue; }
-                graph.transfersByStop.put(
-                    stop,
-                    new SimpleTransfer(stop, sd.stop, sd.distance, sd.edges)
-                );
-                n += 1;
+        // A street search uses a NearbyStopFinder and its AStar instance for one search at a time,
+        // so each thread needs its own. The straight line search is read-only and can be shared.
+        ThreadLocal<NearbyStopFinder> nearbyStopFinders = ThreadLocal.withInitial(
+                () -> nearbyStopFinder.useStreets
+                        ? new NearbyStopFinder(graph, radiusMeters)
+                        : nearbyStopFinder
+        );
+        List<List<SimpleTransfer>> foundTransfers = findTransfers(
+                stopsToSearch, nearbyStopFinders, progress
+        );
+        for (int i = 0, j = 0; i < stops.size(); i++) {
+            if (transfersForStops.get(i) == null) {
+                transfersForStops.set(i, foundTransfers.get(j++));
             }
-            if (OTPFeature.FlexRouting.isOn()) {
-                // This code is for finding transfers from FlexStopLocations to Stops, transfers
-                // from Stops to FlexStopLocations and between Stops are already covered above.
-                for (NearbyStop sd : nearbyStopFinder.findNearbyStopsConsideringPatterns(ts0,  true)) {
-                    // Skip the origin stop, loop transfers are not needed.
-                    if (sd.stop == ts0.getStop()) { continue; }
-                    if (sd.stop instanceof Stop) { continue; }
-                    graph.transfersByStop.put(sd.stop,
-                        new SimpleTransfer(sd.stop, ts0.getStop(), sd.distance, sd.edges)
-                    );
-                    n += 1;
-                }
+        }
+        if (saveTransfers) {
+            graph.setTransferCache(TransferCache.create(
+                    streetGraphId, radiusMeters, stops, signatures, transfersForStops
+            ));
+        }
+
+        int nTransfersTotal = 0;
+        int nLinkableStops = 0;
+        for (int i = 0; i < stops.size(); i++) {
+            List<SimpleTransfer> transfers = transfersForStops.get(i);
+            for (SimpleTransfer transfer : transfers) {
+                graph.transfersByStop.put(transfer.from, transfer);
             }
-            LOG.debug("Linked stop {} to {} nearby stops on other patterns.", stop, n);
-            if (n == 0) {
-                issueStore.add(new StopNotLinkedForTransfers(ts0));
+            if (transfers.isEmpty()) {
+                issueStore.add(new StopNotLinkedForTransfers(stops.get(i)));
             }
-            //Keep lambda! A method-ref would causes incorrect class and line number to be logged
-            progress.step(m -> LOG.info(m));
-            nTransfersTotal += n;
+            nTransfersTotal += transfers.size();
         }
         LOG.info(progress.completeMessage());
         LOG.info("Done connecting stops to one another. Created a total of {} transfers from {} stops.", nTransfersTotal, nLinkableStops);
         graph.hasDirectTransfers = true;
     }
 
+    /**
+     * Reuse the transfers of the stops that did not change since the previous graph was built.
+     * The result has the transfers of each stop at the index of the stop, or {@code null} for
+     * the stops that must be searched for.
+     */
+    private List<List<SimpleTransfer>> reusePreviousTransfers(
+            List<TransitStopVertex> stops,
+            int[] signatures,
+            GraphIndex index
+    ) {
+        if (previousTransfers == null) {
+            return new ArrayList<>(Collections.nCopies(stops.size(), null));
+        }
+        if (!previousTransfers.matches(streetGraphId, radiusMeters)) {
+            LOG.info("Not reusing the transfers of the previous graph, the street graph or transfer radius changed.");
+            return new ArrayList<>(Collections.nCopies(stops.size(), null));
+        }
+        return previousTransfers.reuseTransfers(stops, signatures, index);
+    }
+
+    /**
+     * Find the transfers of the given stops, using a pool of threads if more than one thread is
+     * configured. The result has the transfers of each stop at the index of the stop.
+     */
+    private List<List<SimpleTransfer>> findTransfers(
+            List<TransitStopVertex> stops,
+            ThreadLocal<NearbyStopFinder> nearbyStopFinders,
+            ProgressTracker progress
+    ) {
+        List<List<SimpleTransfer>> result = new ArrayList<>(stops.size());
+        if (nThreads == 1) {
+            for (TransitStopVertex ts0 : stops) {
+                result.add(findTransfers(ts0, nearbyStopFinders.get(), progress));
+            }
+            return result;
+        }
+
+        LOG.info("Searching for transfers using {} threads.", nThreads);
+        ExecutorService threadPool = Executors.newFixedThreadPool(nThreads);
+        try {
+            List<Future<List<SimpleTransfer>>> futures = new ArrayList<>(stops.size());
+            for (TransitStopVertex ts0 : stops) {
+                futures.add(threadPool.submit(
+                        () -> findTransfers(ts0, nearbyStopFinders.get(), progress)
+                ));
+            }
+            for (Future<List<SimpleTransfer>> future : futures) {
+                result.add(join(future));
+            }
+            return result;
+        }
+        finally {
+            threadPool.shutdownNow();
+        }
+    }
+
+    /** Find the transfers from (and with flex, to) the given stop. */
+    private static List<SimpleTransfer> findTransfers(
+            TransitStopVertex ts0,
+            NearbyStopFinder nearbyStopFinder,
+            ProgressTracker progress
+    ) {
+        Stop stop = ts0.getStop();
+        LOG.debug("Linking stop '{}' {}", stop, ts0);
+        List<SimpleTransfer> transfers = new ArrayList<>();
+
+        /* Make transfers to each nearby stop that is the closest stop on some trip pattern. */
+        for (NearbyStop sd : nearbyStopFinder.findNearbyStopsConsideringPatterns(ts0, false)) {
+            // Skip the origin stop, loop transfers are not needed.
+            if (sd.stop == stop) { continue; }
+            transfers.add(new SimpleTransfer(stop, sd.stop, sd.distance, sd.edges));
+        }
+        if (OTPFeature.FlexRouting.isOn()) {
+            // This code is for finding transfers from FlexStopLocations to Stops, transfers
+            // from Stops to FlexStopLocations and between Stops are already covered above.
+            for (NearbyStop sd : nearbyStopFinder.findNearbyStopsConsideringPatterns(ts0,  true)) {
+                // Skip the origin stop, loop transfers are not needed.
+                if (sd.stop == ts0.getStop()) { continue; }
+                if (sd.stop instanceof Stop) { continue; }
+                transfers.add(new SimpleTransfer(sd.stop, ts0.getStop(), sd.distance, sd.edges));
+            }
+        }
+        LOG.debug("Linked stop {} to {} nearby stops on other patterns.", stop, transfers.size());
+        //Keep lambda! A method-ref would causes incorrect class and line number to be logged
+        progress.step(m -> LOG.info(m));
+        return transfers;
+    }
+
+    private static <T> T join(Future<T> future) {
+        try {
+            return future.get();
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Transfer search failed: " + e.getMessage(), e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Transfer search interrupted.", e);
+        }
+    }
+
     @Override
     public void checkInputs() {
         // No inputs
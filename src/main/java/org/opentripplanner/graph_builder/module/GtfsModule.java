@@ -41,13 +41,21 @@ import java.awt.*;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static org.opentripplanner.gtfs.mapping.GTFSToOtpTransitServiceMapper.mapGtfsDaoToInternalTransitServiceBuilder;
 
@@ -57,8 +65,6 @@ public class GtfsModule implements GraphBuilderModule {
 
     private DataImportIssueStore issueStore;
 
-    private EntityHandler counter = new EntityCounter();
-
     private FareServiceFactory fareServiceFactory;
 
     /** will be applied to all bundles which do not have the cacheDirectory property set */
@@ -71,6 +77,9 @@ public class GtfsModule implements GraphBuilderModule {
 
     private int nextAgencyId = 1; // used for generating agency IDs to resolve ID conflicts
 
+    /** The number of feeds read and mapped at the same time, see {@link #setLoadingThreads(int)}. */
+    private int loadingThreads = 1;
+
     /**
      * @see BuildConfig#transitServiceStart
      * @see BuildConfig#transitServiceEnd
@@ -94,10 +103,25 @@ public class GtfsModule implements GraphBuilderModule {
         return Collections.emptyList();
     }
 
+    /** The GTFS module only builds the transit part of the graph, so it can run while the streets are built. */
+    @Override
+    public boolean canRunConcurrently() {
+        return true;
+    }
+
     public void setFareServiceFactory(FareServiceFactory factory) {
         fareServiceFactory = factory;
     }
 
+    /**
+     * Read and map up to this number of feeds at the same time. The feeds are still added to the
+     * graph one at a time, in the order of the bundles, so the graph is the same for any number of
+     * threads.
+     */
+    public void setLoadingThreads(int loadingThreads) {
+        this.loadingThreads = Math.max(1, loadingThreads);
+    }
+
     @Override
     public void buildGraph(
             Graph graph,
@@ -111,11 +135,30 @@ public class GtfsModule implements GraphBuilderModule {
         // OTP doesn't currently support multiple time zones in a single graph;
         // at least this way we catch the error and log it instead of silently ignoring
         // because the time zone from the first agency is cached
-        graph.clearTimeZone();
+        ReentrantLock buildLock = graph.getBuildLock();
+        buildLock.lock();
+        try {
+            graph.clearTimeZone();
+        }
+        finally {
+            buildLock.unlock();
+        }
 
         CalendarServiceData calendarServiceData = new CalendarServiceData();
 
+        // The feed ids are resolved here, in the order of the bundles, since a feed without an
+        // id gets the next number of a counter that is not thread safe.
+        for (GtfsBundle gtfsBundle : gtfsBundles) {
+            gtfsBundle.getFeedId();
+        }
+
+        // The feeds are read and mapped on the thread pool, and added to the graph on this thread
+        // in the order of the bundles. The number of feeds read ahead is limited, to bound the
+        // memory used.
+        ExecutorService threadPool = Executors.newFixedThreadPool(loadingThreads);
+        Deque<Future<LoadedFeed>> pending = new ArrayDeque<>();
         try {
+            CountDownLatch previousAgenciesResolved = new CountDownLatch(0);
             for (GtfsBundle gtfsBundle : gtfsBundles) {
                 // apply global defaults to individual GTFSBundles (if globals have been set)
                 if (cacheDirectory != null && gtfsBundle.cacheDirectory == null) {
@@ -126,55 +169,127 @@ public class GtfsModule implements GraphBuilderModule {
                     gtfsBundle.useCached = useCached;
                 }
 
-                OtpTransitServiceBuilder builder =  mapGtfsDaoToInternalTransitServiceBuilder(
-                        loadBundle(gtfsBundle),
-                        gtfsBundle.getFeedId().getId(),
-                        issueStore
-                );
+                CountDownLatch waitFor = previousAgenciesResolved;
+                CountDownLatch agenciesResolved = new CountDownLatch(1);
+                pending.add(threadPool.submit(
+                        () -> loadFeed(gtfsBundle, waitFor, agenciesResolved)
+                ));
+                previousAgenciesResolved = agenciesResolved;
 
-                builder.limitServiceDays(transitPeriodLimit);
-
-                calendarServiceData.add(builder.buildCalendarServiceData());
-
-                // NB! The calls below have side effects - the builder state is updated!
-                if (OTPFeature.FlexRouting.isOn()) {
-                    FlexTripsMapper.createFlexTrips(builder);
+                if (pending.size() > loadingThreads) {
+                    addFeedToGraph(graph, join(pending.removeFirst()), calendarServiceData);
                 }
-
-                repairStopTimesForEachTrip(builder.getStopTimesSortedByTrip());
-
-                // NB! The calls below have side effects - the builder state is updated!
-                createTripPatterns(graph, builder, calendarServiceData.getServiceIds());
-
-                OtpTransitService transitModel = builder.build();
-
-                addTransitModelToGraph(graph, gtfsBundle, transitModel);
-
-                createGeometryAndBlockProcessor(gtfsBundle, transitModel).run(graph, issueStore);
+            }
+            while (!pending.isEmpty()) {
+                addFeedToGraph(graph, join(pending.removeFirst()), calendarServiceData);
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
         finally {
+            threadPool.shutdownNow();
             // Note the close method of each bundle should NOT throw an exception, so this
             // code should be safe without the try/catch block.
             gtfsBundles.forEach(GtfsBundle::close);
         }
 
-        // We need to save the calendar service data so we can use it later
-        graph.putService(
-                org.opentripplanner.model.calendar.CalendarServiceData.class,
-                calendarServiceData
+        buildLock.lock();
+        try {
+            // We need to save the calendar service data so we can use it later
+            graph.putService(
+                    org.opentripplanner.model.calendar.CalendarServiceData.class,
+                    calendarServiceData
+            );
+            graph.updateTransitFeedValidity(calendarServiceData, issueStore);
+
+            graph.hasTransit = true;
+            graph.calculateTransitCenter();
+        }
+        finally {
+            buildLock.unlock();
+        }
+
+    }
+
+
+    /* Private Methods */
+
+    /**
+     * Read a feed and map it to a transit service builder. This is done on the thread pool, and
+     * only uses the bundle and the builder of this feed, except for resolving agency id
+     * conflicts, see {@link #loadBundle(GtfsBundle, CountDownLatch, CountDownLatch)}.
+     */
+    private LoadedFeed loadFeed(
+            GtfsBundle gtfsBundle,
+            CountDownLatch previousAgenciesResolved,
+            CountDownLatch agenciesResolved
+    ) throws IOException {
+        OtpTransitServiceBuilder builder =  mapGtfsDaoToInternalTransitServiceBuilder(
+                loadBundle(gtfsBundle, previousAgenciesResolved, agenciesResolved),
+                gtfsBundle.getFeedId().getId(),
+                issueStore
         );
-        graph.updateTransitFeedValidity(calendarServiceData, issueStore);
 
-        graph.hasTransit = true;
-        graph.calculateTransitCenter();
+        builder.limitServiceDays(transitPeriodLimit);
+
+        CalendarServiceData calendarServiceData = builder.buildCalendarServiceData();
+
+        // NB! The calls below have side effects - the builder state is updated!
+        if (OTPFeature.FlexRouting.isOn()) {
+            FlexTripsMapper.createFlexTrips(builder);
+        }
+
+        repairStopTimesForEachTrip(builder.getStopTimesSortedByTrip());
 
+        return new LoadedFeed(gtfsBundle, builder, calendarServiceData);
     }
 
+    /**
+     * Add a loaded feed to the graph. This uses the graph and the calendar of all feeds added
+     * before it, so it is done on the calling thread, one feed at a time. The graph build lock is
+     * held, since the streets may be built at the same time.
+     */
+    private void addFeedToGraph(
+            Graph graph,
+            LoadedFeed feed,
+            CalendarServiceData calendarServiceData
+    ) {
+        calendarServiceData.add(feed.calendarServiceData);
+
+        graph.getBuildLock().lock();
+        try {
+            // NB! The calls below have side effects - the builder state is updated!
+            createTripPatterns(graph, feed.builder, calendarServiceData.getServiceIds());
 
-    /* Private Methods */
+            OtpTransitService transitModel = feed.builder.build();
+
+            addTransitModelToGraph(graph, feed.bundle, transitModel);
+
+            createGeometryAndBlockProcessor(feed.bundle, transitModel).run(graph, issueStore);
+        }
+        finally {
+            graph.getBuildLock().unlock();
+        }
+    }
+
+    private static LoadedFeed join(Future<LoadedFeed> future) throws IOException {
+        try {
+            return future.get();
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Loading GTFS feed failed: " + e.getMessage(), e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Loading GTFS feeds interrupted.", e);
+        }
+    }
 
     /**
      * This method have side-effects, the {@code stopTimesByTrip} is updated.
@@ -213,8 +328,31 @@ public class GtfsModule implements GraphBuilderModule {
         );
     }
 
-    private GtfsMutableRelationalDao loadBundle(GtfsBundle gtfsBundle)
-            throws IOException {
+    /**
+     * Read the entities of a feed. Agency ids that conflict with the agencies of the feeds before
+     * it are replaced, so the agencies of a feed are only resolved when the agencies of the
+     * previous feed are resolved. This keeps the generated ids the same as when the feeds are
+     * read one after the other.
+     */
+    private GtfsMutableRelationalDao loadBundle(
+            GtfsBundle gtfsBundle,
+            CountDownLatch previousAgenciesResolved,
+            CountDownLatch agenciesResolved
+    ) throws IOException {
+        try {
+            return readBundle(gtfsBundle, previousAgenciesResolved, agenciesResolved);
+        }
+        finally {
+            // Do not keep the next feed waiting if this feed fails
+            agenciesResolved.countDown();
+        }
+    }
+
+    private GtfsMutableRelationalDao readBundle(
+            GtfsBundle gtfsBundle,
+            CountDownLatch previousAgenciesResolved,
+            CountDownLatch agenciesResolved
+    ) throws IOException {
 
         StoreImpl store = new StoreImpl(new GtfsRelationalDaoImpl());
         store.open();
@@ -229,7 +367,7 @@ public class GtfsModule implements GraphBuilderModule {
         reader.setDefaultAgencyId(gtfsFeedId.getId());
 
         if (LOG.isDebugEnabled())
-            reader.addEntityHandler(counter);
+            reader.addEntityHandler(new EntityCounter());
 
         if (gtfsBundle.getDefaultBikesAllowed())
             reader.addEntityHandler(new EntityBikeability(true));
@@ -242,6 +380,7 @@ public class GtfsModule implements GraphBuilderModule {
             // set the agencyId here. Each feed ("bundle") is loaded by a separate reader, so there is no risk of
             // agency mappings accumulating.
             if (entityClass == Agency.class) {
+                awaitAgenciesOfPreviousFeeds(previousAgenciesResolved);
                 for (Agency agency : reader.getAgencies()) {
                     String agencyId = agency.getId();
                     LOG.info("This Agency has the ID {}", agencyId);
@@ -261,6 +400,7 @@ public class GtfsModule implements GraphBuilderModule {
                     }
                     if (agencyId != null) agencyIdsSeen.add(gtfsFeedId.getId() + agencyId);
                 }
+                agenciesResolved.countDown();
             }
         }
 
@@ -294,6 +434,16 @@ public class GtfsModule implements GraphBuilderModule {
         return store.dao;
     }
 
+    private static void awaitAgenciesOfPreviousFeeds(CountDownLatch previousAgenciesResolved) {
+        try {
+            previousAgenciesResolved.await();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Loading GTFS feeds interrupted.", e);
+        }
+    }
+
     /**
      * Generates routeText colors for routes with routeColor and without routeTextColor
      *
@@ -394,6 +544,22 @@ public class GtfsModule implements GraphBuilderModule {
         }
     }
 
+    private static class LoadedFeed {
+        final GtfsBundle bundle;
+        final OtpTransitServiceBuilder builder;
+        final CalendarServiceData calendarServiceData;
+
+        LoadedFeed(
+                GtfsBundle bundle,
+                OtpTransitServiceBuilder builder,
+                CalendarServiceData calendarServiceData
+        ) {
+            this.bundle = bundle;
+            this.builder = builder;
+            this.calendarServiceData = calendarServiceData;
+        }
+    }
+
     private static class EntityCounter implements EntityHandler {
 
         private Map<Class<?>, Integer> _count = new HashMap<Class<?>, Integer>();
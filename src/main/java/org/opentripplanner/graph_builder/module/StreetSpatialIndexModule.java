@@ -0,0 +1,30 @@
+package org.opentripplanner.graph_builder.module;
+
+import org.opentripplanner.graph_builder.DataImportIssueStore;
+import org.opentripplanner.graph_builder.services.GraphBuilderModule;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.impl.StreetSpatialIndexes;
+
+import java.util.HashMap;
+
+/**
+ * Build the spatial indexes of the edges, vertices and transit stops, see
+ * {@link StreetSpatialIndexes}. This is added after the modules that change the graph, the
+ * indexes are then saved with the graph and used when it is indexed.
+ */
+public class StreetSpatialIndexModule implements GraphBuilderModule {
+
+    @Override
+    public void buildGraph(
+            Graph graph,
+            HashMap<Class<?>, Object> extra,
+            DataImportIssueStore issueStore
+    ) {
+        graph.setStreetSpatialIndexes(StreetSpatialIndexes.build(graph));
+    }
+
+    @Override
+    public void checkInputs() {
+        // No inputs
+    }
+}
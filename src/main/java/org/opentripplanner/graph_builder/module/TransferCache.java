@@ -0,0 +1,415 @@
+package org.opentripplanner.graph_builder.module;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
+import org.opentripplanner.model.SimpleTransfer;
+import org.opentripplanner.model.Stop;
+import org.opentripplanner.model.TripPattern;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.GraphIndex;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.vertextype.TransitStopVertex;
+
+import javax.annotation.Nullable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The transfers of each stop found by the {@link DirectTransferGenerator}, saved with the graph
+ * so that the next build on the same street graph only searches for the transfers of the stops
+ * that changed.
+ * <p>
+ * The transfers from a stop go to the closest stops on each trip pattern within the transfer
+ * radius, so with the same streets they only depend on the stops within the radius and their
+ * patterns. The transfers of a stop are reused if the stop and all stops within the radius have
+ * the same id, coordinates, codes and patterns as when the transfers were found.
+ * <p>
+ * The street path of a transfer is saved as the edge types, lengths and end vertex coordinates
+ * along the path, and is looked up again in the new graph. The stops are linked to the streets
+ * by splitting the street edges, so a path along a street that is linked differently is not
+ * found. The transfers of that stop are then searched for again.
+ */
+public class TransferCache {
+
+    /** The coordinates of the path vertices are compared in units of 1e-7 degrees. */
+    private static final double COORDINATE_PRECISION = 1e7;
+
+    /** The edge lengths are compared in millimeters. */
+    private static final double LENGTH_PRECISION = 1e3;
+
+    /** The number of ints saved for each edge of a path. */
+    private static final int STEP_SIZE = 4;
+
+    /** The number of steps saved for a transfer without a street path. */
+    private static final int NO_PATH = -1;
+
+    private final String streetGraphId;
+
+    private final double radiusMeters;
+
+    private final List<String> edgeTypes;
+
+    private final Map<String, CachedStop> stops;
+
+    private TransferCache(
+            String streetGraphId,
+            double radiusMeters,
+            List<String> edgeTypes,
+            Map<String, CachedStop> stops
+    ) {
+        this.streetGraphId = streetGraphId;
+        this.radiusMeters = radiusMeters;
+        this.edgeTypes = edgeTypes;
+        this.stops = stops;
+    }
+
+    /**
+     * Save the transfers found for the given stops.
+     *
+     * @param streetGraphId identifies the street graph the transfers were found on.
+     * @param signatures the signatures of the stops, see {@link #stopSignatures(List, GraphIndex)}.
+     * @param transfers the transfers of each stop, at the index of the stop.
+     */
+    static TransferCache create(
+            String streetGraphId,
+            double radiusMeters,
+            List<TransitStopVertex> stopVertices,
+            int[] signatures,
+            List<List<SimpleTransfer>> transfers
+    ) {
+        List<String> edgeTypes = new ArrayList<>();
+        Map<String, Integer> edgeTypeIndexes = new HashMap<>();
+        Map<String, CachedStop> stops = new HashMap<>();
+        for (int i = 0; i < stopVertices.size(); i++) {
+            Stop stop = stopVertices.get(i).getStop();
+            List<CachedTransfer> cachedTransfers = new ArrayList<>();
+            for (SimpleTransfer transfer : transfers.get(i)) {
+                cachedTransfers.add(new CachedTransfer(
+                        transfer.to.getId().toString(),
+                        transfer.getEffectiveWalkDistance(),
+                        steps(transfer.getEdges(), edgeTypes, edgeTypeIndexes)
+                ));
+            }
+            stops.put(
+                    stop.getId().toString(),
+                    new CachedStop(signatures[i], stop.getLat(), stop.getLon(), cachedTransfers)
+            );
+        }
+        return new TransferCache(streetGraphId, radiusMeters, edgeTypes, stops);
+    }
+
+    /**
+     * A hash of everything the transfers of a stop depend on, except the streets: the id,
+     * coordinates and codes of the stop, and the routes and stops of its patterns. The codes are
+     * included because they are used to link stops to platforms in OSM.
+     */
+    static int[] stopSignatures(List<TransitStopVertex> stopVertices, GraphIndex index) {
+        Map<TripPattern, Integer> patternSignatures = new HashMap<>();
+        int[] signatures = new int[stopVertices.size()];
+        for (int i = 0; i < stopVertices.size(); i++) {
+            Stop stop = stopVertices.get(i).getStop();
+            int[] patterns = index.getPatternsForStop(stop).stream()
+                    .mapToInt(p -> patternSignatures.computeIfAbsent(p, TransferCache::patternSignature))
+                    .sorted()
+                    .toArray();
+            signatures[i] = Objects.hash(
+                    stop.getId().toString(),
+                    stop.getLat(),
+                    stop.getLon(),
+                    stop.getCode(),
+                    stop.getPlatformCode(),
+                    Arrays.hashCode(patterns)
+            );
+        }
+        return signatures;
+    }
+
+    /** The cache can only be used with the same street graph and transfer radius. */
+    boolean matches(String streetGraphId, double radiusMeters) {
+        return this.streetGraphId.equals(streetGraphId) && this.radiusMeters == radiusMeters;
+    }
+
+    int size() {
+        return stops.size();
+    }
+
+    /**
+     * Reuse the saved transfers of the stops that did not change.
+     *
+     * @return the transfers of each stop at the index of the stop, or {@code null} for the stops
+     * that must be searched for again.
+     */
+    List<List<SimpleTransfer>> reuseTransfers(
+            List<TransitStopVertex> stopVertices,
+            int[] signatures,
+            GraphIndex index
+    ) {
+        Set<TransitStopVertex> changed = findStopsNearChanges(stopVertices, signatures, index);
+        Map<String, TransitStopVertex> stopVerticesById = new HashMap<>();
+        for (TransitStopVertex stopVertex : stopVertices) {
+            stopVerticesById.put(stopVertex.getStop().getId().toString(), stopVertex);
+        }
+        List<List<SimpleTransfer>> result = new ArrayList<>(stopVertices.size());
+        for (TransitStopVertex stopVertex : stopVertices) {
+            result.add(
+                    changed.contains(stopVertex)
+                            ? null
+                            : reuseTransfers(stopVertex, stopVerticesById)
+            );
+        }
+        return result;
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeUTF(streetGraphId);
+        out.writeDouble(radiusMeters);
+        out.writeInt(edgeTypes.size());
+        for (String edgeType : edgeTypes) {
+            out.writeUTF(edgeType);
+        }
+        out.writeInt(stops.size());
+        for (Map.Entry<String, CachedStop> it : stops.entrySet()) {
+            CachedStop stop = it.getValue();
+            out.writeUTF(it.getKey());
+            out.writeInt(stop.signature);
+            out.writeDouble(stop.lat);
+            out.writeDouble(stop.lon);
+            out.writeInt(stop.transfers.size());
+            for (CachedTransfer transfer : stop.transfers) {
+                out.writeUTF(transfer.toStopId);
+                out.writeDouble(transfer.distance);
+                if (transfer.steps == null) {
+                    out.writeInt(NO_PATH);
+                    continue;
+                }
+                out.writeInt(transfer.steps.length / STEP_SIZE);
+                for (int value : transfer.steps) {
+                    out.writeInt(value);
+                }
+            }
+        }
+    }
+
+    public static TransferCache read(DataInputStream in) throws IOException {
+        String streetGraphId = in.readUTF();
+        double radiusMeters = in.readDouble();
+        int nEdgeTypes = in.readInt();
+        List<String> edgeTypes = new ArrayList<>(nEdgeTypes);
+        for (int i = 0; i < nEdgeTypes; i++) {
+            edgeTypes.add(in.readUTF());
+        }
+        int nStops = in.readInt();
+        Map<String, CachedStop> stops = new HashMap<>();
+        for (int i = 0; i < nStops; i++) {
+            String id = in.readUTF();
+            int signature = in.readInt();
+            double lat = in.readDouble();
+            double lon = in.readDouble();
+            int nTransfers = in.readInt();
+            List<CachedTransfer> transfers = new ArrayList<>(nTransfers);
+            for (int j = 0; j < nTransfers; j++) {
+                String toStopId = in.readUTF();
+                double distance = in.readDouble();
+                int nSteps = in.readInt();
+                int[] steps = null;
+                if (nSteps != NO_PATH) {
+                    steps = new int[nSteps * STEP_SIZE];
+                    for (int k = 0; k < steps.length; k++) {
+                        steps[k] = in.readInt();
+                    }
+                }
+                transfers.add(new CachedTransfer(toStopId, distance, steps));
+            }
+            stops.put(id, new CachedStop(signature, lat, lon, transfers));
+        }
+        return new TransferCache(streetGraphId, radiusMeters, edgeTypes, stops);
+    }
+
+
+    /* private methods */
+
+    private static int patternSignature(TripPattern pattern) {
+        List<String> stopIds = pattern.getStops().stream()
+                .map(it -> it.getId().toString())
+                .collect(Collectors.toList());
+        return Objects.hash(pattern.route.getId().toString(), stopIds);
+    }
+
+    @Nullable
+    private static int[] steps(
+            @Nullable List<Edge> edges,
+            List<String> edgeTypes,
+            Map<String, Integer> edgeTypeIndexes
+    ) {
+        if (edges == null) {
+            return null;
+        }
+        int[] steps = new int[edges.size() * STEP_SIZE];
+        for (int i = 0; i < edges.size(); i++) {
+            Edge edge = edges.get(i);
+            String edgeType = edge.getClass().getName();
+            Integer edgeTypeIndex = edgeTypeIndexes.get(edgeType);
+            if (edgeTypeIndex == null) {
+                edgeTypeIndex = edgeTypes.size();
+                edgeTypeIndexes.put(edgeType, edgeTypeIndex);
+                edgeTypes.add(edgeType);
+            }
+            Coordinate c = edge.getToVertex().getCoordinate();
+            steps[i * STEP_SIZE] = edgeTypeIndex;
+            steps[i * STEP_SIZE + 1] = (int) Math.round(edge.getDistanceMeters() * LENGTH_PRECISION);
+            steps[i * STEP_SIZE + 2] = (int) Math.round(c.x * COORDINATE_PRECISION);
+            steps[i * STEP_SIZE + 3] = (int) Math.round(c.y * COORDINATE_PRECISION);
+        }
+        return steps;
+    }
+
+    /**
+     * Find the stops that are new or changed, and the stops within the transfer radius of a new,
+     * changed or removed stop.
+     */
+    private Set<TransitStopVertex> findStopsNearChanges(
+            List<TransitStopVertex> stopVertices,
+            int[] signatures,
+            GraphIndex index
+    ) {
+        List<Coordinate> changes = new ArrayList<>();
+        Set<String> currentStopIds = new HashSet<>();
+        for (int i = 0; i < stopVertices.size(); i++) {
+            TransitStopVertex stopVertex = stopVertices.get(i);
+            String id = stopVertex.getStop().getId().toString();
+            currentStopIds.add(id);
+            CachedStop cached = stops.get(id);
+            if (cached == null || cached.signature != signatures[i]) {
+                changes.add(stopVertex.getCoordinate());
+                if (cached != null) {
+                    changes.add(new Coordinate(cached.lon, cached.lat));
+                }
+            }
+        }
+        for (Map.Entry<String, CachedStop> it : stops.entrySet()) {
+            if (!currentStopIds.contains(it.getKey())) {
+                changes.add(new Coordinate(it.getValue().lon, it.getValue().lat));
+            }
+        }
+
+        Set<TransitStopVertex> result = new HashSet<>();
+        for (Coordinate c : changes) {
+            Envelope envelope = new Envelope(c);
+            envelope.expandBy(
+                    SphericalDistanceLibrary.metersToLonDegrees(radiusMeters, c.y),
+                    SphericalDistanceLibrary.metersToDegrees(radiusMeters)
+            );
+            for (TransitStopVertex it : index.getStopSpatialIndex().query(envelope)) {
+                if (SphericalDistanceLibrary.distance(it.getCoordinate(), c) <= radiusMeters) {
+                    result.add(it);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The saved transfers of an unchanged stop, or {@code null} if the path of one of the
+     * transfers is not found in the graph.
+     */
+    @Nullable
+    private List<SimpleTransfer> reuseTransfers(
+            TransitStopVertex stopVertex,
+            Map<String, TransitStopVertex> stopVerticesById
+    ) {
+        CachedStop cached = stops.get(stopVertex.getStop().getId().toString());
+        if (cached == null) {
+            return null;
+        }
+        List<SimpleTransfer> transfers = new ArrayList<>(cached.transfers.size());
+        for (CachedTransfer transfer : cached.transfers) {
+            TransitStopVertex to = stopVerticesById.get(transfer.toStopId);
+            if (to == null) {
+                return null;
+            }
+            List<Edge> edges = null;
+            if (transfer.steps != null) {
+                edges = findPath(stopVertex, to, transfer.steps);
+                if (edges == null) {
+                    return null;
+                }
+            }
+            transfers.add(new SimpleTransfer(
+                    stopVertex.getStop(),
+                    to.getStop(),
+                    transfer.distance,
+                    edges
+            ));
+        }
+        return transfers;
+    }
+
+    /** Follow the saved path from one stop to the other, or return null if it is not found. */
+    @Nullable
+    private List<Edge> findPath(Vertex from, Vertex to, int[] steps) {
+        List<Edge> edges = new ArrayList<>(steps.length / STEP_SIZE);
+        Vertex vertex = from;
+        for (int i = 0; i < steps.length; i += STEP_SIZE) {
+            Edge next = null;
+            for (Edge edge : vertex.getOutgoing()) {
+                if (matches(edge, steps, i)) {
+                    next = edge;
+                    break;
+                }
+            }
+            if (next == null) {
+                return null;
+            }
+            edges.add(next);
+            vertex = next.getToVertex();
+        }
+        return vertex == to ? edges : null;
+    }
+
+    private boolean matches(Edge edge, int[] steps, int i) {
+        Coordinate c = edge.getToVertex().getCoordinate();
+        return edge.getClass().getName().equals(edgeTypes.get(steps[i]))
+                && Math.round(edge.getDistanceMeters() * LENGTH_PRECISION) == steps[i + 1]
+                && Math.round(c.x * COORDINATE_PRECISION) == steps[i + 2]
+                && Math.round(c.y * COORDINATE_PRECISION) == steps[i + 3];
+    }
+
+    private static class CachedStop {
+        final int signature;
+        final double lat;
+        final double lon;
+        final List<CachedTransfer> transfers;
+
+        CachedStop(int signature, double lat, double lon, List<CachedTransfer> transfers) {
+            this.signature = signature;
+            this.lat = lat;
+            this.lon = lon;
+            this.transfers = transfers;
+        }
+    }
+
+    private static class CachedTransfer {
+        final String toStopId;
+        final double distance;
+        /** The type, length and end coordinates of each edge, or null without a street path. */
+        @Nullable
+        final int[] steps;
+
+        CachedTransfer(String toStopId, double distance, @Nullable int[] steps) {
+            this.toStopId = toStopId;
+            this.distance = distance;
+            this.steps = steps;
+        }
+    }
+}
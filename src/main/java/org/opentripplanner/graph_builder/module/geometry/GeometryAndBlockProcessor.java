@@ -44,11 +44,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 /**
  * Once transit model entities have been loaded into the graph, this post-processes them to extract and prepare
@@ -64,11 +65,13 @@ public class GeometryAndBlockProcessor {
 
     private OtpTransitService transitService;
 
-    private Map<ShapeSegmentKey, LineString> geometriesByShapeSegmentKey = new HashMap<ShapeSegmentKey, LineString>();
-
-    private Map<FeedScopedId, LineString> geometriesByShapeId = new HashMap<FeedScopedId, LineString>();
+    /*
+     * The geometries of the trip patterns are created in parallel, so these caches are shared by
+     * several threads.
+     */
+    private Map<ShapeSegmentKey, LineString> geometriesByShapeSegmentKey = new ConcurrentHashMap<>();
 
-    private Map<FeedScopedId, double[]> distancesByShapeId = new HashMap<>();
+    private Map<FeedScopedId, Shape> shapesById = new ConcurrentHashMap<>();
 
     private FareServiceFactory fareServiceFactory;
 
@@ -141,20 +144,23 @@ public class GeometryAndBlockProcessor {
         );
         LOG.info(progress.startMessage());
 
-        for (TripPattern tripPattern : tripPatterns) {
-            for (Trip trip : tripPattern.getTrips()) {
-                // create geometries if they aren't already created
-                // note that this is not only done on new trip patterns, because it is possible that
-                // there would be a trip pattern with no geometry yet because it failed some of these tests
-                if (!geometriesByTripPattern.containsKey(tripPattern) && trip.getShapeId() != null
-                        && trip.getShapeId().getId() != null && !trip.getShapeId().getId().equals("")) {
-                    // save the geometry to later be applied to the hops
-                    geometriesByTripPattern.put(tripPattern,
-                            createGeometry(trip.getShapeId(), transitService.getStopTimesForTrip(trip)));
-                }
+        // The geometries are created in parallel, one trip pattern per task. A geometry is created
+        // from the first trip of the pattern with a shape, like when the patterns were processed
+        // one after the other. The caches of shared shapes and segments do not change the result.
+        List<TripPattern> patternList = new ArrayList<>(tripPatterns);
+        List<LineString[]> geometries = patternList.parallelStream()
+                .map(tripPattern -> {
+                    LineString[] hopGeometries = createGeometry(tripPattern);
+                    //Keep lambda! A method-ref would causes incorrect class and line number to be logged
+                    progress.step(m -> LOG.info(m));
+                    return hopGeometries;
+                })
+                .collect(Collectors.toList());
+        for (int i = 0; i < patternList.size(); i++) {
+            if (geometries.get(i) != null) {
+                // save the geometry to later be applied to the hops
+                geometriesByTripPattern.put(patternList.get(i), geometries.get(i));
             }
-            //Keep lambda! A method-ref would causes incorrect class and line number to be logged
-            progress.step(m -> LOG.info(m));
         }
         LOG.info(progress.completeMessage());
 
@@ -262,6 +268,20 @@ public class GeometryAndBlockProcessor {
         LOG.info("Done finding interlining trips.");
     }
 
+    /**
+     * Create the hop geometries of a trip pattern from the first trip with a shape, or return
+     * {@code null} if no trip of the pattern has a shape.
+     */
+    private LineString[] createGeometry(TripPattern tripPattern) {
+        for (Trip trip : tripPattern.getTrips()) {
+            if (trip.getShapeId() != null && trip.getShapeId().getId() != null
+                    && !trip.getShapeId().getId().equals("")) {
+                return createGeometry(trip.getShapeId(), transitService.getStopTimesForTrip(trip));
+            }
+        }
+        return null;
+    }
+
     /**
      * Creates a set of geometries for a single trip, considering the GTFS shapes.txt,
      * The geometry is broken down into one geometry per inter-stop segment ("hop"). We also need a shape for the entire
@@ -615,15 +635,21 @@ public class GeometryAndBlockProcessor {
     }
 
     private LineString getLineStringForShapeId(FeedScopedId shapeId) {
+        return getShape(shapeId).geometry;
+    }
 
-        LineString geometry = geometriesByShapeId.get(shapeId);
+    private double[] getDistanceForShapeId(FeedScopedId shapeId) {
+        return getShape(shapeId).distances;
+    }
 
-        if (geometry != null)
-            return geometry;
+    private Shape getShape(FeedScopedId shapeId) {
+        return shapesById.computeIfAbsent(shapeId, this::createShape);
+    }
 
+    private Shape createShape(FeedScopedId shapeId) {
         List<ShapePoint> points = getUniqueShapePointsForShapeId(shapeId);
         if (points.size() < 2) {
-            return null;
+            return new Shape(null, null);
         }
         Coordinate[] coordinates = new Coordinate[points.size()];
         double[] distances = new double[points.size()];
@@ -646,16 +672,7 @@ public class GeometryAndBlockProcessor {
         }
 
         CoordinateSequence sequence = new PackedCoordinateSequence.Double(coordinates, 2);
-        geometry = geometryFactory.createLineString(sequence);
-        geometriesByShapeId.put(shapeId, geometry);
-        distancesByShapeId.put(shapeId, distances);
-
-        return geometry;
-    }
-
-    private double[] getDistanceForShapeId(FeedScopedId shapeId) {
-        getLineStringForShapeId(shapeId);
-        return distancesByShapeId.get(shapeId);
+        return new Shape(geometryFactory.createLineString(sequence), distances);
     }
 
     private LinearLocation getSegmentFraction(double[] distances, double distance) {
@@ -679,4 +696,15 @@ public class GeometryAndBlockProcessor {
     public void setFareServiceFactory(FareServiceFactory fareServiceFactory) {
         this.fareServiceFactory = fareServiceFactory;
     }
+
+    /** The geometry of a shape, and the distance traveled at each point if all points have it. */
+    private static class Shape {
+        final LineString geometry;
+        final double[] distances;
+
+        Shape(LineString geometry, double[] distances) {
+            this.geometry = geometry;
+            this.distances = distances;
+        }
+    }
 }
@@ -0,0 +1,233 @@
+package org.opentripplanner.graph_builder.module.ned;
+
+import org.locationtech.jts.geom.Geometry;
+import org.opentripplanner.common.geometry.PackedCoordinateSequence;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.util.PolylineEncoder;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The elevation profiles of the street edges of an earlier graph build, so they do not have to be
+ * calculated again. The profiles are found by a key calculated from the geometry of the edge, see
+ * {@link #key(String)}, so they can be reused when the OSM data has changed. The encoded polyline
+ * of the geometry is stored with each profile and compared when a profile is looked up, so two
+ * geometries with the same key never share a profile.
+ * <p>
+ * The file is read with a single memory mapping, and the profiles are only copied to the heap when
+ * they are looked up. The layout of the file is, in big-endian order:
+ * <pre>
+ *   int     magic number
+ *   int     format version
+ *   int     number of profiles, n
+ *   long[n] the keys, in increasing order
+ *   int[n+1] the index of the first sample of each profile, and the total number of samples
+ *   int[n+1] the index of the first polyline byte of each profile, and the total number of bytes
+ *   double[2 * number of samples] the distance along the edge and the elevation of each sample
+ *   byte[number of polyline bytes] the encoded polyline of each profile, in ASCII
+ * </pre>
+ */
+class CachedElevations {
+
+    static final int MAGIC = 0x4F545045;
+    static final int VERSION = 2;
+    private static final int HEADER_SIZE = 3 * Integer.BYTES;
+
+    private final int nProfiles;
+    private final LongBuffer keys;
+    private final IntBuffer offsets;
+    private final IntBuffer polylineOffsets;
+    private final DoubleBuffer samples;
+    private final ByteBuffer polylines;
+
+    private CachedElevations(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a cached elevations file.");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported cached elevations file version: " + buffer.getInt(4));
+        }
+        nProfiles = buffer.getInt(8);
+        long keysEnd = HEADER_SIZE + (long) nProfiles * Long.BYTES;
+        long offsetsEnd = keysEnd + (nProfiles + 1L) * Integer.BYTES;
+        long polylineOffsetsEnd = offsetsEnd + (nProfiles + 1L) * Integer.BYTES;
+        if (nProfiles < 0 || polylineOffsetsEnd > buffer.limit()) {
+            throw new IOException("Cached elevations file is truncated.");
+        }
+        keys = slice(buffer, HEADER_SIZE, (int) keysEnd).asLongBuffer();
+        offsets = slice(buffer, (int) keysEnd, (int) offsetsEnd).asIntBuffer();
+        polylineOffsets = slice(buffer, (int) offsetsEnd, (int) polylineOffsetsEnd).asIntBuffer();
+        long samplesEnd = polylineOffsetsEnd + 2L * offsets.get(nProfiles) * Double.BYTES;
+        long polylinesEnd = samplesEnd + polylineOffsets.get(nProfiles);
+        if (polylinesEnd != buffer.limit()) {
+            throw new IOException("Cached elevations file is truncated.");
+        }
+        samples = slice(buffer, (int) polylineOffsetsEnd, (int) samplesEnd).asDoubleBuffer();
+        polylines = slice(buffer, (int) samplesEnd, (int) polylinesEnd);
+    }
+
+    static CachedElevations read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Cached elevations file is too large: " + channel.size());
+            }
+            return new CachedElevations(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Write the elevation profiles of the given edges. If several edges have the same key, the
+     * profile of the first one is written.
+     */
+    static void write(File file, Collection<? extends StreetEdge> edges) throws IOException {
+        List<Entry> entries = new ArrayList<>(edges.size());
+        for (StreetEdge edge : edges) {
+            entries.add(new Entry(polyline(edge.getGeometry()), edge.getElevationProfile()));
+        }
+        // The sort is stable, so the first edge of each key is kept
+        entries.sort(Comparator.comparingLong(e -> e.key));
+        List<Entry> unique = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            if (unique.isEmpty() || unique.get(unique.size() - 1).key != entry.key) {
+                unique.add(entry);
+            }
+        }
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file))
+        )) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(unique.size());
+            for (Entry entry : unique) {
+                out.writeLong(entry.key);
+            }
+            int offset = 0;
+            for (Entry entry : unique) {
+                out.writeInt(offset);
+                offset += entry.profile.size();
+            }
+            out.writeInt(offset);
+            int polylineOffset = 0;
+            for (Entry entry : unique) {
+                out.writeInt(polylineOffset);
+                polylineOffset += entry.polyline.length();
+            }
+            out.writeInt(polylineOffset);
+            for (Entry entry : unique) {
+                for (int i = 0; i < entry.profile.size(); i++) {
+                    out.writeDouble(entry.profile.getX(i));
+                    out.writeDouble(entry.profile.getY(i));
+                }
+            }
+            for (Entry entry : unique) {
+                out.writeBytes(entry.polyline);
+            }
+        }
+    }
+
+    /** The cached elevation profile of an edge with the given geometry, or {@code null}. */
+    PackedCoordinateSequence get(Geometry geometry) {
+        String polyline = polyline(geometry);
+        int index = binarySearch(key(polyline));
+        if (index < 0 || !hasPolyline(index, polyline)) {
+            return null;
+        }
+        int first = offsets.get(index);
+        int end = offsets.get(index + 1);
+        double[] coords = new double[2 * (end - first)];
+        for (int i = 0; i < coords.length; i++) {
+            coords[i] = samples.get(2 * first + i);
+        }
+        return new PackedCoordinateSequence.Double(coords, 2);
+    }
+
+    int size() {
+        return nProfiles;
+    }
+
+    /**
+     * The encoded polyline of the geometry. The polyline rounds the coordinates to 5 decimals, so
+     * it does not change if the geometry is only moved by rounding errors.
+     */
+    static String polyline(Geometry geometry) {
+        return PolylineEncoder.createEncodings(geometry).getPoints();
+    }
+
+    /** A 64-bit FNV-1a hash of the encoded polyline of a geometry. */
+    static long key(String polyline) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < polyline.length(); i++) {
+            hash ^= polyline.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /** Compare the stored polyline of a profile, the key of another geometry may be the same. */
+    private boolean hasPolyline(int index, String polyline) {
+        int first = polylineOffsets.get(index);
+        int end = polylineOffsets.get(index + 1);
+        if (end - first != polyline.length()) {
+            return false;
+        }
+        for (int i = 0; i < polyline.length(); i++) {
+            if (polylines.get(first + i) != (byte) polyline.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int binarySearch(long key) {
+        int low = 0;
+        int high = nProfiles - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = keys.get(mid);
+            if (midKey < key) {
+                low = mid + 1;
+            }
+            else if (midKey > key) {
+                high = mid - 1;
+            }
+            else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int start, int end) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(start);
+        duplicate.limit(end);
+        return duplicate.slice();
+    }
+
+    private static class Entry {
+        final long key;
+        final String polyline;
+        final PackedCoordinateSequence profile;
+
+        Entry(String polyline, PackedCoordinateSequence profile) {
+            this.key = key(polyline);
+            this.polyline = polyline;
+            this.profile = profile;
+        }
+    }
+}
@@ -23,17 +23,11 @@ import org.opentripplanner.routing.edgetype.StreetWithElevationEdge;
 import org.opentripplanner.routing.graph.Edge;
 import org.opentripplanner.routing.graph.Graph;
 import org.opentripplanner.routing.graph.Vertex;
-import org.opentripplanner.util.PolylineEncoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -74,16 +68,27 @@ public class ElevationModule implements GraphBuilderModule {
      * data and machine settings, it might be faster to use a single processor.
      */
     private final boolean multiThreadElevationCalculations;
+    /*
+     * Whether or not to copy the elevation grid to a memory mapped file of tiles, and sample it without GeoTools. Only
+     * supported for GeoTIFF files in longitude, latitude order.
+     */
+    private final boolean memoryMappedElevationRaster;
 
     private DataImportIssueStore issueStore;
 
     /**
-     * A map of PackedCoordinateSequence values identified by Strings of encoded polylines.
+     * Elevation profiles identified by the encoded polylines of the edge geometries.
      *
-     * Note: Since this map has a key of only the encoded polylines, it is assumed that all other inputs are the same as
-     * those that occurred in the graph build that produced this data.
+     * Note: Since the profiles are identified only by the encoded polylines, it is assumed that all other inputs are
+     * the same as those that occurred in the graph build that produced this data.
      */
-    private HashMap<String, PackedCoordinateSequence> cachedElevations;
+    private CachedElevations cachedElevations;
+
+    /** The memory mapped elevation grid, used instead of the coverage if set. */
+    private MappedElevationRaster mappedRaster;
+
+    /** Whether the cached elevations are read and the elevation grid is mapped already. */
+    private boolean elevationDataLoaded = false;
 
     // Keep track of the proportion of elevation fetch operations that fail so we can issue warnings. AtomicInteger is
     // used to provide thread-safe updating capabilities.
@@ -126,6 +131,7 @@ public class ElevationModule implements GraphBuilderModule {
             1,
             10,
             true,
+            false,
             false
         );
     }
@@ -138,7 +144,8 @@ public class ElevationModule implements GraphBuilderModule {
         double elevationUnitMultiplier,
         double distanceBetweenSamplesM,
         boolean includeEllipsoidToGeoidDifference,
-        boolean multiThreadElevationCalculations
+        boolean multiThreadElevationCalculations,
+        boolean memoryMappedElevationRaster
     ) {
         gridCoverageFactory = factory;
         this.cachedElevationsFile = cachedElevationsFile;
@@ -147,6 +154,7 @@ public class ElevationModule implements GraphBuilderModule {
         this.elevationUnitMultiplier = elevationUnitMultiplier;
         this.includeEllipsoidToGeoidDifference = includeEllipsoidToGeoidDifference;
         this.multiThreadElevationCalculations = multiThreadElevationCalculations;
+        this.memoryMappedElevationRaster = memoryMappedElevationRaster;
         this.distanceBetweenSamplesM = distanceBetweenSamplesM;
     }
 
@@ -173,17 +181,8 @@ public class ElevationModule implements GraphBuilderModule {
 
         graph.setDistanceBetweenElevationSamples(this.distanceBetweenSamplesM);
 
-        // try to load in the cached elevation data
-        if (readCachedElevations) {
-            // try to load in the cached elevation data
-            try {
-                ObjectInputStream in = new ObjectInputStream(new FileInputStream(cachedElevationsFile));
-                cachedElevations = (HashMap<String, PackedCoordinateSequence>) in.readObject();
-                log.info("Cached elevation data loaded into memory!");
-            } catch (IOException | ClassNotFoundException e) {
-                issueStore.add(new Graphwide(
-                    String.format("Cached elevations file could not be read in due to error: %s!", e.getMessage())));
-            }
+        if (!elevationDataLoaded) {
+            loadElevationData(issueStore);
         }
         log.info("Setting street elevation profiles from digital elevation model...");
 
@@ -241,16 +240,8 @@ public class ElevationModule implements GraphBuilderModule {
 
         if (writeCachedElevations) {
             // write information from edgesWithElevation to a new cache file for subsequent graph builds
-            HashMap<String, PackedCoordinateSequence> newCachedElevations = new HashMap<>();
-            for (StreetEdge streetEdge : edgesWithCalculatedElevations) {
-                newCachedElevations.put(PolylineEncoder.createEncodings(streetEdge.getGeometry()).getPoints(),
-                    streetEdge.getElevationProfile());
-            }
             try {
-                ObjectOutputStream out = new ObjectOutputStream(
-                    new BufferedOutputStream(new FileOutputStream(cachedElevationsFile)));
-                out.writeObject(newCachedElevations);
-                out.close();
+                CachedElevations.write(cachedElevationsFile, edgesWithCalculatedElevations);
             } catch (IOException e) {
                 log.error(e.getMessage());
                 issueStore.add(new Graphwide("Failed to write cached elevation file!"));
@@ -501,9 +492,7 @@ public class ElevationModule implements GraphBuilderModule {
         // first try to find a cached value if possible
         Geometry edgeGeometry = ee.getGeometry();
         if (cachedElevations != null) {
-            PackedCoordinateSequence coordinateSequence = cachedElevations.get(
-                PolylineEncoder.createEncodings(edgeGeometry).getPoints()
-            );
+            PackedCoordinateSequence coordinateSequence = cachedElevations.get(edgeGeometry);
             if (coordinateSequence != null) {
                 // found a cached value! Set the elevation profile with the pre-calculated data.
                 setEdgeElevationProfile(ee, coordinateSequence, graph);
@@ -512,8 +501,8 @@ public class ElevationModule implements GraphBuilderModule {
         }
 
         // Needs full calculation. Calculate with a thread-specific coverage instance to avoid waiting for any locks on
-        // coverage instances in other threads.
-        Coverage coverage = getThreadSpecificCoverageInterpolator();
+        // coverage instances in other threads. The memory mapped grid does not need a coverage.
+        Coverage coverage = mappedRaster == null ? getThreadSpecificCoverageInterpolator() : null;
 
         // did not find a cached value, calculate
         // If any of the coordinates throw an error when trying to lookup their value, immediately bail and do not
@@ -621,6 +610,51 @@ public class ElevationModule implements GraphBuilderModule {
         }
     }
 
+    /**
+     * A module that reads the cached elevations and maps the elevation grid ahead of this module.
+     * It does not use the graph, so it runs while the transit data is loaded. This module must run
+     * after the streets are linked to the transit stops, since the split street edges do not keep
+     * their elevation, and before the transfers are found, which use it.
+     */
+    public GraphBuilderModule loadElevationDataModule() {
+        return new LoadElevationDataModule();
+    }
+
+    private void loadElevationData(DataImportIssueStore issueStore) {
+        // try to load in the cached elevation data
+        if (readCachedElevations) {
+            try {
+                cachedElevations = CachedElevations.read(cachedElevationsFile);
+                log.info("Cached elevation data loaded, {} elevation profiles.", cachedElevations.size());
+            } catch (IOException e) {
+                issueStore.add(new Graphwide(
+                    String.format("Cached elevations file could not be read in due to error: %s!", e.getMessage())));
+            }
+        }
+        if (memoryMappedElevationRaster) {
+            mapElevationRaster();
+        }
+        elevationDataLoaded = true;
+    }
+
+    /**
+     * Copy the elevation grid to a memory mapped file, if the coverage supports it. Otherwise the elevations are
+     * sampled from the coverage as usual.
+     */
+    private void mapElevationRaster() {
+        if (!(gridCoverageFactory instanceof GeotiffGridCoverageFactoryImpl)) {
+            log.info("Memory mapping the elevation model is only supported for GeoTIFF files.");
+            return;
+        }
+        try {
+            mappedRaster = MappedElevationRaster.create(
+                ((GeotiffGridCoverageFactoryImpl) gridCoverageFactory).getUninterpolatedGridCoverage()
+            );
+        } catch (IOException e) {
+            log.warn("Failed to memory map the elevation model, using it as usual: {}", e.getMessage());
+        }
+    }
+
     private void setEdgeElevationProfile(StreetWithElevationEdge ee, PackedCoordinateSequence elevPCS, Graph graph) {
         if(ee.setElevationProfile(elevPCS, false)) {
             synchronized (graph) {
@@ -643,7 +677,8 @@ public class ElevationModule implements GraphBuilderModule {
     /**
      * Method for retrieving the elevation at a given (x, y) pair.
      *
-     * @param coverage the specific Coverage instance to use in order to avoid competition between threads
+     * @param coverage the specific Coverage instance to use in order to avoid competition between threads, not used
+     *                 with the memory mapped grid
      * @param x the query longitude (NAD83)
      * @param y the query latitude (NAD83)
      * @return elevation in meters
@@ -656,7 +691,11 @@ public class ElevationModule implements GraphBuilderModule {
             // GeoTIFFs in various projections. Note that GeoTools defaults to strict EPSG axis ordering of (lat, long)
             // for DefaultGeographicCRS.WGS84, but OTP is using (long, lat) throughout and assumes unprojected DEM
             // rasters to also use (long, lat).
-            coverage.evaluate(new DirectPosition2D(GeometryUtils.WGS84_XY, x, y), values);
+            if (mappedRaster != null) {
+                values[0] = mappedRaster.sample(x, y);
+            } else {
+                coverage.evaluate(new DirectPosition2D(GeometryUtils.WGS84_XY, x, y), values);
+            }
         } catch (PointOutsideCoverageException e) {
             nPointsOutsideDEM.incrementAndGet();
             throw e;
@@ -712,4 +751,25 @@ public class ElevationModule implements GraphBuilderModule {
         }
     }
 
-}
\ No newline at end of file
+    private class LoadElevationDataModule implements GraphBuilderModule {
+
+        @Override
+        public void buildGraph(
+                Graph graph,
+                HashMap<Class<?>, Object> extra,
+                DataImportIssueStore issueStore
+        ) {
+            loadElevationData(issueStore);
+        }
+
+        @Override
+        public void checkInputs() {
+            // Checked by the elevation module
+        }
+
+        @Override
+        public boolean canRunConcurrently() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package org.opentripplanner.graph_builder.module.ned;
+
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridGeometry2D;
+import org.geotools.referencing.CRS;
+import org.opengis.coverage.PointOutsideCoverageException;
+import org.opengis.metadata.spatial.PixelOrientation;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.operation.MathTransform;
+import org.opentripplanner.common.geometry.GeometryUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The elevation grid of a coverage, copied to a file of uncompressed tiles and memory mapped, so
+ * it can be sampled from any number of threads without locks and without keeping the grid on the
+ * Java heap. The samples are interpolated bilinearly between the centers of the four surrounding
+ * cells, like the GeoTools {@code Interpolator2D} with {@code InterpolationBilinear} does, but
+ * without rounding the position within the cell.
+ * <p>
+ * Only grids in longitude, latitude order without rotation are supported, see
+ * {@link #create(GridCoverage2D)}. Cells without data are stored as NaN, and sampling next to them
+ * fails as if the point was outside the coverage.
+ */
+class MappedElevationRaster {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MappedElevationRaster.class);
+
+    private static final int TILE_SIZE = 256;
+    private static final int TILE_FLOATS = TILE_SIZE * TILE_SIZE;
+    private static final int TILE_BYTES = TILE_FLOATS * Float.BYTES;
+
+    /** A mapped buffer can not be larger than 2GB, so the tiles are split over several buffers. */
+    private static final int TILES_PER_BUFFER = Integer.MAX_VALUE / TILE_BYTES;
+
+    private final int width;
+    private final int height;
+    private final int nTilesX;
+
+    /** The longitude and latitude of the center of the first cell, and the size of the cells. */
+    private final double x0;
+    private final double y0;
+    private final double dx;
+    private final double dy;
+
+    private final FloatBuffer[] buffers;
+
+    private MappedElevationRaster(
+            int width, int height, double x0, double y0, double dx, double dy, FloatBuffer[] buffers
+    ) {
+        this.width = width;
+        this.height = height;
+        this.nTilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+        this.x0 = x0;
+        this.y0 = y0;
+        this.dx = dx;
+        this.dy = dy;
+        this.buffers = buffers;
+    }
+
+    /**
+     * Copy the first band of the coverage to a temporary tile file, and map it. The file is
+     * deleted once it is mapped, the disk space is freed when the mapping is released.
+     *
+     * @return the mapped raster, or {@code null} if the coverage is not an unrotated grid in
+     *         longitude, latitude order.
+     */
+    static MappedElevationRaster create(GridCoverage2D coverage) throws IOException {
+        if (!isLongitudeLatitude(coverage)) {
+            LOG.info("The elevation model is projected, it can not be memory mapped.");
+            return null;
+        }
+        GridGeometry2D gridGeometry = coverage.getGridGeometry();
+        MathTransform gridToCrs = gridGeometry.getGridToCRS2D(PixelOrientation.CENTER);
+        if (!(gridToCrs instanceof AffineTransform)) {
+            LOG.info("The elevation model grid is not affine, it can not be memory mapped.");
+            return null;
+        }
+        AffineTransform affine = (AffineTransform) gridToCrs;
+        if (affine.getShearX() != 0 || affine.getShearY() != 0) {
+            LOG.info("The elevation model grid is rotated, it can not be memory mapped.");
+            return null;
+        }
+        Rectangle range = gridGeometry.getGridRange2D();
+        double dx = affine.getScaleX();
+        double dy = affine.getScaleY();
+        double x0 = affine.getTranslateX() + range.x * dx;
+        double y0 = affine.getTranslateY() + range.y * dy;
+
+        int nTiles = nTiles(range.width, range.height);
+        int nBuffers = (nTiles + TILES_PER_BUFFER - 1) / TILES_PER_BUFFER;
+        FloatBuffer[] buffers = new FloatBuffer[nBuffers];
+        File file = File.createTempFile("otp-elevation-", ".tiles");
+        try {
+            writeTiles(coverage, range, file);
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                for (int i = 0; i < nBuffers; i++) {
+                    long offset = (long) i * TILES_PER_BUFFER * TILE_BYTES;
+                    long size = (long) Math.min(TILES_PER_BUFFER, nTiles - i * TILES_PER_BUFFER) * TILE_BYTES;
+                    buffers[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, size).asFloatBuffer();
+                }
+            }
+        }
+        finally {
+            // The mapping stays valid after the file is deleted. Where a mapped file can not be
+            // deleted, like on Windows, it is deleted when the JVM exits.
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+        LOG.info(
+                "Memory mapped elevation grid of {} x {} cells, {} tiles.",
+                range.width, range.height, nTiles
+        );
+        return new MappedElevationRaster(range.width, range.height, x0, y0, dx, dy, buffers);
+    }
+
+    /**
+     * Interpolate the elevation at the given longitude and latitude. This does not apply the unit
+     * multiplier or the geoid difference.
+     */
+    double sample(double x, double y) throws PointOutsideCoverageException {
+        // The position in cells, relative to the center of the first cell
+        double gx = (x - x0) / dx;
+        double gy = (y - y0) / dy;
+        if (!(gx >= -0.5 && gy >= -0.5 && gx <= width - 0.5 && gy <= height - 0.5)) {
+            throw new PointOutsideCoverageException("Point outside elevation grid: " + x + ", " + y);
+        }
+        // Next to the border, use the value of the border cell
+        gx = Math.max(0, Math.min(gx, width - 1));
+        gy = Math.max(0, Math.min(gy, height - 1));
+        int col = Math.min((int) gx, Math.max(0, width - 2));
+        int row = Math.min((int) gy, Math.max(0, height - 2));
+        double fx = gx - col;
+        double fy = gy - row;
+        int col1 = Math.min(col + 1, width - 1);
+        int row1 = Math.min(row + 1, height - 1);
+
+        double v00 = cell(col, row);
+        double v10 = cell(col1, row);
+        double v01 = cell(col, row1);
+        double v11 = cell(col1, row1);
+        double value = (v00 * (1 - fx) + v10 * fx) * (1 - fy) + (v01 * (1 - fx) + v11 * fx) * fy;
+        if (Double.isNaN(value)) {
+            throw new PointOutsideCoverageException("No elevation data at: " + x + ", " + y);
+        }
+        return value;
+    }
+
+    private float cell(int col, int row) {
+        int tile = (row / TILE_SIZE) * nTilesX + col / TILE_SIZE;
+        int index = (tile % TILES_PER_BUFFER) * TILE_FLOATS
+                + (row % TILE_SIZE) * TILE_SIZE
+                + col % TILE_SIZE;
+        return buffers[tile / TILES_PER_BUFFER].get(index);
+    }
+
+    private static boolean isLongitudeLatitude(GridCoverage2D coverage) {
+        try {
+            MathTransform toWgs84 = CRS.findMathTransform(
+                    coverage.getCoordinateReferenceSystem2D(), GeometryUtils.WGS84_XY
+            );
+            return toWgs84.isIdentity();
+        }
+        catch (FactoryException e) {
+            return false;
+        }
+    }
+
+    private static int nTiles(int width, int height) {
+        return ((width + TILE_SIZE - 1) / TILE_SIZE) * ((height + TILE_SIZE - 1) / TILE_SIZE);
+    }
+
+    /**
+     * Write the grid one row of tiles at a time: the rows of cells of a row of tiles are read from
+     * the image, and then written tile by tile. Cells outside the grid and cells without data are
+     * written as NaN.
+     */
+    private static void writeTiles(GridCoverage2D coverage, Rectangle range, File file)
+            throws IOException {
+        RenderedImage image = coverage.getRenderedImage();
+        double[] noData = coverage.getSampleDimension(0).getNoDataValues();
+        int nTilesX = (range.width + TILE_SIZE - 1) / TILE_SIZE;
+        int nTilesY = (range.height + TILE_SIZE - 1) / TILE_SIZE;
+        ByteBuffer tile = ByteBuffer.allocate(TILE_BYTES);
+        float[] line = new float[TILE_SIZE];
+
+        try (FileChannel channel = FileChannel.open(
+                file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING
+        )) {
+            for (int ty = 0; ty < nTilesY; ty++) {
+                int rows = Math.min(TILE_SIZE, range.height - ty * TILE_SIZE);
+                Rectangle strip = new Rectangle(
+                        image.getMinX(), image.getMinY() + ty * TILE_SIZE, range.width, rows
+                );
+                Raster raster = image.getData(strip);
+                float[] cells = raster.getSamples(strip.x, strip.y, strip.width, strip.height, 0, (float[]) null);
+                if (noData != null) {
+                    replaceNoData(cells, noData);
+                }
+                for (int tx = 0; tx < nTilesX; tx++) {
+                    tile.clear();
+                    FloatBuffer tileCells = tile.asFloatBuffer();
+                    for (int r = 0; r < TILE_SIZE; r++) {
+                        Arrays.fill(line, Float.NaN);
+                        if (r < rows) {
+                            int cols = Math.min(TILE_SIZE, range.width - tx * TILE_SIZE);
+                            System.arraycopy(cells, r * range.width + tx * TILE_SIZE, line, 0, cols);
+                        }
+                        tileCells.put(line);
+                    }
+                    while (tile.hasRemaining()) {
+                        channel.write(tile);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void replaceNoData(float[] cells, double[] noData) {
+        for (int i = 0; i < cells.length; i++) {
+            for (double value : noData) {
+                if (cells[i] == value) {
+                    cells[i] = Float.NaN;
+                }
+            }
+        }
+    }
+}
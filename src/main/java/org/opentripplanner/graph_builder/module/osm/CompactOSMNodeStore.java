@@ -0,0 +1,161 @@
+package org.opentripplanner.graph_builder.module.osm;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import org.opentripplanner.openstreetmap.model.OSMNode;
+
+import java.util.Arrays;
+
+/**
+ * Keep the nodes in a compact form, to reduce the memory needed to load large OSM extracts. Most
+ * nodes have no tags, and only their id and coordinates are needed. These are kept in primitive
+ * arrays sorted by id, using 16 bytes per node, and a new {@link OSMNode} is created on each
+ * lookup. Tagged nodes and virtual nodes (with a negative id) are few, and are kept as objects.
+ * <p>
+ * The coordinates are stored as fixed-point numbers with 7 decimals, which is the precision of
+ * OSM data.
+ * <p>
+ * The nodes in a PBF file are normally sorted by id, so they are appended in order. If nodes are
+ * added out of order, for example when loading several files, the arrays are sorted again before
+ * the next lookup. This class is not thread-safe.
+ */
+class CompactOSMNodeStore implements OSMNodeStore {
+
+    private static final double COORDINATE_PRECISION = 1e7;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private int[] lats = new int[INITIAL_CAPACITY];
+    private int[] lons = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    /** Whether the ids are sorted and unique. */
+    private boolean sorted = true;
+
+    private final TLongObjectMap<OSMNode> nodeObjects = new TLongObjectHashMap<>();
+
+    @Override
+    public void add(OSMNode node) {
+        long id = node.getId();
+        if (node.getTags() != null || id < 0) {
+            nodeObjects.putIfAbsent(id, node);
+            return;
+        }
+        if (size == ids.length) {
+            int capacity = ids.length + (ids.length >> 1);
+            ids = Arrays.copyOf(ids, capacity);
+            lats = Arrays.copyOf(lats, capacity);
+            lons = Arrays.copyOf(lons, capacity);
+        }
+        if (size > 0 && id <= ids[size - 1]) {
+            sorted = false;
+        }
+        ids[size] = id;
+        lats[size] = (int) Math.round(node.lat * COORDINATE_PRECISION);
+        lons[size] = (int) Math.round(node.lon * COORDINATE_PRECISION);
+        size++;
+    }
+
+    @Override
+    public OSMNode get(long id) {
+        OSMNode node = nodeObjects.get(id);
+        if (node != null) {
+            return node;
+        }
+        int i = indexOf(id);
+        if (i < 0) {
+            return null;
+        }
+        node = new OSMNode();
+        node.setId(id);
+        node.lat = lats[i] / COORDINATE_PRECISION;
+        node.lon = lons[i] / COORDINATE_PRECISION;
+        return node;
+    }
+
+    @Override
+    public boolean contains(long id) {
+        return nodeObjects.containsKey(id) || indexOf(id) >= 0;
+    }
+
+    @Override
+    public int size() {
+        ensureSorted();
+        return size + nodeObjects.size();
+    }
+
+    private int indexOf(long id) {
+        ensureSorted();
+        int i = Arrays.binarySearch(ids, 0, size, id);
+        return i < 0 ? -1 : i;
+    }
+
+    private void ensureSorted() {
+        if (sorted) {
+            return;
+        }
+        heapSort();
+        removeDuplicates();
+        sorted = true;
+    }
+
+    /**
+     * Sort the three arrays by id in place. A heap sort does not need any extra memory, which is
+     * the point of this class.
+     */
+    private void heapSort() {
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i, size);
+        }
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+    }
+
+    private void siftDown(int i, int end) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= end) {
+                return;
+            }
+            if (child + 1 < end && ids[child + 1] > ids[child]) {
+                child++;
+            }
+            if (ids[i] >= ids[child]) {
+                return;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        long id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+        int lat = lats[i];
+        lats[i] = lats[j];
+        lats[j] = lat;
+        int lon = lons[i];
+        lons[i] = lons[j];
+        lons[j] = lon;
+    }
+
+    private void removeDuplicates() {
+        if (size == 0) {
+            return;
+        }
+        int n = 1;
+        for (int i = 1; i < size; i++) {
+            if (ids[i] != ids[n - 1]) {
+                ids[n] = ids[i];
+                lats[n] = lats[i];
+                lons[n] = lons[i];
+                n++;
+            }
+        }
+        size = n;
+    }
+}
@@ -59,8 +59,8 @@ public class OSMDatabase {
 
     private DataImportIssueStore issueStore;
 
-    /* Map of all nodes used in ways/areas keyed by their OSM ID */
-    private TLongObjectMap<OSMNode> nodesById = new TLongObjectHashMap<>();
+    /* All nodes used in ways/areas keyed by their OSM ID */
+    private final OSMNodeStore nodesById;
 
     /* Map of all bike-rental nodes, keyed by their OSM ID */
     private TLongObjectMap<OSMNode> bikeRentalNodes = new TLongObjectHashMap<>();
@@ -132,7 +132,16 @@ public class OSMDatabase {
     public boolean noZeroLevels = true;
 
     public OSMDatabase(DataImportIssueStore issueStore) {
+        this(issueStore, false);
+    }
+
+    /**
+     * @param compactNodeStore keep the coordinates of untagged nodes in primitive arrays rather
+     *                         than as objects, see {@link CompactOSMNodeStore}.
+     */
+    public OSMDatabase(DataImportIssueStore issueStore, boolean compactNodeStore) {
         this.issueStore = issueStore;
+        this.nodesById = OSMNodeStore.create(compactNodeStore);
     }
 
     public OSMNode getNode(Long nodeId) {
@@ -221,13 +230,7 @@ public class OSMDatabase {
                 .isStop()))
             return;
 
-        if (nodesById.containsKey(node.getId()))
-            return;
-
-        nodesById.put(node.getId(), node);
-
-        if (nodesById.size() % 100000 == 0)
-            LOG.debug("nodes=" + nodesById.size());
+        nodesById.add(node);
     }
 
     public void addWay(OSMWay way) {
@@ -599,7 +602,7 @@ public class OSMDatabase {
         node.setId(virtualNodeId);
         virtualNodeId--;
         waysNodeIds.add(node.getId());
-        nodesById.put(node.getId(), node);
+        nodesById.add(node);
         return node;
     }
 
@@ -653,7 +656,7 @@ public class OSMDatabase {
             TLongIterator longIterator = way.getNodeRefs().iterator();
             while (longIterator.hasNext()) {
                 long nodeRef = longIterator.next();
-                if (!nodesById.containsKey(nodeRef)) continue AREA;
+                if (!nodesById.contains(nodeRef)) continue AREA;
             }
             try {
                 newArea(new Area(way, Arrays.asList(way), Collections.emptyList(), nodesById));
@@ -696,7 +699,7 @@ public class OSMDatabase {
                 TLongIterator wayNodeIterator = way.getNodeRefs().iterator();
                 while (wayNodeIterator.hasNext()) {
                     long nodeId = wayNodeIterator.next();
-                    if (nodesById.containsKey(nodeId)) {
+                    if (nodesById.contains(nodeId)) {
                         MapUtils.addToMapSet(areasForNode, nodeId, way);
                     } else {
                         // this area is missing some nodes, perhaps because it is on
@@ -953,7 +956,7 @@ public class OSMDatabase {
                     platformArea = relationsById.get(member.getRef());
                 else
                     issueStore.add(new TooManyAreasInRelation(relation.getId()));
-            } else if ("node".equals(member.getType()) && nodesById.containsKey(member.getRef())) {
+            } else if ("node".equals(member.getType()) && nodesById.contains(member.getRef())) {
                 platformsNodes.add(nodesById.get(member.getRef()));
             }
         }
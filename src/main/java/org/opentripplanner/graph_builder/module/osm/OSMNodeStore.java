@@ -0,0 +1,32 @@
+package org.opentripplanner.graph_builder.module.osm;
+
+import org.opentripplanner.openstreetmap.model.OSMNode;
+
+/**
+ * The OSM nodes kept while loading OSM data, by id. Nodes are only looked up by id, so a store
+ * does not need to keep the node instances; they may be created again on each lookup. Use the id
+ * to compare nodes, see {@link OSMNode#equals(Object)}.
+ */
+public interface OSMNodeStore {
+
+    /**
+     * Create a store keeping all nodes as objects, or a compact store keeping the coordinates of
+     * untagged nodes in primitive arrays. See {@link CompactOSMNodeStore}.
+     */
+    static OSMNodeStore create(boolean compact) {
+        return compact ? new CompactOSMNodeStore() : new MapOSMNodeStore();
+    }
+
+    /**
+     * Add a node. If a node with the same id is already stored, one of them is kept; they are
+     * expected to be the same node loaded from overlapping OSM files.
+     */
+    void add(OSMNode node);
+
+    /** @return the node with the given id, or {@code null} if it is not in the store. */
+    OSMNode get(long id);
+
+    boolean contains(long id);
+
+    int size();
+}
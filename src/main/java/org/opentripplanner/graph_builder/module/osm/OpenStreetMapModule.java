@@ -96,6 +96,11 @@ public class OpenStreetMapModule implements GraphBuilderModule {
 
     public boolean skipVisibility = false;
 
+    /**
+     * Keep the untagged OSM nodes in a compact store while loading, see {@link CompactOSMNodeStore}.
+     */
+    public boolean compactNodeStore = false;
+
     public boolean platformEntriesLinking = false;
 
     // Members that can be set by clients.
@@ -151,6 +156,12 @@ public class OpenStreetMapModule implements GraphBuilderModule {
         return Collections.emptyList();
     }
 
+    /** The OSM module only builds the street graph, so it can run while transit is loaded. */
+    @Override
+    public boolean canRunConcurrently() {
+        return true;
+    }
+
     /**
      * The source for OSM map data
      */
@@ -198,18 +209,25 @@ public class OpenStreetMapModule implements GraphBuilderModule {
             DataImportIssueStore issueStore
     ) {
         this.issueStore = issueStore;
-        OSMDatabase osmdb = new OSMDatabase(issueStore);
+        OSMDatabase osmdb = new OSMDatabase(issueStore, compactNodeStore);
         Handler handler = new Handler(graph, osmdb);
         for (BinaryOpenStreetMapProvider provider : _providers) {
             LOG.info("Gathering OSM from provider: " + provider);
             provider.readOSM(osmdb);
         }
         osmdb.postLoad();
-        LOG.info("Building street graph from OSM");
-        handler.buildGraph(extra);
-        graph.hasStreets = true;
-        //Calculates envelope for OSM
-        graph.calculateEnvelope();
+        // The transit modules may be running, only one module changes the graph at a time
+        graph.getBuildLock().lock();
+        try {
+            LOG.info("Building street graph from OSM");
+            handler.buildGraph(extra);
+            graph.hasStreets = true;
+            //Calculates envelope for OSM
+            graph.calculateEnvelope();
+        }
+        finally {
+            graph.getBuildLock().unlock();
+        }
     }
 
     /*
@@ -442,9 +460,7 @@ public class OpenStreetMapModule implements GraphBuilderModule {
                     walkableAreaBuilder.buildWithoutVisibility(group);
                 }
             } else {
-                for (AreaGroup group : areaGroups) {
-                    walkableAreaBuilder.buildWithVisibility(group, platformEntriesLinking);
-                }
+                walkableAreaBuilder.buildWithVisibility(areaGroups, platformEntriesLinking);
 
                 if(platformEntriesLinking){
                     List<Area> platforms = osmdb.getWalkableAreas().stream().
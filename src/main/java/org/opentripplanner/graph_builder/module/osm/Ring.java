@@ -6,7 +6,6 @@ import java.util.List;
 import java.util.Map;
 
 import gnu.trove.list.TLongList;
-import gnu.trove.map.TLongObjectMap;
 import org.opentripplanner.common.geometry.GeometryUtils;
 import org.opentripplanner.openstreetmap.model.OSMNode;
 import org.opentripplanner.visibility.VLPoint;
@@ -44,7 +43,7 @@ public class Ring {
         geometry = new VLPolygon(vertices);
     }
 
-    public Ring(TLongList osmNodes, TLongObjectMap<OSMNode> _nodes) {
+    public Ring(TLongList osmNodes, OSMNodeStore _nodes) {
         ArrayList<VLPoint> vertices = new ArrayList<VLPoint>();
         nodes = new ArrayList<>(osmNodes.size());
         osmNodes.forEach(nodeId -> {
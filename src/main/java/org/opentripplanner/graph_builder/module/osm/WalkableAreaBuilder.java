@@ -12,6 +12,7 @@ import org.locationtech.jts.geom.Polygon;
 import org.opentripplanner.common.geometry.GeometryUtils;
 import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
 import org.opentripplanner.common.model.P2;
+import org.opentripplanner.graph_builder.DataImportIssue;
 import org.opentripplanner.graph_builder.DataImportIssueStore;
 import org.opentripplanner.graph_builder.issues.AreaNotEpsilonValid;
 import org.opentripplanner.graph_builder.issues.AreaTooComplicated;
@@ -52,6 +53,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Theoretically, it is not correct to build the visibility graph on the joined polygon of areas
@@ -78,6 +80,9 @@ public class WalkableAreaBuilder {
 
     public static final double VISIBILITY_EPSILON = 0.000000001;
 
+    /** Log the area groups taking longer than this to compute the visibility of. */
+    private static final long SLOW_AREA_GROUP_LOG_THRESHOLD_MS = 1000;
+
     private Graph graph;
 
     private OSMDatabase osmdb;
@@ -142,26 +147,48 @@ public class WalkableAreaBuilder {
         }
     }
 
-    public void buildWithVisibility(AreaGroup group, boolean platformEntriesLinking) {
+    /**
+     * Build the visibility graphs of all the groups. The visibility computation is the slow part,
+     * so it is done for all groups in parallel first, without changing the graph. The edges are
+     * then added to the graph one group at a time, in the order of the groups.
+     */
+    public void buildWithVisibility(List<AreaGroup> groups, boolean platformEntriesLinking) {
+        long start = System.currentTimeMillis();
+        List<GroupVisibility> visibilities = groups.parallelStream()
+                .map(group -> computeVisibility(group, platformEntriesLinking))
+                .collect(Collectors.toList());
+        LOG.info(
+                "Computed visibility of {} area groups in {} ms.",
+                groups.size(), System.currentTimeMillis() - start
+        );
+        for (int i = 0; i < groups.size(); i++) {
+            addVisibilityEdges(groups.get(i), visibilities.get(i));
+        }
+    }
+
+    /**
+     * Find the pairs of nodes that can see each other in each ring of the group. This does not
+     * change the graph, so it can run in parallel for different groups.
+     */
+    private GroupVisibility computeVisibility(AreaGroup group, boolean platformEntriesLinking) {
+        long start = System.currentTimeMillis();
+        GroupVisibility result = new GroupVisibility();
         Set<OSMNode> startingNodes = new HashSet<OSMNode>();
-        Set<Vertex> startingVertices = new HashSet<Vertex>();
-        Set<Edge> edges = new HashSet<Edge>();
+        int nVisibilityPoints = 0;
 
         // create polygon and accumulate nodes for area
         for (Ring ring : group.outermostRings) {
+            RingVisibility ringVisibility = new RingVisibility(ring);
+            result.rings.add(ringVisibility);
 
-            AreaEdgeList edgeList = new AreaEdgeList();
             // the points corresponding to concave or hole vertices
             // or those linked to ways
             ArrayList<VLPoint> visibilityPoints = new ArrayList<VLPoint>();
             ArrayList<OSMNode> visibilityNodes = new ArrayList<OSMNode>();
-            HashSet<P2<OSMNode>> alreadyAddedEdges = new HashSet<P2<OSMNode>>();
             // we need to accumulate visibility points from all contained areas
             // inside this ring, but only for shared nodes; we don't care about
             // convexity, which we'll handle for the grouped area only.
 
-            // we also want to fill in the edges of this area anyway, because we can,
-            // and to avoid the numerical problems that they tend to cause
             for (Area area : group.areas) {
 
                 // public transform platforms will be handled separately if platformEntriesLinking
@@ -174,6 +201,7 @@ public class WalkableAreaBuilder {
                 if (!ring.toJtsPolygon().contains(area.toJTSMultiPolygon())) {
                     continue;
                 }
+                ringVisibility.areas.add(area);
 
                 // Add stops from public transit relations into the area
                 Collection<OSMNode> nodes = osmdb.getStopsInArea(area.parent);
@@ -185,18 +213,12 @@ public class WalkableAreaBuilder {
                 }
 
                 for (Ring outerRing : area.outermostRings) {
-                    for (int i = 0; i < outerRing.nodes.size(); ++i) {
-                        OSMNode node = outerRing.nodes.get(i);
-                        createEdgesForRingSegment(edges, edgeList, area, outerRing, i,
-                                alreadyAddedEdges);
+                    for (OSMNode node : outerRing.nodes) {
                         addtoVisibilityAndStartSets(startingNodes, visibilityPoints,
                                 visibilityNodes, node);
                     }
                     for (Ring innerRing : outerRing.holes) {
-                        for (int j = 0; j < innerRing.nodes.size(); ++j) {
-                            OSMNode node = innerRing.nodes.get(j);
-                            createEdgesForRingSegment(edges, edgeList, area, innerRing, j,
-                                    alreadyAddedEdges);
+                        for (OSMNode node : innerRing.nodes) {
                             addtoVisibilityAndStartSets(startingNodes, visibilityPoints,
                                     visibilityNodes, node);
                         }
@@ -228,61 +250,152 @@ public class WalkableAreaBuilder {
             // FIXME: temporary hard limit on size of
             // areas to prevent way explosion
             if (visibilityPoints.size() > MAX_AREA_NODES) {
-                issueStore.add(
-                        new AreaTooComplicated(
-                                group.getSomeOSMObject().getId(), visibilityPoints.size()));
+                ringVisibility.issue = new AreaTooComplicated(
+                        group.getSomeOSMObject().getId(), visibilityPoints.size());
                 continue;
             }
 
             if (!areaEnv.is_valid(VISIBILITY_EPSILON)) {
-                issueStore.add(
-                        new AreaNotEpsilonValid(group.getSomeOSMObject().getId()));
+                ringVisibility.issue = new AreaNotEpsilonValid(group.getSomeOSMObject().getId());
                 continue;
             }
+            nVisibilityPoints += visibilityPoints.size();
 
-            edgeList.setOriginalEdges(ring.toJtsPolygon());
-
-            createNamedAreas(edgeList, ring, group.areas);
-
-            OSMWithTags areaEntity = group.getSomeOSMObject();
-
+            GeometryFactory geometryFactory = GeometryUtils.getGeometryFactory();
             for (int i = 0; i < visibilityNodes.size(); ++i) {
                 OSMNode nodeI = visibilityNodes.get(i);
                 VisibilityPolygon visibilityPolygon = new VisibilityPolygon(
                         visibilityPoints.get(i), areaEnv, VISIBILITY_EPSILON);
                 Polygon poly = toJTSPolygon(visibilityPolygon);
+                if (poly == null) {
+                    continue;
+                }
                 for (int j = 0; j < visibilityNodes.size(); ++j) {
                     OSMNode nodeJ = visibilityNodes.get(j);
-                    P2<OSMNode> nodePair = new P2<OSMNode>(nodeI, nodeJ);
-                    if (alreadyAddedEdges.contains(nodePair))
-                        continue;
+                    Coordinate[] coordinates = new Coordinate[] {
+                            new Coordinate(nodeI.lon, nodeI.lat),
+                            new Coordinate(nodeJ.lon, nodeJ.lat) };
+                    LineString line = geometryFactory.createLineString(coordinates);
+                    if (poly.contains(line)) {
+                        ringVisibility.visibleNodes.add(new VisibleNodePair(
+                                nodeI, nodeJ,
+                                startingNodes.contains(nodeI), startingNodes.contains(nodeJ)
+                        ));
+                    }
+                }
+            }
+        }
 
-                    IntersectionVertex startEndpoint = handler.getVertexForOsmNode(nodeI,
-                            areaEntity);
-                    IntersectionVertex endEndpoint = handler.getVertexForOsmNode(nodeJ,
-                            areaEntity);
+        long time = System.currentTimeMillis() - start;
+        if (time > SLOW_AREA_GROUP_LOG_THRESHOLD_MS) {
+            LOG.info(
+                    "Computing visibility of area {} took {} ms ({} rings, {} visibility points).",
+                    group.getSomeOSMObject().getId(), time, group.outermostRings.size(),
+                    nVisibilityPoints
+            );
+        }
+        return result;
+    }
 
-                    Coordinate[] coordinates = new Coordinate[] { startEndpoint.getCoordinate(),
-                            endEndpoint.getCoordinate() };
-                    GeometryFactory geometryFactory = GeometryUtils.getGeometryFactory();
-                    LineString line = geometryFactory.createLineString(coordinates);
-                    if (poly != null && poly.contains(line)) {
+    /**
+     * Add the edges of the rings and the edges between the nodes that can see each other to the
+     * graph, then remove the edges not used by any shortest path between the starting nodes.
+     */
+    private void addVisibilityEdges(AreaGroup group, GroupVisibility visibility) {
+        Set<Vertex> startingVertices = new HashSet<Vertex>();
+        Set<Edge> edges = new HashSet<Edge>();
+        OSMWithTags areaEntity = group.getSomeOSMObject();
 
-                        createSegments(nodeI, nodeJ, startEndpoint, endEndpoint, group.areas,
-                                edgeList, edges);
-                        if (startingNodes.contains(nodeI)) {
-                            startingVertices.add(startEndpoint);
-                        }
-                        if (startingNodes.contains(nodeJ)) {
-                            startingVertices.add(endEndpoint);
+        for (RingVisibility ringVisibility : visibility.rings) {
+            Ring ring = ringVisibility.ring;
+            AreaEdgeList edgeList = new AreaEdgeList();
+            HashSet<P2<OSMNode>> alreadyAddedEdges = new HashSet<P2<OSMNode>>();
+
+            // we also want to fill in the edges of this area anyway, because we can,
+            // and to avoid the numerical problems that they tend to cause
+            for (Area area : ringVisibility.areas) {
+                for (Ring outerRing : area.outermostRings) {
+                    for (int i = 0; i < outerRing.nodes.size(); ++i) {
+                        createEdgesForRingSegment(edges, edgeList, area, outerRing, i,
+                                alreadyAddedEdges);
+                    }
+                    for (Ring innerRing : outerRing.holes) {
+                        for (int j = 0; j < innerRing.nodes.size(); ++j) {
+                            createEdgesForRingSegment(edges, edgeList, area, innerRing, j,
+                                    alreadyAddedEdges);
                         }
                     }
                 }
             }
+
+            if (ringVisibility.issue != null) {
+                issueStore.add(ringVisibility.issue);
+                continue;
+            }
+
+            edgeList.setOriginalEdges(ring.toJtsPolygon());
+
+            createNamedAreas(edgeList, ring, group.areas);
+
+            for (VisibleNodePair pair : ringVisibility.visibleNodes) {
+                P2<OSMNode> nodePair = new P2<OSMNode>(pair.nodeI, pair.nodeJ);
+                if (alreadyAddedEdges.contains(nodePair))
+                    continue;
+
+                IntersectionVertex startEndpoint = handler.getVertexForOsmNode(pair.nodeI,
+                        areaEntity);
+                IntersectionVertex endEndpoint = handler.getVertexForOsmNode(pair.nodeJ,
+                        areaEntity);
+
+                createSegments(pair.nodeI, pair.nodeJ, startEndpoint, endEndpoint, group.areas,
+                        edgeList, edges);
+                if (pair.startingNodeI) {
+                    startingVertices.add(startEndpoint);
+                }
+                if (pair.startingNodeJ) {
+                    startingVertices.add(endEndpoint);
+                }
+            }
         }
         pruneAreaEdges(startingVertices, edges);
     }
 
+    /** The result of the visibility computation for an area group. */
+    private static class GroupVisibility {
+        final List<RingVisibility> rings = new ArrayList<>();
+    }
+
+    private static class RingVisibility {
+        final Ring ring;
+
+        /** The areas of the group inside the ring. */
+        final List<Area> areas = new ArrayList<>();
+
+        /** The pairs of nodes that can see each other, in the order they were found. */
+        final List<VisibleNodePair> visibleNodes = new ArrayList<>();
+
+        /** Set if the visibility graph of the ring could not be built. */
+        DataImportIssue issue;
+
+        RingVisibility(Ring ring) {
+            this.ring = ring;
+        }
+    }
+
+    private static class VisibleNodePair {
+        final OSMNode nodeI;
+        final OSMNode nodeJ;
+        final boolean startingNodeI;
+        final boolean startingNodeJ;
+
+        VisibleNodePair(OSMNode nodeI, OSMNode nodeJ, boolean startingNodeI, boolean startingNodeJ) {
+            this.nodeI = nodeI;
+            this.nodeJ = nodeJ;
+            this.startingNodeI = startingNodeI;
+            this.startingNodeJ = startingNodeJ;
+        }
+    }
+
     class ListedEdgesOnly implements SkipEdgeStrategy {
         private Set<Edge> edges;
 
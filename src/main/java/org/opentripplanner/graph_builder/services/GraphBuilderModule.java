@@ -3,7 +3,9 @@ package org.opentripplanner.graph_builder.services;
 import org.opentripplanner.graph_builder.DataImportIssueStore;
 import org.opentripplanner.routing.graph.Graph;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 
 /** Modules that add elements to a graph. These are plugins to the GraphBuilder. */
 public interface GraphBuilderModule {
@@ -25,4 +27,26 @@ public interface GraphBuilderModule {
     /** Check that all inputs to the graphbuilder are valid; throw an exception if not. */
     public void checkInputs();
 
+    /** A list of ids of the parts of the graph this module builds, like "streets" or "transit". */
+    public default List<String> provides() {
+        return Collections.emptyList();
+    }
+
+    /** A list of ids of stages which must be provided before this stage */
+    public default List<String> getPrerequisites() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Return {@code true} if this module may run at the same time as other modules, as long as it
+     * does not depend on them, see {@code GraphBuilderModuleScheduler}. Such a module must hold
+     * the {@link Graph#getBuildLock()} while it changes the graph, so only the reading of the
+     * input data runs at the same time as other modules, and must not read or change anything
+     * built by modules it does not depend on. The default is {@code false}: the module runs
+     * alone, after all modules added before it.
+     */
+    public default boolean canRunConcurrently() {
+        return false;
+    }
+
 }
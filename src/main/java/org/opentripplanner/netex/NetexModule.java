@@ -15,8 +15,10 @@ import org.opentripplanner.routing.impl.DefaultFareServiceFactory;
 import org.opentripplanner.routing.services.FareServiceFactory;
 import org.opentripplanner.standalone.config.BuildConfig;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 
 /**
@@ -64,6 +66,16 @@ public class NetexModule implements GraphBuilderModule {
         this.netexBundles = netexBundles;
     }
 
+    public List<String> provides() {
+        return Collections.singletonList("transit");
+    }
+
+    /** The NeTEx module only builds the transit part of the graph, so it can run while the streets are built. */
+    @Override
+    public boolean canRunConcurrently() {
+        return true;
+    }
+
     @Override
     public void buildGraph(
             Graph graph,
@@ -71,7 +83,15 @@ public class NetexModule implements GraphBuilderModule {
             DataImportIssueStore issueStore
     ) {
 
-        graph.clearTimeZone();
+        // The streets may be built at the same time, the graph is only changed holding the lock
+        ReentrantLock buildLock = graph.getBuildLock();
+        buildLock.lock();
+        try {
+            graph.clearTimeZone();
+        }
+        finally {
+            buildLock.unlock();
+        }
         CalendarServiceData calendarServiceData = new CalendarServiceData();
 
         try {
@@ -88,36 +108,46 @@ public class NetexModule implements GraphBuilderModule {
 
                 OtpTransitService otpService = transitBuilder.build();
 
-
-
-                // TODO OTP2 - Move this into the AddTransitModelEntitiesToGraph
-                //           - and make sure thay also work with GTFS feeds - GTFS do no
-                //           - have operators and notice assignments.
-                graph.getOperators().addAll(otpService.getAllOperators());
-                graph.addNoticeAssignments(otpService.getNoticeAssignments());
-
-                GtfsFeedId feedId = new GtfsFeedId.Builder().id(netexFeedId).build();
-
-                AddTransitModelEntitiesToGraph.addToGraph(
-                        feedId, otpService, subwayAccessTime, graph
-                );
-
-                new GeometryAndBlockProcessor(
-                        otpService,
-                        fareServiceFactory,
-                        MAX_STOP_TO_SHAPE_SNAP_DISTANCE,
-                        maxInterlineDistance
-                ).run(graph, issueStore);
+                buildLock.lock();
+                try {
+                    // TODO OTP2 - Move this into the AddTransitModelEntitiesToGraph
+                    //           - and make sure thay also work with GTFS feeds - GTFS do no
+                    //           - have operators and notice assignments.
+                    graph.getOperators().addAll(otpService.getAllOperators());
+                    graph.addNoticeAssignments(otpService.getNoticeAssignments());
+
+                    GtfsFeedId feedId = new GtfsFeedId.Builder().id(netexFeedId).build();
+
+                    AddTransitModelEntitiesToGraph.addToGraph(
+                            feedId, otpService, subwayAccessTime, graph
+                    );
+
+                    new GeometryAndBlockProcessor(
+                            otpService,
+                            fareServiceFactory,
+                            MAX_STOP_TO_SHAPE_SNAP_DISTANCE,
+                            maxInterlineDistance
+                    ).run(graph, issueStore);
+                }
+                finally {
+                    buildLock.unlock();
+                }
             }
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
 
-        graph.putService(CalendarServiceData.class, calendarServiceData);
-        graph.updateTransitFeedValidity(calendarServiceData, issueStore);
+        buildLock.lock();
+        try {
+            graph.putService(CalendarServiceData.class, calendarServiceData);
+            graph.updateTransitFeedValidity(calendarServiceData, issueStore);
 
-        graph.hasTransit = true;
-        graph.calculateTransitCenter();
+            graph.hasTransit = true;
+            graph.calculateTransitCenter();
+        }
+        finally {
+            buildLock.unlock();
+        }
     }
 
     @Override
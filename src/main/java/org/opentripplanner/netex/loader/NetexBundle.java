@@ -45,20 +45,22 @@ public class NetexBundle implements Closeable {
     /** maps the NeTEx XML document to OTP transit model. */
     private NetexMapper otpMapper;
 
-    private NetexXmlParser xmlParser;
+    private ParallelNetexXmlParser xmlParser;
 
     private final String netexFeedId;
 
+    private final int parseThreads;
 
     public NetexBundle(
             String netexFeedId,
             CompositeDataSource source,
-            NetexDataSourceHierarchy hierarchy
-
+            NetexDataSourceHierarchy hierarchy,
+            int parseThreads
     ) {
         this.netexFeedId = netexFeedId;
         this.source = source;
         this.hierarchy = hierarchy;
+        this.parseThreads = parseThreads;
     }
 
     /** load the bundle, map it to the OTP transit model and return */
@@ -72,11 +74,18 @@ public class NetexBundle implements Closeable {
         OtpTransitServiceBuilder transitBuilder = new OtpTransitServiceBuilder();
 
         // init parser and mapper
-        xmlParser = new NetexXmlParser();
         otpMapper = new NetexMapper(transitBuilder, netexFeedId, deduplicator, issueStore);
 
-        // Load data
-        loadZipFileEntries();
+        // Load data, the XML documents are parsed ahead in the order they are loaded in
+        try (ParallelNetexXmlParser parser = new ParallelNetexXmlParser(
+                hierarchy.entriesInLoadOrder(), parseThreads
+        )) {
+            xmlParser = parser;
+            loadZipFileEntries();
+        }
+        finally {
+            xmlParser = null;
+        }
 
         return transitBuilder;
     }
@@ -153,7 +162,7 @@ public class NetexBundle implements Closeable {
         try {
             LOG.info("reading entity {}: {}", fileDescription, entry.name());
 
-            PublicationDeliveryStructure doc = xmlParser.parseXmlDoc(entry.asInputStream());
+            PublicationDeliveryStructure doc = xmlParser.parse(entry);
             NetexDocumentParser.parseAndPopulateIndex(index(), doc);
 
         } catch (JAXBException e) {
@@ -68,6 +68,19 @@ public class NetexDataSourceHierarchy {
         return groupEntries.values();
     }
 
+    /**
+     * All entries in the order they are loaded in: the shared files, and then for each group the
+     * shared group files followed by the individual group files.
+     */
+    List<DataSource> entriesInLoadOrder() {
+        List<DataSource> entries = new ArrayList<>(sharedEntries);
+        for (GroupEntries group : groupEntries.values()) {
+            entries.addAll(group.sharedEntries());
+            entries.addAll(group.independentEntries());
+        }
+        return entries;
+    }
+
 
     /**
      * Process the data source and distribute entries to {@code sharedEntries} and
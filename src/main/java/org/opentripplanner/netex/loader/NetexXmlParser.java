@@ -8,8 +8,15 @@ import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
 import java.io.InputStream;
 
-/** Simple wrapper to perform typesafe xml parsing and simple error handling. */
+/**
+ * Simple wrapper to perform typesafe xml parsing and simple error handling.
+ * <p>
+ * The JAXB context is expensive to create and thread safe, so it is shared. The unmarshaller is
+ * not thread safe, so an instance of this class must only be used by one thread at a time.
+ */
 class NetexXmlParser {
+    private static final JAXBContext CONTEXT = createContext();
+
     /** used to parse the XML. */
     private final Unmarshaller unmarshaller;
 
@@ -32,9 +39,16 @@ class NetexXmlParser {
     /** factory method for unmarshaller */
     private static Unmarshaller createUnmarshaller() {
         try {
-            return JAXBContext
-                    .newInstance(PublicationDeliveryStructure.class)
-                    .createUnmarshaller();
+            return CONTEXT.createUnmarshaller();
+        } catch (JAXBException e) {
+            // This is a programming error - not expected!
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static JAXBContext createContext() {
+        try {
+            return JAXBContext.newInstance(PublicationDeliveryStructure.class);
         } catch (JAXBException e) {
             // This is a programming error - not expected!
             // We abort early and also allow for this to happen in the constructor;
@@ -0,0 +1,125 @@
+package org.opentripplanner.netex.loader;
+
+import org.opentripplanner.datastore.DataSource;
+import org.rutebanken.netex.model.PublicationDeliveryStructure;
+
+import javax.xml.bind.JAXBException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Parse the XML documents of a NeTEx bundle ahead of the loading, on a pool of worker threads.
+ * Unmarshalling the XML is where most of the time is spent when a bundle is loaded, while
+ * populating the index and mapping the entities is cheap.
+ * <p>
+ * The documents are returned in the order the entries are loaded in, see
+ * {@link NetexDataSourceHierarchy}, so the index and the mapping are only used by the loading
+ * thread, and the result is the same as when the documents are parsed one at a time. Only
+ * parsing the XML is independent of the other files. The number of documents parsed ahead is
+ * limited, to bound the memory used.
+ * <p>
+ * With one thread, each document is parsed when it is requested, on the calling thread.
+ */
+class ParallelNetexXmlParser implements AutoCloseable {
+
+    private final int nThreads;
+
+    private final Iterator<DataSource> entries;
+
+    private final Deque<ParsedEntry> pending = new ArrayDeque<>();
+
+    private final ExecutorService threadPool;
+
+    /** Used when parsing on the calling thread only. */
+    private NetexXmlParser xmlParser;
+
+    /**
+     * @param entries all entries of the bundle, in the order they are loaded in.
+     */
+    ParallelNetexXmlParser(List<DataSource> entries, int nThreads) {
+        this.nThreads = Math.max(1, nThreads);
+        this.entries = entries.iterator();
+        this.threadPool = this.nThreads == 1 ? null : Executors.newFixedThreadPool(this.nThreads);
+    }
+
+    /**
+     * Return the document of the given entry. The entries must be requested in the order they
+     * were given to the constructor.
+     */
+    PublicationDeliveryStructure parse(DataSource entry) throws JAXBException {
+        if (threadPool == null) {
+            return parseOnCallingThread(entry);
+        }
+        fill();
+        ParsedEntry next = pending.pollFirst();
+        if (next == null || next.entry != entry) {
+            throw new IllegalStateException("NeTEx entry parsed out of order: " + entry.name());
+        }
+        fill();
+        return join(next.document);
+    }
+
+    @Override
+    public void close() {
+        if (threadPool != null) {
+            threadPool.shutdownNow();
+        }
+    }
+
+    private PublicationDeliveryStructure parseOnCallingThread(DataSource entry) throws JAXBException {
+        if (!entries.hasNext() || entries.next() != entry) {
+            throw new IllegalStateException("NeTEx entry parsed out of order: " + entry.name());
+        }
+        if (xmlParser == null) {
+            xmlParser = new NetexXmlParser();
+        }
+        return xmlParser.parseXmlDoc(entry.asInputStream());
+    }
+
+    private void fill() {
+        while (pending.size() < 2 * nThreads && entries.hasNext()) {
+            DataSource entry = entries.next();
+            // An unmarshaller is not thread safe, so each document gets its own
+            pending.add(new ParsedEntry(
+                    entry,
+                    threadPool.submit(() -> new NetexXmlParser().parseXmlDoc(entry.asInputStream()))
+            ));
+        }
+    }
+
+    private static PublicationDeliveryStructure join(Future<PublicationDeliveryStructure> future)
+            throws JAXBException {
+        try {
+            return future.get();
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof JAXBException) {
+                throw (JAXBException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Parsing NeTEx document failed: " + e.getMessage(), e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Parsing NeTEx documents interrupted.", e);
+        }
+    }
+
+    private static class ParsedEntry {
+        final DataSource entry;
+        final Future<PublicationDeliveryStructure> document;
+
+        ParsedEntry(DataSource entry, Future<PublicationDeliveryStructure> document) {
+            this.entry = entry;
+            this.document = document;
+        }
+    }
+}
@@ -200,6 +200,14 @@ public class BinaryOpenStreetMapParser extends BinaryParser {
         }
     }
 
+    /**
+     * Parse a decoded data block. The blocks must be passed in file order, from one thread at a
+     * time.
+     */
+    void parseBlock(Osmformat.PrimitiveBlock block) {
+        parse(block);
+    }
+
     /**
      * Set the phase to be parsed
      */
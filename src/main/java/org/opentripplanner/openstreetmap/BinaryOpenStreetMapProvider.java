@@ -1,6 +1,5 @@
 package org.opentripplanner.openstreetmap;
 
-import org.openstreetmap.osmosis.osmbinary.file.BlockInputStream;
 import org.opentripplanner.datastore.DataSource;
 import org.opentripplanner.datastore.FileType;
 import org.opentripplanner.datastore.file.FileDataSource;
@@ -17,12 +16,15 @@ import java.io.InputStream;
 /**
  * Parser for the OpenStreetMap PBF format. Parses files in three passes:
  * First the relations, then the ways, then the nodes are also loaded.
+ * <p>
+ * The blocks of the file are decoded in parallel, see {@link ParallelPbfBlockReader}.
  */
 public class BinaryOpenStreetMapProvider {
     private static final Logger LOG = LoggerFactory.getLogger(BinaryOpenStreetMapProvider.class);
 
     private final DataSource source;
     private final boolean cacheDataImMem;
+    private final int nDecoderThreads = Runtime.getRuntime().availableProcessors();
     private byte[] cachedBytes = null;
 
 
@@ -56,10 +58,10 @@ public class BinaryOpenStreetMapProvider {
 
     private void parsePhase(BinaryOpenStreetMapParser parser, OsmParserPhase phase) throws IOException {
         parser.setPhase(phase);
-        BlockInputStream in = null;
+        InputStream in = null;
         try {
-            in = new BlockInputStream(createInputStream(phase), parser);
-            in.process();
+            in = createInputStream(phase);
+            new ParallelPbfBlockReader(nDecoderThreads).process(in, parser);
         }
         finally {
             // Close
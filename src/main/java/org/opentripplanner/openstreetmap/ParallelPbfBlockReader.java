@@ -0,0 +1,185 @@
+package org.opentripplanner.openstreetmap;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import org.openstreetmap.osmosis.osmbinary.Fileformat;
+import org.openstreetmap.osmosis.osmbinary.Osmformat;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the blocks of an OSM PBF file and decodes them on a pool of worker threads. Inflating and
+ * decoding the protobuf blocks is where most of the time is spent when reading a PBF file, while
+ * building the OSM model from the decoded blocks is cheap.
+ * <p>
+ * The raw blocks are read on the calling thread, and then inflated and decoded by the workers.
+ * The decoded blocks are passed to the parser on the calling thread in file order, so the parser
+ * and the OSMDatabase are never used by more than one thread. The number of blocks read ahead is
+ * limited, to bound the memory used.
+ */
+class ParallelPbfBlockReader {
+
+    /** Limits from the PBF specification. */
+    private static final int MAX_BLOB_HEADER_SIZE = 64 * 1024;
+    private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+
+    private static final String HEADER_BLOCK = "OSMHeader";
+    private static final String DATA_BLOCK = "OSMData";
+
+    private final int nThreads;
+
+    ParallelPbfBlockReader(int nThreads) {
+        this.nThreads = Math.max(1, nThreads);
+    }
+
+    /** Read all blocks of the input, and pass them to the parser in order. */
+    void process(InputStream inputStream, BinaryOpenStreetMapParser parser) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        ExecutorService threadPool = Executors.newFixedThreadPool(nThreads);
+        Deque<Future<DecodedBlock>> pending = new ArrayDeque<>();
+        int maxPending = 4 * nThreads;
+        try {
+            for (RawBlock raw = readBlock(in); raw != null; raw = readBlock(in)) {
+                RawBlock block = raw;
+                pending.add(threadPool.submit(() -> decode(block)));
+                if (pending.size() >= maxPending) {
+                    join(pending.removeFirst()).parse(parser);
+                }
+            }
+            while (!pending.isEmpty()) {
+                join(pending.removeFirst()).parse(parser);
+            }
+            parser.complete();
+        }
+        finally {
+            threadPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Read the next block: a 4 byte length, a BlobHeader with the block type and the size of the
+     * blob, and the still compressed blob.
+     *
+     * @return the block, or {@code null} at the end of the input.
+     */
+    private static RawBlock readBlock(DataInputStream in) throws IOException {
+        int headerSize;
+        try {
+            headerSize = in.readInt();
+        }
+        catch (EOFException e) {
+            return null;
+        }
+        if (headerSize < 0 || headerSize > MAX_BLOB_HEADER_SIZE) {
+            throw new IOException("Invalid PBF blob header size: " + headerSize);
+        }
+        byte[] headerBytes = new byte[headerSize];
+        in.readFully(headerBytes);
+        Fileformat.BlobHeader header = Fileformat.BlobHeader.parseFrom(headerBytes);
+
+        int blobSize = header.getDatasize();
+        if (blobSize < 0 || blobSize > MAX_BLOB_SIZE) {
+            throw new IOException("Invalid PBF blob size: " + blobSize);
+        }
+        byte[] blob = new byte[blobSize];
+        in.readFully(blob);
+        return new RawBlock(header.getType(), blob);
+    }
+
+    /** Inflate and decode a block, this is done on the worker threads. */
+    private static DecodedBlock decode(RawBlock raw) throws IOException {
+        if (HEADER_BLOCK.equals(raw.type)) {
+            return new DecodedBlock(Osmformat.HeaderBlock.parseFrom(blobData(raw.blob)), null);
+        }
+        if (DATA_BLOCK.equals(raw.type)) {
+            return new DecodedBlock(null, Osmformat.PrimitiveBlock.parseFrom(blobData(raw.blob)));
+        }
+        // The specification says that unknown block types should be skipped
+        return new DecodedBlock(null, null);
+    }
+
+    private static ByteString blobData(byte[] bytes) throws IOException {
+        Fileformat.Blob blob = Fileformat.Blob.parseFrom(bytes);
+        if (blob.hasRaw()) {
+            return blob.getRaw();
+        }
+        if (!blob.hasZlibData()) {
+            throw new IOException("Unsupported PBF blob compression, only raw and zlib are supported.");
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(blob.getZlibData().toByteArray());
+            byte[] data = new byte[blob.getRawSize()];
+            inflater.inflate(data);
+            if (!inflater.finished()) {
+                throw new IOException("PBF blob is larger than its declared size.");
+            }
+            return UnsafeByteOperations.unsafeWrap(data);
+        }
+        catch (DataFormatException e) {
+            throw new IOException("Unable to inflate PBF blob: " + e.getMessage(), e);
+        }
+        finally {
+            inflater.end();
+        }
+    }
+
+    private static DecodedBlock join(Future<DecodedBlock> future) throws IOException {
+        try {
+            return future.get();
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Decoding PBF block failed: " + e.getMessage(), e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Reading PBF file interrupted.", e);
+        }
+    }
+
+    private static class RawBlock {
+        final String type;
+        final byte[] blob;
+
+        RawBlock(String type, byte[] blob) {
+            this.type = type;
+            this.blob = blob;
+        }
+    }
+
+    private static class DecodedBlock {
+        final Osmformat.HeaderBlock header;
+        final Osmformat.PrimitiveBlock data;
+
+        DecodedBlock(Osmformat.HeaderBlock header, Osmformat.PrimitiveBlock data) {
+            this.header = header;
+            this.data = data;
+        }
+
+        void parse(BinaryOpenStreetMapParser parser) {
+            if (header != null) {
+                parser.parse(header);
+            }
+            else if (data != null) {
+                parser.parseBlock(data);
+            }
+        }
+    }
+}
@@ -40,10 +40,16 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Does a complete transit search, including access and egress legs.
  * <p>
+ * If the router has a street routing thread pool, the direct, access and egress street searches
+ * run in parallel. The transit search starts as soon as the access and egress searches are done,
+ * while the direct street search may still be running.
+ * <p>
  * This class has a request scope, hence the "Worker" name.
  */
 public class RoutingWorker {
@@ -89,14 +95,30 @@ public class RoutingWorker {
 
         this.debugAggregator.finishedPrecalculating();
 
-        // Direct street routing
-        try {
-            itineraries.addAll(DirectStreetRouter.route(router, request));
-        } catch (RoutingValidationException e) {
-            routingErrors.addAll(e.getRoutingErrors());
+        // Direct street routing, this is done in parallel with the transit routing if enabled
+        Future<List<Itinerary>> directStreetSearch = null;
+        if (router.isStreetRoutingMultiThreaded()) {
+            // The routing context must be created before the searches are forked, the street
+            // searches create their sub-requests from it. If it fails the direct street search
+            // would fail the same way, so it is skipped.
+            try {
+                request.setRoutingContext(router.graph);
+                directStreetSearch = router.streetRoutingThreadPool().submit(
+                    () -> routeDirectStreet(router)
+                );
+            } catch (RoutingValidationException e) {
+                routingErrors.addAll(e.getRoutingErrors());
+            }
+        }
+        else {
+            try {
+                itineraries.addAll(routeDirectStreet(router));
+            } catch (RoutingValidationException e) {
+                routingErrors.addAll(e.getRoutingErrors());
+            }
         }
 
-        this.debugAggregator.finishedDirectStreetRouter();
+        this.debugAggregator.startedTransitRouter();
 
         // Transit routing
         try {
@@ -107,6 +129,15 @@ public class RoutingWorker {
 
         this.debugAggregator.finishedTransitRouter();
 
+        if (directStreetSearch != null) {
+            try {
+                // Keep the direct street itineraries first, as in the sequential case
+                itineraries.addAll(0, join(directStreetSearch));
+            } catch (RoutingValidationException e) {
+                routingErrors.addAll(e.getRoutingErrors());
+            }
+        }
+
         // Filter itineraries
         itineraries = filterItineraries(itineraries);
         LOG.debug("Return TripPlan with {} itineraries", itineraries.size());
@@ -149,8 +180,20 @@ public class RoutingWorker {
         this.debugAggregator.finishedPatternFiltering();
 
         // Prepare access/egress transfers
-        Collection<NearbyStop> accessStops = AccessEgressRouter.streetSearch(request, false, 2000);
-        Collection<NearbyStop> egressStops = AccessEgressRouter.streetSearch(request, true, 2000);
+        Collection<NearbyStop> accessStops;
+        Collection<NearbyStop> egressStops;
+
+        if (router.isStreetRoutingMultiThreaded()) {
+            Future<Collection<NearbyStop>> egressSearch = router.streetRoutingThreadPool().submit(
+                () -> AccessEgressRouter.streetSearch(request, true, 2000)
+            );
+            accessStops = AccessEgressRouter.streetSearch(request, false, 2000);
+            egressStops = join(egressSearch);
+        }
+        else {
+            accessStops = AccessEgressRouter.streetSearch(request, false, 2000);
+            egressStops = AccessEgressRouter.streetSearch(request, true, 2000);
+        }
 
         AccessEgressMapper accessEgressMapper = new AccessEgressMapper(transitLayer.getStopIndex());
         Collection<AccessEgress> accessTransfers = accessEgressMapper.mapNearbyStops(accessStops, false);
@@ -233,6 +276,35 @@ public class RoutingWorker {
         return itineraries;
     }
 
+    private List<Itinerary> routeDirectStreet(Router router) {
+        try {
+            return DirectStreetRouter.route(router, request);
+        }
+        finally {
+            this.debugAggregator.finishedDirectStreetRouter();
+        }
+    }
+
+    /**
+     * Wait for a street search running in the router street routing thread pool. Runtime
+     * exceptions, like the {@link RoutingValidationException}, are re-thrown in the calling thread.
+     */
+    private static <T> T join(Future<T> streetSearch) {
+        try {
+            return streetSearch.get();
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Street search failed: " + e.getMessage(), e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Street search interrupted.", e);
+        }
+    }
+
     private List<Itinerary> filterItineraries(List<Itinerary> itineraries) {
         ItineraryFilter filterChain = RoutingRequestToFilterChainMapper.createFilterChain(
             request, filterOnLatestDepartureTime, it -> firstRemovedItinerary = it
@@ -163,7 +163,9 @@ public class AStar {
 
         runState.nVisited += 1;
         
-        Collection<Edge> edges = runState.options.arriveBy ? runState.u_vertex.getIncoming() : runState.u_vertex.getOutgoing();
+        Collection<Edge> edges = runState.options.arriveBy
+                ? runState.rctx.getIncoming(runState.u_vertex)
+                : runState.rctx.getOutgoing(runState.u_vertex);
         for (Edge edge : edges) {
 
             if (skipEdgeStrategy != null &&
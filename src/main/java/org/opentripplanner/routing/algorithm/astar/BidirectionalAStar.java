@@ -0,0 +1,257 @@
+package org.opentripplanner.routing.algorithm.astar;
+
+import org.opentripplanner.common.pqueue.BinHeap;
+import org.opentripplanner.routing.algorithm.astar.strategies.EuclideanRemainingWeightHeuristic;
+import org.opentripplanner.routing.algorithm.astar.strategies.RemainingWeightHeuristic;
+import org.opentripplanner.routing.api.request.RoutingRequest;
+import org.opentripplanner.routing.core.RoutingContext;
+import org.opentripplanner.routing.core.State;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.spt.GraphPath;
+import org.opentripplanner.routing.spt.ShortestPathTree;
+import org.opentripplanner.util.DateUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Find the shortest path between the origin and the target of a street search by running two A*
+ * searches at the same time, one from the origin in the direction of the request and one from the
+ * target in the opposite direction, until they meet in the middle. On long searches this visits
+ * far fewer states than a single search, since each frontier only grows to about half the
+ * distance.
+ * <p>
+ * Each search uses its own Euclidean heuristic towards the other endpoint (the "symmetric"
+ * bidirectional A*). Whenever a vertex reached by one search has states in the other search, the
+ * sum of their weights is a candidate path weight. The search stops when the smallest key in
+ * either queue is not lower than the best candidate, since no shorter path can be found after that.
+ * <p>
+ * The two halves are joined by traversing the edges of the reverse half again, starting from the
+ * state of the search in the request direction. This applies the turn restrictions and turn costs
+ * at the meeting vertex and the real times on the reverse half, so time-dependent edges and
+ * restrictions are evaluated at the right time. A candidate that can not be traversed this way is
+ * dropped, and the next best candidate is tried.
+ * <p>
+ * The reverse search does not know the real time at the target, so it uses an estimate. This is
+ * only correct if the weights of the edges do not depend on the time, which is the case for
+ * single-mode walk and bicycle searches without rental or parking. Use the unidirectional
+ * {@link AStar} for other searches.
+ * <p>
+ * Like {@link AStar}, one instance should be used per search.
+ */
+public class BidirectionalAStar {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BidirectionalAStar.class);
+
+    private Search forward;
+    private Search reverse;
+
+    /** The meetings of the two searches, in no particular order. */
+    private final List<Meeting> meetings = new ArrayList<>();
+
+    private double bestMeetingWeight = Double.POSITIVE_INFINITY;
+
+    /**
+     * Search for the best path between the endpoints of the routing context of the request.
+     *
+     * @return the best path, an empty list if there is no path or the search timed out, or
+     *         {@code null} if the searches met but no joined path could be traversed. The caller
+     *         should then fall back on a unidirectional search.
+     */
+    public List<GraphPath> getPathsToTarget(RoutingRequest options, double relTimeoutSeconds) {
+        long abortTime = DateUtils.absoluteTimeout(relTimeoutSeconds);
+        RoutingContext rctx = options.rctx;
+
+        RoutingRequest reverseOptions = options.reversedClone();
+        reverseOptions.dateTime = estimateReverseStartTime(options);
+        reverseOptions.worstTime = reverseOptions.arriveBy ? 0 : Long.MAX_VALUE;
+        reverseOptions.rctx = rctx.createReversedContext(reverseOptions);
+
+        forward = new Search(options, rctx.remainingWeightHeuristic, abortTime);
+        reverse = new Search(reverseOptions, new EuclideanRemainingWeightHeuristic(), abortTime);
+
+        while (!forward.pq.empty() && !reverse.pq.empty()) {
+            if (abortTime < Long.MAX_VALUE && System.currentTimeMillis() > abortTime) {
+                LOG.warn(
+                        "Bidirectional search timeout. origin={} target={}",
+                        rctx.fromVertices, rctx.toVertices
+                );
+                rctx.aborted = true;
+                return Collections.emptyList();
+            }
+            if (forward.pq.peek_min_key() >= bestMeetingWeight
+                    || reverse.pq.peek_min_key() >= bestMeetingWeight) {
+                break;
+            }
+            // Expand the smallest frontier to keep the two searches balanced
+            if (forward.pq.size() <= reverse.pq.size()) {
+                iterate(forward, reverse);
+            }
+            else {
+                iterate(reverse, forward);
+            }
+        }
+        LOG.debug(
+                "Bidirectional search visited {} + {} states, {} meetings",
+                forward.nVisited, reverse.nVisited, meetings.size()
+        );
+
+        if (meetings.isEmpty()) {
+            return Collections.emptyList();
+        }
+        meetings.sort(Comparator.comparingDouble(m -> m.weight));
+        for (Meeting meeting : meetings) {
+            State joined = join(meeting.forwardState, meeting.reverseState);
+            if (joined != null) {
+                return Collections.singletonList(new GraphPath(joined, true));
+            }
+        }
+        LOG.debug("None of the {} meetings could be joined.", meetings.size());
+        return null;
+    }
+
+    private void iterate(Search search, Search other) {
+        State u = search.pq.extract_min();
+        if (!search.spt.visit(u)) {
+            return;
+        }
+        search.nVisited++;
+        Vertex u_vertex = u.getVertex();
+
+        List<State> otherStates = other.spt.getStates(u_vertex);
+        if (otherStates != null && u.isFinal()) {
+            for (State o : otherStates) {
+                if (o.isFinal()) {
+                    addMeeting(search == forward ? u : o, search == forward ? o : u);
+                }
+            }
+        }
+
+        RoutingRequest options = search.options;
+        Collection<Edge> edges = options.arriveBy
+                ? options.rctx.getIncoming(u_vertex)
+                : options.rctx.getOutgoing(u_vertex);
+
+        for (Edge edge : edges) {
+            for (State v = edge.traverse(u); v != null; v = v.getNextResult()) {
+                double remaining_w = search.heuristic.estimateRemainingWeight(v);
+                if (remaining_w < 0 || Double.isInfinite(remaining_w)) {
+                    continue;
+                }
+                double estimate = v.getWeight() + remaining_w;
+                if (estimate > options.maxWeight || estimate >= bestMeetingWeight) {
+                    continue;
+                }
+                if (search == forward && isWorstTimeExceeded(v, options)) {
+                    continue;
+                }
+                if (search.spt.add(v)) {
+                    search.pq.insert(v, estimate);
+                }
+            }
+        }
+    }
+
+    private void addMeeting(State forwardState, State reverseState) {
+        double weight = forwardState.getWeight() + reverseState.getWeight();
+        meetings.add(new Meeting(forwardState, reverseState, weight));
+        if (weight < bestMeetingWeight) {
+            bestMeetingWeight = weight;
+        }
+    }
+
+    /**
+     * Continue the forward state along the edges of the reverse state path, back to the start of
+     * the reverse search. Returns {@code null} if an edge can not be traversed, for example because
+     * of a turn restriction at the meeting vertex.
+     */
+    private State join(State forwardState, State reverseState) {
+        State s = forwardState;
+        for (State r = reverseState; r.getBackState() != null; r = r.getBackState()) {
+            s = traverse(r.getBackEdge(), s, r);
+            if (s == null) {
+                return null;
+            }
+        }
+        if (!s.isFinal() || isWorstTimeExceeded(s, forward.options)) {
+            return null;
+        }
+        return s;
+    }
+
+    /**
+     * Traverse the edge, preferring the result with the same mode as the reverse search used,
+     * for example riding rather than walking the bike.
+     */
+    private static State traverse(Edge edge, State s, State reverseState) {
+        State first = edge.traverse(s);
+        for (State v = first; v != null; v = v.getNextResult()) {
+            if (v.getBackMode() == reverseState.getBackMode()) {
+                return v;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * The reverse search starts at the time the forward search is expected to reach the target,
+     * assuming a straight line at the maximum street speed.
+     */
+    private static long estimateReverseStartTime(RoutingRequest options) {
+        RemainingWeightHeuristic heuristic = new EuclideanRemainingWeightHeuristic();
+        heuristic.initialize(options, Long.MAX_VALUE);
+        State origin = new State(options);
+        long seconds = (long) heuristic.estimateRemainingWeight(origin);
+        return options.arriveBy ? options.dateTime - seconds : options.dateTime + seconds;
+    }
+
+    private static boolean isWorstTimeExceeded(State v, RoutingRequest opt) {
+        if (opt.arriveBy)
+            return v.getTimeSeconds() < opt.worstTime;
+        else
+            return v.getTimeSeconds() > opt.worstTime;
+    }
+
+    /** The state of one of the two searches. */
+    private static class Search {
+        final RoutingRequest options;
+        final RemainingWeightHeuristic heuristic;
+        final ShortestPathTree spt;
+        final BinHeap<State> pq;
+        int nVisited = 0;
+
+        Search(RoutingRequest options, RemainingWeightHeuristic heuristic, long abortTime) {
+            this.options = options;
+            this.heuristic = heuristic;
+            this.heuristic.initialize(options, abortTime);
+            this.spt = options.getNewShortestPathTree();
+
+            int initialSize = options.rctx.graph.getVertices().size();
+            initialSize = (int) Math.ceil(2 * (Math.sqrt((double) initialSize + 1)));
+            this.pq = new BinHeap<>(initialSize);
+
+            for (State initialState : State.getStates(options)) {
+                spt.add(initialState);
+                pq.insert(initialState, 0);
+            }
+        }
+    }
+
+    private static class Meeting {
+        final State forwardState;
+        final State reverseState;
+        final double weight;
+
+        Meeting(State forwardState, State reverseState, double weight) {
+            this.forwardState = forwardState;
+            this.reverseState = reverseState;
+            this.weight = weight;
+        }
+    }
+}
@@ -8,6 +8,8 @@ import org.opentripplanner.routing.edgetype.FreeEdge;
 import org.opentripplanner.routing.graph.Edge;
 import org.opentripplanner.routing.graph.Vertex;
 
+import java.util.Collection;
+
 /**
  * A Euclidean remaining weight strategy that takes into account transit boarding costs where applicable.
  * 
@@ -28,8 +30,9 @@ public class EuclideanRemainingWeightHeuristic implements RemainingWeightHeurist
         Vertex target = req.rctx.toVertices.iterator().next();
         maxStreetSpeed = req.getStreetSpeedUpperBound();
 
-        if (target.getDegreeIn() == 1) {
-            Edge edge = Iterables.getOnlyElement(target.getIncoming());
+        Collection<Edge> incoming = req.rctx.getIncoming(target);
+        if (incoming.size() == 1) {
+            Edge edge = Iterables.getOnlyElement(incoming);
             if (edge instanceof FreeEdge) {
                 target = edge.getFromVertex();
             }
@@ -620,7 +620,7 @@ public abstract class GraphPathToItineraryMapper {
                     if (edge instanceof StreetEdge) {
                         // the next edges will be PlainStreetEdges, we hope
                         double angleDiff = getAbsoluteAngleDiff(thisAngle, lastAngle);
-                        for (Edge alternative : backState.getVertex().getOutgoingStreetEdges()) {
+                        for (Edge alternative : getOutgoingStreetEdges(backState, backState.getVertex())) {
                             if (alternative.getName(requestedLocale).equals(streetName)) {
                                 // alternatives that have the same name
                                 // are usually caused by street splits
@@ -639,9 +639,10 @@ public abstract class GraphPathToItineraryMapper {
                         // FIXME: this code might be wrong with the removal of the edge-based graph
                         State twoStatesBack = backState.getBackState();
                         Vertex backVertex = twoStatesBack.getVertex();
-                        for (Edge alternative : backVertex.getOutgoingStreetEdges()) {
-                            List<Edge> alternatives = alternative.getToVertex()
-                                    .getOutgoingStreetEdges();
+                        for (Edge alternative : getOutgoingStreetEdges(backState, backVertex)) {
+                            List<Edge> alternatives = getOutgoingStreetEdges(
+                                    backState, alternative.getToVertex()
+                            );
                             if (alternatives.size() == 0) {
                                 continue; // this is not an alternative
                             }
@@ -779,6 +780,20 @@ public abstract class GraphPathToItineraryMapper {
         return steps;
     }
 
+    /**
+     * Get the street edges leading from the given vertex, including the temporary edges of the
+     * request of the state.
+     */
+    private static List<Edge> getOutgoingStreetEdges(State state, Vertex vertex) {
+        List<Edge> result = new ArrayList<>();
+        for (Edge out : state.getOutgoingEdges(vertex)) {
+            if (out instanceof StreetEdge) {
+                result.add(out);
+            }
+        }
+        return result;
+    }
+
     private static boolean isLink(Edge edge) {
         return edge instanceof StreetEdge && (((StreetEdge)edge).getStreetClass() & StreetEdge.CLASS_LINK) == StreetEdge.CLASS_LINK;
     }
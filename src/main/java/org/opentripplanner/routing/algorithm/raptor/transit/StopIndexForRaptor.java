@@ -38,6 +38,18 @@ public class StopIndexForRaptor {
         this.stopBoardAlightCosts = createStopBoardAlightCosts(stopsByIndex, tuningParameters);
     }
 
+    /**
+     * Create a copy of the given index with the board/alight costs of the given tuning parameters.
+     * The stops keep their index, so the stop indexes of the trip patterns stay valid. This is used
+     * for a transit layer saved with the graph, which may be served with other tuning parameters
+     * than it was built with.
+     */
+    public StopIndexForRaptor(StopIndexForRaptor other, TransitTuningParameters tuningParameters) {
+        this.stopsByIndex = other.stopsByIndex;
+        this.indexByStop.putAll(other.indexByStop);
+        this.stopBoardAlightCosts = createStopBoardAlightCosts(stopsByIndex, tuningParameters);
+    }
+
     /**
      * Create map between stop and index used by Raptor to stop objects in original graph
      */
@@ -2,21 +2,42 @@ package org.opentripplanner.routing.algorithm.raptor.transit;
 
 import org.opentripplanner.model.Stop;
 
+import javax.annotation.Nullable;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 public class TransitLayer {
 
   /**
    * Transit data required for routing
    */
-  private final HashMap<LocalDate, List<TripPatternForDate>> tripPatternsForDate;
+  private final ConcurrentHashMap<LocalDate, List<TripPatternForDate>> tripPatternsForDate;
+
+  /**
+   * Maps the trip patterns of a date that is not in {@link #tripPatternsForDate} when it is first
+   * requested, or {@code null} if all dates are mapped up front. The function returns
+   * {@code null} for a date without service. This is not saved with the graph.
+   */
+  @Nullable
+  private final transient Function<LocalDate, List<TripPatternForDate>> tripPatternsForDateMapper;
+
+  /**
+   * The scheduled transit layer of a realtime transit layer, or {@code null} if this is not a
+   * realtime transit layer. A realtime transit layer only holds the dates with realtime updates,
+   * the other dates are taken from the scheduled transit layer without being stored here, so they
+   * are removed together with the dates of the scheduled transit layer.
+   */
+  @Nullable
+  private final transient TransitLayer scheduledTransitLayer;
 
   /**
    * Index of outer list is from stop index, inner list index has no specific meaning. To stop index
@@ -33,15 +54,32 @@ public class TransitLayer {
 
   /**
    * Makes a shallow copy of the TransitLayer, except for the tripPatternsForDate, where a shallow
-   * copy of the HashMap is made. This is sufficient, as the TransitLayerUpdater will replace
-   * entire keys and their values in the map.
+   * copy of the map is made. This is sufficient, as the TransitLayerUpdater and the date window
+   * will replace or remove entire keys and their values in the map.
    */
   public TransitLayer(TransitLayer transitLayer) {
     this(
         transitLayer.tripPatternsForDate,
         transitLayer.transferByStopIndex,
         transitLayer.stopIndex,
-        transitLayer.transitDataZoneId
+        transitLayer.transitDataZoneId,
+        transitLayer.tripPatternsForDateMapper,
+        transitLayer.scheduledTransitLayer
+    );
+  }
+
+  /**
+   * Makes a shallow copy of the TransitLayer, using the given stop index. The stop index must
+   * contain the same stops, with the same indexes.
+   */
+  public TransitLayer(TransitLayer transitLayer, StopIndexForRaptor stopIndex) {
+    this(
+        transitLayer.tripPatternsForDate,
+        transitLayer.transferByStopIndex,
+        stopIndex,
+        transitLayer.transitDataZoneId,
+        transitLayer.tripPatternsForDateMapper,
+        transitLayer.scheduledTransitLayer
     );
   }
 
@@ -51,10 +89,76 @@ public class TransitLayer {
       StopIndexForRaptor stopIndex,
       ZoneId transitDataZoneId
   ) {
-    this.tripPatternsForDate = new HashMap<>(tripPatternsForDate);
+    this(tripPatternsForDate, transferByStopIndex, stopIndex, transitDataZoneId, null);
+  }
+
+  /**
+   * Create a transit layer with some of the dates mapped, the other dates are mapped by the given
+   * function when they are requested.
+   */
+  public TransitLayer(
+      Map<LocalDate, List<TripPatternForDate>> tripPatternsForDate,
+      List<List<Transfer>> transferByStopIndex,
+      StopIndexForRaptor stopIndex,
+      ZoneId transitDataZoneId,
+      @Nullable Function<LocalDate, List<TripPatternForDate>> tripPatternsForDateMapper
+  ) {
+    this(
+        tripPatternsForDate,
+        transferByStopIndex,
+        stopIndex,
+        transitDataZoneId,
+        tripPatternsForDateMapper,
+        null
+    );
+  }
+
+  private TransitLayer(
+      Map<LocalDate, List<TripPatternForDate>> tripPatternsForDate,
+      List<List<Transfer>> transferByStopIndex,
+      StopIndexForRaptor stopIndex,
+      ZoneId transitDataZoneId,
+      @Nullable Function<LocalDate, List<TripPatternForDate>> tripPatternsForDateMapper,
+      @Nullable TransitLayer scheduledTransitLayer
+  ) {
+    this.tripPatternsForDate = new ConcurrentHashMap<>(tripPatternsForDate);
     this.transferByStopIndex = transferByStopIndex;
     this.stopIndex = stopIndex;
     this.transitDataZoneId = transitDataZoneId;
+    this.tripPatternsForDateMapper = tripPatternsForDateMapper;
+    this.scheduledTransitLayer = scheduledTransitLayer;
+  }
+
+  /**
+   * Create a realtime transit layer without any realtime updates. All dates are taken from this
+   * transit layer when they are requested, so the two layers share the trip patterns of the dates
+   * without realtime updates.
+   */
+  public TransitLayer createRealtimeCopy() {
+    return new TransitLayer(
+        Collections.emptyMap(),
+        transferByStopIndex,
+        stopIndex,
+        transitDataZoneId,
+        null,
+        this
+    );
+  }
+
+  /**
+   * Makes a shallow copy of the given realtime transit layer, which takes the dates without
+   * realtime updates from this transit layer. This is used when this transit layer replaces the
+   * scheduled transit layer that the realtime transit layer was copied from.
+   */
+  public TransitLayer createRealtimeCopy(TransitLayer realtimeTransitLayer) {
+    return new TransitLayer(
+        realtimeTransitLayer.tripPatternsForDate,
+        realtimeTransitLayer.transferByStopIndex,
+        realtimeTransitLayer.stopIndex,
+        realtimeTransitLayer.transitDataZoneId,
+        null,
+        this
+    );
   }
 
   public int getIndexByStop(Stop stop) {
@@ -69,8 +173,18 @@ public class TransitLayer {
     return this.stopIndex;
   }
 
+  /**
+   * The service dates with trip patterns mapped in the transit layer. If the transit layer maps
+   * dates when they are requested, other dates may be available. A realtime transit layer only
+   * has the dates with realtime updates.
+   */
+  public Set<LocalDate> getDates() {
+    return Collections.unmodifiableSet(tripPatternsForDate.keySet());
+  }
+
   public Collection<TripPatternForDate> getTripPatternsForDate(LocalDate date) {
-    return tripPatternsForDate.getOrDefault(date, Collections.emptyList());
+    List<TripPatternForDate> tripPatterns = tripPatternsForDate(date);
+    return tripPatterns != null ? tripPatterns : Collections.emptyList();
   }
 
   /**
@@ -89,8 +203,8 @@ public class TransitLayer {
   }
 
   public List<TripPatternForDate> getTripPatternsForDateCopy(LocalDate date) {
-    List<TripPatternForDate> tripPatternForDate = tripPatternsForDate.get(date);
-    return tripPatternForDate != null ? new ArrayList<>(tripPatternsForDate.get(date)) : null;
+    List<TripPatternForDate> tripPatternForDate = tripPatternsForDate(date);
+    return tripPatternForDate != null ? new ArrayList<>(tripPatternForDate) : null;
   }
 
   public List<List<Transfer>> getTransferByStopIndex() {
@@ -98,13 +212,75 @@ public class TransitLayer {
   }
 
   /**
-   * Replaces all the TripPatternForDates for a single date. This is an atomic operation according
-   * to the HashMap implementation.
+   * Replaces all the TripPatternForDates for a single date. A realtime transit layer keeps the
+   * date from then on, instead of taking it from the scheduled transit layer. This is an atomic
+   * operation according to the ConcurrentHashMap implementation.
    */
   public void replaceTripPatternsForDate(
       LocalDate date,
       List<TripPatternForDate> tripPatternForDates
   ) {
-    this.tripPatternsForDate.replace(date, tripPatternForDates);
+    this.tripPatternsForDate.put(date, tripPatternForDates);
+  }
+
+  /**
+   * Remove the dates outside the given window, and map the dates in the window that are not
+   * mapped yet. This does nothing if the transit layer does not map dates when they are
+   * requested, as the removed dates could not be mapped again.
+   *
+   * @return the dates removed.
+   */
+  public Set<LocalDate> updateDateWindow(LocalDate firstDate, LocalDate lastDate) {
+    if (tripPatternsForDateMapper == null) {
+      return Collections.emptySet();
+    }
+    Set<LocalDate> removed = new HashSet<>();
+    for (LocalDate date : tripPatternsForDate.keySet()) {
+      if (date.isBefore(firstDate) || date.isAfter(lastDate)) {
+        tripPatternsForDate.remove(date);
+        removed.add(date);
+      }
+    }
+    for (LocalDate date = firstDate; !date.isAfter(lastDate); date = date.plusDays(1)) {
+      tripPatternsForDate(date);
+    }
+    return removed;
+  }
+
+  /**
+   * Remove the dates before the given date. This does nothing if the transit layer does not map
+   * dates when they are requested, and is not a realtime transit layer.
+   *
+   * @return the dates removed.
+   */
+  public Set<LocalDate> removeDatesBefore(LocalDate firstDate) {
+    if (tripPatternsForDateMapper == null && scheduledTransitLayer == null) {
+      return Collections.emptySet();
+    }
+    Set<LocalDate> removed = new HashSet<>();
+    for (LocalDate date : tripPatternsForDate.keySet()) {
+      if (date.isBefore(firstDate)) {
+        tripPatternsForDate.remove(date);
+        removed.add(date);
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * The trip patterns of the given date, mapping them if needed. A realtime transit layer takes
+   * the dates without realtime updates from the scheduled transit layer. Returns {@code null} if
+   * there is no service on the date.
+   */
+  @Nullable
+  private List<TripPatternForDate> tripPatternsForDate(LocalDate date) {
+    List<TripPatternForDate> tripPatterns = tripPatternsForDate.get(date);
+    if (tripPatterns == null && scheduledTransitLayer != null) {
+      return scheduledTransitLayer.tripPatternsForDate(date);
+    }
+    if (tripPatterns == null && tripPatternsForDateMapper != null) {
+      tripPatterns = tripPatternsForDate.computeIfAbsent(date, tripPatternsForDateMapper);
+    }
+    return tripPatterns;
   }
 }
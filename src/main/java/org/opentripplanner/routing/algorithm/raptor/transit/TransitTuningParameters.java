@@ -13,6 +13,8 @@ public interface TransitTuningParameters {
    *   RECOMMENDED:    20  (20 seconds penalty)
    *   PREFERRED:       0  (no penalty)
    * }
+   * transitLayerDaysBefore : 1
+   * transitLayerDaysAfter : -1 (all service dates are mapped)
    * </pre>
    */
   TransitTuningParameters FOR_TEST = new TransitTuningParameters() {
@@ -26,6 +28,8 @@ public interface TransitTuningParameters {
       }
       throw new IllegalArgumentException("Unknown key: " + key);
     }
+    @Override public int transitLayerDaysBefore() { return 1; }
+    @Override public int transitLayerDaysAfter() { return -1; }
   };
 
   /**
@@ -39,4 +43,18 @@ public interface TransitTuningParameters {
    * boarding and alighting all stops with the given priority.
    */
   Integer stopTransferCost(TransferPriority key);
+
+  /**
+   * The number of days before today to keep in the transit layer, see
+   * {@link #transitLayerDaysAfter()}.
+   */
+  int transitLayerDaysBefore();
+
+  /**
+   * The number of days after today to keep in the transit layer. If this is set, only the days
+   * from {@link #transitLayerDaysBefore()} before today to this number of days after today are
+   * mapped when the server starts. Other days are mapped when they are first searched, and days
+   * outside the window are removed as the days pass. If {@code -1}, all service dates are mapped.
+   */
+  int transitLayerDaysAfter();
 }
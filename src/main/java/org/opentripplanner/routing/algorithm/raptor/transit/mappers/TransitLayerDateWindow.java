@@ -0,0 +1,138 @@
+package org.opentripplanner.routing.algorithm.raptor.transit.mappers;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
+import org.opentripplanner.routing.algorithm.raptor.transit.TransitTuningParameters;
+import org.opentripplanner.routing.graph.Graph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keep only the days around today in the transit layers, instead of every service date of the
+ * feeds, which is often a year. See {@link TransitTuningParameters#transitLayerDaysAfter()}.
+ * <p>
+ * The days in the window are mapped when the server starts, other days are mapped by the transit
+ * layer when they are first searched. Every hour the scheduled transit layer is replaced by a copy
+ * without the days that fell out of the window and with the days that came into it mapped, so the
+ * first search on a new day does not wait for it to be mapped. The realtime transit layer only
+ * holds the days with realtime updates, it takes the other days from the scheduled transit layer
+ * without storing them. Only the past days are removed from the realtime transit layer, so the
+ * updates of later days are kept.
+ */
+public class TransitLayerDateWindow {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TransitLayerDateWindow.class);
+
+    private static final long UPDATE_INTERVAL_HOURS = 1;
+
+    private final Graph graph;
+
+    private final ZoneId zoneId;
+
+    private final int daysBefore;
+
+    private final int daysAfter;
+
+    private ScheduledExecutorService scheduler;
+
+    private TransitLayerDateWindow(Graph graph, int daysBefore, int daysAfter) {
+        this.graph = graph;
+        this.zoneId = graph.getTimeZone().toZoneId();
+        this.daysBefore = daysBefore;
+        this.daysAfter = daysAfter;
+    }
+
+    /**
+     * Create a date window for the graph.
+     * @return the date window, or {@code null} if all service dates should be mapped.
+     */
+    @Nullable
+    public static TransitLayerDateWindow create(
+        Graph graph,
+        TransitTuningParameters tuningParameters
+    ) {
+        if (tuningParameters.transitLayerDaysAfter() < 0) {
+            return null;
+        }
+        return new TransitLayerDateWindow(
+            graph,
+            Math.max(0, tuningParameters.transitLayerDaysBefore()),
+            tuningParameters.transitLayerDaysAfter()
+        );
+    }
+
+    /** Map the transit layer for the days in the window. */
+    public TransitLayer mapTransitLayer(TransitTuningParameters tuningParameters) {
+        LocalDate today = LocalDate.now(zoneId);
+        LOG.info(
+            "Mapping the transit layer from {} days before to {} days after {}.",
+            daysBefore,
+            daysAfter,
+            today
+        );
+        return TransitLayerMapper.mapDateWindow(
+            tuningParameters,
+            graph,
+            today.minusDays(daysBefore),
+            today.plusDays(daysAfter)
+        );
+    }
+
+    /** Start moving the window as the days pass. */
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("transit-layer-date-window")
+                .setDaemon(true)
+                .build()
+        );
+        scheduler.scheduleWithFixedDelay(
+            this::update,
+            UPDATE_INTERVAL_HOURS,
+            UPDATE_INTERVAL_HOURS,
+            TimeUnit.HOURS
+        );
+    }
+
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    void update() {
+        try {
+            update(LocalDate.now(zoneId));
+        }
+        catch (Exception e) {
+            // An exception would stop the scheduled updates
+            LOG.error("Moving the transit layer date window failed: {}", e.getMessage(), e);
+        }
+    }
+
+    void update(LocalDate today) {
+        LocalDate firstDate = today.minusDays(daysBefore);
+        LocalDate lastDate = today.plusDays(daysAfter);
+        if (graph.getTransitLayer() == null) {
+            return;
+        }
+        // The transit layer used by the searches is not changed, a copy replaces it
+        TransitLayer transitLayer = new TransitLayer(graph.getTransitLayer());
+        Set<LocalDate> removedDates = transitLayer.updateDateWindow(firstDate, lastDate);
+        graph.setTransitLayer(transitLayer);
+        if (graph.transitLayerUpdater != null) {
+            graph.transitLayerUpdater.updateDateWindow(firstDate, transitLayer);
+        }
+        if (!removedDates.isEmpty()) {
+            LOG.info("Removed {} days from the transit layer: {}", removedDates.size(), removedDates);
+        }
+    }
+}
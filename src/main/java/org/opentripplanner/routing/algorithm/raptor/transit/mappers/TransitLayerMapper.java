@@ -1,5 +1,6 @@
 package org.opentripplanner.routing.algorithm.raptor.transit.mappers;
 
+import gnu.trove.set.TIntSet;
 import org.opentripplanner.model.Timetable;
 import org.opentripplanner.model.TripPattern;
 import org.opentripplanner.model.calendar.ServiceDate;
@@ -8,12 +9,13 @@ import org.opentripplanner.routing.algorithm.raptor.transit.Transfer;
 import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
 import org.opentripplanner.routing.algorithm.raptor.transit.TransitTuningParameters;
 import org.opentripplanner.routing.algorithm.raptor.transit.TripPatternForDate;
-import org.opentripplanner.routing.algorithm.raptor.transit.TripPatternWithRaptorStopIndexes;
 import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.GraphIndex;
 import org.opentripplanner.routing.trippattern.TripTimes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -45,23 +47,78 @@ public class TransitLayerMapper {
 
     private final Graph graph;
 
-    private TransitLayerMapper(Graph graph) {
+    private final GraphIndex index;
+
+    private TransitLayerMapper(Graph graph, GraphIndex index) {
         this.graph = graph;
+        this.index = index;
     }
 
     public static TransitLayer map(TransitTuningParameters tuningParameters, Graph graph) {
-        return new TransitLayerMapper(graph).map(tuningParameters);
+        return map(tuningParameters, graph, graph.index);
+    }
+
+    /**
+     * Map the transit layer using the given index of the graph instead of the index set on the
+     * graph, so a graph that is being saved is not changed.
+     */
+    public static TransitLayer map(
+        TransitTuningParameters tuningParameters,
+        Graph graph,
+        GraphIndex index
+    ) {
+        return new TransitLayerMapper(graph, index).map(tuningParameters, null, null);
+    }
+
+    /**
+     * Map the dates from the first to the last date given, the other dates are mapped when they
+     * are requested. See {@link TransitTuningParameters#transitLayerDaysAfter()}.
+     */
+    public static TransitLayer mapDateWindow(
+        TransitTuningParameters tuningParameters,
+        Graph graph,
+        LocalDate firstDate,
+        LocalDate lastDate
+    ) {
+        return new TransitLayerMapper(graph, graph.index)
+            .map(tuningParameters, firstDate, lastDate);
+    }
+
+    /**
+     * Prepare a transit layer saved with the graph for routing. Only the stop board/alight costs
+     * depend on the tuning parameters, these are cheap to calculate and are recalculated, so the
+     * server may use other tuning parameters than the ones used when the graph was built.
+     */
+    public static TransitLayer mapSavedTransitLayer(
+        TransitTuningParameters tuningParameters,
+        TransitLayer savedTransitLayer
+    ) {
+        LOG.info("Using the transit layer saved with the graph.");
+        return new TransitLayer(
+            savedTransitLayer,
+            new StopIndexForRaptor(savedTransitLayer.getStopIndex(), tuningParameters)
+        );
     }
 
-    private TransitLayer map(TransitTuningParameters tuningParameters) {
+    /**
+     * Map all service dates if no first and last date is given. Otherwise only the dates in the
+     * window are mapped, and the transit layer maps the other dates when they are requested.
+     */
+    private TransitLayer map(
+        TransitTuningParameters tuningParameters,
+        @Nullable LocalDate firstDate,
+        @Nullable LocalDate lastDate
+    ) {
         StopIndexForRaptor stopIndex;
+        TripPatternsForDateMapper tripPatternsForDateMapper;
         HashMap<LocalDate, List<TripPatternForDate>> tripPatternsByStopByDate;
         List<List<Transfer>> transferByStopIndex;
 
         LOG.info("Mapping transitLayer from Graph...");
 
-        stopIndex =  new StopIndexForRaptor(graph.index.getAllStops(), tuningParameters);
-        tripPatternsByStopByDate = mapTripPatterns(stopIndex);
+        stopIndex =  new StopIndexForRaptor(index.getAllStops(), tuningParameters);
+        tripPatternsForDateMapper = new TripPatternsForDateMapper(stopIndex);
+        tripPatternsByStopByDate = mapTripPatterns(tripPatternsForDateMapper, firstDate, lastDate);
         transferByStopIndex = mapTransfers(stopIndex, graph.transfersByStop);
 
         LOG.info("Mapping complete.");
@@ -70,31 +127,24 @@ public class TransitLayerMapper {
             tripPatternsByStopByDate,
             transferByStopIndex,
             stopIndex,
-            graph.getTimeZone().toZoneId()
+            graph.getTimeZone().toZoneId(),
+            firstDate == null ? null : tripPatternsForDateMapper::map
         );
     }
 
     /**
-     * Map pre-Raptor TripPatterns and Trips to the corresponding Raptor classes.
+     * Map pre-Raptor TripPatterns and Trips to the corresponding Raptor classes, for all service
+     * dates or the service dates in the given window.
      * <p>
      * Part of this method runs IN PARALLEL.
      * <p>
      */
     private HashMap<LocalDate, List<TripPatternForDate>> mapTripPatterns (
-        StopIndexForRaptor stopIndex
+        TripPatternsForDateMapper tripPatternsForDateMapper,
+        @Nullable LocalDate firstDate,
+        @Nullable LocalDate lastDate
     ) {
-        Collection<TripPattern> allTripPatterns = graph.tripPatternForId.values();
-
-        final Map<TripPattern, TripPatternWithRaptorStopIndexes> newTripPatternForOld =
-            mapOldTripPatternToRaptorTripPattern(stopIndex, allTripPatterns);
-
-
-        TripPatternForDateMapper tripPatternForDateMapper = new TripPatternForDateMapper(
-            graph.index.getServiceCodesRunningForDate(),
-            newTripPatternForOld
-        );
-
-        Set<ServiceDate> allServiceDates = graph.index.getServiceCodesRunningForDate().keySet();
+        Set<ServiceDate> allServiceDates = index.getServiceCodesRunningForDate().keySet();
 
         // The return value of this entire process.
         ConcurrentHashMap<LocalDate, List<TripPatternForDate>> result = new ConcurrentHashMap<>();
@@ -108,22 +158,13 @@ public class TransitLayerMapper {
                 // the return Map.
                 LocalDate localDate = ServiceCalendarMapper.localDateFromServiceDate(serviceDate);
 
-                // Create a List to hold the values for one entry in the return Map.
-                List<TripPatternForDate> values = new ArrayList<>();
-
-                // This nested loop could be quite inefficient.
-                // Maybe determine in advance which patterns are running on each service and day.
-                for (org.opentripplanner.model.TripPattern oldTripPattern : allTripPatterns) {
-                    TripPatternForDate tripPatternForDate =
-                        tripPatternForDateMapper.map(
-                            oldTripPattern.scheduledTimetable,
-                            serviceDate
-                    );
-                    if (tripPatternForDate != null) {
-                        values.add(tripPatternForDate);
-                    }
+                if (firstDate != null && (localDate.isBefore(firstDate) || localDate.isAfter(lastDate))) {
+                    return;
                 }
-                if (!values.isEmpty()) {
+                List<TripPatternForDate> values = tripPatternsForDateMapper.map(localDate);
+                // A date without trip patterns is kept in a date window, so it is not mapped
+                // again when it is requested
+                if (values != null && (firstDate != null || !values.isEmpty())) {
                     result.put(localDate, values);
                 }
             });
@@ -132,6 +173,59 @@ public class TransitLayerMapper {
         return new HashMap<>(result);
     }
 
+    /**
+     * Maps the trip patterns running on a date. This is kept by a transit layer that maps dates
+     * when they are requested.
+     * <p>
+     * This class is THREAD SAFE.
+     */
+    private class TripPatternsForDateMapper {
+
+        private final Collection<TripPattern> allTripPatterns;
+
+        private final Map<ServiceDate, TIntSet> serviceCodesRunningForDate;
+
+        private final TripPatternForDateMapper tripPatternForDateMapper;
+
+        TripPatternsForDateMapper(StopIndexForRaptor stopIndex) {
+            this.allTripPatterns = graph.tripPatternForId.values();
+            this.serviceCodesRunningForDate = index.getServiceCodesRunningForDate();
+            this.tripPatternForDateMapper = new TripPatternForDateMapper(
+                serviceCodesRunningForDate,
+                mapOldTripPatternToRaptorTripPattern(stopIndex, allTripPatterns)
+            );
+        }
+
+        /**
+         * Return {@code null} if there is no service on the date, and an empty list if there is
+         * service but no trip pattern is running on the date.
+         */
+        @Nullable
+        List<TripPatternForDate> map(LocalDate localDate) {
+            ServiceDate serviceDate = new ServiceDate(localDate);
+            if (!serviceCodesRunningForDate.containsKey(serviceDate)) {
+                return null;
+            }
+
+            // Create a List to hold the values for one entry in the return Map.
+            List<TripPatternForDate> values = new ArrayList<>();
+
+            // This nested loop could be quite inefficient.
+            // Maybe determine in advance which patterns are running on each service and day.
+            for (org.opentripplanner.model.TripPattern oldTripPattern : allTripPatterns) {
+                TripPatternForDate tripPatternForDate =
+                    tripPatternForDateMapper.map(
+                        oldTripPattern.scheduledTimetable,
+                        serviceDate
+                );
+                if (tripPatternForDate != null) {
+                    values.add(tripPatternForDate);
+                }
+            }
+            return values;
+        }
+    }
+
     // TODO We can save time by either pre-sorting these or use a sorting algorithm that is
     //      optimized for sorting nearly sorted list
     static List<TripTimes> getSortedTripTimes (Timetable timetable) {
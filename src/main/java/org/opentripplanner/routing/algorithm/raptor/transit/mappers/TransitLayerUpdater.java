@@ -29,6 +29,9 @@ import static org.opentripplanner.routing.algorithm.raptor.transit.mappers.TripP
  * id and replaced by their updated versions. The realtime TransitLayer is then switched out
  * with the updated copy in an atomic operation. This ensures that any TransitLayer that is
  * referenced from the Graph is never changed.
+ * <p>
+ * The updates and the changes of the date window, see {@link #updateDateWindow}, are synchronized,
+ * so that one does not replace the transit layer made by the other.
  */
 public class TransitLayerUpdater {
 
@@ -53,7 +56,7 @@ public class TransitLayerUpdater {
     this.serviceCodesRunningForDate = serviceCodesRunningForDate;
   }
 
-  public void update(Set<Timetable> updatedTimetables) {
+  public synchronized void update(Set<Timetable> updatedTimetables) {
     if (!graph.hasRealtimeTransitLayer()) { return; }
 
     // Make a shallow copy of the realtime transit layer. Only the objects that are copied will be
@@ -85,6 +88,8 @@ public class TransitLayerUpdater {
     for (LocalDate date : timetablesByDate.keySet()) {
       Collection<Timetable> timetablesForDate = timetablesByDate.get(date);
 
+      // A date outside the date window is mapped by the scheduled transit layer, the realtime
+      // transit layer keeps it with its updates
       List<TripPatternForDate> patternsForDate =
           realtimeTransitLayer.getTripPatternsForDateCopy(date);
 
@@ -123,4 +128,21 @@ public class TransitLayerUpdater {
       );
     }
   }
+
+  /**
+   * Remove the dates before the first date of the window from the realtime transit layer, and take
+   * the dates without realtime updates from the given scheduled transit layer, which replaced the
+   * one the realtime transit layer was copied from. The realtime transit layer only holds the
+   * dates with updates, the ones after the window are kept, so their updates are not lost.
+   */
+  public synchronized void updateDateWindow(LocalDate firstDate, TransitLayer transitLayer) {
+    if (!graph.hasRealtimeTransitLayer()) { return; }
+
+    TransitLayer realtimeTransitLayer = transitLayer.createRealtimeCopy(
+        graph.getRealtimeTransitLayer()
+    );
+    Set<LocalDate> removedDates = realtimeTransitLayer.removeDatesBefore(firstDate);
+    tripPatternForDateMapCache.keySet().removeAll(removedDates);
+    graph.setRealtimeTransitLayer(realtimeTransitLayer);
+  }
 }
@@ -11,6 +11,7 @@ import org.opentripplanner.routing.api.response.InputField;
 import org.opentripplanner.routing.api.response.RoutingError;
 import org.opentripplanner.routing.api.response.RoutingErrorCode;
 import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.TemporaryEdge;
 import org.opentripplanner.routing.edgetype.TemporaryFreeEdge;
 import org.opentripplanner.routing.edgetype.TemporaryPartialStreetEdge;
 import org.opentripplanner.routing.error.GraphNotFoundException;
@@ -24,8 +25,11 @@ import org.opentripplanner.util.NonLocalizedString;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -54,6 +58,14 @@ public class RoutingContext implements Cloneable {
     public final Set<Vertex> toVertices;
 
     public final Set<FeedScopedId> bannedRoutes;
+
+    /**
+     * The temporary edges connecting the temporary vertices of this request to vertices in the
+     * main graph. Temporary edges are only added to the edge lists of temporary vertices, so the
+     * shared graph is never modified during routing. Use {@link #getOutgoing(Vertex)} and
+     * {@link #getIncoming(Vertex)} to get the edges of a vertex including this request overlay.
+     */
+    public final OverlayGraph temporaryEdges;
     
     // The back edge associated with the origin - i.e. continuing a previous search.
     // NOTE: not final so that it can be modified post-construction for testing.
@@ -188,6 +200,8 @@ public class RoutingContext implements Cloneable {
 
         adjustForSameFromToEdge();
 
+        this.temporaryEdges = createTemporaryEdgeOverlay(this.fromVertices, this.toVertices);
+
         remainingWeightHeuristic = new EuclideanRemainingWeightHeuristic();
     }
 
@@ -207,6 +221,30 @@ public class RoutingContext implements Cloneable {
         );
     }
 
+    /**
+     * Create a context for a search in the opposite direction, sharing the endpoints and temporary
+     * edges of {@code forward}.
+     */
+    private RoutingContext(RoutingRequest reversedRequest, RoutingContext forward) {
+        this.opt = reversedRequest;
+        this.graph = forward.graph;
+        this.fromVertices = forward.toVertices;
+        this.toVertices = forward.fromVertices;
+        this.bannedRoutes = forward.bannedRoutes;
+        this.temporaryEdges = forward.temporaryEdges;
+        this.remainingWeightHeuristic = new EuclideanRemainingWeightHeuristic();
+    }
+
+    /**
+     * Create a context for searching from the target towards the origin of this context, used in
+     * bidirectional searches. The request should be a {@link RoutingRequest#reversedClone()} of
+     * the request of this context. The temporary vertices and edges still belong to this context,
+     * so the returned context must never be destroyed.
+     */
+    public RoutingContext createReversedContext(RoutingRequest reversedRequest) {
+        return new RoutingContext(reversedRequest, this);
+    }
+
     /**
      * If the from and to vertices are generated and lie along some of the same edges, we need to wire
      * them up along those edges so that we don't get odd circuitous routes for really short trips.
@@ -268,8 +306,79 @@ public class RoutingContext implements Cloneable {
         }
     }
 
+    /**
+     * Traverse the temporary subgraph reachable from the given vertices and collect all temporary
+     * edges connected to a main graph vertex.
+     */
+    private static OverlayGraph createTemporaryEdgeOverlay(
+            Set<Vertex> fromVertices,
+            Set<Vertex> toVertices
+    ) {
+        OverlayGraph overlay = new OverlayGraph();
+        Deque<Vertex> todo = new ArrayDeque<>();
+        Set<Vertex> done = new HashSet<>();
+
+        addTemporaryVertices(fromVertices, todo);
+        addTemporaryVertices(toVertices, todo);
+
+        while (!todo.isEmpty()) {
+            Vertex current = todo.removeLast();
+            if (!done.add(current)) { continue; }
+
+            for (Edge edge : current.getOutgoing()) {
+                Vertex tov = edge.getToVertex();
+                if (tov instanceof TemporaryVertex) {
+                    todo.add(tov);
+                }
+                else if (edge instanceof TemporaryEdge) {
+                    overlay.addIncoming(tov, edge);
+                }
+            }
+            for (Edge edge : current.getIncoming()) {
+                Vertex fromv = edge.getFromVertex();
+                if (fromv instanceof TemporaryVertex) {
+                    todo.add(fromv);
+                }
+                else if (edge instanceof TemporaryEdge) {
+                    overlay.addOutgoing(fromv, edge);
+                }
+            }
+        }
+        return overlay;
+    }
+
+    private static void addTemporaryVertices(Set<Vertex> vertices, Collection<Vertex> target) {
+        if (vertices == null) { return; }
+        for (Vertex v : vertices) {
+            if (v instanceof TemporaryVertex) { target.add(v); }
+        }
+    }
+
     /* INSTANCE METHODS */
 
+    /**
+     * Get the edges leading from the given vertex, including the temporary edges of this request.
+     */
+    public Collection<Edge> getOutgoing(Vertex v) {
+        return mergeEdges(v.getOutgoing(), temporaryEdges.getOutgoing(v));
+    }
+
+    /**
+     * Get the edges leading to the given vertex, including the temporary edges of this request.
+     */
+    public Collection<Edge> getIncoming(Vertex v) {
+        return mergeEdges(v.getIncoming(), temporaryEdges.getIncoming(v));
+    }
+
+    private static Collection<Edge> mergeEdges(Collection<Edge> edges, List<Edge> temporaryEdges) {
+        if (temporaryEdges.isEmpty()) { return edges; }
+
+        List<Edge> result = new ArrayList<>(edges.size() + temporaryEdges.size());
+        result.addAll(edges);
+        result.addAll(temporaryEdges);
+        return result;
+    }
+
     public void checkIfVerticesFound() {
         List<RoutingError> routingErrors = new ArrayList<>();
 
@@ -296,6 +405,9 @@ public class RoutingContext implements Cloneable {
      * Tear down this routing context, removing any temporary edges from
      * the "permanent" graph objects. This enables all temporary objects
      * for garbage collection.
+     * <p>
+     * Temporary edges are kept in the request overlay and not added to the main graph, so
+     * this only have an effect on other edge types connected to temporary vertices.
      */
     public void destroy() {
         if (fromVertices != null) {
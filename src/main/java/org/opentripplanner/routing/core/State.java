@@ -121,6 +121,9 @@ public class State implements Cloneable {
             this.stateData.nonTransitMode = this.stateData.bikeParked ? TraverseMode.WALK
                     : TraverseMode.BICYCLE;
         }
+        if (StateData.isSingleModeStreetSearch(options)) {
+            this.stateData.shareBetweenStates();
+        }
         this.walkDistance = 0;
         this.time = timeSeconds * 1000;
     }
@@ -367,10 +370,16 @@ public class State implements Cloneable {
         return time;
     }
 
+    /** Get the outgoing edges of a vertex, including the temporary edges of the request. */
+    public Collection<Edge> getOutgoingEdges(Vertex v) {
+        RoutingContext rctx = getContext();
+        return rctx == null ? v.getOutgoing() : rctx.getOutgoing(v);
+    }
+
     public boolean multipleOptionsBefore() {
         boolean foundAlternatePaths = false;
         TraverseMode requestedMode = getNonTransitMode();
-        for (Edge out : backState.vertex.getOutgoing()) {
+        for (Edge out : getOutgoingEdges(backState.vertex)) {
             if (out == backEdge) {
                 continue;
             }
@@ -392,7 +401,7 @@ public class State implements Cloneable {
             //now, from here, try a continuing path.
             Vertex tov = outState.getVertex();
             boolean found = false;
-            for (Edge out2 : tov.getOutgoing()) {
+            for (Edge out2 : getOutgoingEdges(tov)) {
                 State outState2 = out2.traverse(outState);
                 if (outState2 != null && !outState2.getBackMode().equals(requestedMode)) {
                     // walking a bike, so, not really an exit
@@ -8,6 +8,11 @@ import java.util.Set;
  * StateData contains the components of search state that are unlikely to be changed as often as
  * time or weight. This avoids frequent duplication, which should have a positive impact on both
  * time and space use during searches.
+ * <p>
+ * In a single-mode street search (walk, bike or car, without rental, parking or pick-up) only the
+ * back mode, the walking-bike flag and the no-through-traffic flag change during the search. The
+ * StateData instances for these few combinations are then created once and shared by all states
+ * in the search, instead of being cloned by the {@link StateEditor}.
  */
 public class StateData implements Cloneable {
 
@@ -42,6 +47,12 @@ public class StateData implements Cloneable {
     /* This boolean is set to true upon transition from a normal street to a no-through-traffic street. */
     protected boolean enteredNoThroughTrafficArea;
 
+    /**
+     * The shared instances of a single-mode street search, indexed by {@link #variantIndex}. This
+     * is {@code null} if this instance is not shared.
+     */
+    private StateData[] sharedVariants;
+
     public StateData(RoutingRequest options) {
         TraverseModeSet modes = options.streetSubRequestModes;
         if (modes.getCar())
@@ -54,6 +65,72 @@ public class StateData implements Cloneable {
             nonTransitMode = null;
     }
 
+    /**
+     * Return {@code true} if the given request is a street search using a single mode, without
+     * any vehicle rental, parking or pick-up.
+     */
+    static boolean isSingleModeStreetSearch(RoutingRequest options) {
+        TraverseModeSet modes = options.streetSubRequestModes;
+        int nModes = (modes.getWalk() ? 1 : 0) + (modes.getBicycle() ? 1 : 0) + (modes.getCar() ? 1 : 0);
+        return nModes == 1
+            && !modes.isTransit()
+            && !options.bikeRental
+            && !options.bikeParkAndRide
+            && !options.parkAndRide
+            && !options.carPickup;
+    }
+
+    /**
+     * Make this instance the first shared instance of a single-mode street search.
+     */
+    void shareBetweenStates() {
+        sharedVariants = new StateData[2 * 2 * (TraverseMode.values().length + 1)];
+        sharedVariants[variantIndex(backMode, backWalkingBike, enteredNoThroughTrafficArea)] = this;
+    }
+
+    boolean isShared() {
+        return sharedVariants != null;
+    }
+
+    /**
+     * Get the shared instance with the given back mode and flags, creating it if this is the first
+     * time the combination is used in the search. All other fields are the same as in this instance.
+     */
+    StateData sharedVariant(
+        TraverseMode backMode,
+        boolean backWalkingBike,
+        boolean enteredNoThroughTrafficArea
+    ) {
+        int index = variantIndex(backMode, backWalkingBike, enteredNoThroughTrafficArea);
+        StateData variant = sharedVariants[index];
+        if (variant == null) {
+            variant = clone();
+            variant.backMode = backMode;
+            variant.backWalkingBike = backWalkingBike;
+            variant.enteredNoThroughTrafficArea = enteredNoThroughTrafficArea;
+            sharedVariants[index] = variant;
+        }
+        return variant;
+    }
+
+    /**
+     * Create a copy which is not shared with other states, so it can be modified.
+     */
+    StateData unsharedClone() {
+        StateData copy = clone();
+        copy.sharedVariants = null;
+        return copy;
+    }
+
+    private static int variantIndex(
+        TraverseMode backMode,
+        boolean backWalkingBike,
+        boolean enteredNoThroughTrafficArea
+    ) {
+        int modeIndex = backMode == null ? 0 : backMode.ordinal() + 1;
+        return (modeIndex * 2 + (backWalkingBike ? 1 : 0)) * 2 + (enteredNoThroughTrafficArea ? 1 : 0);
+    }
+
     protected StateData clone() {
         try {
             return (StateData) super.clone();
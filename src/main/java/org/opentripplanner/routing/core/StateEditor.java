@@ -46,7 +46,7 @@ public class StateEditor {
         if (e == null) {
             child.backState = null;
             child.vertex = parent.vertex;
-            child.stateData = child.stateData.clone();
+            child.stateData = child.stateData.unsharedClone();
         } else {
             // be clever
             // Note that we use equals(), not ==, here to allow for dynamically
@@ -180,26 +180,53 @@ public class StateEditor {
     /* Basic Setters */
 
     public void setEnteredNoThroughTrafficArea() {
-        child.stateData.enteredNoThroughTrafficArea = true;
+        setEnteredNoThroughTrafficArea(true);
     }
 
     public void resetEnteredNoThroughTrafficArea() {
-        child.stateData.enteredNoThroughTrafficArea = false;
+        setEnteredNoThroughTrafficArea(false);
+    }
+
+    /**
+     * The flag is set on a copy of the StateData, or on another shared instance in a single-mode
+     * search, so the states before the child are not changed in any search.
+     */
+    private void setEnteredNoThroughTrafficArea(boolean entered) {
+        StateData sd = child.stateData;
+        if (entered == sd.enteredNoThroughTrafficArea)
+            return;
+
+        if (sd.isShared()) {
+            child.stateData = sd.sharedVariant(sd.backMode, sd.backWalkingBike, entered);
+            return;
+        }
+        cloneStateDataAsNeeded();
+        child.stateData.enteredNoThroughTrafficArea = entered;
     }
     
 
     public void setBackMode(TraverseMode mode) {
-        if (mode == child.stateData.backMode)
+        StateData sd = child.stateData;
+        if (mode == sd.backMode)
+            return;
+
+        if (sd.isShared()) {
+            child.stateData = sd.sharedVariant(mode, sd.backWalkingBike, sd.enteredNoThroughTrafficArea);
             return;
-        
+        }
         cloneStateDataAsNeeded();
         child.stateData.backMode = mode;
     }
 
     public void setBackWalkingBike (boolean walkingBike) {
-        if (walkingBike == child.stateData.backWalkingBike)
+        StateData sd = child.stateData;
+        if (walkingBike == sd.backWalkingBike)
+            return;
+
+        if (sd.isShared()) {
+            child.stateData = sd.sharedVariant(sd.backMode, walkingBike, sd.enteredNoThroughTrafficArea);
             return;
-        
+        }
         cloneStateDataAsNeeded();
         child.stateData.backWalkingBike = walkingBike;
     }
@@ -277,6 +304,8 @@ public class StateEditor {
     }
 
     public void setTaxiState(CarPickupState carPickupState) {
+        if (child.stateData.isShared())
+            child.stateData = child.stateData.unsharedClone();
         child.stateData.carPickupState = carPickupState;
         switch (carPickupState) {
             case WALK_TO_PICKUP:
@@ -316,10 +345,13 @@ public class StateEditor {
     /**
      * To be called before modifying anything in the child's StateData. Makes sure that changes are
      * applied to a copy of StateData rather than the same one that is still referenced in existing,
-     * older states.
+     * older states. A StateData shared in a single-mode search is always copied, and the copy is
+     * not shared any more.
      */
     private void cloneStateDataAsNeeded() {
-        if (child.backState != null && child.stateData == child.backState.stateData)
+        if (child.stateData.isShared())
+            child.stateData = child.stateData.unsharedClone();
+        else if (child.backState != null && child.stateData == child.backState.stateData)
             child.stateData = child.stateData.clone();
     }
 
@@ -0,0 +1,83 @@
+package org.opentripplanner.routing.edgetype;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * A column of byte arrays in a section of the graph file, read in place from a memory mapped or
+ * direct buffer, so an array is only copied to the heap when it is used. This is the format of the
+ * street geometry and elevation profile sections, see {@link StreetEdgeGeometryStore} and
+ * {@link StreetEdgeElevationStore}.
+ * <p>
+ * The layout of the column is, in big-endian order:
+ * <pre>
+ *   int     number of arrays, n
+ *   int     reserved, 0
+ *   int[]   n + 1 offsets of the arrays, relative to the start of the data
+ *   the data of the arrays
+ * </pre>
+ */
+final class ByteArrayColumn {
+
+    private static final int HEADER_SIZE = 8;
+
+    private final ByteBuffer buffer;
+
+    private final int size;
+
+    private final int dataStart;
+
+    /**
+     * @param name the name of the section, used in the error message if it is corrupt.
+     */
+    ByteArrayColumn(ByteBuffer buffer, String name) {
+        this.buffer = buffer;
+        this.size = buffer.getInt(0);
+        this.dataStart = HEADER_SIZE + 4 * (size + 1);
+        if (size < 0 || dataStart > buffer.limit()
+                || dataStart + buffer.getInt(dataStart - 4) > buffer.limit()) {
+            throw new IllegalStateException("The " + name + " section is corrupt.");
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Copy the array with the given index to the heap. */
+    byte[] get(int index) {
+        int start = buffer.getInt(HEADER_SIZE + 4 * index);
+        int end = buffer.getInt(HEADER_SIZE + 4 * (index + 1));
+        byte[] array = new byte[end - start];
+        // Read from a duplicate, the position of the shared buffer must not change
+        ByteBuffer data = buffer.duplicate();
+        data.position(dataStart + start);
+        data.get(array);
+        return array;
+    }
+
+    /** The length in bytes of a column of the given arrays. */
+    static long length(List<byte[]> arrays) {
+        long length = HEADER_SIZE + 4L * (arrays.size() + 1);
+        for (byte[] array : arrays) {
+            length += array.length;
+        }
+        return length;
+    }
+
+    static void write(DataOutputStream out, List<byte[]> arrays) throws IOException {
+        out.writeInt(arrays.size());
+        out.writeInt(0);
+        int offset = 0;
+        out.writeInt(offset);
+        for (byte[] array : arrays) {
+            offset += array.length;
+            out.writeInt(offset);
+        }
+        for (byte[] array : arrays) {
+            out.write(array);
+        }
+    }
+}
@@ -90,7 +90,14 @@ public class StreetEdge extends Edge implements Cloneable {
      */
     protected float bicycleSafetyFactor;
 
+    /** The geometry, or {@code null} if the geometry is kept in the {@link #geometryStore}. */
     private byte[] compactGeometry;
+
+    /** The index of the geometry in a {@link StreetEdgeGeometryStore}, -1 if not in a store. */
+    private int geometryIndex = -1;
+
+    /** Set when the graph is loaded, if the geometries were saved in a separate section. */
+    private transient StreetEdgeGeometryStore geometryStore;
     
     private I18NString name;
 
@@ -434,7 +441,7 @@ public class StreetEdge extends Edge implements Cloneable {
             if (s1.hasEnteredNoThroughTrafficArea()) {
                 // Only Edges are marked as no-thru, but really we need to avoid creating dominant, pruned states
                 // on thru _Vertices_. This could certainly be improved somehow.
-                for (StreetEdge se : Iterables.filter(s1.getVertex().getOutgoing(), StreetEdge.class)) {
+                for (StreetEdge se : Iterables.filter(s0.getOutgoingEdges(s1.getVertex()), StreetEdge.class)) {
                     if (!se.isNoThruTraffic()) {
                         // This vertex has at least one through-traffic edge. We can't dominate it with a no-thru state.
                         return null;
@@ -660,9 +667,44 @@ public class StreetEdge extends Edge implements Cloneable {
 	}
 
 	public LineString getGeometry() {
+		if (compactGeometry == null && geometryStore != null) {
+			return geometryStore.getGeometry(this);
+		}
+		return uncompactGeometry(compactGeometry);
+	}
+
+	LineString uncompactGeometry(byte[] compactGeometry) {
 		return CompactLineString.uncompactLineString(fromv.getLon(), fromv.getLat(), tov.getLon(), tov.getLat(), compactGeometry, isBack());
 	}
 
+	byte[] getCompactGeometry() {
+		return compactGeometry;
+	}
+
+	int getGeometryIndex() {
+		return geometryIndex;
+	}
+
+	/** Drop the geometry from the heap, it is saved in a geometry store with the given index. */
+	void moveGeometryToStore(int geometryIndex) {
+		this.geometryIndex = geometryIndex;
+		this.compactGeometry = null;
+	}
+
+	void setGeometryStore(StreetEdgeGeometryStore geometryStore) {
+		this.geometryStore = geometryStore;
+	}
+
+	StreetEdgeGeometryStore getGeometryStore() {
+		return geometryStore;
+	}
+
+	/** Undo {@link #moveGeometryToStore(int)}. */
+	void restoreGeometry(byte[] compactGeometry) {
+		this.compactGeometry = compactGeometry;
+		this.geometryIndex = -1;
+	}
+
 	private void setGeometry(LineString geometry) {
 		this.compactGeometry = CompactLineString.compactLineString(fromv.getLon(), fromv.getLat(), tov.getLon(), tov.getLat(), isBack() ? (LineString)geometry.reverse() : geometry, isBack());
 	}
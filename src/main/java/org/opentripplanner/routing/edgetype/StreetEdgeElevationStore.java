@@ -0,0 +1,163 @@
+package org.opentripplanner.routing.edgetype;
+
+import gnu.trove.list.array.TIntArrayList;
+import org.opentripplanner.routing.graph.Edge;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The compact elevation profiles of the street edges, kept outside the heap in a memory mapped
+ * section of the graph file, like the {@link StreetEdgeGeometryStore}. The slope costs used while
+ * routing are computed when the profile is set and kept on the edge, the profile itself is only
+ * needed when an itinerary is mapped, so the edges decode it on demand, see
+ * {@link StreetWithElevationEdge#getElevationProfile()}.
+ * <p>
+ * The section is a {@link ByteArrayColumn}, each profile is a
+ * {@link org.opentripplanner.common.geometry.CompactElevationProfile}. The two edges of a street
+ * have their own profile, so each edge has its own entry.
+ */
+public class StreetEdgeElevationStore {
+
+    private final ByteArrayColumn profiles;
+
+    private StreetEdgeElevationStore(ByteBuffer buffer) {
+        this.profiles = new ByteArrayColumn(buffer, "street elevation profile");
+    }
+
+    /**
+     * Use the elevation profiles in a section written by {@link Writer} for the given edges. The
+     * edges must be the ones the section was written for.
+     */
+    public static StreetEdgeElevationStore load(ByteBuffer section, Collection<Edge> edges) {
+        StreetEdgeElevationStore store = new StreetEdgeElevationStore(section);
+        for (Edge edge : edges) {
+            if (edge instanceof StreetWithElevationEdge) {
+                StreetWithElevationEdge elevationEdge = (StreetWithElevationEdge) edge;
+                int index = elevationEdge.getElevationProfileIndex();
+                if (index >= store.size()) {
+                    throw new IllegalStateException(
+                            "The street elevation profile section does not match the graph."
+                    );
+                }
+                if (index >= 0) {
+                    elevationEdge.setElevationStore(store);
+                }
+            }
+        }
+        return store;
+    }
+
+    public int size() {
+        return profiles.size();
+    }
+
+    byte[] packedElevationProfile(int index) {
+        return profiles.get(index);
+    }
+
+    /** Return {@code true} if any of the edges keeps its elevation profile in a store. */
+    public static boolean hasStoredProfiles(Collection<Edge> edges) {
+        for (Edge edge : edges) {
+            if (edge instanceof StreetWithElevationEdge
+                    && ((StreetWithElevationEdge) edge).getElevationStore() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Write the elevation profiles of the street edges to a section, and remove them from the
+     * edges while the rest of the graph is saved. The edges of a graph loaded with an elevation
+     * store, like a saved street graph, are read from the store.
+     */
+    public static class Writer {
+
+        private final List<StreetWithElevationEdge> edges = new ArrayList<>();
+
+        private final List<byte[]> profiles = new ArrayList<>();
+
+        /** The index of each edge in the store it was loaded with, or -1. */
+        private final int[] storedIndexes;
+
+        /** The store each edge was loaded with, or {@code null}. */
+        private final List<StreetEdgeElevationStore> stores = new ArrayList<>();
+
+        public Writer(Collection<Edge> edges) {
+            TIntArrayList storedIndexes = new TIntArrayList();
+            for (Edge edge : edges) {
+                if (!(edge instanceof StreetWithElevationEdge)) {
+                    continue;
+                }
+                StreetWithElevationEdge elevationEdge = (StreetWithElevationEdge) edge;
+                byte[] profile = elevationEdge.getPackedElevationProfile();
+                StreetEdgeElevationStore store = elevationEdge.getElevationStore();
+                int storedIndex = -1;
+                if (profile == null && store != null) {
+                    storedIndex = elevationEdge.getElevationProfileIndex();
+                    profile = store.packedElevationProfile(storedIndex);
+                }
+                if (profile == null) {
+                    continue;
+                }
+                this.edges.add(elevationEdge);
+                profiles.add(profile);
+                storedIndexes.add(storedIndex);
+                stores.add(storedIndex < 0 ? null : store);
+            }
+            this.storedIndexes = storedIndexes.toArray();
+        }
+
+        /** The length of the section in bytes. */
+        public long length() {
+            return ByteArrayColumn.length(profiles);
+        }
+
+        /** The section is mapped as one buffer when it is loaded, so it must be less than 2GB. */
+        public boolean fitsInSection() {
+            return length() <= Integer.MAX_VALUE;
+        }
+
+        public void write(DataOutputStream out) throws IOException {
+            ByteArrayColumn.write(out, profiles);
+        }
+
+        /** Remove the profiles from the edges, so they are not saved twice. */
+        public void removeProfilesFromEdges() {
+            for (int i = 0; i < edges.size(); i++) {
+                edges.get(i).moveElevationProfileToStore(i);
+            }
+        }
+
+        /**
+         * Keep the profiles on the edges, when they are saved with the rest of the graph. The
+         * edges that use a store get their profile back on the heap.
+         */
+        public void moveProfilesToEdges() {
+            for (int i = 0; i < edges.size(); i++) {
+                edges.get(i).restoreElevationProfile(profiles.get(i));
+            }
+        }
+
+        /**
+         * Give the edges their profiles back after the graph is saved, the edges that used a store
+         * use it again.
+         */
+        public void restoreProfilesOfEdges() {
+            for (int i = 0; i < edges.size(); i++) {
+                if (storedIndexes[i] >= 0) {
+                    edges.get(i).moveElevationProfileToStore(storedIndexes[i]);
+                    edges.get(i).setElevationStore(stores.get(i));
+                }
+                else {
+                    edges.get(i).restoreElevationProfile(profiles.get(i));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package org.opentripplanner.routing.edgetype;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import gnu.trove.list.array.TIntArrayList;
+import org.locationtech.jts.geom.LineString;
+import org.opentripplanner.routing.graph.Edge;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The compact geometries of the street edges, kept outside the heap in a memory mapped section
+ * of the graph file. The geometries are only needed when an itinerary is mapped or a tile is
+ * rendered, not while routing, so the edges decode them on demand, see
+ * {@link StreetEdge#getGeometry()}. The most recently used geometries are cached.
+ * <p>
+ * The section is a {@link ByteArrayColumn}, each geometry is a
+ * {@link org.opentripplanner.common.geometry.CompactLineString}. The two edges of a street share
+ * their geometry, see {@link StreetEdge#shareData(StreetEdge)},
+ * so it is stored once.
+ */
+public class StreetEdgeGeometryStore {
+
+    private static final int CACHE_SIZE = 10_000;
+
+    private final ByteArrayColumn geometries;
+
+    private final Cache<StreetEdge, LineString> cache = CacheBuilder.newBuilder()
+            .maximumSize(CACHE_SIZE)
+            .build();
+
+    private StreetEdgeGeometryStore(ByteBuffer buffer) {
+        this.geometries = new ByteArrayColumn(buffer, "street geometry");
+    }
+
+    /**
+     * Use the geometries in a section written by {@link Writer} for the given edges. The edges
+     * must be the ones the section was written for.
+     */
+    public static StreetEdgeGeometryStore load(ByteBuffer section, Collection<Edge> edges) {
+        StreetEdgeGeometryStore store = new StreetEdgeGeometryStore(section);
+        for (Edge edge : edges) {
+            if (edge instanceof StreetEdge) {
+                StreetEdge streetEdge = (StreetEdge) edge;
+                int index = streetEdge.getGeometryIndex();
+                if (index >= store.size()) {
+                    throw new IllegalStateException(
+                            "The street geometry section does not match the graph."
+                    );
+                }
+                if (index >= 0) {
+                    streetEdge.setGeometryStore(store);
+                }
+            }
+        }
+        return store;
+    }
+
+    public int size() {
+        return geometries.size();
+    }
+
+    LineString getGeometry(StreetEdge edge) {
+        try {
+            return cache.get(
+                    edge,
+                    () -> edge.uncompactGeometry(compactGeometry(edge.getGeometryIndex()))
+            );
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private byte[] compactGeometry(int index) {
+        return geometries.get(index);
+    }
+
+    /** Return {@code true} if any of the edges keeps its geometry in a store. */
+    public static boolean hasStoredGeometries(Collection<Edge> edges) {
+        for (Edge edge : edges) {
+            if (edge instanceof StreetEdge && ((StreetEdge) edge).getGeometryStore() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Write the geometries of the street edges to a section, and remove them from the edges
+     * while the rest of the graph is saved. The edges of a graph loaded with a geometry store,
+     * like a saved street graph, are read from the store.
+     */
+    public static class Writer {
+
+        private final List<StreetEdge> edges = new ArrayList<>();
+
+        private final List<byte[]> geometries = new ArrayList<>();
+
+        private final int[] geometryIndexes;
+
+        /** The index of each edge in the store it was loaded with, or -1. */
+        private final int[] storedIndexes;
+
+        /** The store each edge was loaded with, or {@code null}. */
+        private final List<StreetEdgeGeometryStore> stores = new ArrayList<>();
+
+        public Writer(Collection<Edge> edges) {
+            Map<byte[], Integer> indexByGeometry = new IdentityHashMap<>();
+            // The geometries read from a store, by store and index, so shared geometries are
+            // read and written once
+            Map<StreetEdgeGeometryStore, Map<Integer, byte[]>> storedGeometries =
+                    new IdentityHashMap<>();
+            TIntArrayList indexes = new TIntArrayList();
+            TIntArrayList storedIndexes = new TIntArrayList();
+            for (Edge edge : edges) {
+                if (!(edge instanceof StreetEdge)) {
+                    continue;
+                }
+                StreetEdge streetEdge = (StreetEdge) edge;
+                byte[] geometry = streetEdge.getCompactGeometry();
+                StreetEdgeGeometryStore store = streetEdge.getGeometryStore();
+                int storedIndex = -1;
+                if (geometry == null && store != null) {
+                    storedIndex = streetEdge.getGeometryIndex();
+                    geometry = storedGeometries
+                            .computeIfAbsent(store, it -> new HashMap<>())
+                            .computeIfAbsent(storedIndex, store::compactGeometry);
+                }
+                if (geometry == null) {
+                    continue;
+                }
+                Integer index = indexByGeometry.get(geometry);
+                if (index == null) {
+                    index = geometries.size();
+                    indexByGeometry.put(geometry, index);
+                    geometries.add(geometry);
+                }
+                this.edges.add(streetEdge);
+                indexes.add(index);
+                storedIndexes.add(storedIndex);
+                stores.add(storedIndex < 0 ? null : store);
+            }
+            this.geometryIndexes = indexes.toArray();
+            this.storedIndexes = storedIndexes.toArray();
+        }
+
+        /** The length of the section in bytes. */
+        public long length() {
+            return ByteArrayColumn.length(geometries);
+        }
+
+        /** The section is mapped as one buffer when it is loaded, so it must be less than 2GB. */
+        public boolean fitsInSection() {
+            return length() <= Integer.MAX_VALUE;
+        }
+
+        public void write(DataOutputStream out) throws IOException {
+            ByteArrayColumn.write(out, geometries);
+        }
+
+        /** Remove the geometries from the edges, so they are not saved twice. */
+        public void removeGeometriesFromEdges() {
+            for (int i = 0; i < edges.size(); i++) {
+                edges.get(i).moveGeometryToStore(geometryIndexes[i]);
+            }
+        }
+
+        /**
+         * Keep the geometries on the edges, when they are saved with the rest of the graph. The
+         * edges that use a store get their geometry back on the heap.
+         */
+        public void moveGeometriesToEdges() {
+            for (int i = 0; i < edges.size(); i++) {
+                edges.get(i).restoreGeometry(geometries.get(geometryIndexes[i]));
+            }
+        }
+
+        /**
+         * Give the edges their geometries back after the graph is saved, the edges that used a
+         * store use it again.
+         */
+        public void restoreGeometriesOfEdges() {
+            for (int i = 0; i < edges.size(); i++) {
+                if (storedIndexes[i] >= 0) {
+                    edges.get(i).moveGeometryToStore(storedIndexes[i]);
+                    edges.get(i).setGeometryStore(stores.get(i));
+                }
+                else {
+                    edges.get(i).restoreGeometry(geometries.get(geometryIndexes[i]));
+                }
+            }
+        }
+    }
+}
@@ -24,8 +24,14 @@ public class StreetWithElevationEdge extends StreetEdge {
 
     private double effectiveBikeWorkFactor = 1.0;
 
+    /** The elevation profile, or {@code null} if it is kept in the {@link #elevationStore}. */
     private byte[] packedElevationProfile;
 
+    /** The index of the profile in a {@link StreetEdgeElevationStore}, -1 if not in a store. */
+    private int elevationProfileIndex = -1;
+
+    private transient StreetEdgeElevationStore elevationStore;
+
     private float maxSlope;
 
     private boolean flattened;
@@ -59,7 +65,8 @@ public class StreetWithElevationEdge extends StreetEdge {
         boolean slopeLimit = getPermission().allows(StreetTraversalPermission.CAR);
         SlopeCosts costs = ElevationUtils.getSlopeCosts(elev, slopeLimit);
 
-        packedElevationProfile = CompactElevationProfile.compactElevationProfileWithRegularSamples(elev);
+        restoreElevationProfile(CompactElevationProfile.compactElevationProfileWithRegularSamples(elev));
+        elevationStore = null;
         effectiveBikeDistanceFactor = costs.slopeSpeedFactor;
         effectiveBikeWorkFactor = costs.slopeWorkFactor;
         maxSlope = (float)costs.maxSlope;
@@ -73,13 +80,47 @@ public class StreetWithElevationEdge extends StreetEdge {
 
     @Override
     public PackedCoordinateSequence getElevationProfile() {
+        byte[] profile = packedElevationProfile;
+        if (profile == null && elevationStore != null) {
+            profile = elevationStore.packedElevationProfile(elevationProfileIndex);
+        }
         return CompactElevationProfile.uncompactElevationProfileWithRegularSamples(
-                packedElevationProfile,
+                profile,
                 getEffectiveWalkDistance()
         );
     }
 
-    public boolean hasPackedElevationProfile () { return packedElevationProfile != null; }
+    public boolean hasPackedElevationProfile () {
+        return packedElevationProfile != null || elevationProfileIndex >= 0;
+    }
+
+    byte[] getPackedElevationProfile() {
+        return packedElevationProfile;
+    }
+
+    int getElevationProfileIndex() {
+        return elevationProfileIndex;
+    }
+
+    /** Drop the profile from the heap, it is saved in an elevation store with the given index. */
+    void moveElevationProfileToStore(int elevationProfileIndex) {
+        this.elevationProfileIndex = elevationProfileIndex;
+        this.packedElevationProfile = null;
+    }
+
+    void setElevationStore(StreetEdgeElevationStore elevationStore) {
+        this.elevationStore = elevationStore;
+    }
+
+    StreetEdgeElevationStore getElevationStore() {
+        return elevationStore;
+    }
+
+    /** Undo {@link #moveElevationProfileToStore(int)}. */
+    void restoreElevationProfile(byte[] packedElevationProfile) {
+        this.packedElevationProfile = packedElevationProfile;
+        this.elevationProfileIndex = -1;
+    }
 
     @Override
     public boolean isElevationFlattened() {
@@ -8,6 +8,10 @@ import org.slf4j.LoggerFactory;
 /**
  * Keeps account of timing information within the different parts of the routing process, and is
  * responsible of logging that information.
+ * <p>
+ * The direct street router may run in parallel with the transit router. The direct street router
+ * timings are then recorded by another thread, the caller must make sure to join that thread
+ * before {@link #finishedFiltering()} is called.
  */
 public class DebugAggregator {
   private static final Logger LOG = LoggerFactory.getLogger(DebugAggregator.class);
@@ -16,6 +20,7 @@ public class DebugAggregator {
   private long finishedPrecalculating;
   private long finishedDirectStreetRouter;
 
+  private long startedTransitRouter;
   private long finishedPatternFiltering;
   private long finishedAccessEgress;
   private long finishedRaptorSearch;
@@ -58,12 +63,20 @@ public class DebugAggregator {
     LOG.debug("Direct street routing took {} ms", directStreetRouterTime);
   }
 
+  /**
+   * Record the time when the transit router starts. This is after the direct street router is
+   * finished, or right after the initialization if the two run in parallel.
+   */
+  public void startedTransitRouter() {
+    startedTransitRouter = System.currentTimeMillis();
+  }
+
   /**
    * Record the time when we are finished with the creation of the raptor data models.
    */
   public void finishedPatternFiltering() {
     finishedPatternFiltering = System.currentTimeMillis();
-    tripPatternFilterTime = finishedPatternFiltering - finishedDirectStreetRouter;
+    tripPatternFilterTime = finishedPatternFiltering - startedTransitRouter;
     LOG.debug("Filtering tripPatterns took {} ms", tripPatternFilterTime);
   }
 
@@ -96,14 +109,14 @@ public class DebugAggregator {
   /** Record the time when we finished the tranist router search */
   public void finishedTransitRouter() {
     finishedTransitRouter = System.currentTimeMillis();
-    transitRouterTime = finishedTransitRouter - finishedDirectStreetRouter;
+    transitRouterTime = finishedTransitRouter - startedTransitRouter;
     LOG.debug("Transit routing took total {} ms", transitRouterTime);
   }
 
   /** Record the time when we finished filtering the paths for this request. */
   public void finishedFiltering() {
     finishedFiltering = System.currentTimeMillis();
-    filteringTime = finishedFiltering - finishedTransitRouter;
+    filteringTime = finishedFiltering - Math.max(finishedTransitRouter, finishedDirectStreetRouter);
     LOG.debug("Filtering took {} ms", transitRouterTime);
   }
 
@@ -0,0 +1,320 @@
+package org.opentripplanner.routing.graph;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import javax.annotation.Nullable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.opentripplanner.routing.graph.ChunkedSectionOutputStream.CHUNK_HEADER_SIZE;
+import static org.opentripplanner.routing.graph.ChunkedSectionOutputStream.CHUNK_SIZE;
+import static org.opentripplanner.routing.graph.ChunkedSectionOutputStream.DEFLATE;
+import static org.opentripplanner.routing.graph.ChunkedSectionOutputStream.END;
+import static org.opentripplanner.routing.graph.ChunkedSectionOutputStream.STORED;
+
+/**
+ * Read a section written by {@link ChunkedSectionOutputStream}. When the section is memory
+ * mapped, the checksums of all chunks are verified when the stream is opened, so a damaged or
+ * truncated graph file is reported before any of it is deserialized. When the section is read
+ * from a stream, the checksum of each chunk is verified before it is decompressed. The chunks
+ * are decompressed on a pool of worker threads, a limited number of chunks ahead of the reader.
+ */
+class ChunkedSectionInputStream extends InputStream {
+
+    /** The chunks of a memory mapped section, or {@code null} if the section is streamed. */
+    @Nullable
+    private final List<Chunk> chunks;
+
+    /**
+     * The stream of the section, or {@code null} if the section is memory mapped or all chunks
+     * are read.
+     */
+    @Nullable
+    private DataInputStream section;
+
+    private int nChunksRead = 0;
+
+    private final ExecutorService threadPool;
+
+    private final Deque<Future<ByteBuffer>> pending = new ArrayDeque<>();
+
+    private final int maxPending;
+
+    private int nextChunk = 0;
+
+    private ByteBuffer current = ByteBuffer.allocate(0);
+
+    private ChunkedSectionInputStream(
+            @Nullable List<Chunk> chunks,
+            @Nullable DataInputStream section,
+            int nThreads
+    ) {
+        this.chunks = chunks;
+        this.section = section;
+        this.threadPool = Executors.newFixedThreadPool(
+                Math.max(1, nThreads),
+                new ThreadFactoryBuilder().setNameFormat("graph-section-reader-%d").setDaemon(true).build()
+        );
+        this.maxPending = 2 * Math.max(1, nThreads);
+    }
+
+    /**
+     * Open the section and verify its checksums. The reader must not be closed before the
+     * returned stream is read.
+     */
+    static ChunkedSectionInputStream open(
+            GraphFileReader reader,
+            GraphFileSection section,
+            int nThreads
+    ) throws IOException {
+        ChunkedSectionInputStream in = new ChunkedSectionInputStream(
+                readChunks(reader, section),
+                null,
+                nThreads
+        );
+        try {
+            in.verifyChecksums();
+            return in;
+        }
+        catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Read a section from a stream, see {@link GraphFileStreamReader}. The chunks are read one at
+     * a time, so a damaged graph file is only reported when the damaged chunk is reached.
+     */
+    static ChunkedSectionInputStream read(InputStream section, int nThreads) {
+        return new ChunkedSectionInputStream(null, new DataInputStream(section), nThreads);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextChunkIfEmpty()) {
+            return -1;
+        }
+        return current.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!nextChunkIfEmpty()) {
+            return -1;
+        }
+        int n = Math.min(len, current.remaining());
+        current.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public void close() {
+        threadPool.shutdownNow();
+    }
+
+    /** Read the chunk headers and map the stored bytes of each chunk. */
+    private static List<Chunk> readChunks(GraphFileReader reader, GraphFileSection section)
+            throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        long sectionLength = reader.length(section);
+        long position = 0;
+        while (true) {
+            if (position + CHUNK_HEADER_SIZE > sectionLength) {
+                throw new IOException("The graph file is truncated.");
+            }
+            ByteBuffer header = reader.read(section, position, CHUNK_HEADER_SIZE);
+            int codec = header.getInt();
+            int length = header.getInt();
+            int storedLength = header.getInt();
+            int checksum = header.getInt();
+            position += CHUNK_HEADER_SIZE;
+
+            if (codec == END) {
+                // The last field of the trailer is the number of chunks
+                if (checksum != chunks.size()) {
+                    throw new IOException("The graph file is corrupt, chunks are missing.");
+                }
+                return chunks;
+            }
+            if (codec != STORED && codec != DEFLATE) {
+                throw new IOException("The graph file is corrupt, unknown chunk codec: " + codec);
+            }
+            if (length < 0 || storedLength < 0 || position + storedLength > sectionLength) {
+                throw new IOException("The graph file is truncated.");
+            }
+            chunks.add(new Chunk(
+                    codec,
+                    length,
+                    checksum,
+                    reader.map(section, position, storedLength),
+                    false
+            ));
+            position += storedLength;
+        }
+    }
+
+    private void verifyChecksums() throws IOException {
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (Chunk chunk : chunks) {
+            results.add(threadPool.submit(chunk::checksumMatches));
+        }
+        for (int i = 0; i < results.size(); i++) {
+            if (!join(results.get(i))) {
+                throw new IOException(
+                        "The graph file is corrupt, the checksum of chunk " + i + " does not match."
+                );
+            }
+        }
+    }
+
+    private boolean nextChunkIfEmpty() throws IOException {
+        while (!current.hasRemaining()) {
+            while (pending.size() < maxPending) {
+                Chunk chunk = nextChunk();
+                if (chunk == null) {
+                    break;
+                }
+                pending.add(threadPool.submit(chunk::decode));
+            }
+            if (pending.isEmpty()) {
+                return false;
+            }
+            current = join(pending.removeFirst());
+        }
+        return true;
+    }
+
+    @Nullable
+    private Chunk nextChunk() throws IOException {
+        if (chunks != null) {
+            return nextChunk < chunks.size() ? chunks.get(nextChunk++) : null;
+        }
+        if (section == null) {
+            return null;
+        }
+        try {
+            int codec = section.readInt();
+            int length = section.readInt();
+            int storedLength = section.readInt();
+            int checksum = section.readInt();
+            if (codec == END) {
+                // The last field of the trailer is the number of chunks
+                if (checksum != nChunksRead) {
+                    throw new IOException("The graph file is corrupt, chunks are missing.");
+                }
+                section = null;
+                return null;
+            }
+            if (codec != STORED && codec != DEFLATE) {
+                throw new IOException("The graph file is corrupt, unknown chunk codec: " + codec);
+            }
+            if (length < 0 || length > CHUNK_SIZE || storedLength < 0 || storedLength > length) {
+                throw new IOException("The graph file is corrupt, invalid chunk length.");
+            }
+            byte[] data = new byte[storedLength];
+            section.readFully(data);
+            nChunksRead++;
+            return new Chunk(codec, length, checksum, ByteBuffer.wrap(data), true);
+        }
+        catch (EOFException e) {
+            throw new IOException("The graph file is truncated.");
+        }
+    }
+
+    private static <T> T join(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Reading graph failed: " + e.getMessage(), e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Reading graph interrupted.", e);
+        }
+    }
+
+    private static class Chunk {
+        final int codec;
+        final int length;
+        final int checksum;
+        final ByteBuffer data;
+
+        /** Verify the checksum before decompressing, if it was not verified when opened. */
+        final boolean verify;
+
+        Chunk(int codec, int length, int checksum, ByteBuffer data, boolean verify) {
+            this.codec = codec;
+            this.length = length;
+            this.checksum = checksum;
+            this.data = data;
+            this.verify = verify;
+        }
+
+        boolean checksumMatches() {
+            CRC32C crc = new CRC32C();
+            crc.update(data.duplicate());
+            return (int) crc.getValue() == checksum;
+        }
+
+        /** Decompress the chunk, this is done on the worker threads. */
+        ByteBuffer decode() throws IOException {
+            if (verify && !checksumMatches()) {
+                throw new IOException(
+                        "The graph file is corrupt, the checksum of a chunk does not match."
+                );
+            }
+            if (codec == STORED) {
+                return data.duplicate();
+            }
+            Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(data.duplicate());
+                byte[] bytes = new byte[length];
+                int n = 0;
+                while (n < length) {
+                    int inflated = inflater.inflate(bytes, n, length - n);
+                    if (inflated == 0 && (inflater.finished() || inflater.needsInput()
+                            || inflater.needsDictionary())) {
+                        break;
+                    }
+                    n += inflated;
+                }
+                if (n != length) {
+                    throw new IOException("The graph file is corrupt, a chunk is too short.");
+                }
+                return ByteBuffer.wrap(bytes);
+            }
+            catch (DataFormatException e) {
+                throw new IOException("The graph file is corrupt: " + e.getMessage(), e);
+            }
+            finally {
+                inflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package org.opentripplanner.routing.graph;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32C;
+import java.util.zip.Deflater;
+
+/**
+ * Write a graph file section as a sequence of independently compressed and checksummed chunks.
+ * The data is cut into chunks of {@link #CHUNK_SIZE} bytes, and the chunks are compressed on a
+ * pool of worker threads, while they are written in order on the calling thread. The number of
+ * chunks waiting to be written is limited, to bound the memory used.
+ * <p>
+ * The layout of the section is, in big-endian order:
+ * <pre>
+ *   for each chunk:
+ *     int   codec, {@link #STORED} or {@link #DEFLATE}
+ *     int   uncompressed length
+ *     int   stored length
+ *     int   CRC32C checksum of the stored bytes
+ *     the stored bytes
+ *   int     {@link #END}
+ *   int     0
+ *   int     0
+ *   int     the number of chunks
+ * </pre>
+ * The checksums are of the stored bytes, so a reader can verify the whole section before it
+ * decompresses anything, see {@link ChunkedSectionInputStream}. The codec is set per chunk, a
+ * chunk that does not get smaller when it is compressed is stored as is.
+ */
+class ChunkedSectionOutputStream extends OutputStream {
+
+    static final int CHUNK_SIZE = 4 * 1024 * 1024;
+
+    static final int CHUNK_HEADER_SIZE = 16;
+
+    static final int STORED = 0;
+
+    static final int DEFLATE = 1;
+
+    static final int END = -1;
+
+    private final OutputStream out;
+
+    private final boolean compress;
+
+    private final ExecutorService threadPool;
+
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    private final int maxPending;
+
+    private byte[] buffer = new byte[CHUNK_SIZE];
+
+    private int count = 0;
+
+    private int nChunks = 0;
+
+    private boolean closed = false;
+
+    /**
+     * @param out the stream of the section, it is closed when this stream is closed.
+     * @param compress compress the chunks with Deflate if {@code true}, store them if not.
+     */
+    ChunkedSectionOutputStream(OutputStream out, boolean compress, int nThreads) {
+        this.out = out;
+        this.compress = compress;
+        this.threadPool = Executors.newFixedThreadPool(
+                Math.max(1, nThreads),
+                new ThreadFactoryBuilder().setNameFormat("graph-section-writer-%d").setDaemon(true).build()
+        );
+        this.maxPending = 2 * Math.max(1, nThreads);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buffer.length) {
+            submitChunk();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == buffer.length) {
+                submitChunk();
+            }
+            int n = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /** Write the chunks compressed so far, the last chunk is not cut before the stream is closed. */
+    @Override
+    public void flush() throws IOException {
+        while (!pending.isEmpty()) {
+            out.write(join(pending.removeFirst()));
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (count > 0) {
+                submitChunk();
+            }
+            flush();
+            ByteBuffer trailer = ByteBuffer.allocate(CHUNK_HEADER_SIZE);
+            trailer.putInt(END).putInt(0).putInt(0).putInt(nChunks);
+            out.write(trailer.array());
+            out.close();
+        }
+        finally {
+            threadPool.shutdownNow();
+        }
+    }
+
+    private void submitChunk() throws IOException {
+        byte[] data = buffer;
+        int length = count;
+        pending.add(threadPool.submit(() -> encode(data, length)));
+        ++nChunks;
+        buffer = new byte[CHUNK_SIZE];
+        count = 0;
+        while (pending.size() > maxPending) {
+            out.write(join(pending.removeFirst()));
+        }
+    }
+
+    /** Compress a chunk and add its header, this is done on the worker threads. */
+    private byte[] encode(byte[] data, int length) {
+        byte[] chunk = new byte[CHUNK_HEADER_SIZE + length];
+        int codec = STORED;
+        int storedLength = length;
+        if (compress) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+            try {
+                deflater.setInput(data, 0, length);
+                deflater.finish();
+                int n = deflater.deflate(chunk, CHUNK_HEADER_SIZE, length);
+                if (deflater.finished() && n < length) {
+                    codec = DEFLATE;
+                    storedLength = n;
+                }
+            }
+            finally {
+                deflater.end();
+            }
+        }
+        if (codec == STORED) {
+            System.arraycopy(data, 0, chunk, CHUNK_HEADER_SIZE, length);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(chunk, CHUNK_HEADER_SIZE, storedLength);
+        ByteBuffer.wrap(chunk)
+                .putInt(codec)
+                .putInt(length)
+                .putInt(storedLength)
+                .putInt((int) crc.getValue());
+        return storedLength == length ? chunk : Arrays.copyOf(chunk, CHUNK_HEADER_SIZE + storedLength);
+    }
+
+    private static byte[] join(Future<byte[]> future) {
+        try {
+            return future.get();
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Compressing graph failed: " + e.getMessage(), e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Writing graph interrupted.", e);
+        }
+    }
+}
@@ -5,6 +5,8 @@ import org.opentripplanner.model.Trip;
 import org.opentripplanner.common.MavenVersion;
 import org.opentripplanner.routing.api.request.RoutingRequest;
 import org.opentripplanner.routing.core.State;
+import org.opentripplanner.routing.edgetype.TemporaryEdge;
+import org.opentripplanner.routing.vertextype.TemporaryVertex;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
@@ -32,8 +34,22 @@ public abstract class Edge implements Serializable {
         }
         this.fromv = v1;
         this.tov = v2;
-        fromv.addOutgoing(this);
-        tov.addIncoming(this);
+        // Temporary edges are only added to the edge lists of temporary vertices, the main graph is
+        // not modified at request time. See RoutingContext#temporaryEdges.
+        if (isAttachedTo(fromv)) {
+            fromv.addOutgoing(this);
+        }
+        if (isAttachedTo(tov)) {
+            tov.addIncoming(this);
+        }
+    }
+
+    /**
+     * Return {@code false} if this is a temporary edge and the given vertex is part of the main
+     * graph.
+     */
+    private boolean isAttachedTo(Vertex v) {
+        return !(this instanceof TemporaryEdge) || v instanceof TemporaryVertex;
     }
 
     public Vertex getFromVertex() {
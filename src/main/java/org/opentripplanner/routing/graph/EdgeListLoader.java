@@ -0,0 +1,108 @@
+package org.opentripplanner.routing.graph;
+
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import java.util.Collection;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+
+/**
+ * Set the outgoing and incoming edge lists of all vertices at once, after a graph is
+ * deserialized. Adding the edges one by one with {@link Vertex#addOutgoing(Edge)} copies the edge
+ * array of the vertex for each edge, and takes a lock each time.
+ * <p>
+ * The degree of each vertex is counted first, so each edge array is allocated once with the
+ * right size. The edges are added to the arrays in the order of the edge collection, so the
+ * result is the same as adding them one by one. Looking up the vertices of the edges and
+ * allocating the arrays is done in parallel, and the outgoing and incoming arrays are filled at
+ * the same time.
+ * <p>
+ * The arrays are set on the vertices before {@link #load(Collection, Collection)} returns, and
+ * the parallel tasks are joined before that, so the edge lists are visible to the calling thread
+ * and to any thread the graph is handed to afterwards.
+ */
+class EdgeListLoader {
+
+    private final Vertex[] vertices;
+
+    private final Edge[] edges;
+
+    /** The index of the from and to vertex of each edge. */
+    private final int[] fromIndex;
+    private final int[] toIndex;
+
+    private final Edge[][] outgoing;
+    private final Edge[][] incoming;
+
+    private EdgeListLoader(Collection<Vertex> vertices, Collection<Edge> edges) {
+        this.vertices = vertices.toArray(new Vertex[0]);
+        this.edges = edges.toArray(new Edge[0]);
+        this.fromIndex = new int[this.edges.length];
+        this.toIndex = new int[this.edges.length];
+        this.outgoing = new Edge[this.vertices.length][];
+        this.incoming = new Edge[this.vertices.length][];
+    }
+
+    /**
+     * Replace the edge lists of the given vertices with the given edges. All vertices of the
+     * edges must be in the vertex collection.
+     */
+    static void load(Collection<Vertex> vertices, Collection<Edge> edges) {
+        new EdgeListLoader(vertices, edges).load();
+    }
+
+    private void load() {
+        findVertexIndexes();
+
+        int[] outDegree = new int[vertices.length];
+        int[] inDegree = new int[vertices.length];
+        for (int i = 0; i < edges.length; i++) {
+            outDegree[fromIndex[i]]++;
+            inDegree[toIndex[i]]++;
+        }
+
+        IntStream.range(0, vertices.length).parallel().forEach(v -> {
+            outgoing[v] = new Edge[outDegree[v]];
+            incoming[v] = new Edge[inDegree[v]];
+        });
+
+        // Each direction is filled in edge order, the two directions at the same time
+        ForkJoinTask<?> fillIncoming = ForkJoinTask.adapt(() -> fill(incoming, toIndex)).fork();
+        fill(outgoing, fromIndex);
+        fillIncoming.join();
+
+        IntStream.range(0, vertices.length).parallel().forEach(
+                v -> vertices[v].setEdgeLists(outgoing[v], incoming[v])
+        );
+    }
+
+    private void findVertexIndexes() {
+        TObjectIntHashMap<Vertex> indexOfVertex = new TObjectIntHashMap<>(
+                vertices.length, 0.5f, -1
+        );
+        for (int v = 0; v < vertices.length; v++) {
+            indexOfVertex.put(vertices[v], v);
+        }
+        // Only reading the map, so it can be shared by the tasks
+        IntStream.range(0, edges.length).parallel().forEach(i -> {
+            fromIndex[i] = index(indexOfVertex, edges[i].getFromVertex(), edges[i]);
+            toIndex[i] = index(indexOfVertex, edges[i].getToVertex(), edges[i]);
+        });
+    }
+
+    private void fill(Edge[][] edgeLists, int[] vertexIndex) {
+        int[] size = new int[vertices.length];
+        for (int i = 0; i < edges.length; i++) {
+            int v = vertexIndex[i];
+            edgeLists[v][size[v]++] = edges[i];
+        }
+    }
+
+    private static int index(TObjectIntHashMap<Vertex> indexOfVertex, Vertex vertex, Edge edge) {
+        int index = indexOfVertex.get(vertex);
+        if (index < 0) {
+            throw new IllegalStateException("The vertex of an edge is not in the graph: " + edge);
+        }
+        return index;
+    }
+}
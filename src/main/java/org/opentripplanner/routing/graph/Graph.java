@@ -24,6 +24,8 @@ import org.opentripplanner.common.model.T2;
 import org.opentripplanner.ext.flex.trip.FlexTrip;
 import org.opentripplanner.graph_builder.DataImportIssueStore;
 import org.opentripplanner.graph_builder.issues.NoFutureDates;
+import org.opentripplanner.graph_builder.module.TransferCache;
+import org.opentripplanner.graph_builder.services.GraphBuilderModule;
 import org.opentripplanner.model.Agency;
 import org.opentripplanner.model.FeedInfo;
 import org.opentripplanner.model.FeedScopedId;
@@ -56,11 +58,15 @@ import org.opentripplanner.routing.core.TransferTable;
 import org.opentripplanner.routing.edgetype.EdgeWithCleanup;
 import org.opentripplanner.routing.edgetype.StreetEdge;
 import org.opentripplanner.routing.impl.DelegatingTransitAlertServiceImpl;
+import org.opentripplanner.routing.impl.StreetSpatialIndexes;
 import org.opentripplanner.routing.impl.StreetVertexIndex;
 import org.opentripplanner.routing.services.TransitAlertService;
 import org.opentripplanner.routing.services.notes.StreetNotesService;
 import org.opentripplanner.routing.trippattern.Deduplicator;
 import org.opentripplanner.routing.util.ConcurrentPublished;
+import org.opentripplanner.routing.vertextype.TransitBoardingAreaVertex;
+import org.opentripplanner.routing.vertextype.TransitEntranceVertex;
+import org.opentripplanner.routing.vertextype.TransitPathwayNodeVertex;
 import org.opentripplanner.routing.vertextype.TransitStopVertex;
 import org.opentripplanner.updater.GraphUpdaterConfigurator;
 import org.opentripplanner.updater.GraphUpdaterManager;
@@ -68,6 +74,7 @@ import org.opentripplanner.util.WorldEnvelope;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
@@ -86,6 +93,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
 import java.util.prefs.Preferences;
 import java.util.stream.Collectors;
@@ -120,6 +128,7 @@ public class Graph implements Serializable {
 
     private long transitServiceEnds = 0;
 
+    /** Access is synchronized, since graph builder modules may add services concurrently. */
     private Map<Class<?>, Serializable> services = new HashMap<>();
 
     private TransferTable transferTable = new TransferTable();
@@ -133,10 +142,24 @@ public class Graph implements Serializable {
 
     public transient StreetVertexIndex streetIndex;
 
+    /**
+     * Spatial indexes built at the end of the graph build, or loaded together with the graph.
+     * They are used by {@link #index()} instead of building new ones, and saved with the graph.
+     * They are dropped as soon as vertices are added to the graph, or vertices or edges are
+     * removed from it.
+     */
+    private transient StreetSpatialIndexes streetSpatialIndexes;
+
     public transient GraphIndex index;
 
     public final transient Deduplicator deduplicator = new Deduplicator();
 
+    /**
+     * Held by the graph builder modules running concurrently while they change the graph, so the
+     * changes are made by one module at a time, see {@link #getBuildLock()}.
+     */
+    private final transient ReentrantLock buildLock = new ReentrantLock();
+
     /**
      * Map from GTFS ServiceIds to integers close to 0. Allows using BitSets instead of {@code Set<Object>}.
      * An empty Map is created before the Graph is built to allow registering IDs from multiple feeds.   
@@ -250,8 +273,11 @@ public class Graph implements Serializable {
     /** The distance between elevation samples used in CompactElevationProfile. */
     private double distanceBetweenElevationSamples;
 
-    /** Data model for Raptor routing, with realtime updates applied (if any). */
-    private transient TransitLayer transitLayer;
+    /**
+     * Data model for Raptor routing, with realtime updates applied (if any). This is replaced by
+     * the transit layer date window while the server is running.
+     */
+    private transient volatile TransitLayer transitLayer;
 
     /** Data model for Raptor routing, with realtime updates applied (if any). */
     private transient ConcurrentPublished<TransitLayer> realtimeTransitLayer =
@@ -261,6 +287,12 @@ public class Graph implements Serializable {
 
     private transient TransitAlertService transitAlertService;
 
+    /**
+     * The transfers found when the graph was built, saved with the graph so the next build on the
+     * same street graph can reuse them. Only set by the graph builder, see {@link TransferCache}.
+     */
+    private transient TransferCache transferCache;
+
 
     /**
      * Hack. I've tried three different ways of generating unique labels.
@@ -314,6 +346,7 @@ public class Graph implements Serializable {
      *           - and create factory methods for each type of Vertex in the VertexCollection.
      */
     public void addVertex(Vertex v) {
+        streetSpatialIndexes = null;
         Vertex old = vertices.put(v.getLabel(), v);
         if (old != null) {
             if (old == v)
@@ -329,6 +362,7 @@ public class Graph implements Serializable {
      */
     public void removeEdge(Edge e) {
         if (e != null) {
+            streetSpatialIndexes = null;
             turnRestrictions.remove(e);
             streetNotesService.removeStaticNotes(e);
 
@@ -450,6 +484,15 @@ public class Graph implements Serializable {
         this.transitLayer = transitLayer;
     }
 
+    @Nullable
+    public TransferCache getTransferCache() {
+        return transferCache;
+    }
+
+    public void setTransferCache(TransferCache transferCache) {
+        this.transferCache = transferCache;
+    }
+
     public TransitLayer getRealtimeTransitLayer() {
         return realtimeTransitLayer.get();
     }
@@ -469,20 +512,20 @@ public class Graph implements Serializable {
     }
 
     @SuppressWarnings("unchecked")
-    public <T extends Serializable> T putService(Class<T> serviceType, T service) {
+    public synchronized <T extends Serializable> T putService(Class<T> serviceType, T service) {
         return (T) services.put(serviceType, service);
     }
 
-    public boolean hasService(Class<? extends Serializable> serviceType) {
+    public synchronized boolean hasService(Class<? extends Serializable> serviceType) {
         return services.containsKey(serviceType);
     }
 
     @SuppressWarnings("unchecked")
-    public <T extends Serializable> T getService(Class<T> serviceType) {
+    public synchronized <T extends Serializable> T getService(Class<T> serviceType) {
         return (T) services.get(serviceType);
     }
 
-    public <T extends Serializable> T getService(Class<T> serviceType, boolean autoCreate) {
+    public synchronized <T extends Serializable> T getService(Class<T> serviceType, boolean autoCreate) {
         T t = (T)services.get(serviceType);
         if (t == null && autoCreate) {
             try {
@@ -497,6 +540,7 @@ public class Graph implements Serializable {
     }
 
     public void remove(Vertex vertex) {
+        streetSpatialIndexes = null;
         vertices.remove(vertex.getLabel());
     }
 
@@ -577,6 +621,23 @@ public class Graph implements Serializable {
         this.bundle = bundle;
     }
 
+    /**
+     * Use spatial indexes built from this graph when it is indexed, and save them with it. Must
+     * not be called if the graph has changed since the indexes were built.
+     */
+    public void setStreetSpatialIndexes(StreetSpatialIndexes streetSpatialIndexes) {
+        this.streetSpatialIndexes = streetSpatialIndexes;
+    }
+
+    /**
+     * The spatial indexes built from this graph, {@code null} if they are not built or the graph
+     * has changed since.
+     */
+    @Nullable
+    public StreetSpatialIndexes getStreetSpatialIndexes() {
+        return streetSpatialIndexes;
+    }
+
     public int countVertices() {
         return vertices.size();
     }
@@ -619,7 +680,12 @@ public class Graph implements Serializable {
      */
     public void index () {
         LOG.info("Index graph...");
-        streetIndex = new StreetVertexIndex(this);
+        if (streetSpatialIndexes != null) {
+            streetIndex = new StreetVertexIndex(this, streetSpatialIndexes);
+        }
+        else {
+            streetIndex = new StreetVertexIndex(this);
+        }
         LOG.debug("Rebuilding edge and vertex indices.");
         for (TripPattern tp : tripPatternForId.values()) {
             // Skip frequency-based patterns which have no timetable (null)
@@ -673,11 +739,15 @@ public class Graph implements Serializable {
         return this.calendarService;
     }
 
+    /**
+     * Remove the vertices without edges. The transit stops, entrances, pathway nodes and boarding
+     * areas are kept, since they are linked to the streets after the islands are pruned.
+     */
     public int removeEdgelessVertices() {
         int removed = 0;
         List<Vertex> toRemove = new LinkedList<Vertex>();
         for (Vertex v : this.getVertices())
-            if (v.getDegreeOut() + v.getDegreeIn() == 0)
+            if (v.getDegreeOut() + v.getDegreeIn() == 0 && !isTransitVertex(v))
                 toRemove.add(v);
         // avoid concurrent vertex map modification
         for (Vertex v : toRemove) {
@@ -688,6 +758,22 @@ public class Graph implements Serializable {
         return removed;
     }
 
+    private static boolean isTransitVertex(Vertex v) {
+        return v instanceof TransitStopVertex
+                || v instanceof TransitEntranceVertex
+                || v instanceof TransitPathwayNodeVertex
+                || v instanceof TransitBoardingAreaVertex;
+    }
+
+    /**
+     * The lock a graph builder module that runs concurrently with other modules must hold while
+     * it changes the graph, see {@link GraphBuilderModule#canRunConcurrently()}. Reading the input
+     * data can be done without it.
+     */
+    public ReentrantLock getBuildLock() {
+        return buildLock;
+    }
+
     public Collection<String> getFeedIds() {
         return feedIds;
     }
@@ -753,7 +839,7 @@ public class Graph implements Serializable {
      *
      * Transit stops are added to the envelope as they are added to the graph
      */
-    public void calculateEnvelope() {
+    public synchronized void calculateEnvelope() {
         this.envelope = new WorldEnvelope();
 
         for (Vertex v : this.getVertices()) {
@@ -786,7 +872,7 @@ public class Graph implements Serializable {
      * @param  x  the value to lower the minimum x to or to raise the maximum x to
      * @param  y  the value to lower the minimum y to or to raise the maximum y to
      */
-    public void expandToInclude(double x, double y) {
+    public synchronized void expandToInclude(double x, double y) {
         //Envelope can be empty if graph building is run without OSM data
         if (this.envelope == null) {
             calculateEnvelope();
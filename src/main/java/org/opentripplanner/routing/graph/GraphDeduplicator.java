@@ -0,0 +1,138 @@
+package org.opentripplanner.routing.graph;
+
+import org.opentripplanner.model.FeedScopedId;
+import org.opentripplanner.model.Trip;
+import org.opentripplanner.model.TripPattern;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.trippattern.Deduplicator;
+import org.opentripplanner.routing.trippattern.FrequencyEntry;
+import org.opentripplanner.routing.trippattern.TripTimes;
+import org.opentripplanner.util.I18NString;
+import org.opentripplanner.util.MemoryEstimator;
+import org.opentripplanner.util.NonLocalizedString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Replace the equal names, ids and strings held by the vertices, street edges and trips of a
+ * graph with one shared instance, using the {@link Deduplicator} of the graph. A street name is
+ * repeated on every edge and vertex of the street, and a service id or headsign on every trip
+ * that uses it. The modules that build the graph create a new instance for each of them.
+ * <p>
+ * This is done at the end of the graph build. The graph is serialized with references, so a
+ * shared instance is written once and stays shared when the graph is loaded. Only freshly built
+ * graphs are deduplicated, unless the router config parameter {@code deduplicateGraphOnLoad} is
+ * set, then it is done again when the server starts. This is for graphs built without it, and
+ * fills the deduplicator of the graph, so the trips added by the real-time updaters share the
+ * strings of the loaded graph.
+ * <p>
+ * The entity ids are not deduplicated: they are final, and each entity has its own id anyway.
+ * The street traversal permissions are an enum, so they are shared already.
+ */
+public class GraphDeduplicator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GraphDeduplicator.class);
+
+    private final Deduplicator deduplicator;
+
+    private int nDuplicates = 0;
+
+    private long bytesSaved = 0;
+
+    public GraphDeduplicator(Deduplicator deduplicator) {
+        this.deduplicator = deduplicator;
+    }
+
+    public void deduplicate(Graph graph) {
+        for (Vertex vertex : graph.getVertices()) {
+            vertex.setName(deduplicateName(vertex.getRawName()));
+        }
+        for (StreetEdge edge : graph.getStreetEdges()) {
+            edge.setName(deduplicateName(edge.getRawName()));
+        }
+        Set<Trip> trips = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (TripPattern pattern : graph.tripPatternForId.values()) {
+            for (TripTimes tripTimes : pattern.scheduledTimetable.tripTimes) {
+                trips.add(tripTimes.trip);
+            }
+            for (FrequencyEntry frequencyEntry : pattern.scheduledTimetable.frequencyEntries) {
+                trips.add(frequencyEntry.tripTimes.trip);
+            }
+        }
+        for (Trip trip : trips) {
+            deduplicateTrip(trip);
+        }
+        LOG.info(
+                "Deduplicated {} names, ids and strings in the graph, saving about {} MB.",
+                nDuplicates,
+                String.format("%.1f", bytesSaved / (1024.0 * 1024.0))
+        );
+    }
+
+    /** The number of objects replaced by an equal object. */
+    public int getDuplicateCount() {
+        return nDuplicates;
+    }
+
+    /**
+     * The estimated number of bytes used by the objects replaced. This assumes nothing else
+     * refers to them, and does not include the memory used by the deduplicator.
+     */
+    public long getBytesSaved() {
+        return bytesSaved;
+    }
+
+
+    /* private methods */
+
+    private void deduplicateTrip(Trip trip) {
+        trip.setServiceId(deduplicateId(trip.getServiceId()));
+        trip.setShapeId(deduplicateId(trip.getShapeId()));
+        trip.setTripHeadsign(deduplicateString(trip.getTripHeadsign()));
+        trip.setRouteShortName(deduplicateString(trip.getRouteShortName()));
+        trip.setTripShortName(deduplicateString(trip.getTripShortName()));
+        trip.setBlockId(deduplicateString(trip.getBlockId()));
+        trip.setDirectionId(deduplicateString(trip.getDirectionId()));
+    }
+
+    private I18NString deduplicateName(I18NString original) {
+        I18NString canonical = deduplicator.deduplicateObject(I18NString.class, original);
+        if (canonical != original) {
+            nDuplicates++;
+            bytesSaved += MemoryEstimator.shallowSize(original);
+            if (original instanceof NonLocalizedString) {
+                bytesSaved += stringSize(original.toString(), canonical.toString());
+            }
+        }
+        return canonical;
+    }
+
+    private FeedScopedId deduplicateId(FeedScopedId original) {
+        FeedScopedId canonical = deduplicator.deduplicateObject(FeedScopedId.class, original);
+        if (canonical != original) {
+            nDuplicates++;
+            bytesSaved += MemoryEstimator.shallowSize(original)
+                    + stringSize(original.getFeedId(), canonical.getFeedId())
+                    + stringSize(original.getId(), canonical.getId());
+        }
+        return canonical;
+    }
+
+    private String deduplicateString(String original) {
+        String canonical = deduplicator.deduplicateString(original);
+        if (canonical != original) {
+            nDuplicates++;
+            bytesSaved += MemoryEstimator.shallowSize(original);
+        }
+        return canonical;
+    }
+
+    /** The size of a string held by a replaced object, if it is not the string of the canonical one. */
+    private static long stringSize(String original, String canonical) {
+        return original == canonical ? 0 : MemoryEstimator.shallowSize(original);
+    }
+}
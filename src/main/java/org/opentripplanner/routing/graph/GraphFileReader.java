@@ -0,0 +1,181 @@
+package org.opentripplanner.routing.graph;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.opentripplanner.routing.graph.GraphFileWriter.FORMAT_VERSION;
+import static org.opentripplanner.routing.graph.GraphFileWriter.HEADER_SIZE;
+import static org.opentripplanner.routing.graph.GraphFileWriter.LAST_SECTION_LENGTH;
+import static org.opentripplanner.routing.graph.GraphFileWriter.MAGIC;
+import static org.opentripplanner.routing.graph.GraphFileWriter.SECTION_HEADER_SIZE;
+
+/**
+ * Read a local graph file written by {@link GraphFileWriter}. Only the section headers are read
+ * when the file is opened, the sections are memory mapped when they are used. A mapped section
+ * stays valid after the reader is closed, so the data can be used directly by the graph without
+ * copying it to the heap. A graph that is not a local file is read with
+ * {@link GraphFileStreamReader}.
+ */
+class GraphFileReader implements AutoCloseable {
+
+    private final FileChannel channel;
+
+    private final Map<GraphFileSection, SectionInfo> sections = new EnumMap<>(GraphFileSection.class);
+
+    private GraphFileReader(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /** Return {@code true} if the stream starts like a graph file, the stream is read. */
+    static boolean isGraphFile(InputStream in) throws IOException {
+        try {
+            return new DataInputStream(in).readLong() == MAGIC;
+        }
+        catch (EOFException e) {
+            return false;
+        }
+    }
+
+    static GraphFileReader open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            GraphFileReader reader = new GraphFileReader(channel);
+            reader.readSectionHeaders();
+            return reader;
+        }
+        catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    boolean hasSection(GraphFileSection section) {
+        return sections.containsKey(section);
+    }
+
+    /** The format version the section was written with. */
+    int version(GraphFileSection section) {
+        return info(section).version;
+    }
+
+    /** Map a section of up to 2GB, the buffer is big-endian. */
+    ByteBuffer map(GraphFileSection section) throws IOException {
+        SectionInfo info = info(section);
+        if (info.length > Integer.MAX_VALUE) {
+            throw new IOException("Graph file section " + section + " is too large to map.");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, info.offset, info.length);
+    }
+
+    /** The length of the section in bytes. */
+    long length(GraphFileSection section) {
+        return info(section).length;
+    }
+
+    /** Map a part of a section, the position is relative to the start of the section. */
+    ByteBuffer map(GraphFileSection section, long position, int length) throws IOException {
+        SectionInfo info = info(section);
+        checkRange(info, position, length);
+        return channel.map(FileChannel.MapMode.READ_ONLY, info.offset + position, length);
+    }
+
+    /**
+     * Read a small part of a section to the heap, the position is relative to the start of the
+     * section.
+     */
+    ByteBuffer read(GraphFileSection section, long position, int length) throws IOException {
+        SectionInfo info = info(section);
+        checkRange(info, position, length);
+        return read(info.offset + position, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private SectionInfo info(GraphFileSection section) {
+        SectionInfo info = sections.get(section);
+        if (info == null) {
+            throw new IllegalArgumentException("The graph file has no " + section + " section.");
+        }
+        return info;
+    }
+
+    private static void checkRange(SectionInfo info, long position, int length)
+            throws IOException {
+        if (position < 0 || length < 0 || position + length > info.length) {
+            throw new IOException("The graph file is truncated.");
+        }
+    }
+
+    private void readSectionHeaders() throws IOException {
+        long size = channel.size();
+        ByteBuffer header = read(0, HEADER_SIZE);
+        if (header.getLong() != MAGIC) {
+            throw new IOException("Not an OTP graph file.");
+        }
+        int formatVersion = header.getInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException(
+                    "Graph file format version " + formatVersion + " is not supported, expected "
+                    + FORMAT_VERSION + ". Rebuild the graph with this version of OTP."
+            );
+        }
+        long position = HEADER_SIZE;
+        while (position < size) {
+            ByteBuffer sectionHeader = read(position, SECTION_HEADER_SIZE);
+            int id = sectionHeader.getInt();
+            int version = sectionHeader.getInt();
+            long length = sectionHeader.getLong();
+            long offset = position + SECTION_HEADER_SIZE;
+            boolean last = length == LAST_SECTION_LENGTH;
+            if (last) {
+                length = size - offset;
+            }
+            if (length < 0 || offset + length > size) {
+                throw new IOException("The graph file is truncated.");
+            }
+            GraphFileSection section = GraphFileSection.of(id);
+            // Sections written by a newer version of OTP are skipped
+            if (section != null) {
+                sections.put(section, new SectionInfo(offset, length, version));
+            }
+            if (last) {
+                break;
+            }
+            position = offset + (length + 7) / 8 * 8;
+        }
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("The graph file is truncated.");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static class SectionInfo {
+        final long offset;
+        final long length;
+        final int version;
+
+        SectionInfo(long offset, long length, int version) {
+            this.offset = offset;
+            this.length = length;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.opentripplanner.routing.graph;
+
+/**
+ * The types of the sections of a graph file, see {@link GraphFileWriter}. Each type has its own
+ * format version, so a section can change format without changing the other sections. A section
+ * with an unknown type is skipped when the file is read, so a section type can be added without
+ * making older graph files unreadable.
+ * <p>
+ * The ids are written to the file, never change or reuse them.
+ */
+enum GraphFileSection {
+
+    /**
+     * The Kryo serialized {@link SerializedGraphObject}, deserialized in full when the graph is
+     * loaded. The optional Raptor transit layer is part of it, added in version 2, since it refers
+     * to the stops, patterns and trip times of the graph. Version 3 writes the Kryo stream in
+     * compressed chunks, see {@link ChunkedSectionOutputStream}. Version 4 adds the index of the
+     * elevation profile of the street edges in the {@link #STREET_ELEVATION} section.
+     */
+    GRAPH(1, 4),
+
+    /**
+     * The street edge geometries, see {@link
+     * org.opentripplanner.routing.edgetype.StreetEdgeGeometryStore}.
+     */
+    STREET_GEOMETRY(2, 1),
+
+    /**
+     * The transfers of each stop, reused by the next build on the same street graph, see {@link
+     * org.opentripplanner.graph_builder.module.TransferCache}. Written in chunks, see {@link
+     * ChunkedSectionOutputStream}.
+     */
+    TRANSFERS(3, 1),
+
+    /**
+     * The street edge elevation profiles, see {@link
+     * org.opentripplanner.routing.edgetype.StreetEdgeElevationStore}.
+     */
+    STREET_ELEVATION(4, 1);
+
+    final int id;
+
+    /** The version of the format of the section written by this version of OTP. */
+    final int version;
+
+    GraphFileSection(int id, int version) {
+        this.id = id;
+        this.version = version;
+    }
+
+    static GraphFileSection of(int id) {
+        for (GraphFileSection it : values()) {
+            if (it.id == id) {
+                return it;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,210 @@
+package org.opentripplanner.routing.graph;
+
+import com.google.common.io.ByteStreams;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+import static org.opentripplanner.routing.graph.GraphFileWriter.FORMAT_VERSION;
+import static org.opentripplanner.routing.graph.GraphFileWriter.LAST_SECTION_LENGTH;
+import static org.opentripplanner.routing.graph.GraphFileWriter.MAGIC;
+
+/**
+ * Read a graph file written by {@link GraphFileWriter} from a stream, one section after the other.
+ * This is used for a graph that is not a local file, like a graph in cloud storage, which can not
+ * be memory mapped by {@link GraphFileReader}. Only the sections that are used are read, reading
+ * stops when the caller has what it needs.
+ */
+class GraphFileStreamReader implements AutoCloseable {
+
+    private final DataInputStream in;
+
+    private GraphFileSection section;
+
+    private int version;
+
+    /** The bytes left in the current section, or -1 if it is the last section. */
+    private long remaining = 0;
+
+    /** The padding after the current section. */
+    private int padding = 0;
+
+    private GraphFileStreamReader(InputStream in) {
+        this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+    }
+
+    static GraphFileStreamReader open(InputStream in) throws IOException {
+        GraphFileStreamReader reader = new GraphFileStreamReader(in);
+        try {
+            reader.readHeader();
+            return reader;
+        }
+        catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Skip the rest of the current section and move to the next section of a type known by this
+     * version of OTP.
+     *
+     * @return the section, or {@code null} if there are no more sections.
+     */
+    @Nullable
+    GraphFileSection nextSection() throws IOException {
+        while (remaining != LAST_SECTION_LENGTH) {
+            skipFully(remaining + padding);
+            int id;
+            try {
+                id = in.readInt();
+            }
+            catch (EOFException e) {
+                section = null;
+                remaining = LAST_SECTION_LENGTH;
+                return null;
+            }
+            try {
+                version = in.readInt();
+                remaining = in.readLong();
+            }
+            catch (EOFException e) {
+                throw new IOException("The graph file is truncated.");
+            }
+            padding = remaining < 0 ? 0 : (int) ((8 - remaining % 8) % 8);
+            // Sections written by a newer version of OTP are skipped
+            section = GraphFileSection.of(id);
+            if (section != null) {
+                return section;
+            }
+        }
+        section = null;
+        return null;
+    }
+
+    /** The format version the current section was written with. */
+    int version() {
+        return version;
+    }
+
+    /**
+     * Read the current section as a stream. The stream must be read before moving to the next
+     * section, and closing it does not close this reader.
+     */
+    InputStream sectionStream() {
+        return new SectionInputStream();
+    }
+
+    /**
+     * Read the current section of up to 2GB to a direct buffer, which is not on the heap, like a
+     * memory mapped section. The buffer is big-endian.
+     */
+    ByteBuffer readSection() throws IOException {
+        if (remaining == LAST_SECTION_LENGTH || remaining > Integer.MAX_VALUE) {
+            throw new IOException("Graph file section " + section + " is too large to read.");
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) remaining);
+        ReadableByteChannel channel = Channels.newChannel(sectionStream());
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("The graph file is truncated.");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void readHeader() throws IOException {
+        try {
+            if (in.readLong() != MAGIC) {
+                throw new IOException("Not an OTP graph file.");
+            }
+            int formatVersion = in.readInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException(
+                        "Graph file format version " + formatVersion + " is not supported, "
+                        + "expected " + FORMAT_VERSION + ". Rebuild the graph with this version "
+                        + "of OTP."
+                );
+            }
+            // Reserved
+            in.readInt();
+        }
+        catch (EOFException e) {
+            throw new IOException("Not an OTP graph file.");
+        }
+    }
+
+    private void skipFully(long n) throws IOException {
+        try {
+            ByteStreams.skipFully(in, n);
+        }
+        catch (EOFException e) {
+            throw new IOException("The graph file is truncated.");
+        }
+    }
+
+    /** The current section, the last section runs to the end of the stream. */
+    private class SectionInputStream extends InputStream {
+
+        @Override
+        public int read() throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b < 0) {
+                return endOfStream();
+            }
+            if (remaining > 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (remaining == 0) {
+                return -1;
+            }
+            if (remaining > 0) {
+                len = (int) Math.min(len, remaining);
+            }
+            int n = in.read(b, off, len);
+            if (n < 0) {
+                return endOfStream();
+            }
+            if (remaining > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() {
+            // The reader closes the stream
+        }
+
+        private int endOfStream() throws IOException {
+            if (remaining > 0) {
+                throw new IOException("The graph file is truncated.");
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.opentripplanner.routing.graph;
+
+import com.google.common.io.CountingOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Write a graph file made of typed sections. The layout of the file is, in big-endian order:
+ * <pre>
+ *   long    magic number, "OTPGRAPH" in ASCII
+ *   int     format version
+ *   int     reserved, 0
+ *   for each section:
+ *     int   section type, see {@link GraphFileSection}
+ *     int   section format version
+ *     long  section length in bytes, or -1 for the last section, which runs to the end of the file
+ *     the section data, padded with zeros to a multiple of 8 bytes
+ * </pre>
+ * Every section starts at a multiple of 8 bytes, so a section can be used directly from a memory
+ * mapping of the file, see {@link GraphFileReader}. The street geometries and elevation profiles
+ * are used that way, as columns read in place. The rest of the graph and the transit layer are in
+ * one Kryo serialized section that is deserialized in full when the graph is loaded, see
+ * {@link GraphFileSection}.
+ * <p>
+ * The file is written as one stream, so it can be written to any data source, and read from one,
+ * see {@link GraphFileStreamReader}. Sections with a known length are written first, and the
+ * section that is too large to buffer, the Kryo serialized graph, is written last.
+ */
+class GraphFileWriter implements AutoCloseable {
+
+    /** "OTPGRAPH" in ASCII, this is used to tell the file from an old Kryo stream graph file. */
+    static final long MAGIC = 0x4F54504752415048L;
+
+    static final int FORMAT_VERSION = 1;
+
+    static final int HEADER_SIZE = 16;
+
+    static final int SECTION_HEADER_SIZE = 16;
+
+    static final long LAST_SECTION_LENGTH = -1;
+
+    private final CountingOutputStream counter;
+
+    private final DataOutputStream out;
+
+    private boolean lastSectionStarted = false;
+
+    GraphFileWriter(OutputStream outputStream) throws IOException {
+        this.counter = new CountingOutputStream(new BufferedOutputStream(outputStream, 1 << 16));
+        this.out = new DataOutputStream(counter);
+        out.writeLong(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(0);
+    }
+
+    /** Write the content of a section, the content must write exactly {@code length} bytes. */
+    void writeSection(GraphFileSection section, long length, SectionContent content)
+            throws IOException {
+        if (lastSectionStarted) {
+            throw new IllegalStateException("The last section of the graph file is written.");
+        }
+        writeSectionHeader(section, length);
+        long start = counter.getCount();
+        content.write(out);
+        out.flush();
+        long written = counter.getCount() - start;
+        if (written != length) {
+            throw new IllegalStateException(
+                    "Graph file section " + section + " is " + written + " bytes, expected " + length
+            );
+        }
+        while (counter.getCount() % 8 != 0) {
+            out.writeByte(0);
+        }
+    }
+
+    /**
+     * Start the last section, running to the end of the file. Write its content to the returned
+     * stream, and close this writer when done.
+     */
+    OutputStream writeLastSection(GraphFileSection section) throws IOException {
+        if (lastSectionStarted) {
+            throw new IllegalStateException("The last section of the graph file is written.");
+        }
+        writeSectionHeader(section, LAST_SECTION_LENGTH);
+        lastSectionStarted = true;
+        // Closing the section stream does not close the file, this writer does that
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeSectionHeader(GraphFileSection section, long length) throws IOException {
+        out.writeInt(section.id);
+        out.writeInt(section.version);
+        out.writeLong(length);
+    }
+
+    /** Write the data of a section. */
+    interface SectionContent {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,232 @@
+package org.opentripplanner.routing.graph;
+
+import org.opentripplanner.model.Route;
+import org.opentripplanner.model.Stop;
+import org.opentripplanner.model.TransitEntity;
+import org.opentripplanner.model.Trip;
+import org.opentripplanner.model.TripPattern;
+import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
+import org.opentripplanner.routing.algorithm.raptor.transit.TripPatternForDate;
+import org.opentripplanner.routing.algorithm.raptor.transit.TripPatternWithRaptorStopIndexes;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.trippattern.TripTimes;
+import org.opentripplanner.util.MemoryEstimator;
+import org.opentripplanner.util.TableFormatter;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import static org.opentripplanner.util.TableFormatter.Align.Left;
+import static org.opentripplanner.util.TableFormatter.Align.Right;
+
+/**
+ * An estimate of the heap used by each part of a graph, to size the heap of a server from the
+ * data, and to find out which part grew when a graph no longer fits. The sizes are estimated by
+ * walking the objects of each part, see {@link MemoryEstimator}. The walk of a part stops at the
+ * vertices, edges, transit entities, trip times, patterns and the graph itself, so each of those
+ * is counted in its own part and the parts can be added up. The parts do not cover everything in
+ * the graph, compare the total with the heap used.
+ * <p>
+ * The report is included in the build report, and available from the actuator API.
+ */
+public class GraphMemoryReport {
+
+    /** The maximum number of objects walked for each part, more are sampled. */
+    private static final int MAX_SAMPLE_SIZE = 50_000;
+
+    private final List<Part> parts = new ArrayList<>();
+
+    private final long usedHeapBytes;
+
+    private GraphMemoryReport(long usedHeapBytes) {
+        this.usedHeapBytes = usedHeapBytes;
+    }
+
+    public static GraphMemoryReport create(Graph graph) {
+        Runtime runtime = Runtime.getRuntime();
+        GraphMemoryReport report = new GraphMemoryReport(runtime.totalMemory() - runtime.freeMemory());
+        MemoryEstimator estimator = new MemoryEstimator(GraphMemoryReport::isBoundary, MAX_SAMPLE_SIZE);
+
+        List<StreetEdge> streetEdges = new ArrayList<>();
+        List<Edge> otherEdges = new ArrayList<>();
+        for (Edge edge : graph.getEdges()) {
+            if (edge instanceof StreetEdge) {
+                streetEdges.add((StreetEdge) edge);
+            }
+            else {
+                otherEdges.add(edge);
+            }
+        }
+
+        // The byte arrays of the street edges are the compact geometries and elevation profiles,
+        // they are counted in their own part. They are read by reflection, so only from a sample
+        // of the edges, and the result is scaled up to all edges.
+        List<StreetEdge> sampledStreetEdges = sample(streetEdges);
+        List<byte[]> geometries = sampledStreetEdges.stream()
+                .flatMap(it -> byteArrays(it).stream())
+                .collect(Collectors.toList());
+        double streetEdgeScale = sampledStreetEdges.isEmpty()
+                ? 0
+                : (double) streetEdges.size() / sampledStreetEdges.size();
+        report.add(
+                "Street edge geometries and elevation profiles",
+                Math.round(geometries.size() * streetEdgeScale),
+                Math.round(estimator.estimate(geometries) * streetEdgeScale)
+        );
+        report.add("Street edges", streetEdges.size(), new MemoryEstimator(
+                it -> isBoundary(it) || it instanceof byte[], MAX_SAMPLE_SIZE
+        ).estimate(streetEdges));
+        report.add("Other edges", otherEdges.size(), estimator.estimate(otherEdges));
+        report.add("Vertices", graph.countVertices(), estimator.estimate(graph.getVertices()));
+
+        List<Object> spatialIndexes = new ArrayList<>();
+        spatialIndexes.add(graph.streetIndex);
+        if (graph.index != null) {
+            spatialIndexes.add(graph.index.getStopSpatialIndex());
+        }
+        spatialIndexes.removeIf(Objects::isNull);
+        report.add("Spatial indexes", spatialIndexes.size(), estimator.estimate(spatialIndexes));
+
+        Collection<TripPattern> patterns = graph.tripPatternForId.values();
+        List<TripTimes> tripTimes = new ArrayList<>();
+        for (TripPattern pattern : patterns) {
+            tripTimes.addAll(pattern.scheduledTimetable.tripTimes);
+            pattern.scheduledTimetable.frequencyEntries.forEach(it -> tripTimes.add(it.tripTimes));
+        }
+        List<Trip> trips = tripTimes.stream().map(it -> it.trip).distinct().collect(Collectors.toList());
+        List<Route> routes = patterns.stream().map(it -> it.route).distinct().collect(Collectors.toList());
+        Collection<Stop> stops = graph.index != null ? graph.index.getAllStops() : List.of();
+        report.add("Stops", stops.size(), estimator.estimate(stops));
+        report.add("Routes", routes.size(), estimator.estimate(routes));
+        report.add("Trips", trips.size(), estimator.estimate(trips));
+        report.add("Trip patterns", patterns.size(), estimator.estimate(patterns));
+        report.add("Trip times", tripTimes.size(), estimator.estimate(tripTimes));
+        // A sample of the transfers is walked, the hash tables of the multimap are estimated from
+        // its size
+        report.add(
+                "Transfers by stop",
+                graph.transfersByStop.size(),
+                estimator.estimate(graph.transfersByStop.values())
+                        + MemoryEstimator.hashTableSize(graph.transfersByStop.keySet().size())
+                        + MemoryEstimator.hashTableSize(graph.transfersByStop.size())
+        );
+
+        TransitLayer transitLayer = graph.getTransitLayer();
+        if (transitLayer != null) {
+            report.add(
+                    "Transit layer transfers",
+                    transitLayer.getTransferByStopIndex().size(),
+                    estimator.estimate(transitLayer.getTransferByStopIndex())
+            );
+            for (LocalDate date : transitLayer.getDates()) {
+                Collection<TripPatternForDate> tripPatterns = transitLayer.getTripPatternsForDate(date);
+                report.add(
+                        "Transit layer " + date,
+                        tripPatterns.size(),
+                        estimator.estimate(tripPatterns)
+                );
+            }
+        }
+        return report;
+    }
+
+    public List<Part> getParts() {
+        return Collections.unmodifiableList(parts);
+    }
+
+    /** The heap used by the JVM when the report was made, including garbage. */
+    public long getUsedHeapBytes() {
+        return usedHeapBytes;
+    }
+
+    public long getTotalBytes() {
+        return parts.stream().mapToLong(it -> it.bytes).sum();
+    }
+
+    @Override
+    public String toString() {
+        TableFormatter table = new TableFormatter(
+                List.of(Left, Right, Right),
+                List.of("Part", "Objects", "Estimated size")
+        );
+        for (Part part : parts) {
+            table.addRow(part.name, part.count, megabytes(part.bytes));
+        }
+        table.addRow("Total", "", megabytes(getTotalBytes()));
+        table.addRow("Heap used", "", megabytes(usedHeapBytes));
+        return table.toString();
+    }
+
+    private void add(String name, long count, long bytes) {
+        parts.add(new Part(name, count, bytes));
+    }
+
+    private static String megabytes(long bytes) {
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    /** Every n-th element of the list, so that at most {@link #MAX_SAMPLE_SIZE} are returned. */
+    private static <T> List<T> sample(List<T> list) {
+        if (list.size() <= MAX_SAMPLE_SIZE) {
+            return list;
+        }
+        int step = (list.size() + MAX_SAMPLE_SIZE - 1) / MAX_SAMPLE_SIZE;
+        List<T> sample = new ArrayList<>(MAX_SAMPLE_SIZE);
+        for (int i = 0; i < list.size(); i += step) {
+            sample.add(list.get(i));
+        }
+        return sample;
+    }
+
+    /** The objects counted in their own part, or not at all, like the graph. */
+    private static boolean isBoundary(Object object) {
+        return object instanceof Vertex
+                || object instanceof Edge
+                || object instanceof Graph
+                || object instanceof TripPatternWithRaptorStopIndexes
+                || object instanceof TripTimes
+                || object instanceof TransitEntity;
+    }
+
+    /** The byte arrays held directly by the fields of an edge, like the compact geometry. */
+    private static List<byte[]> byteArrays(StreetEdge edge) {
+        List<byte[]> result = new ArrayList<>();
+        for (Class<?> c = edge.getClass(); c != null; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (field.getType() != byte[].class || Modifier.isStatic(field.getModifiers())
+                        || !field.trySetAccessible()) {
+                    continue;
+                }
+                try {
+                    byte[] value = (byte[]) field.get(edge);
+                    if (value != null) {
+                        result.add(value);
+                    }
+                }
+                catch (IllegalAccessException e) {
+                    // Not counted
+                }
+            }
+        }
+        return result;
+    }
+
+    public static class Part {
+        public final String name;
+        public final long count;
+        public final long bytes;
+
+        private Part(String name, long count, long bytes) {
+            this.name = name;
+            this.count = count;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -19,9 +19,17 @@ import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.map.hash.TIntIntHashMap;
 import org.objenesis.strategy.SerializingInstantiatorStrategy;
 import org.opentripplanner.datastore.DataSource;
+import org.opentripplanner.datastore.FileType;
+import org.opentripplanner.datastore.file.FileDataSource;
+import org.opentripplanner.graph_builder.module.TransferCache;
 import org.opentripplanner.kryo.BuildConfigSerializer;
 import org.opentripplanner.kryo.HashBiMapSerializer;
 import org.opentripplanner.kryo.RouterConfigSerializer;
+import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
+import org.opentripplanner.routing.algorithm.raptor.transit.mappers.TransitLayerMapper;
+import org.opentripplanner.routing.edgetype.StreetEdgeElevationStore;
+import org.opentripplanner.routing.edgetype.StreetEdgeGeometryStore;
+import org.opentripplanner.routing.impl.StreetSpatialIndexes;
 import org.opentripplanner.standalone.config.BuildConfig;
 import org.opentripplanner.standalone.config.RouterConfig;
 import org.opentripplanner.util.OtpAppException;
@@ -30,14 +38,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.BitSet;
 import java.util.Collection;
 
@@ -51,6 +62,20 @@ import java.util.Collection;
  * serializer to know that vertices referenced by the edges are the same vertices stored in the
  * graph itself. The easiest way to do this is to make only one serialization call, serializing a
  * single object that contains both the graph and the edge collection.
+ * <p>
+ * The graph is saved in a file of typed, versioned sections, see {@link GraphFileWriter}, with
+ * the Kryo serialized object as the last section. The Kryo stream is cut into chunks that are
+ * compressed and checksummed on several threads, see {@link ChunkedSectionOutputStream}. The
+ * sections are memory mapped when the graph is loaded. Graph files saved by older versions of
+ * OTP, a plain Kryo stream, are recognized by their first bytes and can still be loaded.
+ * <p>
+ * If {@link BuildConfig#memoryMappedStreetGeometry} is set, the street geometries and elevation
+ * profiles, the largest arrays of the street edges, are written as columns in their own sections,
+ * see {@link StreetEdgeGeometryStore} and {@link StreetEdgeElevationStore}. They are memory mapped
+ * when the graph is loaded and decoded only when an edge is asked for them, so they are neither
+ * deserialized nor kept on the heap. The vertices, edges and transit data, with the Raptor transit
+ * layer if it is saved, are still one Kryo stream that is deserialized in full before the server
+ * can answer anything, so the time to load it only shrinks by the size of the mapped sections.
  */
 public class SerializedGraphObject implements Serializable {
     private static final Logger LOG = LoggerFactory.getLogger(SerializedGraphObject.class);
@@ -65,11 +90,31 @@ public class SerializedGraphObject implements Serializable {
     /** Embed a router configuration inside the graph, for starting up with a single file. */
     public final RouterConfig routerConfig;
 
+    /**
+     * The spatial indexes of the graph, built at the end of the graph build and saved so that a
+     * server does not need to rebuild them when loading the graph. {@code null} if the graph was
+     * changed after they were built, then the server builds them.
+     */
+    @Nullable
+    private final StreetSpatialIndexes streetIndexes;
+
+    /**
+     * The Raptor transit layer, mapped when the graph is built if {@link
+     * BuildConfig#saveTransitLayer} is set, {@code null} if not. It is saved in the same Kryo
+     * stream as the graph, so it refers to the same stops, patterns and trip times.
+     */
+    @Nullable
+    private final TransitLayer transitLayer;
+
     public SerializedGraphObject(Graph graph, BuildConfig buildConfig, RouterConfig routerConfig) {
         this.graph = graph;
         this.edges = graph.getEdges();
         this.buildConfig = buildConfig;
         this.routerConfig = routerConfig;
+        this.streetIndexes = graph.getStreetSpatialIndexes();
+        this.transitLayer = buildConfig.saveTransitLayer
+                ? mapTransitLayer(graph, routerConfig)
+                : null;
     }
 
     public static void verifyTheOutputGraphIsWritableIfDataSourceExist(DataSource graphOutput) {
@@ -86,19 +131,79 @@ public class SerializedGraphObject implements Serializable {
     }
 
     public static SerializedGraphObject load(DataSource source) {
+        if (isGraphFile(source)) {
+            return loadGraphFile(source);
+        }
         return load(source.asInputStream(), source.path());
     }
 
+    /**
+     * Let the graph use the spatial indexes saved with it the next time it is indexed, instead of
+     * building new ones. Only call this if the graph is served as loaded, the saved indexes do
+     * not contain anything added to the graph later, like the stops of a transit build on a
+     * saved street graph.
+     */
+    public void useSavedStreetIndexes() {
+        graph.setStreetSpatialIndexes(streetIndexes);
+    }
+
     public static Graph load(File file) {
+        if (!file.isFile()) {
+            LOG.error("Graph file not found: " + file);
+            throw new OtpAppException("Graph file not found: " + file.getAbsolutePath());
+        }
+        SerializedGraphObject serObj = load(new FileDataSource(file, FileType.GRAPH));
+        if (serObj == null) {
+            return null;
+        }
+        serObj.useSavedStreetIndexes();
+        return serObj.graph;
+    }
+
+    /**
+     * Read the transfers saved with a graph, to reuse them when the next graph is built on the
+     * same street graph, see {@link BuildConfig#incrementalTransfers}.
+     *
+     * @return the transfers, or {@code null} if the graph does not exist, has no saved transfers
+     * or can not be read.
+     */
+    @Nullable
+    public static TransferCache loadTransferCache(DataSource source) {
+        if (!source.exists()) {
+            return null;
+        }
         try {
-            SerializedGraphObject serObj = load(
-                    new FileInputStream(file),
-                    file.getAbsolutePath()
-            );
-            return serObj == null ? null : serObj.graph;
-        } catch (FileNotFoundException e) {
-            LOG.error("Graph file not found: " + file, e);
-            throw new OtpAppException(e.getMessage());
+            if (!isGraphFile(source)) {
+                return null;
+            }
+            // The transfers are written before the rest of the graph, only the start of the file
+            // is read
+            try (GraphFileStreamReader reader = GraphFileStreamReader.open(source.asInputStream())) {
+                GraphFileSection section = reader.nextSection();
+                while (section != null && section != GraphFileSection.TRANSFERS
+                        && section != GraphFileSection.GRAPH) {
+                    section = reader.nextSection();
+                }
+                if (section != GraphFileSection.TRANSFERS
+                        || reader.version() != GraphFileSection.TRANSFERS.version) {
+                    return null;
+                }
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                        ChunkedSectionInputStream.read(
+                                reader.sectionStream(),
+                                Runtime.getRuntime().availableProcessors()
+                        )
+                ))) {
+                    TransferCache transferCache = TransferCache.read(in);
+                    LOG.info("Read the transfers of {} stops from '{}'", transferCache.size(), source.path());
+                    return transferCache;
+                }
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            // The transfers are searched for again
+            LOG.warn("Unable to read the transfers of graph {}: {}", source.path(), e.getMessage());
+            return null;
         }
     }
 
@@ -106,17 +211,10 @@ public class SerializedGraphObject implements Serializable {
      * After deserialization, the vertices will all have null outgoing and incoming edge lists
      * because those edge lists are marked transient, to prevent excessive recursion depth while
      * serializing. This method will reconstruct all those edge lists after deserialization.
+     * The edge lists are set all at once, see {@link EdgeListLoader}.
      */
     public void reconstructEdgeLists() {
-        for (Vertex v : graph.getVertices()) {
-            v.initEdgeLists();
-        }
-        for (Edge e : edges) {
-            Vertex fromVertex = e.getFromVertex();
-            Vertex toVertex = e.getToVertex();
-            fromVertex.addOutgoing(e);
-            toVertex.addIncoming(e);
-        }
+        EdgeListLoader.load(graph.getVertices(), edges);
     }
 
     /**
@@ -199,6 +297,137 @@ public class SerializedGraphObject implements Serializable {
 
     /* private methods */
 
+    @Nullable
+    private static TransitLayer mapTransitLayer(Graph graph, RouterConfig routerConfig) {
+        if (!graph.hasTransit) {
+            return null;
+        }
+        // The mapper uses an index, which must include everything added by the graph builder. A
+        // new index is used, the graph is not changed by saving it.
+        return TransitLayerMapper.map(
+                routerConfig.transitTuningParameters(),
+                graph,
+                new GraphIndex(graph)
+        );
+    }
+
+    private static boolean isGraphFile(DataSource source) {
+        try (InputStream in = source.asInputStream()) {
+            return GraphFileReader.isGraphFile(in);
+        }
+        catch (IOException e) {
+            throw new OtpAppException("Unable to read graph " + source.path() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Load a sectioned graph file. A local file is memory mapped, a data source that is not a
+     * local file, like a graph in cloud storage, is read as a stream.
+     */
+    private static SerializedGraphObject loadGraphFile(DataSource source) {
+        File file = source.localFile();
+        try {
+            if (file == null) {
+                return loadGraphStream(source);
+            }
+            try (GraphFileReader reader = GraphFileReader.open(file)) {
+                checkVersion(GraphFileSection.GRAPH, reader.version(GraphFileSection.GRAPH), source);
+                InputStream graphSection = ChunkedSectionInputStream.open(
+                        reader,
+                        GraphFileSection.GRAPH,
+                        Runtime.getRuntime().availableProcessors()
+                );
+                SerializedGraphObject serObj = load(graphSection, source.path());
+                GraphFileSection geometrySection = GraphFileSection.STREET_GEOMETRY;
+                if (serObj != null && reader.hasSection(geometrySection)) {
+                    checkVersion(geometrySection, reader.version(geometrySection), source);
+                    loadStreetGeometries(reader.map(geometrySection), serObj);
+                }
+                GraphFileSection elevationSection = GraphFileSection.STREET_ELEVATION;
+                if (serObj != null && reader.hasSection(elevationSection)) {
+                    checkVersion(elevationSection, reader.version(elevationSection), source);
+                    loadElevationProfiles(reader.map(elevationSection), serObj);
+                }
+                return serObj;
+            }
+        }
+        catch (IOException e) {
+            // A local file fails before deserializing anything if the file is damaged
+            LOG.error("Exception while loading graph: {}", e.getLocalizedMessage(), e);
+            throw new OtpAppException(
+                    "Unable to load graph. " + e.getMessage() + " Graph: " + source.path()
+            );
+        }
+    }
+
+    /**
+     * Read a sectioned graph file from a stream, one section after the other. The street
+     * geometries and elevation profiles are written before the graph, so they are read to buffers
+     * off the heap, and used when the graph is loaded.
+     */
+    private static SerializedGraphObject loadGraphStream(DataSource source) throws IOException {
+        try (GraphFileStreamReader reader = GraphFileStreamReader.open(source.asInputStream())) {
+            ByteBuffer streetGeometries = null;
+            ByteBuffer elevationProfiles = null;
+            GraphFileSection section;
+            while ((section = reader.nextSection()) != null) {
+                if (section == GraphFileSection.STREET_GEOMETRY) {
+                    checkVersion(section, reader.version(), source);
+                    streetGeometries = reader.readSection();
+                }
+                else if (section == GraphFileSection.STREET_ELEVATION) {
+                    checkVersion(section, reader.version(), source);
+                    elevationProfiles = reader.readSection();
+                }
+                else if (section == GraphFileSection.GRAPH) {
+                    checkVersion(section, reader.version(), source);
+                    SerializedGraphObject serObj = load(
+                            ChunkedSectionInputStream.read(
+                                    reader.sectionStream(),
+                                    Runtime.getRuntime().availableProcessors()
+                            ),
+                            source.path()
+                    );
+                    if (serObj != null && streetGeometries != null) {
+                        loadStreetGeometries(streetGeometries, serObj);
+                    }
+                    if (serObj != null && elevationProfiles != null) {
+                        loadElevationProfiles(elevationProfiles, serObj);
+                    }
+                    return serObj;
+                }
+            }
+            throw new IOException("The graph file has no graph section.");
+        }
+    }
+
+    private static void checkVersion(GraphFileSection section, int version, DataSource source) {
+        if (version != section.version) {
+            throw new OtpAppException(
+                    "Unable to load graph. The " + section + " section format is not supported "
+                    + "by this OTP version, rebuild the graph. Graph: " + source.path()
+            );
+        }
+    }
+
+    /**
+     * Use the street geometries section, memory mapped or read off the heap. A mapping stays
+     * valid after the reader is closed.
+     */
+    private static void loadStreetGeometries(ByteBuffer section, SerializedGraphObject serObj) {
+        StreetEdgeGeometryStore store = StreetEdgeGeometryStore.load(section, serObj.edges);
+        LOG.info("Street geometries loaded off the heap, {} geometries.", store.size());
+    }
+
+    /**
+     * Use the elevation profiles section, memory mapped or read off the heap. A mapping stays
+     * valid after the reader is closed.
+     */
+    private static void loadElevationProfiles(ByteBuffer section, SerializedGraphObject serObj) {
+        StreetEdgeElevationStore store = StreetEdgeElevationStore.load(section, serObj.edges);
+        LOG.info("Street elevation profiles loaded off the heap, {} profiles.", store.size());
+    }
+
     private static SerializedGraphObject load(InputStream inputStream, String sourceDescription) {
         // TODO store version information, halt load if versions mismatch
         try(inputStream) {
@@ -212,6 +441,9 @@ public class SerializedGraphObject implements Serializable {
                 throw new RuntimeException("Graph version mismatch detected.");
             }
             serObj.reconstructEdgeLists();
+            if (serObj.transitLayer != null) {
+                graph.setTransitLayer(serObj.transitLayer);
+            }
             LOG.info("Graph read. |V|={} |E|={}", graph.countVertices(), graph.countEdges());
             return serObj;
         }
@@ -231,14 +463,118 @@ public class SerializedGraphObject implements Serializable {
         LOG.info("Writing graph " + graphName + " ...");
         outputStream = wrapOutputStreamWithProgressTracker(outputStream, size);
         Kryo kryo = makeKryo();
-        Output output = new Output(outputStream);
-        kryo.writeClassAndObject(output, this);
-        output.close();
+        StreetEdgeGeometryStore.Writer streetGeometries = null;
+        StreetEdgeElevationStore.Writer elevationProfiles = null;
+        try (GraphFileWriter writer = new GraphFileWriter(outputStream)) {
+            if (graph.getTransferCache() != null) {
+                writeTransferCache(writer, graph.getTransferCache());
+            }
+            if (buildConfig.memoryMappedStreetGeometry) {
+                streetGeometries = writeStreetGeometries(writer);
+                elevationProfiles = writeElevationProfiles(writer);
+            }
+            else {
+                // A graph loaded with stores is saved with the geometries and profiles in the graph
+                if (StreetEdgeGeometryStore.hasStoredGeometries(edges)) {
+                    streetGeometries = new StreetEdgeGeometryStore.Writer(edges);
+                    streetGeometries.moveGeometriesToEdges();
+                }
+                if (StreetEdgeElevationStore.hasStoredProfiles(edges)) {
+                    elevationProfiles = new StreetEdgeElevationStore.Writer(edges);
+                    elevationProfiles.moveProfilesToEdges();
+                }
+            }
+            try (
+                    OutputStream graphSection = new ChunkedSectionOutputStream(
+                            writer.writeLastSection(GraphFileSection.GRAPH),
+                            buildConfig.compressGraph,
+                            Runtime.getRuntime().availableProcessors()
+                    );
+                    Output output = new Output(graphSection)
+            ) {
+                kryo.writeClassAndObject(output, this);
+            }
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Unable to write graph " + graphName + ": " + e.getMessage(), e);
+        }
+        finally {
+            // The graph may be used after it is saved
+            if (streetGeometries != null) {
+                streetGeometries.restoreGeometriesOfEdges();
+            }
+            if (elevationProfiles != null) {
+                elevationProfiles.restoreProfilesOfEdges();
+            }
+        }
         LOG.info("Graph written: {}", graphName);
         // Summarize serialized classes and associated serializers to stdout:
         // ((InstanceCountingClassResolver) kryo.getClassResolver()).summarize();
     }
 
+    /**
+     * Write the street edge geometries to their own section, and remove them from the edges while
+     * the rest of the graph is written.
+     *
+     * @return the writer, to restore the geometries of the edges.
+     */
+    private StreetEdgeGeometryStore.Writer writeStreetGeometries(GraphFileWriter writer)
+            throws IOException {
+        StreetEdgeGeometryStore.Writer streetGeometries = new StreetEdgeGeometryStore.Writer(edges);
+        if (!streetGeometries.fitsInSection()) {
+            LOG.warn("The street geometries are too large to memory map, they are saved with the graph.");
+            streetGeometries.moveGeometriesToEdges();
+            return streetGeometries;
+        }
+        writer.writeSection(
+                GraphFileSection.STREET_GEOMETRY,
+                streetGeometries.length(),
+                streetGeometries::write
+        );
+        streetGeometries.removeGeometriesFromEdges();
+        return streetGeometries;
+    }
+
+    /**
+     * Write the street edge elevation profiles to their own section, and remove them from the
+     * edges while the rest of the graph is written.
+     *
+     * @return the writer, to restore the profiles of the edges.
+     */
+    private StreetEdgeElevationStore.Writer writeElevationProfiles(GraphFileWriter writer)
+            throws IOException {
+        StreetEdgeElevationStore.Writer elevationProfiles = new StreetEdgeElevationStore.Writer(edges);
+        if (!elevationProfiles.fitsInSection()) {
+            LOG.warn("The street elevation profiles are too large to memory map, they are saved with the graph.");
+            elevationProfiles.moveProfilesToEdges();
+            return elevationProfiles;
+        }
+        writer.writeSection(
+                GraphFileSection.STREET_ELEVATION,
+                elevationProfiles.length(),
+                elevationProfiles::write
+        );
+        elevationProfiles.removeProfilesFromEdges();
+        return elevationProfiles;
+    }
+
+    /**
+     * Write the transfers found by the graph builder to their own section, so the next build on
+     * the same street graph can read them without loading this graph.
+     */
+    private void writeTransferCache(GraphFileWriter writer, TransferCache transferCache)
+            throws IOException {
+        ByteArrayOutputStream section = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new ChunkedSectionOutputStream(
+                section,
+                buildConfig.compressGraph,
+                Runtime.getRuntime().availableProcessors()
+        ))) {
+            transferCache.write(out);
+        }
+        writer.writeSection(GraphFileSection.TRANSFERS, section.size(), section::writeTo);
+    }
+
     @SuppressWarnings("Convert2MethodRef")
     private static OutputStream wrapOutputStreamWithProgressTracker(OutputStream outputStream, long size) {
         return ProgressTracker.track(
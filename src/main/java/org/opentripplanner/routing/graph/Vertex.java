@@ -30,6 +30,8 @@ public abstract class Vertex implements Serializable, Cloneable {
 
     private static final Logger LOG = LoggerFactory.getLogger(Vertex.class);
 
+    private static final I18NString NO_NAME = new NonLocalizedString("(no name provided)");
+
     /**
      * Short debugging name. This is a graph mathematical term as in
      * https://en.wikipedia.org/wiki/Graph_labeling
@@ -57,7 +59,7 @@ public abstract class Vertex implements Serializable, Cloneable {
         if (g != null) {
             g.addVertex(this);
         }
-        this.name = new NonLocalizedString("(no name provided)");
+        this.name = NO_NAME;
     }
 
     protected Vertex(Graph g, String label, double x, double y, I18NString name) {
@@ -84,6 +86,17 @@ public abstract class Vertex implements Serializable, Cloneable {
         this.incoming = new Edge[0];
     }
 
+    /**
+     * Set both edge lists at once, used when the edge lists of all vertices are reconstructed
+     * after deserialization. The arrays are used as they are, they must not be changed later.
+     */
+    void setEdgeLists(Edge[] outgoing, Edge[] incoming) {
+        synchronized (this) {
+            this.outgoing = outgoing;
+            this.incoming = incoming;
+        }
+    }
+
     /* EDGE UTILITY METHODS (use arrays to eliminate copy-on-write set objects) */
 
     /**
@@ -216,6 +229,15 @@ public abstract class Vertex implements Serializable, Cloneable {
         return this.name.toString(locale);
     }
 
+    /** Get the non-localized name, to copy or deduplicate it. */
+    public I18NString getRawName() {
+        return this.name;
+    }
+
+    public void setName(I18NString name) {
+        this.name = name;
+    }
+
     /** Get the corresponding StationElement if this is a transit vertex */
     public StationElement getStationElement() {
         return null;
@@ -1,11 +1,14 @@
 package org.opentripplanner.routing.impl;
 
+import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
 import org.opentripplanner.routing.algorithm.astar.AStar;
+import org.opentripplanner.routing.algorithm.astar.BidirectionalAStar;
 import org.opentripplanner.routing.algorithm.astar.strategies.EuclideanRemainingWeightHeuristic;
 import org.opentripplanner.routing.algorithm.astar.strategies.RemainingWeightHeuristic;
 import org.opentripplanner.routing.algorithm.astar.strategies.TrivialRemainingWeightHeuristic;
 import org.opentripplanner.routing.api.request.RoutingRequest;
 import org.opentripplanner.routing.api.response.RoutingErrorCode;
+import org.opentripplanner.routing.core.TraverseModeSet;
 import org.opentripplanner.routing.error.PathNotFoundException;
 import org.opentripplanner.routing.error.RoutingValidationException;
 import org.opentripplanner.routing.spt.DominanceFunction;
@@ -46,6 +49,13 @@ public class GraphPathFinder {
     private static final double DEFAULT_MAX_WALK = 2000;
     private static final double CLAMP_MAX_WALK = 15000;
 
+    /**
+     * Walk and bicycle searches between points at least this far apart use a bidirectional search,
+     * see {@link BidirectionalAStar}. Shorter searches do not gain enough to pay for the second
+     * search.
+     */
+    private static final double BIDIRECTIONAL_MIN_DISTANCE_METERS = 20_000;
+
     Router router;
 
     public GraphPathFinder(Router router) {
@@ -111,10 +121,20 @@ public class GraphPathFinder {
             options.rctx.aborted = true;
             return null;
         }
-        // Don't dig through the SPT object, just ask the A star algorithm for the states that reached the target.
-        aStar.getShortestPathTree(options, timeout);
+        List<GraphPath> foundPaths = null;
+        if (useBidirectionalSearch(options)) {
+            foundPaths = new BidirectionalAStar().getPathsToTarget(options, timeout);
+            if (foundPaths == null) {
+                LOG.debug("Bidirectional search could not join its paths, searching again.");
+            }
+        }
+        if (foundPaths == null) {
+            // Don't dig through the SPT object, just ask the A star algorithm for the states that reached the target.
+            aStar.getShortestPathTree(options, timeout);
+            foundPaths = aStar.getPathsToTarget();
+        }
 
-        List<GraphPath> paths = aStar.getPathsToTarget().stream()
+        List<GraphPath> paths = foundPaths.stream()
                 .filter(path -> {
                     double duration = options.useRequestedDateTimeInMaxHours
                         ? options.arriveBy
@@ -131,6 +151,33 @@ public class GraphPathFinder {
         return paths;
     }
 
+    /**
+     * Use a bidirectional search for long walk and bicycle searches for a single path. The
+     * reverse half of the search needs edge weights that do not depend on time or on vehicle
+     * rental and parking states, so all other searches use the unidirectional search.
+     */
+    private boolean useBidirectionalSearch(RoutingRequest options) {
+        TraverseModeSet modes = options.streetSubRequestModes;
+        if (router.graphVisualizer != null
+                || options.oneToMany
+                || options.getNumItineraries() != 1
+                || modes.getCar()
+                || modes.getWalk() == modes.getBicycle()
+                || options.bikeRental
+                || options.bikeParkAndRide
+                || options.parkAndRide
+                || options.carPickup
+                || options.rctx.fromVertices == null
+                || options.rctx.toVertices == null) {
+            return false;
+        }
+        double distance = SphericalDistanceLibrary.distance(
+                options.rctx.fromVertices.iterator().next().getCoordinate(),
+                options.rctx.toVertices.iterator().next().getCoordinate()
+        );
+        return distance >= BIDIRECTIONAL_MIN_DISTANCE_METERS;
+    }
+
     /**
      *  Try to find N paths through the Graph
      * @throws RoutingValidationException
@@ -0,0 +1,86 @@
+package org.opentripplanner.routing.impl;
+
+import org.locationtech.jts.geom.LineString;
+import org.opentripplanner.common.geometry.PackedSpatialIndex;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.vertextype.TransitStopVertex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The immutable spatial indexes of edges, vertices and transit stops used by
+ * {@link StreetVertexIndex}. They are built once at the end of the graph build, see
+ * {@link org.opentripplanner.graph_builder.module.StreetSpatialIndexModule}, and serialized with
+ * the graph, so a server loading the graph does not need to build them again at startup.
+ */
+public class StreetSpatialIndexes implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOG = LoggerFactory.getLogger(StreetSpatialIndexes.class);
+
+    /**
+     * All edges with a geometry. We do not index edges without geometry, this skips transit edges
+     * as some GTFS feeds do not have shape data.
+     */
+    final PackedSpatialIndex<Edge> edges;
+
+    final PackedSpatialIndex<TransitStopVertex> transitStops;
+
+    final PackedSpatialIndex<Vertex> vertices;
+
+    private StreetSpatialIndexes(
+            PackedSpatialIndex<Edge> edges,
+            PackedSpatialIndex<TransitStopVertex> transitStops,
+            PackedSpatialIndex<Vertex> vertices
+    ) {
+        this.edges = edges;
+        this.transitStops = transitStops;
+        this.vertices = vertices;
+    }
+
+    /**
+     * Build the indexes of the graph in its current state. The items are collected in one pass
+     * over the vertices, then the three indexes are sorted and packed in parallel.
+     */
+    public static StreetSpatialIndexes build(Graph graph) {
+        long start = System.currentTimeMillis();
+        PackedSpatialIndex.Builder<Edge> edges = PackedSpatialIndex.builder();
+        PackedSpatialIndex.Builder<TransitStopVertex> transitStops = PackedSpatialIndex.builder();
+        PackedSpatialIndex.Builder<Vertex> vertices = PackedSpatialIndex.builder();
+
+        for (Vertex v : graph.getVertices()) {
+            for (Edge e : v.getOutgoing()) {
+                LineString geometry = e.getGeometry();
+                if (geometry != null) {
+                    edges.add(geometry, e);
+                }
+            }
+            if (v instanceof TransitStopVertex) {
+                transitStops.add(v.getLon(), v.getLat(), (TransitStopVertex) v);
+            }
+            vertices.add(v.getLon(), v.getLat(), v);
+        }
+
+        CompletableFuture<PackedSpatialIndex<Edge>> edgeIndex = CompletableFuture.supplyAsync(edges::build);
+        CompletableFuture<PackedSpatialIndex<Vertex>> vertexIndex = CompletableFuture.supplyAsync(vertices::build);
+        StreetSpatialIndexes indexes = new StreetSpatialIndexes(
+                edgeIndex.join(),
+                transitStops.build(),
+                vertexIndex.join()
+        );
+        LOG.info(
+                "Spatial indexes built in {} ms. Edges: {}, vertices: {}, transit stops: {}",
+                System.currentTimeMillis() - start,
+                indexes.edges.size(),
+                indexes.vertices.size(),
+                indexes.transitStops.size()
+        );
+        return indexes;
+    }
+}
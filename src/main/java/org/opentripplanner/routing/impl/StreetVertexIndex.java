@@ -4,10 +4,8 @@ package org.opentripplanner.routing.impl;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.LineString;
-import org.locationtech.jts.index.SpatialIndex;
-import org.locationtech.jts.index.strtree.STRtree;
 import org.opentripplanner.common.geometry.GeometryUtils;
-import org.opentripplanner.common.geometry.HashGridSpatialIndex;
+import org.opentripplanner.common.geometry.PackedSpatialIndex;
 import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
 import org.opentripplanner.model.GenericLocation;
 import org.opentripplanner.common.model.P2;
@@ -32,7 +30,6 @@ import org.opentripplanner.util.I18NString;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -49,11 +46,11 @@ public class StreetVertexIndex {
     private Graph graph;
 
     /**
-     * Contains only instances of {@link StreetEdge}
+     * Contains all edges with a geometry, see {@link StreetSpatialIndexes}.
      */
-    private SpatialIndex edgeTree;
-    private SpatialIndex transitStopTree;
-    private SpatialIndex verticesTree;
+    private final PackedSpatialIndex<Edge> edgeTree;
+    private final PackedSpatialIndex<TransitStopVertex> transitStopTree;
+    private final PackedSpatialIndex<Vertex> verticesTree;
 
     // If a point is within MAX_CORNER_DISTANCE, it is treated as at the corner.
     private static final double MAX_CORNER_DISTANCE_METERS = 10;
@@ -61,42 +58,25 @@ public class StreetVertexIndex {
     private SimpleStreetSplitter simpleStreetSplitter;
 
     public StreetVertexIndex(Graph graph) {
-        this(graph, true);
+        this(graph, StreetSpatialIndexes.build(graph));
     }
 
-    public StreetVertexIndex(Graph graph, boolean hashGrid) {
+    /**
+     * Create an index using already built spatial indexes, typically the ones loaded with the
+     * graph. The indexes must have been built from the graph in its current state.
+     */
+    public StreetVertexIndex(Graph graph, StreetSpatialIndexes indexes) {
         this.graph = graph;
-        if (hashGrid) {
-            edgeTree = new HashGridSpatialIndex<>();
-            transitStopTree = new HashGridSpatialIndex<>();
-            verticesTree = new HashGridSpatialIndex<>();
-        } else {
-            edgeTree = new STRtree();
-            transitStopTree = new STRtree();
-            verticesTree = new STRtree();
-        }
-        postSetup();
-        if (!hashGrid) {
-            ((STRtree) edgeTree).build();
-            ((STRtree) transitStopTree).build();
-            simpleStreetSplitter = new SimpleStreetSplitter(
-                    this.graph,
-                    null,
-                    null,
-                    false,
-                    new DataImportIssueStore(
-                            false)
-            );
-        } else {
-            simpleStreetSplitter = new SimpleStreetSplitter(
-                    this.graph,
-                    (HashGridSpatialIndex<Edge>) edgeTree,
-                    transitStopTree,
-                    false,
-                    new DataImportIssueStore(false)
-            );
-        }
-
+        this.edgeTree = indexes.edges;
+        this.transitStopTree = indexes.transitStops;
+        this.verticesTree = indexes.vertices;
+        this.simpleStreetSplitter = new SimpleStreetSplitter(
+                this.graph,
+                edgeTree,
+                transitStopTree,
+                false,
+                new DataImportIssueStore(false)
+        );
     }
 
     /**
@@ -192,39 +172,6 @@ public class StreetVertexIndex {
         return GeometryUtils.splitGeometryAtPoint(geometry, nearestPoint);
     }
 
-    @SuppressWarnings("rawtypes")
-    private void postSetup() {
-        for (Vertex gv : graph.getVertices()) {
-            Vertex v = gv;
-            /*
-             * We add all edges with geometry, skipping transit, filtering them out after. We do not
-             * index transit edges as we do not need them and some GTFS do not have shape data, so
-             * long straight lines between 2 faraway stations will wreck performance on a hash grid
-             * spatial index.
-             * 
-             * If one need to store transit edges in the index, we could improve the hash grid
-             * rasterizing splitting long segments.
-             */
-            for (Edge e : gv.getOutgoing()) {
-                LineString geometry = e.getGeometry();
-                if (geometry == null) {
-                    continue;
-                }
-                Envelope env = geometry.getEnvelopeInternal();
-                if (edgeTree instanceof HashGridSpatialIndex)
-                    ((HashGridSpatialIndex)edgeTree).insert(geometry, e);
-                else
-                    edgeTree.insert(env, e);
-            }
-            if (v instanceof TransitStopVertex) {
-                Envelope env = new Envelope(v.getCoordinate());
-                transitStopTree.insert(env, v);
-            }
-            Envelope env = new Envelope(v.getCoordinate());
-            verticesTree.insert(env, v);
-        }
-    }
-
     /**
      * Get all transit stops within a given distance of a coordinate
      * @return The transit stops within a certain radius of the given location.
@@ -246,47 +193,23 @@ public class StreetVertexIndex {
     /**
      * Returns the vertices intersecting with the specified envelope.
      */
-    @SuppressWarnings("unchecked")
     public List<Vertex> getVerticesForEnvelope(Envelope envelope) {
-        List<Vertex> vertices = verticesTree.query(envelope);
-        // Here we assume vertices list modifiable
-        for (Iterator<Vertex> iv = vertices.iterator(); iv.hasNext();) {
-            Vertex v = iv.next();
-            if (!envelope.contains(new Coordinate(v.getLon(), v.getLat())))
-                iv.remove();
-        }
-        return vertices;
+        return verticesTree.query(envelope);
     }
 
     /**
      * Return the edges whose geometry intersect with the specified envelope. Warning: edges w/o
      * geometry will not be indexed.
      */
-    @SuppressWarnings("unchecked")
     public Collection<Edge> getEdgesForEnvelope(Envelope envelope) {
-        List<Edge> edges = edgeTree.query(envelope);
-        for (Iterator<Edge> ie = edges.iterator(); ie.hasNext();) {
-            Edge e = ie.next();
-            Envelope eenv = e.getGeometry().getEnvelopeInternal();
-            //Envelope eenv = e.getEnvelope();
-            if (!envelope.intersects(eenv))
-                ie.remove();
-        }
-        return edges;
+        return edgeTree.query(envelope);
     }
 
     /**
      * @return The transit stops within an envelope.
      */
-    @SuppressWarnings("unchecked")
     public List<TransitStopVertex> getTransitStopForEnvelope(Envelope envelope) {
-        List<TransitStopVertex> stopVertices = transitStopTree.query(envelope);
-        for (Iterator<TransitStopVertex> its = stopVertices.iterator(); its.hasNext();) {
-            TransitStopVertex ts = its.next();
-            if (!envelope.intersects(new Coordinate(ts.getLon(), ts.getLat())))
-                its.remove();
-        }
-        return stopVertices;
+        return transitStopTree.query(envelope);
     }
 
     /**
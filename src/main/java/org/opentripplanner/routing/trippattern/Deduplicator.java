@@ -18,6 +18,7 @@ public class Deduplicator implements Serializable {
     private final Map<String, String> canonicalStrings = Maps.newHashMap();
     private final Map<BitSet, BitSet> canonicalBitSets = Maps.newHashMap();
     private final Map<StringArray, StringArray> canonicalStringArrays = Maps.newHashMap();
+    private final Map<Class<?>, Map<Object, Object>> canonicalObjects = Maps.newHashMap();
 
     /** Free up any memory used by the deduplicator. */
     public void reset() {
@@ -25,6 +26,7 @@ public class Deduplicator implements Serializable {
         canonicalStrings.clear();
         canonicalBitSets.clear();
         canonicalStringArrays.clear();
+        canonicalObjects.clear();
     }
 
     /** Used to deduplicate time and stop sequence arrays. The same times may occur in many trips. */
@@ -43,7 +45,7 @@ public class Deduplicator implements Serializable {
         if (original == null) return null;
         String canonical = canonicalStrings.get(original);
         if (canonical == null) {
-            canonical = new String(original.toCharArray()); // Trim String if necessary (older JDKs)
+            canonical = original;
             canonicalStrings.put(canonical, canonical);
         }
         return canonical;
@@ -69,6 +71,19 @@ public class Deduplicator implements Serializable {
         return canonical.array;
     }
 
+    /**
+     * Used to deduplicate immutable values of the given type, like ids and street names. Each
+     * type has its own pool, and the values must implement equals and hashCode.
+     */
+    public <T> T deduplicateObject(Class<T> type, T original) {
+        if (original == null) return null;
+        Map<Object, Object> canonicalValues = canonicalObjects.computeIfAbsent(
+                type, t -> Maps.newHashMap()
+        );
+        Object canonical = canonicalValues.putIfAbsent(original, original);
+        return canonical == null ? original : type.cast(canonical);
+    }
+
     /** A wrapper for a primitive int array. This is insane but necessary in Java. */
     private class IntArray implements Serializable {
         private static final long serialVersionUID = 20140524L;
@@ -105,6 +105,9 @@ public class OTPMain {
             SerializedGraphObject obj = SerializedGraphObject.load(inputGraph);
             graph = obj.graph;
             app.config().updateConfigFromSerializedGraph(obj.buildConfig, obj.routerConfig);
+            if (params.doLoadGraph()) {
+                obj.useSavedStreetIndexes();
+            }
         }
 
         /* Start graph builder if requested. */
@@ -91,6 +91,19 @@ public class BuildConfig {
      */
     public final boolean embedRouterConfig;
 
+    /**
+     * Compress the saved graph. The graph is compressed in chunks on several threads, set this to
+     * {@code false} to save time when the graph file is not copied anywhere.
+     */
+    public final boolean compressGraph;
+
+    /**
+     * Map the transit data to the Raptor transit layer when the graph is built, and save it with
+     * the graph. A server loading the graph then uses the saved transit layer, instead of mapping
+     * it at startup.
+     */
+    public final boolean saveTransitLayer;
+
     /**
      * Perform visibility calculations on OSM areas (these calculations can be time consuming).
      */
@@ -147,6 +160,13 @@ public class BuildConfig {
      */
     public final boolean osmCacheDataInMem;
 
+    /**
+     * Keep the coordinates of the untagged OSM nodes in compact primitive arrays while loading
+     * OSM data, rather than one object per node. This reduces the memory needed to build large
+     * regions, but makes loading the OSM data a bit slower. The default value is {@code false}.
+     */
+    public final boolean osmCompactNodeStore;
+
     /**
      * Whether bike rental stations should be loaded from OSM, rather than periodically dynamically pulled from APIs.
      */
@@ -196,6 +216,26 @@ public class BuildConfig {
      */
     public final double maxTransferDistance;
 
+    /**
+     * The number of graph builder modules that may run at the same time, for example loading
+     * transit data while the street graph is built from OSM. The default is 1, running the
+     * modules one after the other.
+     */
+    public final int graphBuilderModuleThreads;
+
+    /**
+     * The number of GTFS feeds that are read and mapped at the same time. The feeds are added to
+     * the graph one after the other in the configured order, so the result does not depend on the
+     * number of threads. The default is 1.
+     */
+    public final int gtfsLoadingThreads;
+
+    /**
+     * The number of threads used to pre-calculate transfers between stops. Defaults to the number
+     * of available processors, set to 1 to calculate them on a single thread.
+     */
+    public final int transferGenerationThreads;
+
     /**
      * This will add extra edges when linking a stop to a platform, to prevent detours along the platform edge.
      */
@@ -230,6 +270,14 @@ public class BuildConfig {
      */
     public boolean includeEllipsoidToGeoidDifference;
 
+    /**
+     * When building transit on a saved street graph, with {@code --loadStreet}, save the transfers
+     * of each stop with the graph, and reuse the transfers of the stops that did not change since
+     * the previous graph was built. Only the transfers of new or changed stops, and of the stops
+     * near them, are searched for again.
+     */
+    public final boolean incrementalTransfers;
+
     /**
      * Whether or not to multi-thread the elevation calculations in the elevation module. The default is set to false.
      * For unknown reasons that seem to depend on data and machine settings, it might be faster to use a single
@@ -237,6 +285,21 @@ public class BuildConfig {
      */
     public boolean multiThreadElevationCalculations;
 
+    /**
+     * When set to true (it is false by default), the elevation module copies the elevation grid of a GeoTIFF file to
+     * a memory mapped file of tiles, and interpolates the elevations from it without GeoTools. This is faster and
+     * uses less heap, but only works for GeoTIFF files in longitude, latitude order; other elevation data is sampled
+     * as usual.
+     */
+    public boolean memoryMappedElevationRaster;
+
+    /**
+     * Save the street edge geometries and elevation profiles in separate sections of the graph
+     * file, which are memory mapped when the graph is loaded. They are decoded when they are used,
+     * this reduces the heap used by the graph and the size of the Kryo stream to deserialize.
+     */
+    public final boolean memoryMappedStreetGeometry;
+
     /**
      * Limit the import of transit services to the given START date. Inclusive. If set, any transit
      * service on a day BEFORE the given date is dropped and will not be part of the graph.
@@ -304,6 +367,7 @@ public class BuildConfig {
         areaVisibility = c.asBoolean("areaVisibility", false);
         banDiscouragedWalking = c.asBoolean("banDiscouragedWalking", false);
         banDiscouragedBiking = c.asBoolean("banDiscouragedBiking", false);
+        compressGraph = c.asBoolean("compressGraph", true);
         dataImportReport = c.asBoolean("dataImportReport", false);
         distanceBetweenElevationSamples = c.asDouble("distanceBetweenElevationSamples",
             CompactElevationProfile.DEFAULT_DISTANCE_BETWEEN_SAMPLES_METERS
@@ -313,25 +377,35 @@ public class BuildConfig {
         embedRouterConfig = c.asBoolean("embedRouterConfig", true);
         extraEdgesStopPlatformLink = c.asBoolean("extraEdgesStopPlatformLink", false);
         fetchElevationUS = c.asBoolean("fetchElevationUS", false);
+        graphBuilderModuleThreads = c.asInt("graphBuilderModuleThreads", 1);
+        gtfsLoadingThreads = c.asInt("gtfsLoadingThreads", 1);
         includeEllipsoidToGeoidDifference = c.asBoolean("includeEllipsoidToGeoidDifference", false);
+        incrementalTransfers = c.asBoolean("incrementalTransfers", false);
         pruningThresholdIslandWithStops = c.asInt("islandWithStopsMaxSize", 5);
         pruningThresholdIslandWithoutStops = c.asInt("islandWithoutStopsMaxSize", 40);
         matchBusRoutesToStreets = c.asBoolean("matchBusRoutesToStreets", false);
         maxDataImportIssuesPerFile = c.asInt("maxDataImportIssuesPerFile", 1000);
         maxInterlineDistance = c.asInt("maxInterlineDistance", 200);
         maxTransferDistance = c.asDouble("maxTransferDistance", 2000d);
+        memoryMappedElevationRaster = c.asBoolean("memoryMappedElevationRaster", false);
+        memoryMappedStreetGeometry = c.asBoolean("memoryMappedStreetGeometry", false);
         multiThreadElevationCalculations = c.asBoolean("multiThreadElevationCalculations", false);
         osmCacheDataInMem = c.asBoolean("osmCacheDataInMem", false);
+        osmCompactNodeStore = c.asBoolean("osmCompactNodeStore", false);
         osmWayPropertySet = WayPropertySetSource.fromConfig(c.asText("osmWayPropertySet", "default"));
         parentStopLinking = c.asBoolean("parentStopLinking", false);
         platformEntriesLinking = c.asBoolean("platformEntriesLinking", false);
         readCachedElevations = c.asBoolean("readCachedElevations", true);
+        saveTransitLayer = c.asBoolean("saveTransitLayer", false);
         staticBikeParkAndRide = c.asBoolean("staticBikeParkAndRide", false);
         staticBikeRental = c.asBoolean("staticBikeRental", false);
         staticParkAndRide = c.asBoolean("staticParkAndRide", true);
         stationTransfers = c.asBoolean("stationTransfers", false);
         streets = c.asBoolean("streets", true);
         subwayAccessTime = c.asDouble("subwayAccessTime", DEFAULT_SUBWAY_ACCESS_TIME_MINUTES);
+        transferGenerationThreads = c.asInt(
+            "transferGenerationThreads", Runtime.getRuntime().availableProcessors()
+        );
         transit = c.asBoolean("transit", true);
         transitServiceStart = c.asDateOrRelativePeriod("transitServiceStart", "-P1Y");
         transitServiceEnd = c.asDateOrRelativePeriod( "transitServiceEnd", "P3Y");
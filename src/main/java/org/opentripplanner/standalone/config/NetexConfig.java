@@ -82,11 +82,22 @@ public class NetexConfig {
      */
     public final Pattern groupFilePattern;
 
+    /**
+     * The number of threads used to parse the XML files of a NeTEx bundle. The files are parsed
+     * ahead of the loading, and the parsed documents are still added to the index and mapped one
+     * at a time in the order given by the file patterns above, so the result does not depend on
+     * the number of threads.
+     * <p>
+     * Default value is <code>1</code>, parsing each file when it is loaded.
+     */
+    public final int parseThreads;
+
     NetexConfig(NodeAdapter config) {
         ignoreFilePattern = config.asPattern("ignoreFilePattern", IGNORE_FILE_PATTERN);
         sharedFilePattern = config.asPattern("sharedFilePattern", SHARED_FILE_PATTERN);
         sharedGroupFilePattern = config.asPattern("sharedGroupFilePattern", SHARED_GROUP_FILE_PATTERN);
         groupFilePattern = config.asPattern("groupFilePattern", GROUP_FILE_PATTERN);
         netexFeedId = config.asText("netexFeedId", NETEX_FEED_ID);
+        parseThreads = config.asInt("parseThreads", 1);
     }
 }
@@ -32,10 +32,13 @@ public class RouterConfig implements Serializable {
     private final String requestLogFile;
     private final boolean transmodelApiHideFeedId;
     private final double streetRoutingTimeoutSeconds;
+    private final int streetRoutingThreadPoolSize;
+    private final boolean deduplicateGraphOnLoad;
     private final RoutingRequest routingRequestDefaults;
     private final TransitRoutingConfig transitConfig;
     private final UpdaterParameters updaterParameters;
     private final VectorTileConfig vectorTileLayers;
+    private final WarmUpConfig warmUp;
 
     public RouterConfig(JsonNode node, String source, boolean logUnusedParams) {
         NodeAdapter adapter = new NodeAdapter(node, source);
@@ -45,10 +48,13 @@ public class RouterConfig implements Serializable {
         this.streetRoutingTimeoutSeconds = adapter.asDouble(
                 "streetRoutingTimeout", DEFAULT_STREET_ROUTING_TIMEOUT
         );
+        this.streetRoutingThreadPoolSize = adapter.asInt("streetRoutingThreadPoolSize", 0);
+        this.deduplicateGraphOnLoad = adapter.asBoolean("deduplicateGraphOnLoad", false);
         this.transitConfig = new TransitRoutingConfig(adapter.path("transit"));
         this.routingRequestDefaults = mapRoutingRequest(adapter.path("routingDefaults"));
         this.updaterParameters = new UpdaterConfig(adapter);
         this.vectorTileLayers = new VectorTileConfig(adapter.path("vectorTileLayers").asList());
+        this.warmUp = new WarmUpConfig(adapter.path("warmUp"));
 
         if(logUnusedParams) {
             adapter.logAllUnusedParameters(LOG);
@@ -69,8 +75,27 @@ public class RouterConfig implements Serializable {
         return streetRoutingTimeoutSeconds;
     }
 
+    /**
+     * Run the direct, access and egress street searches of a request in parallel. Use this
+     * parameter to set the total number of threads available across all requests for a router.
+     * If 0 (default), no extra threads are started and the street searches are done one after
+     * another on the request thread.
+     */
+    public int streetRoutingThreadPoolSize() {
+        return streetRoutingThreadPoolSize;
+    }
+
     public boolean transmodelApiHideFeedId() { return transmodelApiHideFeedId; }
 
+    /**
+     * Share the equal names, ids and strings of the graph again when the server starts, see
+     * {@link org.opentripplanner.routing.graph.GraphDeduplicator}. A graph is deduplicated when it
+     * is built, this is for graphs built without it. The deduplicator then keeps the shared
+     * instances, so the trips added by the real-time updaters share them too, at the cost of
+     * keeping the maps of the deduplicator for the life of the server.
+     */
+    public boolean deduplicateGraphOnLoad() { return deduplicateGraphOnLoad; }
+
     public RoutingRequest routingRequestDefaults() {
         return routingRequestDefaults;
     }
@@ -87,6 +112,8 @@ public class RouterConfig implements Serializable {
 
     public VectorTileConfig vectorTileLayers() { return vectorTileLayers; }
 
+    public WarmUpConfig warmUp() { return warmUp; }
+
     /**
      * If {@code true} the config is loaded from file, in not the DEFAULT config is used.
      */
@@ -22,6 +22,8 @@ public final class TransitRoutingConfig
     private final int searchThreadPoolSize;
     private final Map<TransferPriority, Integer> stopTransferCost;
     private final DynamicSearchWindowCoefficients dynamicSearchWindowCoefficients;
+    private final int transitLayerDaysBefore;
+    private final int transitLayerDaysAfter;
 
     public TransitRoutingConfig(NodeAdapter c) {
         RaptorTuningParameters dft = new RaptorTuningParameters() {};
@@ -51,6 +53,8 @@ public final class TransitRoutingConfig
             TransferPriority.class,
             NodeAdapter::asInt
         );
+        this.transitLayerDaysBefore = c.asInt("transitLayerDaysBefore", 1);
+        this.transitLayerDaysAfter = c.asInt("transitLayerDaysAfter", -1);
     }
 
     @Override
@@ -88,6 +92,16 @@ public final class TransitRoutingConfig
         return stopTransferCost.get(key);
     }
 
+    @Override
+    public int transitLayerDaysBefore() {
+        return transitLayerDaysBefore;
+    }
+
+    @Override
+    public int transitLayerDaysAfter() {
+        return transitLayerDaysAfter;
+    }
+
     private static class DynamicSearchWindowConfig
             implements DynamicSearchWindowCoefficients
     {
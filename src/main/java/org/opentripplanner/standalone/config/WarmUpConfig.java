@@ -0,0 +1,62 @@
+package org.opentripplanner.standalone.config;
+
+import org.opentripplanner.model.GenericLocation;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Configure the warm-up of the server, see
+ * {@link org.opentripplanner.standalone.server.RouterWarmUp}. The warm-up is off by default.
+ */
+public class WarmUpConfig {
+
+    private final int numberOfRequests;
+    private final int threads;
+    private final int maxDurationSeconds;
+    private final List<Trip> trips;
+
+    public WarmUpConfig(NodeAdapter c) {
+        this.numberOfRequests = c.asInt("numberOfRequests", 0);
+        this.threads = c.asInt("threads", Runtime.getRuntime().availableProcessors());
+        this.maxDurationSeconds = c.asInt("maxDurationSeconds", 300);
+        this.trips = c.path("trips").asList().stream().map(Trip::new).collect(Collectors.toList());
+    }
+
+    /** The number of requests to run before the server is ready, 0 to not warm up the server. */
+    public int numberOfRequests() {
+        return numberOfRequests;
+    }
+
+    /** The number of requests to run at the same time, defaults to the number of processors. */
+    public int threads() {
+        return threads;
+    }
+
+    /** Stop warming up after this time, even if not all requests are done. */
+    public int maxDurationSeconds() {
+        return maxDurationSeconds;
+    }
+
+    /**
+     * Recorded trips to plan while warming up, they are repeated until the number of requests is
+     * reached. If empty, trips between random stops in the graph are planned.
+     */
+    public List<Trip> trips() {
+        return trips;
+    }
+
+    public static class Trip {
+        public final GenericLocation from;
+        public final GenericLocation to;
+
+        Trip(NodeAdapter c) {
+            this.from = location(c.path("from"));
+            this.to = location(c.path("to"));
+        }
+
+        private static GenericLocation location(NodeAdapter c) {
+            return new GenericLocation(c.asDouble("lat"), c.asDouble("lon"));
+        }
+    }
+}
@@ -5,14 +5,16 @@ import ch.qos.logback.classic.LoggerContext;
 import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.FileAppender;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.opentripplanner.ext.transmodelapi.TransmodelAPI;
 import org.opentripplanner.inspector.TileRendererManager;
-import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
 import org.opentripplanner.routing.algorithm.raptor.transit.TripSchedule;
+import org.opentripplanner.routing.algorithm.raptor.transit.mappers.TransitLayerDateWindow;
 import org.opentripplanner.routing.algorithm.raptor.transit.mappers.TransitLayerMapper;
 import org.opentripplanner.routing.algorithm.raptor.transit.mappers.TransitLayerUpdater;
 import org.opentripplanner.routing.api.request.RoutingRequest;
 import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.GraphDeduplicator;
 import org.opentripplanner.standalone.config.RouterConfig;
 import org.opentripplanner.transit.raptor.rangeraptor.configure.RaptorConfig;
 import org.opentripplanner.updater.GraphUpdaterConfigurator;
@@ -22,6 +24,9 @@ import org.opentripplanner.util.WorldEnvelope;
 import org.opentripplanner.visualizer.GraphVisualizer;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 /**
  * Represents the configuration of a single router (a single graph for a specific geographic area)
  * in an OTP server.
@@ -33,6 +38,13 @@ public class Router {
     public final RouterConfig routerConfig;
     public final RaptorConfig<TripSchedule> raptorConfig;
 
+    /**
+     * Thread pool used to run the direct, access and egress street searches of a request in
+     * parallel. This is {@code null} if parallel street routing is not enabled, see
+     * {@link RouterConfig#streetRoutingThreadPoolSize()}.
+     */
+    private final ExecutorService streetRoutingThreadPool;
+
     /**
      *  Separate logger for incoming requests. This should be handled with a Logback logger
      *  rather than something simple like a PrintStream because requests come in multi-threaded.
@@ -54,10 +66,22 @@ public class Router {
     /** A graphical window that is used for visualizing search progress (debugging). */
     public GraphVisualizer graphVisualizer = null;
 
+    /**
+     * Moves the days kept in the transit layers as the days pass, {@code null} if all service
+     * dates are kept.
+     */
+    private TransitLayerDateWindow transitLayerDateWindow = null;
+
+    /** Warms up the router after startup, {@code null} if warm-up is not configured. */
+    private RouterWarmUp warmUp = null;
+
     public Router(Graph graph, RouterConfig routerConfig) {
         this.graph = graph;
         this.routerConfig = routerConfig;
         this.raptorConfig = new RaptorConfig<>(routerConfig.raptorTuningParameters());
+        this.streetRoutingThreadPool = createStreetRoutingThreadPool(
+            routerConfig.streetRoutingThreadPoolSize()
+        );
     }
 
     /*
@@ -80,16 +104,41 @@ public class Router {
             LOG.info("Incoming requests will not be logged.");
         }
 
-        /* Create transit layer for Raptor routing. Here we map the scheduled timetables. */
+        /* Deduplicate before the transit layer is mapped, so it refers to the shared instances. */
+        if (routerConfig.deduplicateGraphOnLoad()) {
+            new GraphDeduplicator(graph.deduplicator).deduplicate(graph);
+        }
+
+        /* Create transit layer for Raptor routing. Here we map the scheduled timetables, unless */
+        /* they were mapped when the graph was built and saved with it. */
         /* Realtime updates can be mapped similarly by a recurring operation in a GraphUpdater below. */
         LOG.info("Creating transit layer for Raptor routing.");
         if (graph.hasTransit && graph.index != null) {
-            graph.setTransitLayer(TransitLayerMapper.map(routerConfig.transitTuningParameters(), graph));
-            graph.setRealtimeTransitLayer(new TransitLayer(graph.getTransitLayer()));
+            transitLayerDateWindow = TransitLayerDateWindow.create(
+                graph,
+                routerConfig.transitTuningParameters()
+            );
+            if (transitLayerDateWindow != null) {
+                // The transit layer saved with the graph has all dates, it is not used
+                graph.setTransitLayer(transitLayerDateWindow.mapTransitLayer(
+                    routerConfig.transitTuningParameters()
+                ));
+            } else if (graph.getTransitLayer() != null) {
+                graph.setTransitLayer(TransitLayerMapper.mapSavedTransitLayer(
+                    routerConfig.transitTuningParameters(),
+                    graph.getTransitLayer()
+                ));
+            } else {
+                graph.setTransitLayer(TransitLayerMapper.map(routerConfig.transitTuningParameters(), graph));
+            }
+            graph.setRealtimeTransitLayer(graph.getTransitLayer().createRealtimeCopy());
             graph.transitLayerUpdater = new TransitLayerUpdater(
                 graph,
                 graph.index.getServiceCodesRunningForDate()
             );
+            if (transitLayerDateWindow != null) {
+                transitLayerDateWindow.start();
+            }
         } else {
             LOG.warn("Cannot create Raptor data, that requires the graph to have transit data and be indexed.");
         }
@@ -118,11 +167,53 @@ public class Router {
                 defaultRoutingRequest
             );
         }
+
+        /* Warm up in the background, the router is not ready before this is done. */
+        this.warmUp = RouterWarmUp.start(this);
+    }
+
+    /**
+     * Return {@code true} when the router is warmed up, or if warm-up is not configured, see
+     * {@link RouterWarmUp}.
+     */
+    public boolean isWarmedUp() {
+        return warmUp == null || warmUp.isDone();
     }
 
     /** Shut down this router when evicted or (auto-)reloaded. Stop any real-time updater threads. */
     public void shutdown() {
         GraphUpdaterConfigurator.shutdownGraph(this.graph);
+        if (transitLayerDateWindow != null) {
+            transitLayerDateWindow.stop();
+        }
+        if (streetRoutingThreadPool != null) {
+            streetRoutingThreadPool.shutdown();
+        }
+    }
+
+    /**
+     * Return {@code true} if the street searches of a request should run in parallel using the
+     * {@link #streetRoutingThreadPool()}.
+     */
+    public boolean isStreetRoutingMultiThreaded() {
+        return streetRoutingThreadPool != null;
+    }
+
+    public ExecutorService streetRoutingThreadPool() {
+        return streetRoutingThreadPool;
+    }
+
+    private static ExecutorService createStreetRoutingThreadPool(int size) {
+        if (size <= 0) {
+            return null;
+        }
+        return Executors.newFixedThreadPool(
+            size,
+            new ThreadFactoryBuilder()
+                .setNameFormat("street-routing-%d")
+                .setDaemon(true)
+                .build()
+        );
     }
 
     /**
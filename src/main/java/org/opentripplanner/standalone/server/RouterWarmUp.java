@@ -0,0 +1,177 @@
+package org.opentripplanner.standalone.server;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.opentripplanner.ext.transmodelapi.TransmodelAPI;
+import org.opentripplanner.model.GenericLocation;
+import org.opentripplanner.model.Stop;
+import org.opentripplanner.routing.RoutingService;
+import org.opentripplanner.routing.api.request.RoutingRequest;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.standalone.config.WarmUpConfig;
+import org.opentripplanner.util.OTPFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Warm up the server before it is reported ready, by planning a number of trips on all threads.
+ * Just after startup the JIT compiler has not yet compiled the hot paths of the street and
+ * transit searches, and the first requests are several times slower than usual. The warm-up
+ * runs in the background while the server starts, and the readiness endpoint reports the server
+ * as not ready until the warm-up is done.
+ * <p>
+ * The trips are taken from the {@link WarmUpConfig}, or generated between random stops in the
+ * graph if none are configured. If the Transmodel API is enabled every other trip is planned
+ * through its GraphQL API, so the GraphQL code paths are warmed up too.
+ */
+public class RouterWarmUp {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RouterWarmUp.class);
+
+    private final Router router;
+
+    private final WarmUpConfig config;
+
+    private final AtomicInteger nextRequest = new AtomicInteger();
+
+    private final AtomicInteger failedRequests = new AtomicInteger();
+
+    private volatile boolean done = false;
+
+    private RouterWarmUp(Router router, WarmUpConfig config) {
+        this.router = router;
+        this.config = config;
+    }
+
+    /**
+     * Start warming up the router in the background.
+     * @return the warm-up, or {@code null} if warm-up is not configured.
+     */
+    static RouterWarmUp start(Router router) {
+        WarmUpConfig config = router.routerConfig.warmUp();
+        if (config.numberOfRequests() <= 0) {
+            return null;
+        }
+        RouterWarmUp warmUp = new RouterWarmUp(router, config);
+        Thread thread = new Thread(warmUp::run, "router-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+        return warmUp;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    private void run() {
+        try {
+            List<WarmUpConfig.Trip> trips = config.trips();
+            List<Coordinate> places = trips.isEmpty() ? places() : List.of();
+            if (trips.isEmpty() && places.size() < 2) {
+                LOG.warn("Not warming up, the graph has no places to plan trips between.");
+                return;
+            }
+            BiConsumer<GenericLocation, GenericLocation> transmodelApi =
+                OTPFeature.SandboxAPITransmodelApi.isOn()
+                    ? TransmodelAPI.warmUpTripPlanner(router)
+                    : null;
+
+            LOG.info("Warming up with {} requests on {} threads...", config.numberOfRequests(), config.threads());
+            long start = System.currentTimeMillis();
+            long deadline = start + TimeUnit.SECONDS.toMillis(config.maxDurationSeconds());
+            ExecutorService threadPool = Executors.newFixedThreadPool(Math.max(1, config.threads()));
+            try {
+                for (int i = 0; i < config.threads(); i++) {
+                    // Each thread has its own random generator, so the threads do not contend on it
+                    Random random = new Random(i);
+                    threadPool.execute(() -> {
+                        for (int n = nextRequest.getAndIncrement();
+                            n < config.numberOfRequests() && System.currentTimeMillis() < deadline;
+                            n = nextRequest.getAndIncrement()
+                        ) {
+                            WarmUpConfig.Trip trip = trips.isEmpty() ? null : trips.get(n % trips.size());
+                            GenericLocation from = trip != null ? trip.from : randomLocation(places, random);
+                            GenericLocation to = trip != null ? trip.to : randomLocation(places, random);
+                            plan(from, to, transmodelApi != null && n % 2 == 1 ? transmodelApi : null);
+                        }
+                    });
+                }
+                threadPool.shutdown();
+                threadPool.awaitTermination(config.maxDurationSeconds() + 60, TimeUnit.SECONDS);
+            }
+            finally {
+                threadPool.shutdownNow();
+            }
+            LOG.info(
+                "Warm-up done, {} requests in {} seconds, {} failed.",
+                Math.min(nextRequest.get(), config.numberOfRequests()),
+                (System.currentTimeMillis() - start) / 1000,
+                failedRequests.get()
+            );
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warn("Warm-up interrupted.");
+        }
+        catch (RuntimeException e) {
+            LOG.error("Warm-up failed: {}", e.getMessage(), e);
+        }
+        finally {
+            // Never keep the server from becoming ready
+            done = true;
+        }
+    }
+
+    private void plan(
+        GenericLocation from,
+        GenericLocation to,
+        BiConsumer<GenericLocation, GenericLocation> transmodelApi
+    ) {
+        try {
+            if (transmodelApi != null) {
+                transmodelApi.accept(from, to);
+                return;
+            }
+            RoutingRequest request = router.defaultRoutingRequest.clone();
+            request.from = from;
+            request.to = to;
+            request.setDateTime(new Date());
+            new RoutingService(router.graph).route(request, router);
+        }
+        catch (RuntimeException e) {
+            // Random trips may fail, like trips between places that are not connected
+            failedRequests.incrementAndGet();
+            LOG.debug("Warm-up request failed: {}", e.getMessage());
+        }
+    }
+
+    /** The stops of the graph, or the vertices if there are no stops. */
+    private List<Coordinate> places() {
+        List<Coordinate> places = new ArrayList<>();
+        if (router.graph.index != null) {
+            for (Stop stop : router.graph.index.getAllStops()) {
+                places.add(new Coordinate(stop.getLon(), stop.getLat()));
+            }
+        }
+        if (places.isEmpty()) {
+            for (Vertex vertex : router.graph.getVertices()) {
+                places.add(vertex.getCoordinate());
+            }
+        }
+        return places;
+    }
+
+    private static GenericLocation randomLocation(List<Coordinate> places, Random random) {
+        Coordinate c = places.get(random.nextInt(places.size()));
+        return new GenericLocation(c.y, c.x);
+    }
+}
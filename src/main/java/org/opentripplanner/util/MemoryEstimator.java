@@ -0,0 +1,230 @@
+package org.opentripplanner.util;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Estimate the heap used by a part of an object graph, by walking the objects reachable from a
+ * set of roots and adding up their estimated sizes. The sizes are computed from the fields of the
+ * classes, for a 64-bit JVM with compressed references: a 12 byte object header, 4 byte
+ * references and objects aligned to 8 bytes. This is what a JVM with less than 32GB of heap uses.
+ * <p>
+ * The walk stops at the boundary objects given, so that a part of a graph can be measured without
+ * the objects it refers to, like the street edges without their vertices. Each object is counted
+ * once, so an object shared by several roots is counted in the first root it is reached from.
+ * <p>
+ * The fields of JDK classes can not be read by reflection, so collections and maps are walked
+ * through their public API and their internal arrays and entries are estimated. Other JDK classes
+ * are counted without the objects they refer to. If there are many roots, a sample of them is
+ * walked and the size is scaled up to all roots, this keeps the walk fast and small.
+ */
+public class MemoryEstimator {
+
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+    private static final int ALIGNMENT = 8;
+
+    /** The size of a map entry, like a {@code HashMap.Node}: header, hash and three references. */
+    private static final int MAP_ENTRY = 32;
+
+    private static final Map<Class<?>, ClassInfo> CLASS_INFO = new ConcurrentHashMap<>();
+
+    private final Predicate<Object> isBoundary;
+
+    private final int maxSampleSize;
+
+    /**
+     * @param isBoundary objects that are not walked into, unless they are roots.
+     * @param maxSampleSize the maximum number of roots to walk, if there are more a sample is walked.
+     */
+    public MemoryEstimator(Predicate<Object> isBoundary, int maxSampleSize) {
+        this.isBoundary = isBoundary;
+        this.maxSampleSize = maxSampleSize;
+    }
+
+    /** The estimated number of bytes used by the roots and the objects reachable from them. */
+    public long estimate(Collection<?> roots) {
+        if (roots.isEmpty()) {
+            return 0;
+        }
+        List<?> rootList = roots instanceof List ? (List<?>) roots : new ArrayList<>(roots);
+        int step = Math.max(1, (rootList.size() + maxSampleSize - 1) / maxSampleSize);
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Object> stack = new ArrayDeque<>();
+        long size = 0;
+        int nSampled = 0;
+        for (int i = 0; i < rootList.size(); i += step) {
+            Object root = rootList.get(i);
+            nSampled++;
+            if (root != null && visited.add(root)) {
+                size += walk(root, visited, stack);
+            }
+        }
+        return size * rootList.size() / nSampled;
+    }
+
+    /** The estimated size of an object, without the objects it refers to. */
+    public static long shallowSize(Object object) {
+        Class<?> type = object.getClass();
+        if (type.isArray()) {
+            return arraySize(type.getComponentType(), Array.getLength(object));
+        }
+        if (object instanceof String) {
+            // The value of a Latin-1 string is one byte per character
+            return classInfo(String.class).size + arraySize(byte.class, ((String) object).length());
+        }
+        return classInfo(type).size;
+    }
+
+    /**
+     * The estimated size of a hash table with a load factor of 0.75, and an entry object for each
+     * element, without the keys and values.
+     */
+    public static long hashTableSize(int size) {
+        return arraySize(Object.class, size * 4 / 3) + (long) size * MAP_ENTRY;
+    }
+
+
+    /* private methods */
+
+    private long walk(Object root, Set<Object> visited, Deque<Object> stack) {
+        long size = 0;
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Object object = stack.pop();
+            size += shallowSize(object);
+            try {
+                size += addReferences(object, visited, stack);
+            }
+            catch (ConcurrentModificationException e) {
+                // The graph may be updated by the real-time updaters while it is walked
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Push the objects referred to by the given object, and return the estimated size of the
+     * internal structures of a JDK collection or map.
+     */
+    private long addReferences(Object object, Set<Object> visited, Deque<Object> stack) {
+        Class<?> type = object.getClass();
+        if (type.isArray()) {
+            if (!type.getComponentType().isPrimitive()) {
+                for (Object element : (Object[]) object) {
+                    push(element, visited, stack);
+                }
+            }
+            return 0;
+        }
+        ClassInfo info = classInfo(type);
+        if (!info.jdkClass) {
+            for (Field field : info.referenceFields) {
+                try {
+                    push(field.get(object), visited, stack);
+                }
+                catch (IllegalAccessException e) {
+                    // Not walked, the field is counted as a reference only
+                }
+            }
+            return 0;
+        }
+        if (object instanceof Collection) {
+            Collection<?> collection = (Collection<?>) object;
+            for (Object element : collection) {
+                push(element, visited, stack);
+            }
+            // The backing array, or the entries of a hash set
+            return object instanceof Set
+                    ? hashTableSize(collection.size())
+                    : arraySize(Object.class, collection.size());
+        }
+        if (object instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) object;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                push(entry.getKey(), visited, stack);
+                push(entry.getValue(), visited, stack);
+            }
+            return hashTableSize(map.size());
+        }
+        return 0;
+    }
+
+    private void push(Object object, Set<Object> visited, Deque<Object> stack) {
+        if (object != null && !isBoundary.test(object) && visited.add(object)) {
+            stack.push(object);
+        }
+    }
+
+    private static long arraySize(Class<?> componentType, int length) {
+        return align(ARRAY_HEADER + (long) length * fieldSize(componentType));
+    }
+
+    private static long align(long size) {
+        return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static int fieldSize(Class<?> type) {
+        if (type == long.class || type == double.class) { return 8; }
+        if (type == int.class || type == float.class) { return 4; }
+        if (type == short.class || type == char.class) { return 2; }
+        if (type == byte.class || type == boolean.class) { return 1; }
+        return REFERENCE;
+    }
+
+    private static ClassInfo classInfo(Class<?> type) {
+        return CLASS_INFO.computeIfAbsent(type, ClassInfo::new);
+    }
+
+    private static boolean isJdkClass(Class<?> type) {
+        String name = type.getName();
+        return name.startsWith("java.") || name.startsWith("javax.")
+                || name.startsWith("jdk.") || name.startsWith("sun.");
+    }
+
+    private static class ClassInfo {
+        final long size;
+        final boolean jdkClass;
+        final List<Field> referenceFields = new ArrayList<>();
+
+        ClassInfo(Class<?> type) {
+            this.jdkClass = isJdkClass(type);
+            long fieldsSize = 0;
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    fieldsSize += fieldSize(field.getType());
+                    if (!jdkClass && !field.getType().isPrimitive() && trySetAccessible(field)) {
+                        referenceFields.add(field);
+                    }
+                }
+            }
+            this.size = align(OBJECT_HEADER + fieldsSize);
+        }
+
+        private static boolean trySetAccessible(Field field) {
+            try {
+                return field.trySetAccessible();
+            }
+            catch (SecurityException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -22,6 +22,11 @@ public class NonLocalizedString implements I18NString, Serializable {
         return other instanceof NonLocalizedString && this.name.equals(((NonLocalizedString)other).name);
     }
 
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
     @Override
     public String toString() {
         return this.name;
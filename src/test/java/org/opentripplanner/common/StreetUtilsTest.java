@@ -0,0 +1,97 @@
+package org.opentripplanner.common;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.LineString;
+import org.opentripplanner.common.geometry.GeometryUtils;
+import org.opentripplanner.graph_builder.DataImportIssueStore;
+import org.opentripplanner.graph_builder.issues.GraphConnectivity;
+import org.opentripplanner.model.Stop;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.StreetTraversalPermission;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+import org.opentripplanner.routing.vertextype.TransitStopVertex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class StreetUtilsTest {
+
+    @Test
+    public void testPruneFloatingIslands() {
+        Graph graph = new Graph();
+
+        // The main street network, with four vertices
+        IntersectionVertex a = vertex(graph, "A", 0.0);
+        IntersectionVertex b = vertex(graph, "B", 0.001);
+        IntersectionVertex c = vertex(graph, "C", 0.002);
+        IntersectionVertex d = vertex(graph, "D", 0.003);
+        street(a, b, StreetTraversalPermission.ALL);
+        street(b, c, StreetTraversalPermission.ALL);
+        street(c, d, StreetTraversalPermission.ALL);
+
+        // A footway island, removed from the graph
+        IntersectionVertex e = vertex(graph, "E", 0.010);
+        IntersectionVertex f = vertex(graph, "F", 0.011);
+        street(e, f, StreetTraversalPermission.PEDESTRIAN);
+
+        // A road island, kept for cars only
+        IntersectionVertex g = vertex(graph, "G", 0.020);
+        IntersectionVertex h = vertex(graph, "H", 0.021);
+        StreetEdge road = street(g, h, StreetTraversalPermission.ALL);
+
+        DataImportIssueStore issueStore = new DataImportIssueStore(true);
+        StreetUtils.pruneFloatingIslands(graph, 3, 3, null, issueStore);
+
+        assertEquals(2, issueStore.getIssues().size());
+        assertTrue(issueStore.getIssues().stream().allMatch(GraphConnectivity.class::isInstance));
+
+        assertNotNull(graph.getVertex("A"));
+        assertNotNull(graph.getVertex("D"));
+        assertEquals(StreetTraversalPermission.ALL, ((StreetEdge) a.getOutgoing().iterator().next()).getPermission());
+
+        assertNull(graph.getVertex("E"));
+        assertNull(graph.getVertex("F"));
+
+        assertNotNull(graph.getVertex("G"));
+        assertEquals(StreetTraversalPermission.CAR, road.getPermission());
+    }
+
+    @Test
+    public void testStopsNotLinkedYetAreKept() {
+        Graph graph = new Graph();
+        IntersectionVertex a = vertex(graph, "A", 0.0);
+        IntersectionVertex b = vertex(graph, "B", 0.001);
+        street(a, b, StreetTraversalPermission.ALL);
+        // A vertex without edges is removed, a stop is linked to the streets later
+        vertex(graph, "C", 0.002);
+        TransitStopVertex stop = new TransitStopVertex(
+                graph, Stop.stopForTest("S", 0.0, 0.003), null
+        );
+
+        StreetUtils.pruneFloatingIslands(graph, 1, 1, null, new DataImportIssueStore(true));
+
+        assertNotNull(graph.getVertex("A"));
+        assertNull(graph.getVertex("C"));
+        assertSame(stop, graph.getVertex(stop.getLabel()));
+    }
+
+    private static IntersectionVertex vertex(Graph graph, String label, double lon) {
+        return new IntersectionVertex(graph, label, lon, 0.0);
+    }
+
+    private static StreetEdge street(
+            IntersectionVertex from,
+            IntersectionVertex to,
+            StreetTraversalPermission permission
+    ) {
+        LineString geometry = GeometryUtils.makeLineString(
+                from.getLon(), from.getLat(), to.getLon(), to.getLat()
+        );
+        new StreetEdge(to, from, (LineString) geometry.reverse(), "back", 100, permission, true);
+        return new StreetEdge(from, to, geometry, "street", 100, permission, false);
+    }
+}
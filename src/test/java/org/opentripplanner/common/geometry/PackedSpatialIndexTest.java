@@ -0,0 +1,89 @@
+package org.opentripplanner.common.geometry;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PackedSpatialIndexTest {
+
+    private static final double X0 = -0.05;
+    private static final double Y0 = 44.0;
+    private static final double DX = 0.1;
+    private static final double DY = 0.1;
+
+    /**
+     * Insert many random envelopes and check that random queries return exactly the envelopes
+     * intersecting the query envelope, as found by a linear scan.
+     */
+    @Test
+    public void testRandomQueriesMatchLinearScan() {
+        Random rand = new Random(42);
+        List<Envelope> envelopes = new ArrayList<>();
+        PackedSpatialIndex.Builder<Envelope> builder = PackedSpatialIndex.builder();
+
+        for (int i = 0; i < 5000; i++) {
+            // Mix points and small boxes, like vertices and edges
+            Envelope env = i % 3 == 0
+                    ? new Envelope(randomCoordinate(rand))
+                    : randomBox(rand, 0.002);
+            envelopes.add(env);
+            builder.add(env, env);
+        }
+        PackedSpatialIndex<Envelope> index = builder.build();
+        assertEquals(envelopes.size(), index.size());
+
+        for (int i = 0; i < 1000; i++) {
+            Envelope searchEnv = randomBox(rand, 0.01);
+            List<Envelope> result = index.query(searchEnv);
+
+            Set<Envelope> expected = new HashSet<>();
+            for (Envelope env : envelopes) {
+                if (env.intersects(searchEnv)) {
+                    expected.add(env);
+                }
+            }
+            assertEquals(expected.size(), result.size());
+            assertEquals(expected, new HashSet<>(result));
+        }
+    }
+
+    @Test
+    public void testEmptyAndSingleItemIndex() {
+        PackedSpatialIndex<String> empty = PackedSpatialIndex.<String>builder().build();
+        assertTrue(empty.query(new Envelope(X0, X0 + DX, Y0, Y0 + DY)).isEmpty());
+
+        PackedSpatialIndex<String> single = PackedSpatialIndex.<String>builder()
+                .add(X0, Y0, "A")
+                .build();
+        assertEquals(List.of("A"), single.query(new Envelope(X0 - 1, X0 + 1, Y0 - 1, Y0 + 1)));
+        assertTrue(single.query(new Envelope(X0 + 1, X0 + 2, Y0, Y0 + 1)).isEmpty());
+    }
+
+    @Test
+    public void testHilbertCurveCorners() {
+        // The curve starts in (0, 0) and ends in (max, 0), passing through the top
+        assertEquals(0, PackedSpatialIndex.hilbert(0, 0));
+        assertEquals(0xFFFFFFFFL, PackedSpatialIndex.hilbert(0xFFFF, 0) & 0xFFFFFFFFL);
+    }
+
+    private static Coordinate randomCoordinate(Random rand) {
+        return new Coordinate(rand.nextDouble() * DX + X0, rand.nextDouble() * DY + Y0);
+    }
+
+    private static Envelope randomBox(Random rand, double maxSize) {
+        Coordinate c = randomCoordinate(rand);
+        return new Envelope(
+                c.x, c.x + rand.nextDouble() * maxSize,
+                c.y, c.y + rand.nextDouble() * maxSize
+        );
+    }
+}
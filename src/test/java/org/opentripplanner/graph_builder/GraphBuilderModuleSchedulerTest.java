@@ -0,0 +1,156 @@
+package org.opentripplanner.graph_builder;
+
+import org.junit.Test;
+import org.opentripplanner.graph_builder.services.GraphBuilderModule;
+import org.opentripplanner.routing.graph.Graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GraphBuilderModuleSchedulerTest {
+
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void testModulesRunInOrderOnOneThread() {
+        List<GraphBuilderModule> modules = Arrays.asList(
+                new TestModule("streets", true, List.of("streets"), List.of()),
+                new TestModule("transit", true, List.of("transit"), List.of()),
+                new TestModule("linking", false, List.of(), List.of("streets"))
+        );
+        run(modules, 1);
+        assertEquals(
+                List.of("start streets", "end streets", "start transit", "end transit",
+                        "start linking", "end linking"),
+                events
+        );
+    }
+
+    @Test
+    public void testIndependentModulesRunConcurrently() {
+        // Both modules wait for the other one to start, this only finishes if they run at the
+        // same time
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        List<GraphBuilderModule> modules = Arrays.asList(
+                new TestModule("streets", true, List.of("streets"), List.of(), bothStarted),
+                new TestModule("transit", true, List.of("transit"), List.of(), bothStarted),
+                new TestModule("linking", false, List.of(), List.of("streets"))
+        );
+        run(modules, 4);
+        assertEquals(List.of("start linking", "end linking"), events.subList(4, 6));
+    }
+
+    @Test
+    public void testModulesProvidingTheSameThingRunInOrder() {
+        List<GraphBuilderModule> modules = Arrays.asList(
+                new TestModule("gtfs", true, List.of("transit"), List.of()),
+                new TestModule("netex", true, List.of("transit"), List.of()),
+                new TestModule("matcher", true, List.of(), List.of("transit"))
+        );
+        run(modules, 4);
+        assertEquals(
+                List.of("start gtfs", "end gtfs", "start netex", "end netex",
+                        "start matcher", "end matcher"),
+                events
+        );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFailureIsReported() {
+        List<GraphBuilderModule> modules = Arrays.asList(
+                new TestModule("streets", true, List.of("streets"), List.of()) {
+                    @Override
+                    public void buildGraph(
+                            Graph graph,
+                            HashMap<Class<?>, Object> extra,
+                            DataImportIssueStore issueStore
+                    ) {
+                        throw new IllegalArgumentException("Bad input");
+                    }
+                },
+                new TestModule("linking", true, List.of(), List.of("streets"))
+        );
+        try {
+            run(modules, 2);
+        }
+        finally {
+            assertTrue(events.isEmpty());
+        }
+    }
+
+    private void run(List<GraphBuilderModule> modules, int nThreads) {
+        new GraphBuilderModuleScheduler(modules, nThreads)
+                .run(new Graph(), new HashMap<>(), new DataImportIssueStore(false));
+    }
+
+    private class TestModule implements GraphBuilderModule {
+        private final String name;
+        private final boolean concurrent;
+        private final List<String> provides;
+        private final List<String> prerequisites;
+        private final CountDownLatch latch;
+
+        TestModule(String name, boolean concurrent, List<String> provides, List<String> prerequisites) {
+            this(name, concurrent, provides, prerequisites, null);
+        }
+
+        TestModule(
+                String name,
+                boolean concurrent,
+                List<String> provides,
+                List<String> prerequisites,
+                CountDownLatch latch
+        ) {
+            this.name = name;
+            this.concurrent = concurrent;
+            this.provides = provides;
+            this.prerequisites = prerequisites;
+            this.latch = latch;
+        }
+
+        @Override
+        public void buildGraph(
+                Graph graph,
+                HashMap<Class<?>, Object> extra,
+                DataImportIssueStore issueStore
+        ) {
+            events.add("start " + name);
+            if (latch != null) {
+                latch.countDown();
+                try {
+                    assertTrue(latch.await(10, TimeUnit.SECONDS));
+                }
+                catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            events.add("end " + name);
+        }
+
+        @Override
+        public void checkInputs() { }
+
+        @Override
+        public List<String> provides() {
+            return provides;
+        }
+
+        @Override
+        public List<String> getPrerequisites() {
+            return prerequisites;
+        }
+
+        @Override
+        public boolean canRunConcurrently() {
+            return concurrent;
+        }
+    }
+}
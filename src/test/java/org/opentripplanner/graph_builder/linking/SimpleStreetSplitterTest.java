@@ -3,13 +3,23 @@ package org.opentripplanner.graph_builder.linking;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.locationtech.jts.geom.LineString;
+import org.opentripplanner.common.geometry.GeometryUtils;
+import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
 import org.opentripplanner.graph_builder.DataImportIssueStore;
 import org.opentripplanner.model.GenericLocation;
+import org.opentripplanner.model.Stop;
 import org.opentripplanner.routing.api.request.RoutingRequest;
 import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.StreetTransitLink;
+import org.opentripplanner.routing.edgetype.StreetTraversalPermission;
 import org.opentripplanner.routing.graph.Graph;
 import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+import org.opentripplanner.routing.vertextype.TransitStopVertex;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.spy;
@@ -41,4 +51,30 @@ public class SimpleStreetSplitterTest {
         spySimpleStreetSplitter.getClosestVertex(genericLocation, routingRequest, true);
         verify(spySimpleStreetSplitter).link(any(Vertex.class), eq(TraverseMode.WALK), eq(routingRequest));
     }
+
+    /**
+     * Tests that stops linking to the same edge are all linked, the later ones to the fragments of
+     * the edge split by the earlier ones.
+     */
+    @Test
+    public void testLinkStopsToTheSameEdge() {
+        Graph graph = new Graph();
+        IntersectionVertex a = new IntersectionVertex(graph, "A", 10.0, 59.0);
+        IntersectionVertex b = new IntersectionVertex(graph, "B", 10.01, 59.0);
+        LineString geometry = GeometryUtils.makeLineString(a.getLon(), a.getLat(), b.getLon(), b.getLat());
+        double length = SphericalDistanceLibrary.distance(a.getCoordinate(), b.getCoordinate());
+        new StreetEdge(a, b, geometry, "street", length, StreetTraversalPermission.ALL, false);
+        new StreetEdge(b, a, (LineString) geometry.reverse(), "street", length, StreetTraversalPermission.ALL, true);
+
+        TransitStopVertex s1 = new TransitStopVertex(graph, Stop.stopForTest("S1", 59.0001, 10.003), null);
+        TransitStopVertex s2 = new TransitStopVertex(graph, Stop.stopForTest("S2", 59.0001, 10.006), null);
+
+        SimpleStreetSplitter.createForTest(graph).link();
+
+        // Each stop is linked to both directions of the street
+        assertEquals(2, s1.getOutgoing().stream().filter(StreetTransitLink.class::isInstance).count());
+        assertEquals(2, s2.getOutgoing().stream().filter(StreetTransitLink.class::isInstance).count());
+        // Both directions are split twice
+        assertEquals(6, graph.getEdges().stream().filter(StreetEdge.class::isInstance).count());
+    }
 }
@@ -18,6 +18,7 @@ import java.util.HashMap;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 
 public class GtfsGraphBuilderModuleTest {
 
@@ -83,6 +84,28 @@ public class GtfsGraphBuilderModuleTest {
                 BikeAccess.fromTrip(withId(trips, new FeedScopedId(feedId.getId(), "t1"))));
     }
 
+    @Test
+    public void testLoadFeedsInParallel() throws IOException {
+        List<GtfsBundle> bundleList = Lists.newArrayList();
+        for (String feedId : new String[] { "A", "B", "C" }) {
+            GtfsBundle bundle = new GtfsBundle(getSimpleGtfs().getPath());
+            bundle.setFeedId(new GtfsFeedId.Builder().id(feedId).build());
+            bundleList.add(bundle);
+        }
+        builder = new GtfsModule(bundleList, ServiceDateInterval.unbounded());
+        builder.setLoadingThreads(2);
+
+        Graph graph = new Graph();
+        builder.buildGraph(graph, _extra);
+        graph.index();
+
+        assertEquals(3, graph.tripPatternForId.size());
+        for (String feedId : new String[] { "A", "B", "C" }) {
+            Trip trip = graph.index.getTripForId().get(new FeedScopedId(feedId, "t0"));
+            assertNotNull(graph.index.getPatternForTrip().get(trip));
+        }
+    }
+
     private MockGtfs getSimpleGtfs() throws IOException {
         MockGtfs gtfs = MockGtfs.create();
         gtfs.putAgencies(1);
@@ -0,0 +1,143 @@
+package org.opentripplanner.graph_builder.module;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.LineString;
+import org.opentripplanner.common.geometry.GeometryUtils;
+import org.opentripplanner.model.SimpleTransfer;
+import org.opentripplanner.model.Stop;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.StreetTransitLink;
+import org.opentripplanner.routing.edgetype.StreetTraversalPermission;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.GraphIndex;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+import org.opentripplanner.routing.vertextype.TransitStopVertex;
+import org.opentripplanner.util.NonLocalizedString;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TransferCacheTest {
+
+    private static final String STREET_GRAPH_ID = "streetGraph.obj 1000 1";
+
+    private static final double RADIUS = 2000;
+
+    private Graph graph;
+    private TransitStopVertex s1;
+    private TransitStopVertex s2;
+    private IntersectionVertex a;
+    private IntersectionVertex b;
+    private List<Edge> path;
+
+    @Before
+    public void setUp() {
+        graph = new Graph();
+        s1 = new TransitStopVertex(graph, Stop.stopForTest("S1", 60.0, 10.0), null);
+        s2 = new TransitStopVertex(graph, Stop.stopForTest("S2", 60.0, 10.01), null);
+        a = new IntersectionVertex(graph, "A", 10.0, 60.0001);
+        b = new IntersectionVertex(graph, "B", 10.01, 60.0001);
+        path = List.of(
+                new StreetTransitLink(s1, a, true),
+                street(a, b),
+                new StreetTransitLink(b, s2, true)
+        );
+        graph.index = new GraphIndex(graph);
+    }
+
+    @Test
+    public void testUnchangedStopsReuseTheirTransfers() throws IOException {
+        TransferCache cache = writeAndRead(createCache());
+        assertTrue(cache.matches(STREET_GRAPH_ID, RADIUS));
+        assertFalse(cache.matches("streetGraph.obj 1000 2", RADIUS));
+        assertFalse(cache.matches(STREET_GRAPH_ID, 1000));
+
+        List<TransitStopVertex> stops = List.of(s1, s2);
+        List<List<SimpleTransfer>> transfers = cache.reuseTransfers(
+                stops, TransferCache.stopSignatures(stops, graph.index), graph.index
+        );
+
+        SimpleTransfer transfer = transfers.get(0).get(0);
+        assertSame(s1.getStop(), transfer.from);
+        assertSame(s2.getStop(), transfer.to);
+        assertEquals(550.0, transfer.getEffectiveWalkDistance(), 0.0);
+        assertEquals(path, transfer.getEdges());
+        assertTrue(transfers.get(1).isEmpty());
+    }
+
+    @Test
+    public void testStopsNearAChangedStopAreSearchedAgain() throws IOException {
+        TransferCache cache = writeAndRead(createCache());
+        List<TransitStopVertex> stops = List.of(s1, s2);
+        int[] signatures = TransferCache.stopSignatures(stops, graph.index);
+        signatures[1]++;
+
+        List<List<SimpleTransfer>> transfers = cache.reuseTransfers(stops, signatures, graph.index);
+
+        assertNull(transfers.get(0));
+        assertNull(transfers.get(1));
+    }
+
+    @Test
+    public void testTransfersAreSearchedAgainIfThePathIsNotFound() throws IOException {
+        TransferCache cache = writeAndRead(createCache());
+        // Split the street, like when a new stop is linked to it
+        IntersectionVertex c = new IntersectionVertex(graph, "C", 10.005, 60.0001);
+        a.removeOutgoing(path.get(1));
+        street(a, c);
+        street(c, b);
+
+        List<TransitStopVertex> stops = List.of(s1, s2);
+        List<List<SimpleTransfer>> transfers = cache.reuseTransfers(
+                stops, TransferCache.stopSignatures(stops, graph.index), graph.index
+        );
+
+        assertNull(transfers.get(0));
+        assertTrue(transfers.get(1).isEmpty());
+    }
+
+    private TransferCache createCache() {
+        List<TransitStopVertex> stops = List.of(s1, s2);
+        return TransferCache.create(
+                STREET_GRAPH_ID,
+                RADIUS,
+                stops,
+                TransferCache.stopSignatures(stops, graph.index),
+                List.of(
+                        List.of(new SimpleTransfer(s1.getStop(), s2.getStop(), 550.0, path)),
+                        List.of()
+                )
+        );
+    }
+
+    private static TransferCache writeAndRead(TransferCache cache) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        cache.write(new DataOutputStream(bytes));
+        return TransferCache.read(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))
+        );
+    }
+
+    private static StreetEdge street(IntersectionVertex from, IntersectionVertex to) {
+        LineString geometry = GeometryUtils.getGeometryFactory().createLineString(
+                new Coordinate[] { from.getCoordinate(), to.getCoordinate() }
+        );
+        return new StreetEdge(
+                from, to, geometry, new NonLocalizedString("street"), 555.0,
+                StreetTraversalPermission.ALL, false
+        );
+    }
+}
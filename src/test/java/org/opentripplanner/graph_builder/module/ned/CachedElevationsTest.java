@@ -0,0 +1,94 @@
+package org.opentripplanner.graph_builder.module.ned;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.LineString;
+import org.opentripplanner.common.geometry.GeometryUtils;
+import org.opentripplanner.common.geometry.PackedCoordinateSequence;
+import org.opentripplanner.routing.edgetype.StreetTraversalPermission;
+import org.opentripplanner.routing.edgetype.StreetWithElevationEdge;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CachedElevationsTest {
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        List<StreetWithElevationEdge> edges = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            edges.add(edge(10.0 + i * 0.001, 59.0, 100.0 + i));
+        }
+
+        File file = File.createTempFile("cached_elevations", ".bin");
+        file.deleteOnExit();
+        CachedElevations.write(file, edges);
+        CachedElevations cached = CachedElevations.read(file);
+
+        assertEquals(edges.size(), cached.size());
+        for (StreetWithElevationEdge edge : edges) {
+            PackedCoordinateSequence expected = edge.getElevationProfile();
+            PackedCoordinateSequence profile = cached.get(edge.getGeometry());
+            assertEquals(expected.size(), profile.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.getX(i), profile.getX(i), 0.0);
+                assertEquals(expected.getY(i), profile.getY(i), 0.0);
+            }
+        }
+        assertNull(cached.get(GeometryUtils.makeLineString(11.0, 60.0, 11.001, 60.0)));
+    }
+
+    @Test
+    public void testAProfileWithTheSameKeyAndAnotherPolylineIsNotFound() throws Exception {
+        LineString geometry = GeometryUtils.makeLineString(10.0, 59.0, 10.001, 59.0);
+        String otherPolyline = CachedElevations.polyline(
+                GeometryUtils.makeLineString(11.0, 60.0, 11.001, 60.0)
+        );
+
+        // A file with the key of the geometry, as if the other polyline had the same key
+        File file = File.createTempFile("cached_elevations", ".bin");
+        file.deleteOnExit();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt(CachedElevations.MAGIC);
+            out.writeInt(CachedElevations.VERSION);
+            out.writeInt(1);
+            out.writeLong(CachedElevations.key(CachedElevations.polyline(geometry)));
+            out.writeInt(0);
+            out.writeInt(1);
+            out.writeInt(0);
+            out.writeInt(otherPolyline.length());
+            out.writeDouble(0);
+            out.writeDouble(100);
+            out.writeBytes(otherPolyline);
+        }
+        CachedElevations cached = CachedElevations.read(file);
+
+        assertEquals(1, cached.size());
+        assertNull(cached.get(geometry));
+    }
+
+    private static StreetWithElevationEdge edge(double x, double y, double elevation) {
+        IntersectionVertex from = new IntersectionVertex(null, "from", x, y);
+        IntersectionVertex to = new IntersectionVertex(null, "to", x + 0.001, y);
+        LineString geometry = GeometryUtils.makeLineString(x, y, x + 0.001, y);
+        StreetWithElevationEdge edge = new StreetWithElevationEdge(
+                from, to, geometry, "street", 57, StreetTraversalPermission.ALL, false
+        );
+        edge.setElevationProfile(
+                new PackedCoordinateSequence.Double(new Coordinate[] {
+                        new Coordinate(0, elevation),
+                        new Coordinate(30, elevation + 1),
+                        new Coordinate(57, elevation + 2)
+                }, 2),
+                false
+        );
+        return edge;
+    }
+}
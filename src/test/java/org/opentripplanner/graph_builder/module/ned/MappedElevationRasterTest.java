@@ -0,0 +1,88 @@
+package org.opentripplanner.graph_builder.module.ned;
+
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridCoverageFactory;
+import org.geotools.coverage.grid.Interpolator2D;
+import org.geotools.geometry.DirectPosition2D;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.junit.Test;
+import org.opengis.coverage.PointOutsideCoverageException;
+import org.opentripplanner.common.geometry.GeometryUtils;
+
+import javax.media.jai.InterpolationBilinear;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class MappedElevationRasterTest {
+
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 520;
+    private static final double CELL_SIZE = 0.001;
+    private static final double MIN_X = 10.0;
+    private static final double MAX_Y = 60.0;
+
+    @Test
+    public void testSampleLinearSurface() throws Exception {
+        MappedElevationRaster raster = MappedElevationRaster.create(createCoverage());
+
+        // The center of a cell is the value of the cell
+        assertEquals(elevation(0, 0), raster.sample(x(0), y(0)), 1e-9);
+        assertEquals(elevation(299, 519), raster.sample(x(299), y(519)), 1e-9);
+        assertEquals(elevation(257, 300), raster.sample(x(257), y(300)), 1e-9);
+
+        // A linear surface is interpolated exactly, also across tile borders
+        assertEquals(elevation(255.5, 255.25), raster.sample(x(255.5), y(255.25)), 1e-6);
+    }
+
+    @Test
+    public void testSampleLikeGeoTools() throws Exception {
+        GridCoverage2D coverage = createCoverage();
+        MappedElevationRaster raster = MappedElevationRaster.create(coverage);
+        GridCoverage2D interpolator = Interpolator2D.create(coverage, new InterpolationBilinear());
+
+        Random random = new Random(42);
+        double[] values = new double[1];
+        for (int i = 0; i < 1000; i++) {
+            double x = x(random.nextDouble() * (WIDTH - 1));
+            double y = y(random.nextDouble() * (HEIGHT - 1));
+            interpolator.evaluate(new DirectPosition2D(GeometryUtils.WGS84_XY, x, y), values);
+            // GeoTools rounds the position within the cell to 1/256
+            assertEquals(values[0], raster.sample(x, y), 0.02);
+        }
+    }
+
+    @Test(expected = PointOutsideCoverageException.class)
+    public void testSampleOutside() throws Exception {
+        MappedElevationRaster.create(createCoverage()).sample(MIN_X - CELL_SIZE, MAX_Y);
+    }
+
+    private static GridCoverage2D createCoverage() {
+        float[][] matrix = new float[HEIGHT][WIDTH];
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                matrix[row][col] = (float) elevation(col, row);
+            }
+        }
+        ReferencedEnvelope envelope = new ReferencedEnvelope(
+                MIN_X, MIN_X + WIDTH * CELL_SIZE,
+                MAX_Y - HEIGHT * CELL_SIZE, MAX_Y,
+                GeometryUtils.WGS84_XY
+        );
+        return new GridCoverageFactory().create("elevation", matrix, envelope);
+    }
+
+    private static double elevation(double col, double row) {
+        return 100 + 2 * col + 3 * row;
+    }
+
+    /** The longitude of a position in cells. */
+    private static double x(double col) {
+        return MIN_X + (col + 0.5) * CELL_SIZE;
+    }
+
+    /** The latitude of a position in cells, the first row is the northernmost one. */
+    private static double y(double row) {
+        return MAX_Y - (row + 0.5) * CELL_SIZE;
+    }
+}
@@ -0,0 +1,61 @@
+package org.opentripplanner.graph_builder.module.osm;
+
+import org.junit.Test;
+import org.opentripplanner.openstreetmap.model.OSMNode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CompactOSMNodeStoreTest {
+
+    @Test
+    public void testNodesAddedOutOfOrder() {
+        CompactOSMNodeStore store = new CompactOSMNodeStore();
+        // More nodes than the initial capacity, in descending order, with duplicates
+        for (long id = 5000; id > 0; id--) {
+            store.add(node(id, 59.0 + id * 1e-7, 10.0 - id * 1e-7));
+        }
+        store.add(node(42, 59.0000042, 9.9999958));
+        store.add(node(6000, 60.0, 11.0));
+
+        assertEquals(5001, store.size());
+        for (long id = 1; id <= 5000; id++) {
+            OSMNode node = store.get(id);
+            assertEquals(id, node.getId());
+            assertEquals(59.0 + id * 1e-7, node.lat, 1e-9);
+            assertEquals(10.0 - id * 1e-7, node.lon, 1e-9);
+        }
+        assertEquals(60.0, store.get(6000).lat, 1e-9);
+        assertTrue(store.contains(6000));
+        assertFalse(store.contains(0));
+        assertNull(store.get(5001));
+    }
+
+    @Test
+    public void testTaggedAndVirtualNodesAreKeptAsObjects() {
+        CompactOSMNodeStore store = new CompactOSMNodeStore();
+        OSMNode tagged = node(7, 59.0, 10.0);
+        tagged.addTag("highway", "traffic_signals");
+        OSMNode virtual = node(-100000, 59.5, 10.5);
+        store.add(tagged);
+        store.add(virtual);
+        store.add(node(3, 59.1, 10.1));
+
+        assertSame(tagged, store.get(7));
+        assertSame(virtual, store.get(-100000));
+        assertEquals(node(3, 0, 0), store.get(3));
+        assertNull(store.get(3).getTags());
+        assertEquals(3, store.size());
+    }
+
+    private static OSMNode node(long id, double lat, double lon) {
+        OSMNode node = new OSMNode();
+        node.setId(id);
+        node.lat = lat;
+        node.lon = lon;
+        return node;
+    }
+}
@@ -47,4 +47,26 @@ public class OpenStreetMapParserTest {
         assertEquals("Potlatch 0.9a", wayA.getTag("created_by"));
         assertEquals("secondary", wayA.getTag("highway"));
     }
+
+    @Test
+    public void testBinaryParserWithCompactNodeStore() throws Exception {
+        File osmFile = new File(URLDecoder.decode(
+                getClass().getResource("map.osm.pbf").getPath(),
+                "UTF-8"
+        ));
+        BinaryOpenStreetMapProvider pr = new BinaryOpenStreetMapProvider(osmFile, false);
+        OSMDatabase osmdb = new OSMDatabase(new DataImportIssueStore(false), true);
+
+        pr.readOSM(osmdb);
+
+        assertEquals(2297, osmdb.nodeCount());
+
+        OSMNode nodeA = osmdb.getNode(314192918L);
+        assertEquals(52.3750447, nodeA.lat, 0.0000001);
+        assertEquals("level_crossing", nodeA.getTag("railway"));
+
+        OSMNode nodeB = osmdb.getNode(123978834L);
+        assertEquals(123978834, nodeB.getId());
+        assertEquals(nodeB, osmdb.getNode(123978834L));
+    }
 }
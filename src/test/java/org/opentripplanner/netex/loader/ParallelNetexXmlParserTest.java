@@ -0,0 +1,55 @@
+package org.opentripplanner.netex.loader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opentripplanner.datastore.DataSource;
+import org.opentripplanner.datastore.FileType;
+import org.opentripplanner.datastore.file.ZipFileDataSource;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelNetexXmlParserTest {
+
+    private ZipFileDataSource source;
+
+    private List<DataSource> entries;
+
+    @Before
+    public void setUp() {
+        source = new ZipFileDataSource(
+                new File("src/test/resources/netex", "netex_minimal.zip"),
+                FileType.NETEX
+        );
+        entries = new ArrayList<>(source.content());
+    }
+
+    @After
+    public void tearDown() {
+        source.close();
+    }
+
+    @Test
+    public void parseInOrder() throws Exception {
+        assertTrue(entries.size() > 1);
+        for (int nThreads : new int[] { 1, 2 }) {
+            try (ParallelNetexXmlParser parser = new ParallelNetexXmlParser(entries, nThreads)) {
+                for (DataSource entry : entries) {
+                    assertNotNull(parser.parse(entry).getDataObjects());
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void parseOutOfOrder() throws Exception {
+        try (ParallelNetexXmlParser parser = new ParallelNetexXmlParser(entries, 2)) {
+            parser.parse(entries.get(1));
+        }
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.locationtech.jts.geom.Coordinate;
 import org.opentripplanner.routing.algorithm.astar.AStar;
+import org.opentripplanner.routing.algorithm.astar.BidirectionalAStar;
 import org.opentripplanner.routing.algorithm.astar.strategies.MultiTargetTerminationStrategy;
 import org.opentripplanner.routing.algorithm.astar.strategies.SearchTerminationStrategy;
 import org.opentripplanner.routing.api.request.RoutingRequest;
@@ -209,6 +210,36 @@ public class AStarTest {
         assertEquals("near_56th_20th", states.get(8).getVertex().getLabel());
     }
 
+    @Test
+    public void testExtraEdgesDoNotModifyMainGraph() {
+        RoutingRequest options = new RoutingRequest();
+        options.walkSpeed = 1.0;
+
+        Vertex shilshole = graph.getVertex("shilshole_22nd");
+        Vertex fiftySixth = graph.getVertex("56th_20th");
+        int shilsholeDegreeIn = shilshole.getDegreeIn();
+        int fiftySixthDegreeOut = fiftySixth.getDegreeOut();
+
+        TemporaryStreetLocation from = new TemporaryStreetLocation("near_shilshole_22nd",
+                new Coordinate(-122.385050, 47.666620), new NonLocalizedString("near_shilshole_22nd"), false);
+        new TemporaryConcreteEdge(from, shilshole);
+
+        TemporaryStreetLocation to = new TemporaryStreetLocation("near_56th_20th",
+                new Coordinate(-122.382347, 47.669518), new NonLocalizedString("near_56th_20th"), true);
+        new TemporaryConcreteEdge(fiftySixth, to);
+
+        // The temporary edges are only visible through the routing context
+        assertEquals(shilsholeDegreeIn, shilshole.getDegreeIn());
+        assertEquals(fiftySixthDegreeOut, fiftySixth.getDegreeOut());
+
+        options.setRoutingContext(graph, from, to);
+        assertEquals(shilsholeDegreeIn + 1, options.rctx.getIncoming(shilshole).size());
+        assertEquals(fiftySixthDegreeOut + 1, options.rctx.getOutgoing(fiftySixth).size());
+
+        ShortestPathTree tree = new AStar().getShortestPathTree(options);
+        assertNotNull(tree.getPath(to, false));
+    }
+
     @Test
     public void testMultipleTargets() {
         RoutingRequest options = new RoutingRequest();
@@ -230,6 +261,23 @@ public class AStarTest {
         }
     }
 
+    @Test
+    public void testBidirectionalFindsShortestPath() {
+        for (boolean arriveBy : new boolean[] { false, true }) {
+            GraphPath expected = new AStarTestSearch(arriveBy).unidirectional();
+            GraphPath actual = new AStarTestSearch(arriveBy).bidirectional();
+
+            assertNotNull(actual);
+            assertEquals(expected.getWeight(), actual.getWeight(), 0.01);
+            assertEquals("56th_24th", actual.states.getFirst().getVertex().getLabel());
+            assertEquals("shilshole_20th", actual.states.getLast().getVertex().getLabel());
+            // The joined path must be continuous in time
+            for (int i = 1; i < actual.states.size(); i++) {
+                assertTrue(actual.states.get(i).getTimeSeconds() >= actual.states.get(i - 1).getTimeSeconds());
+            }
+        }
+    }
+
     /****
      * Private Methods
      ****/
@@ -248,4 +296,27 @@ public class AStarTest {
             new SimpleConcreteEdge(vB, vA);
         }
     }
+
+    private class AStarTestSearch {
+        private final RoutingRequest options = new RoutingRequest();
+
+        AStarTestSearch(boolean arriveBy) {
+            options.walkSpeed = 1.0;
+            options.setArriveBy(arriveBy);
+            options.setRoutingContext(
+                    graph, graph.getVertex("56th_24th"), graph.getVertex("shilshole_20th")
+            );
+        }
+
+        GraphPath unidirectional() {
+            AStar aStar = new AStar();
+            aStar.getShortestPathTree(options);
+            return aStar.getPathsToTarget().get(0);
+        }
+
+        GraphPath bidirectional() {
+            List<GraphPath> paths = new BidirectionalAStar().getPathsToTarget(options, -1);
+            return paths == null || paths.isEmpty() ? null : paths.get(0);
+        }
+    }
 }
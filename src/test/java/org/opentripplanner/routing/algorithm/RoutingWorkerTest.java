@@ -0,0 +1,121 @@
+package org.opentripplanner.routing.algorithm;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.LineString;
+import org.opentripplanner.common.geometry.GeometryUtils;
+import org.opentripplanner.model.GenericLocation;
+import org.opentripplanner.routing.api.request.RequestModes;
+import org.opentripplanner.routing.api.request.RoutingRequest;
+import org.opentripplanner.routing.api.request.StreetMode;
+import org.opentripplanner.routing.api.response.RoutingError;
+import org.opentripplanner.routing.api.response.RoutingResponse;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.StreetTraversalPermission;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+import org.opentripplanner.standalone.config.RouterConfig;
+import org.opentripplanner.standalone.server.Router;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.opentripplanner.standalone.config.JsonSupport.jsonNodeForTest;
+
+/**
+ * Compare the results of a router that runs the street searches in parallel with one that runs
+ * them in sequence.
+ */
+public class RoutingWorkerTest {
+
+    private Graph graph;
+    private Router sequentialRouter;
+    private Router parallelRouter;
+
+    @Before
+    public void setUp() {
+        graph = new Graph();
+        IntersectionVertex a = new IntersectionVertex(graph, "A", 10.000, 60.0);
+        IntersectionVertex b = new IntersectionVertex(graph, "B", 10.002, 60.0);
+        IntersectionVertex c = new IntersectionVertex(graph, "C", 10.004, 60.0);
+        street(a, b);
+        street(b, a);
+        street(b, c);
+        street(c, b);
+        graph.index();
+
+        sequentialRouter = new Router(graph, RouterConfig.DEFAULT);
+        parallelRouter = new Router(graph, new RouterConfig(
+            jsonNodeForTest("{streetRoutingThreadPoolSize : 2}"), "Test", false
+        ));
+    }
+
+    @After
+    public void tearDown() {
+        sequentialRouter.shutdown();
+        parallelRouter.shutdown();
+    }
+
+    @Test
+    public void testTheDirectStreetSearchRunsInParallel() {
+        assertTrue(parallelRouter.isStreetRoutingMultiThreaded());
+        assertFalse(sequentialRouter.isStreetRoutingMultiThreaded());
+
+        RoutingResponse sequential = route(sequentialRouter, new GenericLocation(60.0, 10.0001));
+        RoutingResponse parallel = route(parallelRouter, new GenericLocation(60.0, 10.0001));
+
+        assertEquals(1, sequential.getTripPlan().itineraries.size());
+        assertEquals(
+            sequential.getTripPlan().itineraries.get(0).legs.size(),
+            parallel.getTripPlan().itineraries.get(0).legs.size()
+        );
+        assertEquals(
+            sequential.getTripPlan().itineraries.get(0).durationSeconds,
+            parallel.getTripPlan().itineraries.get(0).durationSeconds
+        );
+        assertEquals(errors(sequential), errors(parallel));
+    }
+
+    @Test
+    public void testTheDirectStreetSearchIsSkippedIfTheRoutingContextFails() {
+        // The origin is far from all streets
+        RoutingResponse sequential = route(sequentialRouter, new GenericLocation(40.0, 10.0));
+        RoutingResponse parallel = route(parallelRouter, new GenericLocation(40.0, 10.0));
+
+        assertFalse(errors(sequential).isEmpty());
+        assertEquals(errors(sequential), errors(parallel));
+        assertTrue(parallel.getTripPlan().itineraries.isEmpty());
+    }
+
+    private static RoutingResponse route(Router router, GenericLocation from) {
+        RoutingRequest request = new RoutingRequest();
+        request.from = from;
+        request.to = new GenericLocation(60.0, 10.0039);
+        request.modes = new RequestModes(StreetMode.WALK, StreetMode.WALK, StreetMode.WALK, Set.of());
+        return new RoutingWorker(router.raptorConfig, request).route(router);
+    }
+
+    private static List<String> errors(RoutingResponse response) {
+        return response.getRoutingErrors()
+            .stream()
+            .map(RoutingWorkerTest::toString)
+            .collect(Collectors.toList());
+    }
+
+    private static String toString(RoutingError error) {
+        return error.code + " " + error.inputField;
+    }
+
+    private static void street(IntersectionVertex from, IntersectionVertex to) {
+        LineString geometry = GeometryUtils.getGeometryFactory().createLineString(
+            new Coordinate[] { from.getCoordinate(), to.getCoordinate() }
+        );
+        new StreetEdge(from, to, geometry, "street", 111.0, StreetTraversalPermission.ALL, false);
+    }
+}
@@ -0,0 +1,166 @@
+package org.opentripplanner.routing.algorithm.raptor.transit;
+
+import org.junit.Test;
+import org.opentripplanner.routing.trippattern.TripTimes;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TransitLayerTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2020, 6, 1);
+
+    /**
+     * The dates mapped, the mapper has no service on the fourth day after today, and no trip
+     * patterns on the fifth day.
+     */
+    private final List<LocalDate> mappedDates = new ArrayList<>();
+
+    @Test
+    public void testDatesAreMappedWhenRequested() {
+        TransitLayer transitLayer = createTransitLayer();
+
+        assertEquals(1, transitLayer.getTripPatternsForDate(TODAY).size());
+        assertEquals(List.of(), mappedDates);
+
+        LocalDate tomorrow = TODAY.plusDays(1);
+        assertEquals(tomorrow, transitLayer.getTripPatternsForDate(tomorrow).iterator().next().getLocalDate());
+        transitLayer.getTripPatternsForDate(tomorrow);
+        assertEquals(List.of(tomorrow), mappedDates);
+        assertEquals(Set.of(TODAY, tomorrow), transitLayer.getDates());
+
+        // A date without service is not kept
+        assertTrue(transitLayer.getTripPatternsForDate(TODAY.plusDays(4)).isEmpty());
+        assertEquals(Set.of(TODAY, tomorrow), transitLayer.getDates());
+
+        // A date with service but without trip patterns is kept, so it is mapped once
+        LocalDate withoutTripPatterns = TODAY.plusDays(5);
+        assertTrue(transitLayer.getTripPatternsForDate(withoutTripPatterns).isEmpty());
+        assertTrue(transitLayer.getTripPatternsForDate(withoutTripPatterns).isEmpty());
+        assertEquals(List.of(tomorrow, withoutTripPatterns), mappedDates);
+        assertEquals(Set.of(TODAY, tomorrow, withoutTripPatterns), transitLayer.getDates());
+    }
+
+    @Test
+    public void testUpdateDateWindow() {
+        TransitLayer transitLayer = createTransitLayer();
+
+        TransitLayer copy = new TransitLayer(transitLayer);
+
+        Set<LocalDate> removed = copy.updateDateWindow(TODAY.plusDays(1), TODAY.plusDays(2));
+
+        assertEquals(Set.of(TODAY), removed);
+        assertEquals(Set.of(TODAY.plusDays(1), TODAY.plusDays(2)), copy.getDates());
+        assertEquals(List.of(TODAY.plusDays(1), TODAY.plusDays(2)), mappedDates);
+        // The copied transit layer is not changed
+        assertEquals(Set.of(TODAY), transitLayer.getDates());
+    }
+
+    @Test
+    public void testTheRealtimeCopyKeepsTheUpdatedDatesAfterTheWindow() {
+        TransitLayer transitLayer = createTransitLayer();
+        TransitLayer realtimeTransitLayer = transitLayer.createRealtimeCopy();
+        LocalDate later = TODAY.plusDays(3);
+        realtimeTransitLayer.replaceTripPatternsForDate(TODAY, tripPatterns(TODAY));
+        realtimeTransitLayer.replaceTripPatternsForDate(later, tripPatterns(later));
+
+        Set<LocalDate> removed = realtimeTransitLayer.removeDatesBefore(TODAY.plusDays(1));
+
+        assertEquals(Set.of(TODAY), removed);
+        assertEquals(Set.of(later), realtimeTransitLayer.getDates());
+    }
+
+    @Test
+    public void testADateWithoutUpdatesRequestedFromTheRealtimeCopyIsRemovedWithTheWindow() {
+        TransitLayer transitLayer = createTransitLayer();
+        TransitLayer realtimeTransitLayer = transitLayer.createRealtimeCopy();
+        LocalDate later = TODAY.plusDays(3);
+
+        assertEquals(1, realtimeTransitLayer.getTripPatternsForDate(later).size());
+        assertEquals(Set.of(), realtimeTransitLayer.getDates());
+
+        // Move the window as TransitLayerDateWindow does
+        TransitLayer newTransitLayer = new TransitLayer(transitLayer);
+        newTransitLayer.updateDateWindow(TODAY.plusDays(1), TODAY.plusDays(2));
+        realtimeTransitLayer = newTransitLayer.createRealtimeCopy(realtimeTransitLayer);
+        realtimeTransitLayer.removeDatesBefore(TODAY.plusDays(1));
+
+        assertFalse(newTransitLayer.getDates().contains(later));
+        assertFalse(realtimeTransitLayer.getDates().contains(later));
+    }
+
+    @Test
+    public void testTheRealtimeCopyTakesTheDatesFromANewScheduledTransitLayer() {
+        TransitLayer transitLayer = createTransitLayer();
+        TransitLayer realtimeTransitLayer = transitLayer.createRealtimeCopy();
+        TransitLayer newTransitLayer = new TransitLayer(transitLayer);
+
+        LocalDate tomorrow = TODAY.plusDays(1);
+        realtimeTransitLayer = newTransitLayer.createRealtimeCopy(realtimeTransitLayer);
+        realtimeTransitLayer.getTripPatternsForDate(tomorrow);
+
+        assertEquals(Set.of(TODAY, tomorrow), newTransitLayer.getDates());
+        assertEquals(Set.of(TODAY), transitLayer.getDates());
+    }
+
+    @Test
+    public void testTheRealtimeCopySharesTheScheduledDates() {
+        TransitLayer transitLayer = createTransitLayer();
+        TransitLayer realtimeTransitLayer = transitLayer.createRealtimeCopy();
+
+        LocalDate tomorrow = TODAY.plusDays(1);
+        assertSame(
+            transitLayer.getTripPatternsForDate(tomorrow),
+            realtimeTransitLayer.getTripPatternsForDate(tomorrow)
+        );
+
+        assertEquals(Set.of(), realtimeTransitLayer.getDates());
+
+        // A realtime update replaces the date in the realtime copy only
+        List<TripPatternForDate> updated = tripPatterns(tomorrow);
+        realtimeTransitLayer.replaceTripPatternsForDate(tomorrow, updated);
+        assertSame(updated, realtimeTransitLayer.getTripPatternsForDate(tomorrow));
+        assertEquals(Set.of(tomorrow), realtimeTransitLayer.getDates());
+        assertEquals(List.of(tomorrow), mappedDates);
+    }
+
+    @Test
+    public void testATransitLayerWithAllDatesIsNotChangedByTheWindow() {
+        TransitLayer transitLayer = new TransitLayer(
+            Map.of(TODAY, tripPatterns(TODAY)), List.of(), null, ZoneId.of("UTC")
+        );
+
+        assertEquals(Set.of(), transitLayer.updateDateWindow(TODAY.plusDays(1), TODAY.plusDays(2)));
+        assertEquals(Set.of(TODAY), transitLayer.getDates());
+        assertTrue(transitLayer.getTripPatternsForDate(TODAY.plusDays(1)).isEmpty());
+    }
+
+    private TransitLayer createTransitLayer() {
+        return new TransitLayer(
+            Map.of(TODAY, tripPatterns(TODAY)),
+            List.of(),
+            null,
+            ZoneId.of("UTC"),
+            date -> {
+                if (date.equals(TODAY.plusDays(4))) {
+                    return null;
+                }
+                mappedDates.add(date);
+                return date.equals(TODAY.plusDays(5)) ? List.of() : tripPatterns(date);
+            }
+        );
+    }
+
+    private static List<TripPatternForDate> tripPatterns(LocalDate date) {
+        return List.of(new TripPatternForDate(null, new TripTimes[0], date));
+    }
+}
@@ -3,10 +3,15 @@ package org.opentripplanner.routing.core;
 import org.junit.Test;
 import org.opentripplanner.routing.graph.Graph;
 import org.opentripplanner.routing.graph.GraphIndex;
+import org.opentripplanner.routing.graph.Vertex;
 import org.opentripplanner.routing.impl.StreetVertexIndex;
 import org.opentripplanner.routing.api.request.RoutingRequest;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class StateEditorTest {
 
@@ -48,4 +53,30 @@ public class StateEditorTest {
         assertEquals(true, updatedState.isBikeParked());
         assertEquals(false, updatedState.isBikeRenting());
     }
+
+    @Test
+    public final void testSingleModeStreetSearchSharesStateData() {
+        State state = new State((Vertex) null, new RoutingRequest(TraverseMode.WALK));
+        StateData initial = state.stateData;
+        assertTrue(initial.isShared());
+
+        StateData walk = initial.sharedVariant(TraverseMode.WALK, false, false);
+        assertNotSame(initial, walk);
+        assertEquals(TraverseMode.WALK, walk.backMode);
+        assertSame(walk, initial.sharedVariant(TraverseMode.WALK, false, false));
+        assertSame(initial, walk.sharedVariant(null, false, false));
+
+        StateEditor se = new StateEditor(state.getOptions(), null);
+        se.setBackMode(TraverseMode.WALK);
+        se.setStartTimeSeconds(0);
+        assertFalse(se.child.stateData.isShared());
+        assertEquals(TraverseMode.WALK, se.child.stateData.backMode);
+    }
+
+    @Test
+    public final void testMultiModeStreetSearchDoesNotShareStateData() {
+        RoutingRequest request = new RoutingRequest(TraverseMode.WALK);
+        request.bikeRental = true;
+        assertFalse(new State((Vertex) null, request).stateData.isShared());
+    }
 }
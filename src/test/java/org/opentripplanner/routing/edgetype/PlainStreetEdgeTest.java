@@ -254,10 +254,54 @@ public class PlainStreetEdgeTest {
         assertNotNull(e0.traverse(e1.traverse(state)));
     }
 
+    /**
+     * A single-mode search shares the StateData between states, a multi-mode search copies it.
+     * Entering a no-through-traffic area must give the same states in both, and must not change
+     * the state before the area.
+     */
+    @Test
+    public void testNoThroughTrafficIsTheSameInSingleAndMultiModeSearches() {
+        StreetVertex v3 = vertex("maple_3rd", 1.0, 3.0);
+        StreetEdge e0 = edge(v0, v1, 50.0, StreetTraversalPermission.ALL);
+        StreetEdge e1 = edge(v1, v2, 18.4, StreetTraversalPermission.ALL);
+        StreetEdge e2 = edge(v2, v3, 20.0, StreetTraversalPermission.ALL);
+        e1.setNoThruTraffic(true);
+        e2.setNoThruTraffic(true);
+
+        RoutingRequest singleMode = proto.clone();
+        singleMode.setMode(TraverseMode.WALK);
+        RoutingRequest multiMode = singleMode.clone();
+        multiMode.bikeRental = true;
+
+        State[] single = traverse(new State(v0, 0, singleMode), e0, e1, e2);
+        State[] multi = traverse(new State(v0, 0, multiMode), e0, e1, e2);
+
+        for (State[] states : new State[][] { single, multi }) {
+            assertFalse(states[1].hasEnteredNoThroughTrafficArea());
+            assertTrue(states[2].hasEnteredNoThroughTrafficArea());
+            assertTrue(states[3].hasEnteredNoThroughTrafficArea());
+        }
+        for (int i = 0; i < single.length; i++) {
+            assertEquals(single[i].getWeight(), multi[i].getWeight(), 0.0);
+            assertEquals(single[i].getElapsedTimeSeconds(), multi[i].getElapsedTimeSeconds());
+        }
+    }
+
     /****
      * Private Methods
      ****/
 
+    /** Traverse the edges in order, returning the first state and the state after each edge. */
+    private static State[] traverse(State s0, StreetEdge... edges) {
+        State[] states = new State[edges.length + 1];
+        states[0] = s0;
+        for (int i = 0; i < edges.length; i++) {
+            states[i + 1] = edges[i].traverse(states[i]);
+            assertNotNull(states[i + 1]);
+        }
+        return states;
+    }
+
     private IntersectionVertex vertex(String label, double x, double y) {
         IntersectionVertex v = new IntersectionVertex(graph, label, x, y);
         return v;
@@ -0,0 +1,139 @@
+package org.opentripplanner.routing.edgetype;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.LineString;
+import org.opentripplanner.common.geometry.GeometryUtils;
+import org.opentripplanner.common.geometry.PackedCoordinateSequence;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+import org.opentripplanner.util.NonLocalizedString;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StreetEdgeElevationStoreTest {
+
+    private final Graph graph = new Graph();
+    private final IntersectionVertex a = new IntersectionVertex(graph, "A", 0.0, 0.0);
+    private final IntersectionVertex b = new IntersectionVertex(graph, "B", 0.001, 0.001);
+    private final IntersectionVertex c = new IntersectionVertex(graph, "C", 0.002, 0.0);
+
+    @Test
+    public void testProfilesAreReadFromTheStore() throws IOException {
+        StreetWithElevationEdge ab = edge(a, b, 10.0, 15.0);
+        StreetWithElevationEdge bc = edge(b, c, 15.0, 12.0);
+        StreetEdge withoutProfile = new StreetWithElevationEdge(
+                c, a, geometry(c, a), new NonLocalizedString("street"), 200.0,
+                StreetTraversalPermission.ALL, false
+        );
+        List<Edge> edges = List.of(ab, bc, withoutProfile);
+        Coordinate[] abProfile = ab.getElevationProfile().toCoordinateArray();
+        Coordinate[] bcProfile = bc.getElevationProfile().toCoordinateArray();
+
+        StreetEdgeElevationStore.Writer writer = new StreetEdgeElevationStore.Writer(edges);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writer.write(new DataOutputStream(bytes));
+        assertEquals(writer.length(), bytes.size());
+
+        writer.removeProfilesFromEdges();
+        assertNull(ab.getPackedElevationProfile());
+        assertTrue(ab.hasPackedElevationProfile());
+
+        StreetEdgeElevationStore store = StreetEdgeElevationStore.load(
+                ByteBuffer.wrap(bytes.toByteArray()),
+                edges
+        );
+        assertEquals(2, store.size());
+        assertArrayEquals(abProfile, ab.getElevationProfile().toCoordinateArray());
+        assertArrayEquals(bcProfile, bc.getElevationProfile().toCoordinateArray());
+        assertNull(withoutProfile.getElevationProfile());
+
+        writer.restoreProfilesOfEdges();
+        assertEquals(-1, ab.getElevationProfileIndex());
+        assertArrayEquals(abProfile, ab.getElevationProfile().toCoordinateArray());
+    }
+
+    @Test
+    public void testProfilesInAStoreAreWrittenAgain() throws IOException {
+        StreetWithElevationEdge ab = edge(a, b, 10.0, 15.0);
+        StreetWithElevationEdge bc = edge(b, c, 15.0, 12.0);
+        List<Edge> edges = List.of(ab, bc);
+        Coordinate[] abProfile = ab.getElevationProfile().toCoordinateArray();
+        Coordinate[] bcProfile = bc.getElevationProfile().toCoordinateArray();
+
+        // A graph loaded with an elevation store, like a saved street graph
+        StreetEdgeElevationStore.load(ByteBuffer.wrap(write(edges)), edges);
+        assertNull(ab.getPackedElevationProfile());
+
+        // An edge added to the loaded graph, it is first in the new store
+        StreetWithElevationEdge ca = edge(c, a, 12.0, 10.0);
+        Coordinate[] caProfile = ca.getElevationProfile().toCoordinateArray();
+        List<Edge> allEdges = List.of(ca, ab, bc);
+
+        StreetEdgeElevationStore.Writer writer = new StreetEdgeElevationStore.Writer(allEdges);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writer.write(new DataOutputStream(bytes));
+        writer.removeProfilesFromEdges();
+        assertEquals(1, ab.getElevationProfileIndex());
+
+        StreetEdgeElevationStore store = StreetEdgeElevationStore.load(
+                ByteBuffer.wrap(bytes.toByteArray()),
+                allEdges
+        );
+        assertEquals(3, store.size());
+        assertArrayEquals(caProfile, ca.getElevationProfile().toCoordinateArray());
+        assertArrayEquals(abProfile, ab.getElevationProfile().toCoordinateArray());
+        assertArrayEquals(bcProfile, bc.getElevationProfile().toCoordinateArray());
+
+        // The loaded edges use their first store again, the new edge keeps its profile
+        writer.restoreProfilesOfEdges();
+        assertNull(ab.getPackedElevationProfile());
+        assertEquals(0, ab.getElevationProfileIndex());
+        assertArrayEquals(abProfile, ab.getElevationProfile().toCoordinateArray());
+        assertEquals(-1, ca.getElevationProfileIndex());
+        assertArrayEquals(caProfile, ca.getElevationProfile().toCoordinateArray());
+    }
+
+    private static byte[] write(List<Edge> edges) throws IOException {
+        StreetEdgeElevationStore.Writer writer = new StreetEdgeElevationStore.Writer(edges);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writer.write(new DataOutputStream(bytes));
+        writer.removeProfilesFromEdges();
+        return bytes.toByteArray();
+    }
+
+    private static StreetWithElevationEdge edge(
+            IntersectionVertex from,
+            IntersectionVertex to,
+            double fromElevation,
+            double toElevation
+    ) {
+        double length = 150.0;
+        StreetWithElevationEdge edge = new StreetWithElevationEdge(
+                from, to, geometry(from, to), new NonLocalizedString("street"), length,
+                StreetTraversalPermission.ALL, false
+        );
+        edge.setElevationProfile(new PackedCoordinateSequence.Double(new Coordinate[] {
+                new Coordinate(0, fromElevation),
+                new Coordinate(length / 2, (fromElevation + toElevation) / 2 + 1),
+                new Coordinate(length, toElevation)
+        }), false);
+        return edge;
+    }
+
+    private static LineString geometry(IntersectionVertex from, IntersectionVertex to) {
+        return GeometryUtils.getGeometryFactory().createLineString(
+                new Coordinate[] { from.getCoordinate(), to.getCoordinate() }
+        );
+    }
+}
@@ -0,0 +1,133 @@
+package org.opentripplanner.routing.edgetype;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.LineString;
+import org.opentripplanner.common.geometry.GeometryUtils;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+import org.opentripplanner.util.NonLocalizedString;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class StreetEdgeGeometryStoreTest {
+
+    private final Graph graph = new Graph();
+    private final IntersectionVertex a = new IntersectionVertex(graph, "A", 0.0, 0.0);
+    private final IntersectionVertex b = new IntersectionVertex(graph, "B", 1.0, 1.0);
+    private final IntersectionVertex c = new IntersectionVertex(graph, "C", 2.0, 0.0);
+
+    @Test
+    public void testGeometriesAreReadFromTheStore() throws IOException {
+        StreetEdge ab = edge(a, b, false, coordinate(0.0, 0.0), coordinate(0.2, 0.7), coordinate(1.0, 1.0));
+        StreetEdge ba = edge(b, a, true, coordinate(1.0, 1.0), coordinate(0.2, 0.7), coordinate(0.0, 0.0));
+        ba.shareData(ab);
+        StreetEdge bc = edge(b, c, false, coordinate(1.0, 1.0), coordinate(2.0, 0.0));
+        List<Edge> edges = List.of(ab, ba, bc);
+
+        LineString abGeometry = ab.getGeometry();
+        LineString baGeometry = ba.getGeometry();
+        LineString bcGeometry = bc.getGeometry();
+
+        StreetEdgeGeometryStore.Writer writer = new StreetEdgeGeometryStore.Writer(edges);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writer.write(new DataOutputStream(bytes));
+        assertEquals(writer.length(), bytes.size());
+
+        writer.removeGeometriesFromEdges();
+        assertNull(ab.getCompactGeometry());
+
+        StreetEdgeGeometryStore store = StreetEdgeGeometryStore.load(
+                ByteBuffer.wrap(bytes.toByteArray()),
+                edges
+        );
+        // The two edges of a street share the same geometry
+        assertEquals(2, store.size());
+        assertEquals(abGeometry, ab.getGeometry());
+        assertEquals(baGeometry, ba.getGeometry());
+        assertEquals(bcGeometry, bc.getGeometry());
+
+        writer.restoreGeometriesOfEdges();
+        assertEquals(abGeometry, ab.getGeometry());
+        assertEquals(-1, ab.getGeometryIndex());
+    }
+
+    @Test
+    public void testGeometriesInAStoreAreWrittenAgain() throws IOException {
+        StreetEdge ab = edge(a, b, false, coordinate(0.0, 0.0), coordinate(0.2, 0.7), coordinate(1.0, 1.0));
+        StreetEdge ba = edge(b, a, true, coordinate(1.0, 1.0), coordinate(0.2, 0.7), coordinate(0.0, 0.0));
+        ba.shareData(ab);
+        StreetEdge bc = edge(b, c, false, coordinate(1.0, 1.0), coordinate(2.0, 0.0));
+        List<Edge> edges = List.of(ab, ba, bc);
+        LineString abGeometry = ab.getGeometry();
+        LineString baGeometry = ba.getGeometry();
+        LineString bcGeometry = bc.getGeometry();
+
+        // A graph loaded with a geometry store, like a saved street graph
+        StreetEdgeGeometryStore.load(ByteBuffer.wrap(write(edges)), edges);
+        assertNull(ab.getCompactGeometry());
+
+        // An edge added to the loaded graph, it is first in the new store
+        StreetEdge ca = edge(c, a, false, coordinate(2.0, 0.0), coordinate(0.0, 0.0));
+        LineString caGeometry = ca.getGeometry();
+        List<Edge> allEdges = List.of(ca, ab, ba, bc);
+
+        StreetEdgeGeometryStore.Writer writer = new StreetEdgeGeometryStore.Writer(allEdges);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writer.write(new DataOutputStream(bytes));
+        writer.removeGeometriesFromEdges();
+        assertEquals(1, ab.getGeometryIndex());
+
+        StreetEdgeGeometryStore store = StreetEdgeGeometryStore.load(
+                ByteBuffer.wrap(bytes.toByteArray()),
+                allEdges
+        );
+        assertEquals(3, store.size());
+        assertEquals(caGeometry, ca.getGeometry());
+        assertEquals(abGeometry, ab.getGeometry());
+        assertEquals(baGeometry, ba.getGeometry());
+        assertEquals(bcGeometry, bc.getGeometry());
+
+        // The loaded edges use their first store again, the new edge keeps its geometry
+        writer.restoreGeometriesOfEdges();
+        assertNull(ab.getCompactGeometry());
+        assertEquals(0, ab.getGeometryIndex());
+        assertEquals(abGeometry, ab.getGeometry());
+        assertEquals(bcGeometry, bc.getGeometry());
+        assertEquals(-1, ca.getGeometryIndex());
+        assertEquals(caGeometry, ca.getGeometry());
+    }
+
+    private static byte[] write(List<Edge> edges) throws IOException {
+        StreetEdgeGeometryStore.Writer writer = new StreetEdgeGeometryStore.Writer(edges);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writer.write(new DataOutputStream(bytes));
+        writer.removeGeometriesFromEdges();
+        return bytes.toByteArray();
+    }
+
+    private static StreetEdge edge(
+            IntersectionVertex from,
+            IntersectionVertex to,
+            boolean back,
+            Coordinate... coordinates
+    ) {
+        LineString geometry = GeometryUtils.getGeometryFactory().createLineString(coordinates);
+        return new StreetEdge(
+                from, to, geometry, new NonLocalizedString("street"), 100.0,
+                StreetTraversalPermission.ALL, back
+        );
+    }
+
+    private static Coordinate coordinate(double x, double y) {
+        return new Coordinate(x, y);
+    }
+}
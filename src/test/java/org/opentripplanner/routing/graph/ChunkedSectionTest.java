@@ -0,0 +1,144 @@
+package org.opentripplanner.routing.graph;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChunkedSectionTest {
+
+    /** More than two chunks, half random and half repeated bytes that compress well. */
+    private static final byte[] DATA = createData(2 * ChunkedSectionOutputStream.CHUNK_SIZE + 1000);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCompressedRoundTrip() throws IOException {
+        File file = write(true);
+        assertTrue(file.length() < DATA.length);
+        assertArrayEquals(DATA, read(file));
+    }
+
+    @Test
+    public void testStoredRoundTrip() throws IOException {
+        File file = write(false);
+        assertTrue(file.length() > DATA.length);
+        assertArrayEquals(DATA, read(file));
+    }
+
+    @Test
+    public void testCorruptFileIsDetected() throws IOException {
+        File file = write(true);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long position = file.length() / 2;
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 0xFF);
+        }
+        assertReadFails(file, "The graph file is corrupt, the checksum of chunk");
+    }
+
+    @Test
+    public void testTruncatedFileIsDetected() throws IOException {
+        File file = write(true);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(file.length() - 100);
+        }
+        assertReadFails(file, "The graph file is truncated.");
+    }
+
+    @Test
+    public void testStreamedRoundTrip() throws IOException {
+        assertArrayEquals(DATA, readStream(write(true)));
+    }
+
+    @Test
+    public void testCorruptStreamIsDetected() throws IOException {
+        File file = write(true);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long position = file.length() / 2;
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 0xFF);
+        }
+        try {
+            readStream(file);
+            fail("Expected an IOException");
+        }
+        catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("The graph file is corrupt"));
+        }
+    }
+
+    private File write(boolean compress) throws IOException {
+        File file = folder.newFile();
+        try (GraphFileWriter writer = new GraphFileWriter(new FileOutputStream(file))) {
+            try (OutputStream out = new ChunkedSectionOutputStream(
+                    writer.writeLastSection(GraphFileSection.GRAPH), compress, 3
+            )) {
+                // Write in parts that do not line up with the chunks
+                for (int i = 0; i < DATA.length; i += 100_000) {
+                    out.write(DATA, i, Math.min(100_000, DATA.length - i));
+                }
+            }
+        }
+        return file;
+    }
+
+    private static byte[] read(File file) throws IOException {
+        try (
+                GraphFileReader reader = GraphFileReader.open(file);
+                ChunkedSectionInputStream in = ChunkedSectionInputStream.open(
+                        reader, GraphFileSection.GRAPH, 3
+                )
+        ) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+
+    private static byte[] readStream(File file) throws IOException {
+        try (GraphFileStreamReader reader = GraphFileStreamReader.open(new FileInputStream(file))) {
+            assertEquals(GraphFileSection.GRAPH, reader.nextSection());
+            try (ChunkedSectionInputStream in = ChunkedSectionInputStream.read(
+                    reader.sectionStream(), 3
+            )) {
+                return IOUtils.toByteArray(in);
+            }
+        }
+    }
+
+    private static void assertReadFails(File file, String expectedMessage) {
+        try {
+            read(file);
+            fail("Expected an IOException");
+        }
+        catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(expectedMessage));
+        }
+    }
+
+    private static byte[] createData(int size) {
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        for (int i = size / 2; i < size; i++) {
+            data[i] = (byte) (i % 7);
+        }
+        return data;
+    }
+}
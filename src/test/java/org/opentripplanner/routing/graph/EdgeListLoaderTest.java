@@ -0,0 +1,51 @@
+package org.opentripplanner.routing.graph;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EdgeListLoaderTest {
+
+    @Test
+    public void testLoad() {
+        Graph graph = new Graph();
+        Vertex a = new SimpleConcreteVertex(graph, "A", 0, 0);
+        Vertex b = new SimpleConcreteVertex(graph, "B", 0, 1);
+        Vertex c = new SimpleConcreteVertex(graph, "C", 1, 0);
+        Vertex d = new SimpleConcreteVertex(graph, "D", 1, 1);
+
+        Edge ab = new SimpleConcreteEdge(a, b);
+        Edge ac = new SimpleConcreteEdge(a, c);
+        Edge ba = new SimpleConcreteEdge(b, a);
+        Edge cb = new SimpleConcreteEdge(c, b);
+
+        for (Vertex v : graph.getVertices()) {
+            v.initEdgeLists();
+        }
+
+        // The edges are added in the order of the collection
+        EdgeListLoader.load(graph.getVertices(), List.of(cb, ac, ba, ab));
+
+        assertEquals(List.of(ac, ab), a.getOutgoing());
+        assertEquals(List.of(ba), a.getIncoming());
+        assertEquals(List.of(ba), b.getOutgoing());
+        assertEquals(List.of(cb, ab), b.getIncoming());
+        assertEquals(List.of(cb), c.getOutgoing());
+        assertEquals(List.of(ac), c.getIncoming());
+        assertTrue(d.getOutgoing().isEmpty());
+        assertTrue(d.getIncoming().isEmpty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testVertexNotInGraph() {
+        Graph graph = new Graph();
+        Vertex a = new SimpleConcreteVertex(graph, "A", 0, 0);
+        Vertex b = new SimpleConcreteVertex(null, "B", 0, 1);
+        Edge ab = new SimpleConcreteEdge(a, b);
+
+        EdgeListLoader.load(graph.getVertices(), List.of(ab));
+    }
+}
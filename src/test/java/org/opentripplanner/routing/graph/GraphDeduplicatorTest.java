@@ -0,0 +1,73 @@
+package org.opentripplanner.routing.graph;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.LineString;
+import org.opentripplanner.common.geometry.GeometryUtils;
+import org.opentripplanner.model.FeedScopedId;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.StreetTraversalPermission;
+import org.opentripplanner.routing.trippattern.Deduplicator;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+import org.opentripplanner.util.NonLocalizedString;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class GraphDeduplicatorTest {
+
+    @Test
+    public void testEqualStreetNamesAreShared() {
+        Graph graph = new Graph();
+        IntersectionVertex a = new IntersectionVertex(graph, "A", 10.0, 60.0);
+        IntersectionVertex b = new IntersectionVertex(graph, "B", 10.001, 60.0);
+        IntersectionVertex c = new IntersectionVertex(graph, "C", 10.002, 60.0);
+        StreetEdge ab = street(a, b, "Main Street");
+        StreetEdge bc = street(b, c, "Main Street");
+        StreetEdge ca = street(c, a, "Side Street");
+
+        GraphDeduplicator deduplicator = new GraphDeduplicator(graph.deduplicator);
+        deduplicator.deduplicate(graph);
+
+        assertSame(ab.getRawName(), bc.getRawName());
+        assertNotSame(ab.getRawName(), ca.getRawName());
+        assertEquals("Main Street", bc.getName());
+        assertEquals(1, deduplicator.getDuplicateCount());
+        // A name and its string
+        assertEquals(16 + 56, deduplicator.getBytesSaved());
+
+        // Nothing is left to share the second time
+        GraphDeduplicator again = new GraphDeduplicator(graph.deduplicator);
+        again.deduplicate(graph);
+        assertEquals(0, again.getDuplicateCount());
+    }
+
+    @Test
+    public void testObjectsAreDeduplicatedByType() {
+        Deduplicator deduplicator = new Deduplicator();
+        FeedScopedId id = new FeedScopedId("F", "1");
+
+        assertSame(id, deduplicator.deduplicateObject(FeedScopedId.class, id));
+        assertSame(id, deduplicator.deduplicateObject(FeedScopedId.class, new FeedScopedId("F", "1")));
+        assertNull(deduplicator.deduplicateObject(FeedScopedId.class, null));
+
+        NonLocalizedString name = new NonLocalizedString("1");
+        assertSame(name, deduplicator.deduplicateObject(NonLocalizedString.class, name));
+
+        deduplicator.reset();
+        FeedScopedId other = new FeedScopedId("F", "1");
+        assertSame(other, deduplicator.deduplicateObject(FeedScopedId.class, other));
+    }
+
+    private static StreetEdge street(IntersectionVertex from, IntersectionVertex to, String name) {
+        LineString geometry = GeometryUtils.getGeometryFactory().createLineString(
+                new Coordinate[] { from.getCoordinate(), to.getCoordinate() }
+        );
+        return new StreetEdge(
+                from, to, geometry, new NonLocalizedString(new String(name)), 100.0,
+                StreetTraversalPermission.ALL, false
+        );
+    }
+}
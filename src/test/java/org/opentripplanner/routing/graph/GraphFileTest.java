@@ -0,0 +1,122 @@
+package org.opentripplanner.routing.graph;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GraphFileTest {
+
+    private static final byte[] DATA = "Some graph data".getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSectionWithLength() throws IOException {
+        File file = folder.newFile();
+        try (GraphFileWriter writer = new GraphFileWriter(new FileOutputStream(file))) {
+            writer.writeSection(GraphFileSection.GRAPH, DATA.length, out -> out.write(DATA));
+        }
+        // The section is padded to a multiple of 8 bytes
+        assertEquals(0, file.length() % 8);
+
+        try (InputStream in = new FileInputStream(file)) {
+            assertTrue(GraphFileReader.isGraphFile(in));
+        }
+        try (GraphFileReader reader = GraphFileReader.open(file)) {
+            assertTrue(reader.hasSection(GraphFileSection.GRAPH));
+            assertEquals(GraphFileSection.GRAPH.version, reader.version(GraphFileSection.GRAPH));
+            ByteBuffer buffer = reader.map(GraphFileSection.GRAPH);
+            byte[] data = new byte[buffer.remaining()];
+            buffer.get(data);
+            assertArrayEquals(DATA, data);
+        }
+    }
+
+    @Test
+    public void testLastSection() throws IOException {
+        File file = folder.newFile();
+        try (GraphFileWriter writer = new GraphFileWriter(new FileOutputStream(file))) {
+            try (OutputStream out = writer.writeLastSection(GraphFileSection.GRAPH)) {
+                out.write(DATA);
+            }
+        }
+        try (GraphFileReader reader = GraphFileReader.open(file)) {
+            ByteBuffer buffer = reader.map(GraphFileSection.GRAPH);
+            byte[] data = new byte[buffer.remaining()];
+            buffer.get(data);
+            assertArrayEquals(DATA, data);
+        }
+    }
+
+    @Test
+    public void testReadSectionsFromAStream() throws IOException {
+        File file = folder.newFile();
+        try (GraphFileWriter writer = new GraphFileWriter(new FileOutputStream(file))) {
+            writer.writeSection(GraphFileSection.TRANSFERS, 3, out -> out.write(DATA, 0, 3));
+            writer.writeSection(GraphFileSection.STREET_GEOMETRY, DATA.length, out -> out.write(DATA));
+            try (OutputStream out = writer.writeLastSection(GraphFileSection.GRAPH)) {
+                out.write(DATA);
+            }
+        }
+        try (GraphFileStreamReader reader = GraphFileStreamReader.open(new FileInputStream(file))) {
+            // The first section is skipped without reading it
+            assertEquals(GraphFileSection.TRANSFERS, reader.nextSection());
+            assertEquals(GraphFileSection.STREET_GEOMETRY, reader.nextSection());
+            assertEquals(GraphFileSection.STREET_GEOMETRY.version, reader.version());
+            ByteBuffer buffer = reader.readSection();
+            byte[] data = new byte[buffer.remaining()];
+            buffer.get(data);
+            assertArrayEquals(DATA, data);
+
+            assertEquals(GraphFileSection.GRAPH, reader.nextSection());
+            assertArrayEquals(DATA, IOUtils.toByteArray(reader.sectionStream()));
+            assertNull(reader.nextSection());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSectionLengthIsChecked() throws IOException {
+        try (GraphFileWriter writer = new GraphFileWriter(OutputStream.nullOutputStream())) {
+            writer.writeSection(GraphFileSection.GRAPH, DATA.length + 1, out -> out.write(DATA));
+        }
+    }
+
+    @Test
+    public void testNotAGraphFile() throws IOException {
+        assertFalse(GraphFileReader.isGraphFile(new ByteArrayInputStream(DATA)));
+        assertFalse(GraphFileReader.isGraphFile(new ByteArrayInputStream(new byte[3])));
+
+        File file = folder.newFile();
+        try (OutputStream out = new FileOutputStream(file)) {
+            // Longer than the file header
+            out.write(DATA);
+            out.write(DATA);
+        }
+        try {
+            GraphFileReader.open(file).close();
+            fail("Expected an IOException");
+        }
+        catch (IOException e) {
+            assertEquals("Not an OTP graph file.", e.getMessage());
+        }
+    }
+}
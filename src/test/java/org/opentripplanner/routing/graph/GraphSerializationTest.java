@@ -4,13 +4,20 @@ import com.conveyal.object_differ.ObjectDiffer;
 import org.geotools.util.WeakValueHashMap;
 import org.jets3t.service.io.TempFile;
 import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.LineString;
 import org.locationtech.jts.geom.Polygon;
 import org.opentripplanner.ConstantsForTests;
+import org.opentripplanner.common.geometry.GeometryUtils;
 import org.opentripplanner.common.geometry.HashGridSpatialIndex;
 import org.opentripplanner.datastore.FileType;
+import org.opentripplanner.model.Stop;
 import org.opentripplanner.datastore.file.FileDataSource;
+import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.StreetTraversalPermission;
 import org.opentripplanner.routing.trippattern.Deduplicator;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
 import org.opentripplanner.standalone.config.BuildConfig;
 import org.opentripplanner.standalone.config.RouterConfig;
 
@@ -18,10 +25,17 @@ import java.io.File;
 import java.lang.ref.SoftReference;
 import java.lang.reflect.Method;
 import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.jar.JarFile;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.opentripplanner.standalone.config.JsonSupport.jsonNodeForTest;
 
 
 /**
@@ -53,6 +67,96 @@ public class GraphSerializationTest {
         testRoundTrip(ConstantsForTests.getInstance().getMinimalNetexGraph());
     }
 
+    /**
+     * Tests that the transit layer is saved with the graph if requested in the build config.
+     */
+    @Test
+    public void testSaveTransitLayer() throws Exception {
+        Graph originalGraph = ConstantsForTests.getInstance().getPortlandGraph();
+        File tempFile = TempFile.createTempFile("graph", "pdx");
+
+        new SerializedGraphObject(originalGraph, BuildConfig.DEFAULT, RouterConfig.DEFAULT)
+                .save(new FileDataSource(tempFile, FileType.GRAPH));
+        assertNull(SerializedGraphObject.load(tempFile).getTransitLayer());
+
+        BuildConfig buildConfig = new BuildConfig(
+                jsonNodeForTest("{saveTransitLayer : true}"), "Test", false
+        );
+        GraphIndex index = originalGraph.index;
+        new SerializedGraphObject(originalGraph, buildConfig, RouterConfig.DEFAULT)
+                .save(new FileDataSource(tempFile, FileType.GRAPH));
+        // Saving the graph does not change it
+        assertSame(index, originalGraph.index);
+        Graph copiedGraph = SerializedGraphObject.load(tempFile);
+        TransitLayer transitLayer = copiedGraph.getTransitLayer();
+
+        copiedGraph.index();
+        assertEquals(copiedGraph.index.getAllStops().size(), transitLayer.getStopCount());
+        // The saved transit layer refers to the stops of the loaded graph
+        for (int i = 0; i < transitLayer.getStopCount(); i++) {
+            Stop stop = transitLayer.getStopByIndex(i);
+            assertSame(copiedGraph.index.getStopForId(stop.getId()), stop);
+        }
+    }
+
+    /**
+     * Tests that a graph loaded with memory mapped street geometries, like a street graph loaded
+     * with --loadStreet, keeps its geometries when it is saved again.
+     */
+    @Test
+    public void testSaveALoadedGraphWithMemoryMappedGeometries() throws Exception {
+        Graph graph = new Graph();
+        IntersectionVertex a = new IntersectionVertex(graph, "A", 10.000, 60.0);
+        IntersectionVertex b = new IntersectionVertex(graph, "B", 10.001, 60.001);
+        IntersectionVertex c = new IntersectionVertex(graph, "C", 10.002, 60.0);
+        street(a, b, new Coordinate(10.0005, 60.0008));
+        street(b, c, new Coordinate(10.0015, 60.0002));
+        Map<String, LineString> geometries = geometries(graph);
+
+        BuildConfig buildConfig = new BuildConfig(
+                jsonNodeForTest("{memoryMappedStreetGeometry : true}"), "Test", false
+        );
+        File streetGraph = TempFile.createTempFile("streetGraph", "obj");
+        new SerializedGraphObject(graph, buildConfig, RouterConfig.DEFAULT)
+                .save(new FileDataSource(streetGraph, FileType.GRAPH));
+        Graph loadedGraph = SerializedGraphObject.load(streetGraph);
+        assertEquals(geometries, geometries(loadedGraph));
+
+        // Save the loaded graph with the geometries in their own section, and in the graph
+        for (BuildConfig config : List.of(buildConfig, BuildConfig.DEFAULT)) {
+            File file = TempFile.createTempFile("graph", "obj");
+            new SerializedGraphObject(loadedGraph, config, RouterConfig.DEFAULT)
+                    .save(new FileDataSource(file, FileType.GRAPH));
+            assertEquals(geometries, geometries(loadedGraph));
+            assertEquals(geometries, geometries(SerializedGraphObject.load(file)));
+        }
+    }
+
+    private static void street(IntersectionVertex from, IntersectionVertex to, Coordinate via) {
+        LineString geometry = GeometryUtils.getGeometryFactory().createLineString(
+                new Coordinate[] { from.getCoordinate(), via, to.getCoordinate() }
+        );
+        StreetEdge forward = new StreetEdge(
+                from, to, geometry, "street", 150.0, StreetTraversalPermission.ALL, false
+        );
+        StreetEdge back = new StreetEdge(
+                to, from, (LineString) geometry.reverse(), "street", 150.0,
+                StreetTraversalPermission.ALL, true
+        );
+        back.shareData(forward);
+    }
+
+    private static Map<String, LineString> geometries(Graph graph) {
+        Map<String, LineString> geometries = new HashMap<>();
+        for (StreetEdge edge : graph.getStreetEdges()) {
+            geometries.put(
+                    edge.getFromVertex().getLabel() + "-" + edge.getToVertex().getLabel(),
+                    edge.getGeometry()
+            );
+        }
+        return geometries;
+    }
+
     // Ideally we'd also test comparing two separate but identical complex graphs, built separately from the same inputs.
     // A test that builds the same graph twice will currently fail for the following reasons:
     // There is global state in Vertex.index and the feeds IDs that mean if you build the same graph twice the feed IDs
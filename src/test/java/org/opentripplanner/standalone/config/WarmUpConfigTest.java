@@ -0,0 +1,43 @@
+package org.opentripplanner.standalone.config;
+
+import com.fasterxml.jackson.databind.node.MissingNode;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.opentripplanner.standalone.config.JsonSupport.newNodeAdapterForTest;
+
+public class WarmUpConfigTest {
+
+    @Test
+    public void testWarmUpIsOffByDefault() {
+        WarmUpConfig subject = new WarmUpConfig(
+                new NodeAdapter(MissingNode.getInstance(), "WarmUpConfigTest")
+        );
+
+        assertEquals(0, subject.numberOfRequests());
+        assertTrue(subject.trips().isEmpty());
+    }
+
+    @Test
+    public void testLoadingConfig() {
+        NodeAdapter nodeAdapter = newNodeAdapterForTest(
+                "{\n" +
+                "    'numberOfRequests' : 100,\n" +
+                "    'threads' : 2,\n" +
+                "    'trips' : [\n" +
+                "        { 'from' : { 'lat' : 59.9, 'lon' : 10.7 }, 'to' : { 'lat' : 60.1, 'lon' : 11.0 } }\n" +
+                "    ]\n" +
+                "}"
+        );
+
+        WarmUpConfig subject = new WarmUpConfig(nodeAdapter);
+
+        assertEquals(100, subject.numberOfRequests());
+        assertEquals(2, subject.threads());
+        assertEquals(300, subject.maxDurationSeconds());
+        assertEquals(1, subject.trips().size());
+        assertEquals(59.9, subject.trips().get(0).from.lat, 0.0);
+        assertEquals(11.0, subject.trips().get(0).to.lng, 0.0);
+    }
+}
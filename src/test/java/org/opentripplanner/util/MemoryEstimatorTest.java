@@ -0,0 +1,68 @@
+package org.opentripplanner.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class MemoryEstimatorTest {
+
+    private final MemoryEstimator estimator = new MemoryEstimator(it -> it instanceof Boundary, 1000);
+
+    @Test
+    public void testShallowSize() {
+        assertEquals(56, MemoryEstimator.shallowSize(new int[10]));
+        assertEquals(24, MemoryEstimator.shallowSize(new byte[3]));
+        // Header, two ints and two references
+        assertEquals(32, MemoryEstimator.shallowSize(new Node(1, null)));
+    }
+
+    @Test
+    public void testSharedObjectsAreCountedOnce() {
+        long[] shared = new long[2];
+        List<Node> nodes = List.of(new Node(1, shared), new Node(2, shared));
+        // Two nodes and one array of 16 + 2 * 8 bytes
+        assertEquals(2 * 32 + 32, estimator.estimate(nodes));
+    }
+
+    @Test
+    public void testTheWalkStopsAtBoundaries() {
+        Node node = new Node(1, new long[2]);
+        node.boundary = new Boundary(node);
+        assertEquals(32 + 32, estimator.estimate(List.of(node)));
+        // A boundary object is walked if it is a root
+        assertEquals(16 + 32 + 32, estimator.estimate(List.of(node.boundary)));
+    }
+
+    @Test
+    public void testManyRootsAreSampled() {
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            nodes.add(new Node(i, new long[2]));
+        }
+        assertEquals(10_000 * (32 + 32), estimator.estimate(nodes));
+    }
+
+    private static class Node {
+        final int a;
+        final int b;
+        final long[] values;
+        Boundary boundary;
+
+        Node(int a, long[] values) {
+            this.a = a;
+            this.b = a;
+            this.values = values;
+        }
+    }
+
+    private static class Boundary {
+        final Node node;
+
+        Boundary(Node node) {
+            this.node = node;
+        }
+    }
+}